@@ -1,21 +1,14 @@
 package com.google.api.services.samples.youtube.cmdline.youtube_analytics_cmdline_report_sample;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.math.BigDecimal;
 import java.util.List;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.Channel;
 import com.google.api.services.youtube.model.ChannelListResponse;
@@ -34,10 +27,10 @@ import com.google.common.collect.Lists;
 public class YouTubeAnalyticsReports {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of Youtube object to make general YouTube API requests. */
   private static YouTube youtube;
@@ -45,47 +38,6 @@ public class YouTubeAnalyticsReports {
   /** Global instance of YoutubeAnalytics object to make analytic API requests. */
   private static YoutubeAnalytics analytics;
 
-  /**
-   * Authorizes the installed application to access user's protected YouTube data.
-   *
-   * @param scopes list of scopes needed to access general and analytic YouTube info.
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets =
-        GoogleClientSecrets.load(
-            JSON_FACTORY,
-            YouTubeAnalyticsReports.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.err.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-analytics-cmdline-report-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
-    }
-
-    // Set up file credential store.
-    FileCredentialStore credentialStore =
-        new FileCredentialStore(
-            new File(System.getProperty("user.home"),
-                     ".credentials/youtube-analytics-api-report.json"),
-                     JSON_FACTORY);
-
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = 
-        new GoogleAuthorizationCodeFlow.Builder(HTTP_TRANSPORT,
-                                                JSON_FACTORY,
-                                                clientSecrets,
-                                                scopes)
-      .setCredentialStore(credentialStore).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, new LocalServerReceiver()).authorize("user");
-  }
-
   /**
    * Authorizes user, gets user's default channel via YouTube Data API, and gets/prints stats on
    * user's channel using the YouTube Analytics API.
@@ -101,7 +53,11 @@ public class YouTubeAnalyticsReports {
         );
 
     try {
-      Credential credential = authorize(scopes);
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(ChannelListResponse.class, ResultTable.class);
+
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-analytics-api-report.json");
 
       // YouTube object used to make all non-analytic API requests.
       youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
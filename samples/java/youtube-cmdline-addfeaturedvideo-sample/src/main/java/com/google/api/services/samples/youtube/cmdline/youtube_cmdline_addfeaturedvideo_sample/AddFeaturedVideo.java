@@ -15,16 +15,10 @@
 package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_addfeaturedvideo_sample;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.*;
 import com.google.common.collect.Lists;
@@ -35,7 +29,8 @@ import java.math.BigInteger;
 import java.util.List;
 
 /**
- * This program adds a featured video to a channel via the Invideo Programming API.
+ * This program adds a featured video to a channel via the Invideo Programming API, or to every
+ * channel of a fleet (see {@link FeaturedVideoRotator}).
  *
  * @author Ikai Lan <ikai@google.com>
  */
@@ -44,61 +39,34 @@ public class AddFeaturedVideo {
     /**
      * Global instance of the HTTP transport.
      */
-    private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+    private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
     /**
      * Global instance of the JSON factory.
      */
-    private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+    private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
     /**
      * Global instance of Youtube object to make all API requests.
      */
     private static YouTube youtube;
 
-
     /**
-     * Authorizes the installed application to access user's protected data.
-     *
-     * @param scopes list of scopes needed to run youtube upload.
+     * Default number of channels rotated at once with "--channels".
      */
-    private static Credential authorize(List<String> scopes) throws IOException {
-
-        // Load client secrets.
-        GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-                JSON_FACTORY, AddFeaturedVideo.class.getResourceAsStream("/client_secrets.json"));
-
-        // Checks that the defaults have been replaced (Default = "Enter X here").
-        if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-                || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-            System.out.println(
-                    "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-                            + "into youtube-cmdline-addfeaturedvideo-sample/src/main/resources/client_secrets.json");
-            System.exit(1);
-        }
-
-        // Set up file credential store.
-        FileCredentialStore credentialStore = new FileCredentialStore(
-                new File(System.getProperty("user.home"), ".credentials/youtube-api-addfeaturedvideo.json"),
-                JSON_FACTORY);
-
-        // Set up authorization code flow.
-        GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-                HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes).setCredentialStore(credentialStore)
-                .build();
+    private static final int DEFAULT_PARALLEL_CHANNELS = 8;
 
-        // Build the local server and bind it to port 8080
-        LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-        // Authorize.
-        return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-    }
 
     /**
      * This is a very simple code sample that looks up a user's channel, then features the most recently
      * uploaded video in the bottom left hand corner of every single video in the channel.
      *
-     * @param args command line args (not used).
+     * @param args command line args: "--channels file" rotates every channel listed in that file
+     *        instead, caching their uploads playlists in "file.cache" or in the file given with
+     *        "--cache file"; "--parallel n" sets the number of channels handled at once (8 by
+     *        default); "--force" updates channels already featuring their latest upload; and
+     *        "--content-owner id" updates the channels on behalf of that content owner, which the
+     *        authorized account must belong to.
      */
     public static void main(String[] args) {
 
@@ -106,13 +74,28 @@ public class AddFeaturedVideo {
         List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube");
 
         try {
+            // Loads the response classes in the background while the user authorizes.
+            YouTubeClientFactory.get().warmUp(ChannelListResponse.class);
+
             // Authorization.
-            Credential credential = authorize(scopes);
+            Credential credential =
+                    YouTubeClientFactory.get().authorize(scopes, "youtube-api-addfeaturedvideo.json");
 
             // YouTube object used to make all API requests.
             youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName(
                     "youtube-cmdline-addfeaturedvideo-sample").build();
 
+            File channelsFile = getFileOption(args, "--channels");
+            if (channelsFile != null) {
+                File cacheFile = getFileOption(args, "--cache");
+                String parallel = getOption(args, "--parallel");
+                rotateFleet(channelsFile,
+                        cacheFile == null ? ChannelCache.cacheFileFor(channelsFile) : cacheFile,
+                        parallel == null ? DEFAULT_PARALLEL_CHANNELS : Integer.parseInt(parallel),
+                        hasFlag(args, "--force"), getOption(args, "--content-owner"));
+                return;
+            }
+
             // Fetch the user's channel. We also fetch the uploads playlist so we can use this later
             // to find the most recently uploaded video
             ChannelListResponse channelListResponse = youtube.channels().list("id,contentDetails")
@@ -148,27 +131,7 @@ public class AddFeaturedVideo {
             }
 
             // Feature this video on the channel via the Invideo programming API
-            // This describes the position of the video. Valid positions are bottomLeft, bottomRight, topLeft and
-            // topRight
-            InvideoPosition invideoPosition = new InvideoPosition();
-            invideoPosition.setCornerPosition("bottomLeft");
-            invideoPosition.setType("corner");
-
-            // The allowed offsets are offsetFromEnd and offsetFromStart, with offsetMs being an offset in milliseconds
-            InvideoTiming invideoTiming = new InvideoTiming();
-            invideoTiming.setOffsetMs(BigInteger.valueOf(15000l));
-            invideoTiming.setType("offsetFromEnd");
-
-            // Represents the type of promotion. In this case, a video with a video ID
-            PromotedItemId promotedItemId = new PromotedItemId();
-            promotedItemId.setType("video");
-            promotedItemId.setVideoId(featuredVideoId);
-
-            // Construct the Invidideo promotion
-            InvideoPromotion invideoPromotion = new InvideoPromotion();
-            invideoPromotion.setPosition(invideoPosition);
-            invideoPromotion.setTiming(invideoTiming);
-            invideoPromotion.setItems(Lists.newArrayList(promotedItemId));
+            InvideoPromotion invideoPromotion = newPromotion(featuredVideoId);
 
             // Now let's add the invideo promotion to the channel
             Channel channel = new Channel();
@@ -199,7 +162,89 @@ public class AddFeaturedVideo {
         } catch (IOException e) {
             System.err.println("IOException: " + e.getMessage());
             e.printStackTrace();
+
+        } catch (InterruptedException e) {
+            System.err.println("Interrupted");
+        }
+    }
+
+    /**
+     * Builds the invideo promotion that features a video in the bottom left hand corner, for the
+     * last 15 seconds of every video in the channel.
+     *
+     * @param videoId id of the video to feature
+     */
+    static InvideoPromotion newPromotion(String videoId) {
+        // This describes the position of the video. Valid positions are bottomLeft, bottomRight, topLeft and
+        // topRight
+        InvideoPosition invideoPosition = new InvideoPosition();
+        invideoPosition.setCornerPosition("bottomLeft");
+        invideoPosition.setType("corner");
+
+        // The allowed offsets are offsetFromEnd and offsetFromStart, with offsetMs being an offset in milliseconds
+        InvideoTiming invideoTiming = new InvideoTiming();
+        invideoTiming.setOffsetMs(BigInteger.valueOf(15000l));
+        invideoTiming.setType("offsetFromEnd");
+
+        // Represents the type of promotion. In this case, a video with a video ID
+        PromotedItemId promotedItemId = new PromotedItemId();
+        promotedItemId.setType("video");
+        promotedItemId.setVideoId(videoId);
+
+        // Construct the Invidideo promotion
+        InvideoPromotion invideoPromotion = new InvideoPromotion();
+        invideoPromotion.setPosition(invideoPosition);
+        invideoPromotion.setTiming(invideoTiming);
+        invideoPromotion.setItems(Lists.newArrayList(promotedItemId));
+        return invideoPromotion;
+    }
+
+    /**
+     * Makes every channel listed in a file feature its latest upload.
+     */
+    private static void rotateFleet(File channelsFile, File cacheFile, int workers, boolean force,
+            String contentOwnerId) throws IOException, InterruptedException {
+        List<String> channelIds = FeaturedVideoRotator.readChannelIds(channelsFile);
+        ChannelCache cache = ChannelCache.load(cacheFile);
+        System.out.println("Rotating the featured video of " + channelIds.size() + " channels");
+
+        FeaturedVideoRotator rotator = new FeaturedVideoRotator(youtube, workers, contentOwnerId);
+        long start = System.currentTimeMillis();
+        rotator.rotate(channelIds, cache, force);
+        System.out.println("Done in " + (System.currentTimeMillis() - start) / 1000 + " s: "
+                + rotator);
+        if (!rotator.getFailedIds().isEmpty()) {
+            System.out.println("Failed channels: " + rotator.getFailedIds());
+        }
+    }
+
+    /**
+     * Returns the value of an option such as "--parallel", or null if the option is not given.
+     */
+    private static String getOption(String[] args, String option) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private static File getFileOption(String[] args, String option) {
+        String value = getOption(args, option);
+        return value == null ? null : new File(value);
+    }
+
+    /**
+     * Returns whether a flag such as "--force" is given.
+     */
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
         }
+        return false;
     }
 
 }
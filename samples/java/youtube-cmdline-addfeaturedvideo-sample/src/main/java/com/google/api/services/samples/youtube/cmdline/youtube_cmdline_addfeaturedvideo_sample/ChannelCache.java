@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_addfeaturedvideo_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AtomicFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Local cache of what a fleet rotation needs to know about each channel between runs: the id of
+ * its uploads playlist, which never changes, and the video it was last made to feature.
+ *
+ * The cache is a properties file, read once at the start of a run and replaced atomically by
+ * {@link AtomicFile} when saved. Losing it only costs a few extra calls on the next run.
+ */
+public class ChannelCache {
+
+    private static final String UPLOADS = ".uploads";
+
+    private static final String FEATURED = ".featured";
+
+    private final File file;
+
+    private final Properties properties;
+
+    private ChannelCache(File file, Properties properties) {
+        this.file = file;
+        this.properties = properties;
+    }
+
+    /**
+     * Reads a cache, or starts an empty one if the file does not exist.
+     *
+     * @param file cache file
+     */
+    public static ChannelCache load(File file) throws IOException {
+        return new ChannelCache(file, AtomicFile.readProperties(file));
+    }
+
+    /**
+     * Returns the cache file used for a list of channels: the list's path followed by ".cache".
+     *
+     * @param channelsFile file listing the channels
+     */
+    public static File cacheFileFor(File channelsFile) {
+        return new File(channelsFile.getPath() + ".cache");
+    }
+
+    /** Id of a channel's uploads playlist, or null if it is not cached. */
+    public synchronized String getUploadsPlaylistId(String channelId) {
+        return properties.getProperty(channelId + UPLOADS);
+    }
+
+    public synchronized void putUploadsPlaylistId(String channelId, String playlistId) {
+        properties.setProperty(channelId + UPLOADS, playlistId);
+    }
+
+    /** Id of the video a channel was last made to feature, or null if none is cached. */
+    public synchronized String getFeaturedVideoId(String channelId) {
+        return properties.getProperty(channelId + FEATURED);
+    }
+
+    public synchronized void putFeaturedVideoId(String channelId, String videoId) {
+        properties.setProperty(channelId + FEATURED, videoId);
+    }
+
+    /**
+     * Writes the cache to its file.
+     */
+    public synchronized void save() throws IOException {
+        AtomicFile.writeProperties(file, properties, "Featured video rotation cache");
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_addfeaturedvideo_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.ApiErrors;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.YouTubeRequest;
+import com.google.api.services.youtube.model.Channel;
+import com.google.api.services.youtube.model.ChannelListResponse;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Makes each channel of a fleet feature its most recent upload, for thousands of channels in one
+ * run.
+ *
+ * A channel takes three calls when done on its own: channels.list for its uploads playlist,
+ * playlistItems.list for the latest upload, and channels.update. The uploads playlist of a channel
+ * never changes, so it is kept in a {@link ChannelCache}, and the channels missing from the cache
+ * are looked up 50 per channels.list call. The video each channel was last made to feature is
+ * cached too, and a channel whose latest upload is featured already is not updated again.
+ *
+ * The remaining calls are made for many channels at once by a pool of workers, each making the
+ * calls of one channel in turn. A call that fails with a server or rate limit error is scheduled to
+ * be sent again after a back-off, and the worker moves on to other channels meanwhile, so retries
+ * do not hold up the rest of the fleet; a channel whose call keeps failing is reported and left for
+ * the next run.
+ *
+ * channels.update only changes a channel that the authorized account owns. To rotate the channels
+ * of many owners in one run, authorize a YouTube content owner account that manages them all, and
+ * give the rotator its content owner id; each update is then made on behalf of that content owner.
+ * Otherwise each channel has to be rotated with its own credential.
+ */
+public class FeaturedVideoRotator {
+
+    /** Maximum number of channel ids in a single channels.list call. */
+    private static final int MAX_CHANNELS_PER_LIST = 50;
+
+    /** Number of times a channel is tried before it is given up. */
+    static final int MAX_ATTEMPTS = 5;
+
+    /** Delay before the first retry of a channel; each retry doubles it. */
+    static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+    /** Number of channels handled between two progress lines. */
+    private static final int PROGRESS_INTERVAL = 100;
+
+    private final YouTube youtube;
+
+    private final int workers;
+
+    private final String contentOwnerId;
+
+    private final Random random = new Random();
+
+    private final AtomicLong updated = new AtomicLong();
+
+    private final AtomicLong unchanged = new AtomicLong();
+
+    private final AtomicLong withoutUploads = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong handled = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final List<String> failedIds = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * Creates a rotator that updates the channels of the authorized account.
+     *
+     * @param youtube YouTube object used to make the calls
+     * @param workers number of channels handled at once
+     */
+    public FeaturedVideoRotator(YouTube youtube, int workers) {
+        this(youtube, workers, null);
+    }
+
+    /**
+     * Creates a rotator.
+     *
+     * @param youtube YouTube object used to make the calls
+     * @param workers number of channels handled at once
+     * @param contentOwnerId id of the content owner the channels are updated on behalf of, or null
+     *        to update them as the authorized account
+     */
+    public FeaturedVideoRotator(YouTube youtube, int workers, String contentOwnerId) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1: " + workers);
+        }
+        this.youtube = youtube;
+        this.workers = workers;
+        this.contentOwnerId = contentOwnerId;
+    }
+
+    /**
+     * Makes every channel feature its latest upload, and saves the cache. Returns once every
+     * channel has been handled or has failed.
+     *
+     * @param channelIds ids of the channels
+     * @param cache cache of the fleet
+     * @param force whether to update channels whose latest upload was featured by an earlier run
+     */
+    public void rotate(List<String> channelIds, ChannelCache cache, boolean force)
+            throws IOException, InterruptedException {
+        ScheduledExecutorService executor =
+                Executors.newScheduledThreadPool(workers, new RotatorThreadFactory());
+        try {
+            lookUpUploadsPlaylists(channelIds, cache, executor);
+            List<String> found = new ArrayList<String>();
+            for (String channelId : channelIds) {
+                if (cache.getUploadsPlaylistId(channelId) == null) {
+                    System.err.println("Channel " + channelId + " was not found");
+                    failedIds.add(channelId);
+                } else {
+                    found.add(channelId);
+                }
+            }
+            CountDownLatch done = new CountDownLatch(found.size());
+            for (String channelId : found) {
+                executor.execute(new Rotation(executor, done, channelId,
+                        cache.getUploadsPlaylistId(channelId), cache, force));
+            }
+            done.await();
+        } finally {
+            executor.shutdownNow();
+            cache.save();
+        }
+    }
+
+    /*
+     * Looks up the uploads playlists of the channels missing from the cache, 50 channels per call,
+     * with the calls running at once on the workers.
+     */
+    private void lookUpUploadsPlaylists(List<String> channelIds, final ChannelCache cache,
+            ScheduledExecutorService executor) throws IOException, InterruptedException {
+        List<String> missing = new ArrayList<String>();
+        for (String channelId : channelIds) {
+            if (cache.getUploadsPlaylistId(channelId) == null) {
+                missing.add(channelId);
+            }
+        }
+        int lookups = (missing.size() + MAX_CHANNELS_PER_LIST - 1) / MAX_CHANNELS_PER_LIST;
+        CountDownLatch done = new CountDownLatch(lookups);
+        final AtomicReference<IOException> error = new AtomicReference<IOException>();
+        for (int start = 0; start < missing.size(); start += MAX_CHANNELS_PER_LIST) {
+            final List<String> ids =
+                    missing.subList(start, Math.min(start + MAX_CHANNELS_PER_LIST, missing.size()));
+            executor.execute(new RetryingTask(executor, done) {
+                @Override
+                boolean call() throws IOException {
+                    YouTube.Channels.List request = youtube.channels().list("id,contentDetails")
+                            .setId(join(ids))
+                            .setMaxResults((long) MAX_CHANNELS_PER_LIST)
+                            .setFields("items(contentDetails/relatedPlaylists/uploads,id)");
+                    ChannelListResponse response = send(request);
+                    if (response.getItems() != null) {
+                        for (Channel channel : response.getItems()) {
+                            cache.putUploadsPlaylistId(channel.getId(),
+                                    channel.getContentDetails().getRelatedPlaylists().getUploads());
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                void failed(IOException e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+        }
+        done.await();
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
+
+    private <T> T send(YouTubeRequest<T> request) throws IOException {
+        requests.incrementAndGet();
+        return request.execute();
+    }
+
+    /** Number of channels made to feature a new video. */
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    /** Number of channels already featuring their latest upload. */
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /** Number of channels without uploads, which were left as they were. */
+    public long getWithoutUploads() {
+        return withoutUploads.get();
+    }
+
+    /** Number of calls sent again after an error. */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /** Number of calls sent. */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /** Ids of the channels that could not be rotated. */
+    public List<String> getFailedIds() {
+        synchronized (failedIds) {
+            return new ArrayList<String>(failedIds);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d updated, %d unchanged, %d without uploads, %d failed, %d retries, "
+                + "%d calls", getUpdated(), getUnchanged(), getWithoutUploads(), failedIds.size(),
+                getRetries(), getRequests());
+    }
+
+    /**
+     * Reads channel ids from a file with one id per line, without duplicates, in file order. Blank
+     * lines and lines starting with "#" are ignored.
+     *
+     * @param file file to read
+     */
+    public static List<String> readChannelIds(File file) throws IOException {
+        Set<String> channelIds = new LinkedHashSet<String>();
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && !line.startsWith("#")) {
+                    channelIds.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new ArrayList<String>(channelIds);
+    }
+
+    private static String join(List<String> ids) {
+        StringBuilder joined = new StringBuilder();
+        for (String id : ids) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(id);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Calls made one after the other on the workers, such as those that rotate one channel. A call
+     * that fails with a server or rate limit error is scheduled to run again after a back-off that
+     * doubles with each attempt, rather than waited for on the worker.
+     */
+    private abstract class RetryingTask implements Runnable {
+
+        private final ScheduledExecutorService executor;
+
+        private final CountDownLatch done;
+
+        /** Attempt number of the current call. */
+        private int attempt = 1;
+
+        /**
+         * @param executor executor the task runs on, and retries are scheduled on
+         * @param done latch counted down once the task has finished or failed
+         */
+        RetryingTask(ScheduledExecutorService executor, CountDownLatch done) {
+            this.executor = executor;
+            this.done = done;
+        }
+
+        /**
+         * Makes the current call of the task.
+         *
+         * @return whether the task is finished, or false to go on with its next call
+         */
+        abstract boolean call() throws IOException;
+
+        /** Gives up the task after its current call failed for good. */
+        abstract void failed(IOException e);
+
+        /** Called once the task has finished or failed. */
+        void finished() {
+            done.countDown();
+        }
+
+        public void run() {
+            boolean retrying = false;
+            try {
+                while (!call()) {
+                    attempt = 1;
+                }
+            } catch (IOException e) {
+                if (attempt < MAX_ATTEMPTS && ApiErrors.isRetryable(e)) {
+                    retries.incrementAndGet();
+                    long backoff = INITIAL_BACKOFF_MILLIS << (attempt - 1);
+                    attempt++;
+                    executor.schedule(this, backoff + (long) (random.nextDouble() * backoff),
+                            TimeUnit.MILLISECONDS);
+                    retrying = true;
+                } else {
+                    failed(e);
+                }
+            } finally {
+                if (!retrying) {
+                    finished();
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes a channel feature its latest upload: reads the latest upload, then updates the channel
+     * unless it features that video already.
+     */
+    private class Rotation extends RetryingTask {
+
+        private final String channelId;
+
+        private final String uploadsPlaylistId;
+
+        private final ChannelCache cache;
+
+        private final boolean force;
+
+        /** Latest upload of the channel, or null until it has been read. */
+        private String videoId;
+
+        Rotation(ScheduledExecutorService executor, CountDownLatch done, String channelId,
+                String uploadsPlaylistId, ChannelCache cache, boolean force) {
+            super(executor, done);
+            this.channelId = channelId;
+            this.uploadsPlaylistId = uploadsPlaylistId;
+            this.cache = cache;
+            this.force = force;
+        }
+
+        @Override
+        boolean call() throws IOException {
+            if (videoId == null) {
+                PlaylistItemListResponse response = send(youtube.playlistItems().list("snippet")
+                        .setPlaylistId(uploadsPlaylistId)
+                        .setMaxResults(1L)
+                        .setFields("items/snippet/resourceId/videoId"));
+                List<PlaylistItem> items = response.getItems();
+                if (items == null || items.isEmpty()) {
+                    withoutUploads.incrementAndGet();
+                    return true;
+                }
+                videoId = items.get(0).getSnippet().getResourceId().getVideoId();
+                if (!force && videoId.equals(cache.getFeaturedVideoId(channelId))) {
+                    unchanged.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+
+            Channel channel = new Channel();
+            channel.setId(channelId);
+            channel.setInvideoPromotion(AddFeaturedVideo.newPromotion(videoId));
+            YouTube.Channels.Update update =
+                    youtube.channels().update("invideoPromotion", channel).setFields("id");
+            if (contentOwnerId != null) {
+                update.set("onBehalfOfContentOwner", contentOwnerId);
+            }
+            send(update);
+            cache.putFeaturedVideoId(channelId, videoId);
+            updated.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        void failed(IOException e) {
+            System.err.println("Could not rotate channel " + channelId + ": " + e.getMessage());
+            failedIds.add(channelId);
+        }
+
+        @Override
+        void finished() {
+            super.finished();
+            if (handled.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+                System.out.println(" " + FeaturedVideoRotator.this);
+            }
+        }
+    }
+
+    /**
+     * Names the workers "featured-video-rotator-N".
+     */
+    private static class RotatorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread =
+                    new Thread(runnable, "featured-video-rotator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
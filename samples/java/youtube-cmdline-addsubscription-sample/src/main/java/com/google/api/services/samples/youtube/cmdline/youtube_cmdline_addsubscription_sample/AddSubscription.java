@@ -16,21 +16,18 @@ package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_addsubsc
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.List;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.ResourceId;
 import com.google.api.services.youtube.model.Subscription;
@@ -46,56 +43,30 @@ import com.google.common.collect.Lists;
 public class AddSubscription {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of Youtube object to make all API requests. */
   private static YouTube youtube;
 
+  /** Default number of subscriptions inserted at once by an import. */
+  private static final int DEFAULT_PARALLEL_INSERTS = 4;
 
-  /**
-   * Authorizes the installed application to access user's protected data.
-   *
-   * @param scopes list of scopes needed to run youtube upload.
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-        JSON_FACTORY, AddSubscription.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-cmdline-uploadvideo-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
-    }
-
-    // Set up file credential store.
-    FileCredentialStore credentialStore = new FileCredentialStore(
-        new File(System.getProperty("user.home"), ".credentials/youtube-api-uploadvideo.json"),
-        JSON_FACTORY);
-
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-        HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes).setCredentialStore(credentialStore)
-        .build();
-
-    // Build the local server and bind it to port 8080
-    LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-  }
+  /** Default maximum number of subscriptions inserted per second by an import. */
+  private static final double DEFAULT_INSERTS_PER_SECOND = 5;
 
   /**
    * Subscribes user's YouTube account to a user selected channel using OAuth2 for authentication.
    *
-   * @param args command line args (not used).
+   * With "--import file", subscribes to every channel listed in the file instead: an OPML
+   * subscription list or one channel id or URL per line. Channels the user is subscribed to
+   * already are skipped, and the others are inserted by "--parallel n" workers (4 by default) at
+   * up to "--rate n" inserts per second (5 by default). Channels done are recorded in the file's
+   * name followed by ".done", so an interrupted import can be run again to finish it.
+   *
+   * @param args command line args.
    */
   public static void main(String[] args) {
 
@@ -103,13 +74,27 @@ public class AddSubscription {
     List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube");
 
     try {
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(Subscription.class);
+
       // Authorization.
-      Credential credential = authorize(scopes);
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-api-addsubscription.json");
 
       // YouTube object used to make all API requests.
       youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName(
           "youtube-cmdline-addsubscription-sample").build();
 
+      String importFile = getOption(args, "--import");
+      if (importFile != null) {
+        String parallel = getOption(args, "--parallel");
+        String rate = getOption(args, "--rate");
+        importSubscriptions(new File(importFile),
+            parallel == null ? DEFAULT_PARALLEL_INSERTS : Integer.parseInt(parallel),
+            rate == null ? DEFAULT_INSERTS_PER_SECOND : Double.parseDouble(rate));
+        return;
+      }
+
       // We get the user selected channel to subscribe.
       String channelId = getChannelId();
       System.out.println("You chose " + channelId + " to subscribe.");
@@ -156,6 +141,58 @@ public class AddSubscription {
     }
   }
 
+  /**
+   * Subscribes the user to the channels listed in a file that the user is not subscribed to yet.
+   *
+   * @param file OPML or text file listing the channels
+   * @param parallelInserts number of inserts sent at once
+   * @param insertsPerSecond maximum number of inserts sent per second
+   */
+  private static void importSubscriptions(File file, int parallelInserts, double insertsPerSecond)
+      throws IOException, InterruptedException {
+    List<String> channelIds = SubscriptionImporter.readChannelIds(file);
+    ImportCheckpoint checkpoint = ImportCheckpoint.open(ImportCheckpoint.checkpointFileFor(file));
+    System.out.println("Importing " + channelIds.size() + " channels, " + checkpoint.size()
+        + " of them done by an earlier run");
+
+    SubscriptionImporter importer =
+        new SubscriptionImporter(youtube, parallelInserts, insertsPerSecond);
+    try {
+      int missing = importer.run(channelIds, checkpoint);
+      System.out.println("\n" + missing + " channels needed an insert: " + importer);
+    } finally {
+      checkpoint.close();
+    }
+
+    List<String> failedIds = importer.getFailedIds();
+    if (!failedIds.isEmpty()) {
+      File failedFile = new File(file.getPath() + ".failed");
+      PrintWriter writer =
+          new PrintWriter(new OutputStreamWriter(new FileOutputStream(failedFile), "UTF-8"));
+      try {
+        for (String channelId : failedIds) {
+          writer.println(channelId);
+        }
+      } finally {
+        writer.close();
+      }
+      System.out.println("The ids of the " + failedIds.size()
+          + " channels not subscribed to are in " + failedFile);
+    }
+  }
+
+  /*
+   * Returns the value given after an option such as "--import", or null if it is not given.
+   */
+  private static String getOption(String[] args, String option) {
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        return args[i + 1];
+      }
+    }
+    return null;
+  }
+
   /*
    * Returns a channel id (String) from user via the terminal.
    */
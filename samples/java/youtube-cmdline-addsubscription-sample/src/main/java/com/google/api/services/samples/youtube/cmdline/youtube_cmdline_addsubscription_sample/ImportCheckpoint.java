@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_addsubscription_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AppendLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Record of the channels a subscription import has dealt with, so that an import that was
+ * interrupted can be run again without inserting any subscription twice.
+ *
+ * The checkpoint is an {@link AppendLog} with one channel id per line, appended to and synced to
+ * disk as soon as each subscription is inserted (or found to exist already), before the next one
+ * is counted. A line cut short by a crash is left out when the checkpoint is opened again, so its
+ * channel is looked up again, and found among the existing subscriptions.
+ */
+public class ImportCheckpoint {
+
+  private final File file;
+
+  private final Set<String> channelIds = new HashSet<String>();
+
+  private final AppendLog log;
+
+  private ImportCheckpoint(File file) throws IOException {
+    this.file = file;
+    for (String line : AppendLog.readLines(file)) {
+      if (line.length() > 0) {
+        channelIds.add(line);
+      }
+    }
+    log = AppendLog.open(file);
+  }
+
+  /**
+   * Opens a checkpoint, creating it if it does not exist.
+   *
+   * @param file checkpoint file
+   */
+  public static ImportCheckpoint open(File file) throws IOException {
+    return new ImportCheckpoint(file);
+  }
+
+  /**
+   * Returns the checkpoint file used for an import: the file's path followed by ".done".
+   *
+   * @param importFile file the channel ids are imported from
+   */
+  public static File checkpointFileFor(File importFile) {
+    return new File(importFile.getPath() + ".done");
+  }
+
+  /**
+   * Returns whether a channel was dealt with by this import already.
+   *
+   * @param channelId id of the channel
+   */
+  public synchronized boolean contains(String channelId) {
+    return channelIds.contains(channelId);
+  }
+
+  /**
+   * Records a channel the user is now subscribed to, on disk before returning.
+   *
+   * @param channelId id of the channel
+   */
+  public synchronized void done(String channelId) throws IOException {
+    if (channelIds.add(channelId)) {
+      log.append(channelId + "\n");
+    }
+  }
+
+  /** Number of channels recorded, including those recorded by earlier runs. */
+  public synchronized int size() {
+    return channelIds.size();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public synchronized void close() throws IOException {
+    log.close();
+  }
+}
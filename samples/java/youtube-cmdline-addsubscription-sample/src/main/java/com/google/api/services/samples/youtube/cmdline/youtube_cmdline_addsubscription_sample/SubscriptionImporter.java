@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_addsubscription_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.ApiErrors;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.ResourceId;
+import com.google.api.services.youtube.model.Subscription;
+import com.google.api.services.youtube.model.SubscriptionListResponse;
+import com.google.api.services.youtube.model.SubscriptionSnippet;
+import com.google.common.util.concurrent.RateLimiter;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * Subscribes the authorized user to many channels at once, skipping those the user is subscribed
+ * to already.
+ *
+ * The user's subscriptions are read once, 50 per subscriptions.list call, into a set of channel
+ * ids, so that checking a channel costs nothing and no insert is sent for a subscription that
+ * exists. The missing subscriptions are inserted by a pool of workers, which share a rate limit so
+ * that the import stays under the API's per-user limits however many workers there are. Server
+ * and rate limit errors are retried with back-off; an insert the server rejects as a duplicate
+ * counts as done.
+ *
+ * Each channel dealt with is recorded in an {@link ImportCheckpoint} as soon as it is, so an
+ * import that is interrupted can simply be run again: recorded channels are skipped without a
+ * call, and any channel subscribed to after the last record is in the subscriptions read at the
+ * start of the new run.
+ */
+public class SubscriptionImporter {
+
+  /** Maximum number of subscriptions in a single subscriptions.list call. */
+  private static final long MAX_SUBSCRIPTIONS_PER_PAGE = 50;
+
+  /** Number of times an insert is sent before it is given up. */
+  static final int MAX_ATTEMPTS = 5;
+
+  /** Delay before the first retry of an insert; each retry doubles it. */
+  static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+  /** Number of subscriptions handled between two progress lines. */
+  private static final int PROGRESS_INTERVAL = 100;
+
+  /** Channel id in a channel URL or a channel feed URL, as found in OPML exports. */
+  private static final Pattern CHANNEL_ID =
+      Pattern.compile("(?:channel_id=|/channel/)(UC[0-9A-Za-z_-]{22})");
+
+  private final YouTube youtube;
+
+  private final int workers;
+
+  private final RateLimiter rateLimiter;
+
+  private final Random random = new Random();
+
+  private final AtomicLong inserted = new AtomicLong();
+
+  private final AtomicLong alreadySubscribed = new AtomicLong();
+
+  private final AtomicLong retries = new AtomicLong();
+
+  private final AtomicLong handled = new AtomicLong();
+
+  private final AtomicLong requests = new AtomicLong();
+
+  private final List<String> failedIds = Collections.synchronizedList(new ArrayList<String>());
+
+  /**
+   * Creates an importer.
+   *
+   * @param youtube YouTube object used to make the subscriptions calls
+   * @param workers number of inserts sent at once
+   * @param insertsPerSecond maximum number of inserts sent per second, by all workers together
+   */
+  public SubscriptionImporter(YouTube youtube, int workers, double insertsPerSecond) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("workers must be at least 1: " + workers);
+    }
+    this.youtube = youtube;
+    this.workers = workers;
+    this.rateLimiter = RateLimiter.create(insertsPerSecond);
+  }
+
+  /**
+   * Reads the ids of the channels the authorized user is subscribed to.
+   */
+  public Set<String> readSubscribedChannels() throws IOException {
+    YouTube.Subscriptions.List request = youtube.subscriptions().list("snippet");
+    request.setMine(true);
+    request.setMaxResults(MAX_SUBSCRIPTIONS_PER_PAGE);
+    request.setFields("items/snippet/resourceId/channelId,nextPageToken");
+    Set<String> channelIds = new HashSet<String>();
+    String nextToken = null;
+    do {
+      request.setPageToken(nextToken);
+      requests.incrementAndGet();
+      SubscriptionListResponse response = request.execute();
+      if (response.getItems() != null) {
+        for (Subscription subscription : response.getItems()) {
+          channelIds.add(subscription.getSnippet().getResourceId().getChannelId());
+        }
+      }
+      nextToken = response.getNextPageToken();
+    } while (nextToken != null);
+    return channelIds;
+  }
+
+  /**
+   * Subscribes the user to every channel not subscribed to yet nor recorded in the checkpoint, and
+   * records each one in the checkpoint. Returns once every insert has completed or failed.
+   *
+   * @param channelIds ids of the channels to subscribe to
+   * @param checkpoint checkpoint of this import
+   * @return the number of channels that needed an insert
+   */
+  public int run(List<String> channelIds, final ImportCheckpoint checkpoint)
+      throws IOException, InterruptedException {
+    Set<String> subscribed = readSubscribedChannels();
+    List<String> missing = new ArrayList<String>();
+    for (String channelId : channelIds) {
+      if (checkpoint.contains(channelId)) {
+        continue;
+      }
+      if (subscribed.contains(channelId)) {
+        // Subscribed after the last record of an earlier run, or outside of the import.
+        checkpoint.done(channelId);
+        alreadySubscribed.incrementAndGet();
+      } else {
+        missing.add(channelId);
+      }
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers, new ImporterThreadFactory());
+    for (final String channelId : missing) {
+      executor.execute(new Runnable() {
+        public void run() {
+          subscribe(channelId, checkpoint);
+          if (handled.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+            System.out.println(" " + SubscriptionImporter.this);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        // Keeps waiting; inserts are paced by the rate limit.
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return missing.size();
+  }
+
+  /*
+   * Inserts one subscription, retrying server and rate limit errors. Runs on a worker thread.
+   */
+  private void subscribe(String channelId, ImportCheckpoint checkpoint) {
+    ResourceId resourceId = new ResourceId();
+    resourceId.setChannelId(channelId);
+    resourceId.setKind("youtube#channel");
+    SubscriptionSnippet snippet = new SubscriptionSnippet();
+    snippet.setResourceId(resourceId);
+    Subscription subscription = new Subscription();
+    subscription.setSnippet(snippet);
+    try {
+      for (int attempt = 1;; attempt++) {
+        rateLimiter.acquire();
+        requests.incrementAndGet();
+        try {
+          youtube.subscriptions().insert("snippet", subscription).setFields("id").execute();
+          inserted.incrementAndGet();
+          break;
+        } catch (IOException e) {
+          if (ApiErrors.hasReason(e, "subscriptionDuplicate")) {
+            alreadySubscribed.incrementAndGet();
+            break;
+          }
+          if (attempt == MAX_ATTEMPTS || !ApiErrors.isRetryable(e)) {
+            throw e;
+          }
+          retries.incrementAndGet();
+          long backoff = INITIAL_BACKOFF_MILLIS << (attempt - 1);
+          Thread.sleep(backoff + (long) (random.nextDouble() * backoff));
+        }
+      }
+      checkpoint.done(channelId);
+    } catch (IOException e) {
+      System.err.println("Could not subscribe to " + channelId + ": " + e.getMessage());
+      failedIds.add(channelId);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failedIds.add(channelId);
+    }
+  }
+
+  /** Number of subscriptions inserted. */
+  public long getInserted() {
+    return inserted.get();
+  }
+
+  /** Number of channels the user was found to be subscribed to already. */
+  public long getAlreadySubscribed() {
+    return alreadySubscribed.get();
+  }
+
+  /** Number of inserts sent again after an error. */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /** Number of subscriptions calls sent, reads and inserts. */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /** Ids of the channels that could not be subscribed to. */
+  public List<String> getFailedIds() {
+    synchronized (failedIds) {
+      return new ArrayList<String>(failedIds);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d inserted, %d already subscribed, %d failed, %d retries, %d calls",
+        getInserted(), getAlreadySubscribed(), failedIds.size(), getRetries(), getRequests());
+  }
+
+  /**
+   * Reads the channel ids to import from a file, without duplicates, in file order. The file is
+   * either an OPML subscription list, such as the one YouTube exports, whose outlines hold channel
+   * feed URLs, or a text file with one channel id or channel URL per line, where blank lines and
+   * lines starting with "#" are ignored.
+   *
+   * @param file file to read
+   */
+  public static List<String> readChannelIds(File file) throws IOException {
+    final Set<String> channelIds = new LinkedHashSet<String>();
+    String name = file.getName().toLowerCase();
+    if (name.endsWith(".opml") || name.endsWith(".xml")) {
+      try {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.newSAXParser().parse(file, new DefaultHandler() {
+          @Override
+          public void startElement(
+              String uri, String localName, String qName, Attributes attributes) {
+            if (qName.equals("outline")) {
+              addChannelId(channelIds, attributes.getValue("xmlUrl"));
+            }
+          }
+        });
+      } catch (ParserConfigurationException e) {
+        throw new IOException("Could not create an XML parser: " + e.getMessage());
+      } catch (SAXException e) {
+        throw new IOException("Could not read " + file + ": " + e.getMessage());
+      }
+    } else {
+      BufferedReader reader =
+          new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0 && !line.startsWith("#")) {
+            if (line.contains("/")) {
+              addChannelId(channelIds, line);
+            } else {
+              channelIds.add(line);
+            }
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return new ArrayList<String>(channelIds);
+  }
+
+  /*
+   * Adds the channel id found in a URL, if any.
+   */
+  private static void addChannelId(Set<String> channelIds, String url) {
+    if (url != null) {
+      Matcher matcher = CHANNEL_ID.matcher(url);
+      if (matcher.find()) {
+        channelIds.add(matcher.group(1));
+      }
+    }
+  }
+
+  /**
+   * Creates the daemon threads the inserts run on.
+   */
+  private static class ImporterThreadFactory implements ThreadFactory {
+
+    private int count;
+
+    public synchronized Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "subscription-importer-" + ++count);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_channelbulletin_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AppendLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only log of the bulletins a {@link BulletinScheduler} has been given and what became of
+ * them, so that the schedule survives the program being stopped or crashing.
+ *
+ * The log is a text file with one record per line, its fields separated by tabs:
+ *
+ * <pre>
+ * +  id  dueMillis  channelId  videoId  description   a bulletin was scheduled
+ * P  id                                               it was posted
+ * F  id  reason                                       posting it failed for good
+ * C  id                                               it was cancelled
+ * </pre>
+ *
+ * The file is an {@link AppendLog}: records are synced to disk before the call that appends them
+ * returns, and a batch of bulletins is appended with a single sync. Reading the log back gives the
+ * bulletins still pending. A line cut short by a crash is ignored and dropped when the log is opened
+ * again. A bulletin is marked posted after the API call returns, so a crash between the two posts
+ * it again on the next run.
+ */
+public class BulletinLog {
+
+  private static final String SCHEDULED = "+";
+
+  private static final String POSTED = "P";
+
+  private static final String FAILED = "F";
+
+  private static final String CANCELLED = "C";
+
+  private final File file;
+
+  private final AppendLog log;
+
+  /** Bulletins not yet posted, failed or cancelled, by id, in the order they were added. */
+  private final Map<Long, ScheduledBulletin> pending = new LinkedHashMap<Long, ScheduledBulletin>();
+
+  /** Keys of every bulletin in the log, to skip one scheduled again. */
+  private final Set<String> keys = new HashSet<String>();
+
+  private long lastId;
+
+  private int posted;
+
+  private int failed;
+
+  private int cancelled;
+
+  private BulletinLog(File file) throws IOException {
+    this.file = file;
+    for (String line : AppendLog.readLines(file)) {
+      replay(line);
+    }
+    log = AppendLog.open(file);
+  }
+
+  /**
+   * Opens a log, creating it if it does not exist.
+   *
+   * @param file log file
+   */
+  public static BulletinLog open(File file) throws IOException {
+    return new BulletinLog(file);
+  }
+
+  /**
+   * Adds bulletins to the log, on disk before returning, and gives them their ids. Bulletins
+   * already in the log, for the same channel, video and time, are skipped.
+   *
+   * @param bulletins bulletins to add
+   * @return the bulletins added, with their ids
+   */
+  public synchronized List<ScheduledBulletin> add(List<ScheduledBulletin> bulletins)
+      throws IOException {
+    List<ScheduledBulletin> added = new ArrayList<ScheduledBulletin>();
+    StringBuilder records = new StringBuilder();
+    for (ScheduledBulletin bulletin : bulletins) {
+      if (!keys.add(bulletin.getKey())) {
+        continue;
+      }
+      ScheduledBulletin withId = new ScheduledBulletin(++lastId, bulletin.getDueMillis(),
+          bulletin.getChannelId(), bulletin.getVideoId(), bulletin.getDescription());
+      String description = withId.getDescription() == null ? "" : withId.getDescription();
+      records.append(SCHEDULED).append('\t').append(withId.getId()).append('\t')
+          .append(withId.getDueMillis()).append('\t').append(withId.getChannelId()).append('\t')
+          .append(withId.getVideoId()).append('\t').append(URLEncoder.encode(description, "UTF-8"))
+          .append('\n');
+      pending.put(withId.getId(), withId);
+      added.add(withId);
+    }
+    if (!added.isEmpty()) {
+      append(records.toString());
+    }
+    return added;
+  }
+
+  /** Records that a bulletin was posted. */
+  public synchronized void posted(long id) throws IOException {
+    if (pending.remove(id) != null) {
+      posted++;
+      append(POSTED + "\t" + id + "\n");
+    }
+  }
+
+  /**
+   * Records that a bulletin could not be posted and will not be tried again.
+   *
+   * @param id id of the bulletin
+   * @param reason why it failed
+   */
+  public synchronized void failed(long id, String reason) throws IOException {
+    if (pending.remove(id) != null) {
+      failed++;
+      append(FAILED + "\t" + id + "\t" + URLEncoder.encode(reason, "UTF-8") + "\n");
+    }
+  }
+
+  /** Records that a bulletin was cancelled before it was posted. */
+  public synchronized void cancelled(long id) throws IOException {
+    if (pending.remove(id) != null) {
+      cancelled++;
+      append(CANCELLED + "\t" + id + "\n");
+    }
+  }
+
+  /** Bulletins not yet posted, failed or cancelled, in order of due time. */
+  public synchronized List<ScheduledBulletin> getPending() {
+    List<ScheduledBulletin> bulletins = new ArrayList<ScheduledBulletin>(pending.values());
+    Collections.sort(bulletins, new Comparator<ScheduledBulletin>() {
+      public int compare(ScheduledBulletin a, ScheduledBulletin b) {
+        return a.getDueMillis() < b.getDueMillis() ? -1
+            : a.getDueMillis() > b.getDueMillis() ? 1 : 0;
+      }
+    });
+    return bulletins;
+  }
+
+  public synchronized int getPosted() {
+    return posted;
+  }
+
+  public synchronized int getFailed() {
+    return failed;
+  }
+
+  public synchronized int getCancelled() {
+    return cancelled;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public synchronized void close() throws IOException {
+    log.close();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return file + ": " + pending.size() + " pending, " + posted + " posted, " + failed
+        + " failed, " + cancelled + " cancelled";
+  }
+
+  private void append(String records) throws IOException {
+    log.append(records);
+  }
+
+  /*
+   * Applies one line of the log. Lines that do not parse are ignored.
+   */
+  private void replay(String line) throws IOException {
+    String[] fields = line.split("\t", -1);
+    try {
+      long id = Long.parseLong(fields[1]);
+      if (fields[0].equals(SCHEDULED) && fields.length == 6) {
+        String description = URLDecoder.decode(fields[5], "UTF-8");
+        ScheduledBulletin bulletin = new ScheduledBulletin(id, Long.parseLong(fields[2]),
+            fields[3], fields[4], description.length() == 0 ? null : description);
+        pending.put(id, bulletin);
+        keys.add(bulletin.getKey());
+        lastId = Math.max(lastId, id);
+      } else if (fields[0].equals(POSTED) && pending.remove(id) != null) {
+        posted++;
+      } else if (fields[0].equals(FAILED) && pending.remove(id) != null) {
+        failed++;
+      } else if (fields[0].equals(CANCELLED) && pending.remove(id) != null) {
+        cancelled++;
+      }
+    } catch (IllegalArgumentException e) {
+      // Not a number, or not a valid escape sequence.
+    } catch (ArrayIndexOutOfBoundsException e) {
+      // Too few fields.
+    }
+  }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_channelbulletin_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.ApiErrors;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.Activity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Posts bulletins on the authorized user's channel at the times they were scheduled for, for as
+ * many bulletins as the schedule holds. Every call is made with the one credential of the YouTube
+ * object, so bulletins for any other channel are refused rather than posted as that user.
+ *
+ * Pending bulletins wait in a {@link TimingWheel}, so scheduling or cancelling one takes constant
+ * time, and a single thread ticks the wheel instead of a timer per bulletin. The bulletins that
+ * fall due are posted by a fixed pool of threads; when all of them are busy and the queue in
+ * front of them is full, the ticking thread waits, and the wheel catches up on the ticks it
+ * missed. A post that fails with a server error or a rate limit is put back in the wheel to be
+ * tried again after a growing delay, without holding a thread while it waits. A bulletin that was
+ * inserted is never posted again in the same run, even if the log cannot record it.
+ *
+ * Everything scheduled and posted is written to a {@link BulletinLog}, and a scheduler created on
+ * an existing log picks up the bulletins still pending in it; those already overdue are posted at
+ * once.
+ */
+public class BulletinScheduler {
+
+  /** Default length of a tick of the wheel. */
+  public static final long DEFAULT_TICK_MILLIS = 1000;
+
+  /** Number of slots in the wheel: with one-second ticks, a turn takes about 68 minutes. */
+  private static final int WHEEL_SLOTS = 4096;
+
+  /** Number of due bulletins that may wait for each posting thread. */
+  private static final int QUEUED_PER_WORKER = 16;
+
+  /** Number of times a bulletin is tried before it is given up on. */
+  private static final int MAX_ATTEMPTS = 5;
+
+  /** Delay before the first retry, doubled for each one after it. */
+  private static final long INITIAL_BACKOFF_MILLIS = 10000;
+
+  private final YouTube youtube;
+
+  /** Channel of the authorized user, the only one bulletins are posted on. */
+  private final String channelId;
+
+  private final BulletinLog log;
+
+  private final TimingWheel<ScheduledBulletin> wheel;
+
+  /** Entries of the bulletins in the wheel, by id. Guarded by this. */
+  private final Map<Long, TimingWheel.Entry<ScheduledBulletin>> entries =
+      new HashMap<Long, TimingWheel.Entry<ScheduledBulletin>>();
+
+  /** Number of attempts made so far at bulletins that have failed. Guarded by this. */
+  private final Map<Long, Integer> attempts = new HashMap<Long, Integer>();
+
+  /** Bulletins in the wheel or being posted. Guarded by this. */
+  private int outstanding;
+
+  private final ScheduledExecutorService ticker;
+
+  private final ExecutorService posters;
+
+  /** Limits the due bulletins handed to the posting threads but not yet posted. */
+  private final Semaphore dispatchPermits;
+
+  private final Random random = new Random();
+
+  private final AtomicLong posted = new AtomicLong();
+
+  private final AtomicLong failed = new AtomicLong();
+
+  private final AtomicLong retries = new AtomicLong();
+
+  private final AtomicLong maxLateMillis = new AtomicLong();
+
+  /**
+   * Creates a scheduler with the bulletins still pending in a log. Nothing is posted until
+   * {@link #start} is called.
+   *
+   * Pending bulletins of the log for another channel are recorded as failed.
+   *
+   * @param youtube YouTube object used to post the bulletins
+   * @param channelId id of the channel of the user youtube is authorized as
+   * @param log log to record the schedule in
+   * @param workers number of bulletins posted at once
+   * @param tickMillis length of a tick of the wheel; bulletins are posted up to one tick late
+   */
+  public BulletinScheduler(YouTube youtube, String channelId, BulletinLog log, int workers,
+      long tickMillis) throws IOException {
+    this.youtube = youtube;
+    this.channelId = channelId;
+    this.log = log;
+    this.wheel = new TimingWheel<ScheduledBulletin>(
+        tickMillis, WHEEL_SLOTS, System.currentTimeMillis());
+    this.ticker = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("tick"));
+    this.posters = Executors.newFixedThreadPool(workers, new NamedThreadFactory("poster"));
+    this.dispatchPermits = new Semaphore(workers * (1 + QUEUED_PER_WORKER));
+    for (ScheduledBulletin bulletin : log.getPending()) {
+      if (channelId.equals(bulletin.getChannelId())) {
+        enqueue(bulletin, bulletin.getDueMillis());
+      } else {
+        System.err.println("Not posting " + bulletin + ": not the authorized channel " + channelId);
+        log.failed(bulletin.getId(), "not the authorized channel");
+        failed.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Schedules bulletins, recording them in the log first. Bulletins the log already has are
+   * skipped.
+   *
+   * @param bulletins bulletins to schedule
+   * @return the bulletins scheduled, with their ids
+   * @throws IllegalArgumentException if a bulletin is for another channel than the authorized
+   *         one; none are scheduled then
+   */
+  public List<ScheduledBulletin> schedule(List<ScheduledBulletin> bulletins) throws IOException {
+    for (ScheduledBulletin bulletin : bulletins) {
+      if (!channelId.equals(bulletin.getChannelId())) {
+        throw new IllegalArgumentException(
+            "Only bulletins on the authorized channel " + channelId + " can be posted: " + bulletin);
+      }
+    }
+    List<ScheduledBulletin> added = log.add(bulletins);
+    for (ScheduledBulletin bulletin : added) {
+      enqueue(bulletin, bulletin.getDueMillis());
+    }
+    return added;
+  }
+
+  /**
+   * Cancels a bulletin that has not fallen due yet.
+   *
+   * @param id id of the bulletin
+   * @return whether it was cancelled, rather than posted or being posted already
+   */
+  public boolean cancel(long id) throws IOException {
+    synchronized (this) {
+      TimingWheel.Entry<ScheduledBulletin> entry = entries.remove(id);
+      if (entry == null || !wheel.remove(entry)) {
+        return false;
+      }
+      attempts.remove(id);
+      finished();
+    }
+    log.cancelled(id);
+    return true;
+  }
+
+  /**
+   * Starts ticking the wheel and posting the bulletins as they fall due.
+   */
+  public void start() {
+    long tickMillis = wheel.getTickMillis();
+    ticker.scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        tick();
+      }
+    }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Waits until every bulletin scheduled has been posted, has failed or was cancelled.
+   */
+  public synchronized void awaitIdle() throws InterruptedException {
+    while (outstanding > 0) {
+      wait();
+    }
+  }
+
+  /**
+   * Stops ticking, waits for the posts in progress, and closes the log. Bulletins still pending
+   * stay in the log for the next run.
+   */
+  public void close() throws IOException, InterruptedException {
+    ticker.shutdown();
+    ticker.awaitTermination(1, TimeUnit.MINUTES);
+    posters.shutdown();
+    posters.awaitTermination(1, TimeUnit.MINUTES);
+    log.close();
+  }
+
+  /** Number of bulletins waiting for their time or being posted. */
+  public synchronized int getPending() {
+    return outstanding;
+  }
+
+  public long getPosted() {
+    return posted.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /** Longest delay between a bulletin's due time and the start of its first post attempt. */
+  public long getMaxLateMillis() {
+    return maxLateMillis.get();
+  }
+
+  @Override
+  public String toString() {
+    return posted + " bulletins posted, " + failed + " failed, " + getPending() + " pending, "
+        + retries + " retries, at most " + maxLateMillis + " ms late";
+  }
+
+  private synchronized void enqueue(ScheduledBulletin bulletin, long dueMillis) {
+    entries.put(bulletin.getId(), wheel.add(bulletin, dueMillis));
+    outstanding++;
+  }
+
+  /*
+   * Hands the bulletins that have fallen due to the posting threads. Runs on the ticking thread.
+   */
+  private void tick() {
+    List<ScheduledBulletin> due = new ArrayList<ScheduledBulletin>();
+    synchronized (this) {
+      wheel.advance(System.currentTimeMillis(), due);
+      for (ScheduledBulletin bulletin : due) {
+        entries.remove(bulletin.getId());
+      }
+    }
+    for (final ScheduledBulletin bulletin : due) {
+      dispatchPermits.acquireUninterruptibly();
+      posters.execute(new Runnable() {
+        public void run() {
+          try {
+            post(bulletin);
+          } finally {
+            dispatchPermits.release();
+          }
+        }
+      });
+    }
+  }
+
+  /*
+   * Posts a bulletin, and records the outcome or schedules a retry. However the attempt ends, the
+   * bulletin either goes back in the wheel or leaves the schedule, so awaitIdle() returns.
+   */
+  private void post(ScheduledBulletin bulletin) {
+    boolean retrying = false;
+    try {
+      retrying = attempt(bulletin);
+    } catch (RuntimeException e) {
+      System.err.println("Could not post " + bulletin + ": " + e);
+      failed.incrementAndGet();
+      recordFailure(bulletin, String.valueOf(e));
+    } finally {
+      if (!retrying) {
+        done(bulletin);
+      }
+    }
+  }
+
+  /*
+   * Makes one attempt at posting a bulletin. Returns whether it was put back in the wheel to be
+   * tried again.
+   */
+  private boolean attempt(ScheduledBulletin bulletin) {
+    int attempt;
+    synchronized (this) {
+      Integer previous = attempts.get(bulletin.getId());
+      attempt = previous == null ? 1 : previous + 1;
+    }
+    if (attempt == 1) {
+      long late = System.currentTimeMillis() - bulletin.getDueMillis();
+      long max = maxLateMillis.get();
+      while (late > max && !maxLateMillis.compareAndSet(max, late)) {
+        max = maxLateMillis.get();
+      }
+    }
+    try {
+      Activity activity = ChannelBulletin.newBulletin(
+          bulletin.getChannelId(), bulletin.getVideoId(), bulletin.getDescription());
+      youtube.activities().insert("contentDetails,snippet", activity).setFields("id").execute();
+    } catch (IOException e) {
+      if (attempt < MAX_ATTEMPTS && ApiErrors.isRetryable(e)) {
+        // Full jitter, so that bulletins failing together do not come back together.
+        long backoff = INITIAL_BACKOFF_MILLIS << (attempt - 1);
+        long delay = backoff / 2 + (long) (random.nextDouble() * backoff / 2);
+        synchronized (this) {
+          attempts.put(bulletin.getId(), attempt);
+          entries.put(bulletin.getId(), wheel.add(bulletin, System.currentTimeMillis() + delay));
+        }
+        retries.incrementAndGet();
+        return true;
+      }
+      System.err.println("Could not post " + bulletin + ": " + e.getMessage());
+      failed.incrementAndGet();
+      recordFailure(bulletin, String.valueOf(e.getMessage()));
+      return false;
+    }
+
+    // The bulletin is on the channel now, so whatever happens to the log it is not posted again.
+    posted.incrementAndGet();
+    try {
+      log.posted(bulletin.getId());
+    } catch (IOException e) {
+      System.err.println("Posted " + bulletin + " but could not record it in the log, so a later"
+          + " run would post it again: " + e.getMessage());
+    }
+    return false;
+  }
+
+  private void recordFailure(ScheduledBulletin bulletin, String reason) {
+    try {
+      log.failed(bulletin.getId(), reason);
+    } catch (IOException logError) {
+      System.err.println("Could not record the failure in the log: " + logError.getMessage());
+    }
+  }
+
+  private void done(ScheduledBulletin bulletin) {
+    synchronized (this) {
+      attempts.remove(bulletin.getId());
+      finished();
+    }
+  }
+
+  /* Called with the lock held when a bulletin leaves the schedule for good. */
+  private void finished() {
+    if (--outstanding == 0) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Names the scheduler's threads "bulletin-scheduler-tick-N" and "bulletin-scheduler-poster-N".
+   */
+  private static class NamedThreadFactory implements ThreadFactory {
+
+    private final String role;
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    NamedThreadFactory(String role) {
+      this.role = role;
+    }
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "bulletin-scheduler-" + role + "-"
+          + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
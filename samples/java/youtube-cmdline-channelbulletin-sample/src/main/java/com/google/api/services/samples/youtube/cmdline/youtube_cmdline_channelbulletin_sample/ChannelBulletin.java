@@ -14,21 +14,21 @@
 
 package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_channelbulletin_sample;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.Activity;
 import com.google.api.services.youtube.model.ActivityContentDetails;
@@ -40,17 +40,18 @@ import com.google.api.services.youtube.model.ResourceId;
 import com.google.common.collect.Lists;
 
 /**
- * Creates a video bulletin that is posted to the user's channel feed.
+ * Creates a video bulletin that is posted to the user's channel feed, or posts many bulletins at
+ * the times given in a schedule file (see {@link BulletinScheduler}).
  *
  * @author Jeremy Walker
  */
 public class ChannelBulletin {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of YouTube object to make all API requests. */
   private static YouTube youtube;
@@ -61,48 +62,17 @@ public class ChannelBulletin {
    */
   private static String VIDEO_ID = "L-oNKK1CrnU";
 
-  /**
-   * Authorizes the installed application to access user's protected data.
-   *
-   * @param scopes list of scopes needed to run upload.
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-        JSON_FACTORY, ChannelBulletin.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-cmdline-channelbulletin-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
-    }
-
-    // Set up file credential store.
-    FileCredentialStore credentialStore = new FileCredentialStore(
-        new File(System.getProperty("user.home"), ".credentials/youtube-api-channelbulletin.json"),
-        JSON_FACTORY);
-
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-        HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes).setCredentialStore(credentialStore)
-        .build();
-
-    // Build the local server and bind it to port 8080
-    LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-  }
+  /** Default number of bulletins posted at once with "--schedule". */
+  private static final int DEFAULT_PARALLEL_POSTS = 4;
 
   /**
    * Authorizes user, runs Youtube.Channnels.List to get the default channel, and posts a bulletin
    * with a video id to the user's default channel.
    *
-   * @param args command line args (not used).
+   * @param args command line args: "--schedule file" posts the bulletins listed in that file at
+   *        their times instead, keeping the schedule in "file.log" or in the file given with
+   *        "--log file"; "--log file" alone resumes the bulletins still pending in a log; and
+   *        "--parallel n" sets the number of bulletins posted at once (4 by default).
    */
   public static void main(String[] args) {
 
@@ -110,8 +80,12 @@ public class ChannelBulletin {
     List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube");
 
     try {
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(ChannelListResponse.class, Activity.class);
+
       // Authorization.
-      Credential credential = authorize(scopes);
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-api-channelbulletin.json");
 
       // YouTube object used to make all API requests.
       youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName(
@@ -126,7 +100,7 @@ public class ChannelBulletin {
       /*
        * Limits the results to only the data we need making your app more efficient.
        */
-      channelRequest.setFields("items/contentDetails");
+      channelRequest.setFields("items(id,contentDetails)");
       ChannelListResponse channelResult = channelRequest.execute();
 
       /*
@@ -138,38 +112,21 @@ public class ChannelBulletin {
         // Gets user's default channel id (first channel in list).
         String channelId = channelsList.get(0).getId();
 
-        /*
-         * We create the snippet to set the channel we will post to and the description that goes
-         * along with our bulletin.
-         */
-        ActivitySnippet snippet = new ActivitySnippet();
-        snippet.setChannelId(channelId);
-        Calendar cal = Calendar.getInstance();
-        snippet.setDescription("Bulletin test video via YouTube API on " + cal.getTime());
-
-        /*
-         * We set the kind of the ResourceId to video (youtube#video). Please note, you could set
-         * the type to a playlist (youtube#playlist) and use a playlist id instead of a video id.
-         */
-        ResourceId resource = new ResourceId();
-        resource.setKind("youtube#video");
-        resource.setVideoId(VIDEO_ID);
-
-        Bulletin bulletin = new Bulletin();
-        bulletin.setResourceId(resource);
-
-        // We construct the ActivityContentDetails now that we have the Bulletin.
-        ActivityContentDetails contentDetails = new ActivityContentDetails();
-        contentDetails.setBulletin(bulletin);
+        File scheduleFile = getFileOption(args, "--schedule");
+        File logFile = getFileOption(args, "--log");
+        if (scheduleFile != null || logFile != null) {
+          if (logFile == null) {
+            logFile = new File(scheduleFile.getPath() + ".log");
+          }
+          String parallel = getOption(args, "--parallel");
+          runSchedule(channelId, scheduleFile, logFile,
+              parallel == null ? DEFAULT_PARALLEL_POSTS : Integer.parseInt(parallel));
+          return;
+        }
 
-        /*
-         * Finally, we construct the activity we will write to YouTube via the API. We set the
-         * snippet (covers description and channel we are posting to) and the content details
-         * (covers video id and type).
-         */
-        Activity activity = new Activity();
-        activity.setSnippet(snippet);
-        activity.setContentDetails(contentDetails);
+        Calendar cal = Calendar.getInstance();
+        Activity activity = newBulletin(
+            channelId, VIDEO_ID, "Bulletin test video via YouTube API on " + cal.getTime());
 
         /*
          * We specify the parts (contentDetails and snippet) we will write to YouTube. Those also
@@ -204,4 +161,132 @@ public class ChannelBulletin {
       t.printStackTrace();
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Builds the activity that posts a video bulletin.
+   *
+   * @param channelId channel to post it on
+   * @param videoId video it is about
+   * @param description text posted with it, or null for none
+   */
+  static Activity newBulletin(String channelId, String videoId, String description) {
+    /*
+     * We create the snippet to set the channel we will post to and the description that goes
+     * along with our bulletin.
+     */
+    ActivitySnippet snippet = new ActivitySnippet();
+    snippet.setChannelId(channelId);
+    snippet.setDescription(description);
+
+    /*
+     * We set the kind of the ResourceId to video (youtube#video). Please note, you could set
+     * the type to a playlist (youtube#playlist) and use a playlist id instead of a video id.
+     */
+    ResourceId resource = new ResourceId();
+    resource.setKind("youtube#video");
+    resource.setVideoId(videoId);
+
+    Bulletin bulletin = new Bulletin();
+    bulletin.setResourceId(resource);
+
+    // We construct the ActivityContentDetails now that we have the Bulletin.
+    ActivityContentDetails contentDetails = new ActivityContentDetails();
+    contentDetails.setBulletin(bulletin);
+
+    /*
+     * Finally, we construct the activity we will write to YouTube via the API. We set the
+     * snippet (covers description and channel we are posting to) and the content details
+     * (covers video id and type).
+     */
+    Activity activity = new Activity();
+    activity.setSnippet(snippet);
+    activity.setContentDetails(contentDetails);
+    return activity;
+  }
+
+  /*
+   * Posts the bulletins of a schedule file at their times, and those still pending in the log.
+   * Returns once none are left.
+   */
+  private static void runSchedule(String channelId, File scheduleFile, File logFile, int workers)
+      throws IOException, InterruptedException {
+    BulletinScheduler scheduler = new BulletinScheduler(youtube, channelId,
+        BulletinLog.open(logFile), workers, BulletinScheduler.DEFAULT_TICK_MILLIS);
+    try {
+      System.out.println(scheduler.getPending() + " bulletins pending in " + logFile);
+      if (scheduleFile != null) {
+        List<ScheduledBulletin> bulletins = readSchedule(scheduleFile, channelId);
+        List<ScheduledBulletin> added = scheduler.schedule(bulletins);
+        System.out.println(added.size() + " bulletins scheduled from " + scheduleFile + ", "
+            + (bulletins.size() - added.size()) + " were already in the log");
+      }
+      scheduler.start();
+      scheduler.awaitIdle();
+      System.out.println(scheduler);
+    } finally {
+      scheduler.close();
+    }
+  }
+
+  /*
+   * Reads a schedule file, with one bulletin per line: the time to post it at (RFC 3339, such as
+   * "2013-06-01T09:00:00Z"), the channel id ("mine" for the user's channel), the video id and
+   * optionally a description. Blank lines and lines starting with "#" are ignored. Bulletins are
+   * posted with the user's credential, so the channel must be the user's own.
+   */
+  private static List<ScheduledBulletin> readSchedule(File file, String myChannelId)
+      throws IOException {
+    List<ScheduledBulletin> bulletins = new ArrayList<ScheduledBulletin>();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      int number = 0;
+      while ((line = reader.readLine()) != null) {
+        number++;
+        line = line.trim();
+        if (line.length() == 0 || line.startsWith("#")) {
+          continue;
+        }
+        String[] fields = line.split("\\s+", 4);
+        if (fields.length < 3) {
+          throw new IllegalArgumentException(file + ":" + number
+              + ": expected \"<time> <channelId> <videoId> [description]\"");
+        }
+        long dueMillis;
+        try {
+          dueMillis = DateTime.parseRfc3339(fields[0]).getValue();
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException(file + ":" + number + ": bad time " + fields[0]);
+        }
+        String channelId = fields[1].equals("mine") ? myChannelId : fields[1];
+        if (!channelId.equals(myChannelId)) {
+          throw new IllegalArgumentException(file + ":" + number + ": channel " + channelId
+              + " is not the authorized channel " + myChannelId + "; use \"mine\"");
+        }
+        bulletins.add(new ScheduledBulletin(
+            dueMillis, channelId, fields[2], fields.length == 4 ? fields[3] : null));
+      }
+    } finally {
+      reader.close();
+    }
+    return bulletins;
+  }
+
+  /*
+   * Returns the value of an option such as "--parallel", or null if the option is not given.
+   */
+  private static String getOption(String[] args, String option) {
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        return args[i + 1];
+      }
+    }
+    return null;
+  }
+
+  private static File getFileOption(String[] args, String option) {
+    String value = getOption(args, option);
+    return value == null ? null : new File(value);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_channelbulletin_sample;
+
+import com.google.api.client.util.DateTime;
+
+/**
+ * A bulletin to post on a channel at a given time.
+ */
+public class ScheduledBulletin {
+
+  private final long id;
+
+  private final long dueMillis;
+
+  private final String channelId;
+
+  private final String videoId;
+
+  private final String description;
+
+  /**
+   * Creates a bulletin to be scheduled. It gets its id when it is added to a {@link BulletinLog}.
+   *
+   * @param dueMillis time to post it at
+   * @param channelId channel to post it on
+   * @param videoId video it is about
+   * @param description text posted with it, or null for none
+   */
+  public ScheduledBulletin(long dueMillis, String channelId, String videoId, String description) {
+    this(0, dueMillis, channelId, videoId, description);
+  }
+
+  ScheduledBulletin(
+      long id, long dueMillis, String channelId, String videoId, String description) {
+    this.id = id;
+    this.dueMillis = dueMillis;
+    this.channelId = channelId;
+    this.videoId = videoId;
+    this.description = description;
+  }
+
+  /** Id of the bulletin in its log, or 0 if it has not been added to one. */
+  public long getId() {
+    return id;
+  }
+
+  public long getDueMillis() {
+    return dueMillis;
+  }
+
+  public String getChannelId() {
+    return channelId;
+  }
+
+  public String getVideoId() {
+    return videoId;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  /** Key identifying what the bulletin posts where and when, to notice it being added twice. */
+  String getKey() {
+    return dueMillis + " " + channelId + " " + videoId;
+  }
+
+  @Override
+  public String toString() {
+    return "bulletin " + id + " about " + videoId + " on " + channelId + " at "
+        + new DateTime(dueMillis);
+  }
+}
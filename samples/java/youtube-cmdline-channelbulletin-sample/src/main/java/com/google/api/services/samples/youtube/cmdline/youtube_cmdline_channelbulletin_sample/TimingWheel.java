@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_channelbulletin_sample;
+
+import java.util.List;
+
+/**
+ * Hashed timing wheel: holds values that fall due at given times, and hands them out once their
+ * time has passed, for scheduling very many timers from a single thread.
+ *
+ * Time is cut into ticks of a fixed length, and the wheel is an array of slots, one per tick,
+ * used round and round. A value is put in the slot of the tick it falls due in, in a doubly linked
+ * list, so adding and removing one take constant time however many are pending. Each call to
+ * {@link #advance} visits the slots of the ticks that have ended since the previous call, and
+ * takes out the values due by then; values due in a later turn of the wheel stay where they are.
+ * With enough slots for the spread of due times, each slot holds few of them and a tick costs
+ * little. Values come out at most one tick late, and never early.
+ *
+ * @param <T> type of the values
+ */
+public class TimingWheel<T> {
+
+  private final long tickMillis;
+
+  private final long startMillis;
+
+  /** First entry of each slot's list, or null. */
+  private final Entry<T>[] slots;
+
+  private final int mask;
+
+  /** Next tick to be processed. */
+  private long tick;
+
+  private int size;
+
+  /**
+   * Creates a wheel.
+   *
+   * @param tickMillis length of a tick in milliseconds
+   * @param slotCount number of slots, rounded up to a power of two
+   * @param startMillis time the first tick starts at, such as the current time
+   */
+  @SuppressWarnings("unchecked")
+  public TimingWheel(long tickMillis, int slotCount, long startMillis) {
+    if (tickMillis <= 0 || slotCount <= 0) {
+      throw new IllegalArgumentException("tickMillis and slotCount must be positive");
+    }
+    int length = Integer.highestOneBit(slotCount);
+    if (length < slotCount) {
+      length <<= 1;
+    }
+    this.tickMillis = tickMillis;
+    this.startMillis = startMillis;
+    this.slots = (Entry<T>[]) new Entry<?>[length];
+    this.mask = length - 1;
+  }
+
+  /**
+   * Adds a value. A value already due comes out at the end of the current tick.
+   *
+   * @param value value to add
+   * @param dueMillis time the value falls due
+   * @return entry of the value, to remove it with
+   */
+  public synchronized Entry<T> add(T value, long dueMillis) {
+    long dueTick = dueMillis <= startMillis ? 0 : (dueMillis - startMillis) / tickMillis;
+    Entry<T> entry = new Entry<T>(value, dueMillis, Math.max(dueTick, tick));
+    link(entry);
+    size++;
+    return entry;
+  }
+
+  /**
+   * Removes a value before it falls due.
+   *
+   * @param entry entry returned when the value was added
+   * @return whether the value was still in the wheel
+   */
+  public synchronized boolean remove(Entry<T> entry) {
+    if (entry.slot < 0) {
+      return false;
+    }
+    unlink(entry);
+    size--;
+    return true;
+  }
+
+  /**
+   * Takes out the values due in every tick that has ended by the given time.
+   *
+   * @param nowMillis current time
+   * @param due list to add the values to
+   * @return number of values added
+   */
+  public synchronized int advance(long nowMillis, List<T> due) {
+    // Last tick that has ended.
+    long last = (nowMillis - startMillis) / tickMillis - 1;
+    if (nowMillis < startMillis || last < tick) {
+      return 0;
+    }
+    int count = 0;
+    if (last - tick >= slots.length) {
+      // A whole turn or more went by (the process was suspended, say): every slot is due.
+      for (int slot = 0; slot < slots.length; slot++) {
+        count += expire(slot, last, due);
+      }
+    } else {
+      for (long t = tick; t <= last; t++) {
+        count += expire((int) (t & mask), t, due);
+      }
+    }
+    tick = last + 1;
+    size -= count;
+    return count;
+  }
+
+  /** Number of values in the wheel. */
+  public synchronized int size() {
+    return size;
+  }
+
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  /*
+   * Takes out the values of a slot due by the given tick.
+   */
+  private int expire(int slot, long dueBy, List<T> due) {
+    int count = 0;
+    Entry<T> entry = slots[slot];
+    while (entry != null) {
+      Entry<T> next = entry.next;
+      if (entry.dueTick <= dueBy) {
+        unlink(entry);
+        due.add(entry.value);
+        count++;
+      }
+      entry = next;
+    }
+    return count;
+  }
+
+  private void link(Entry<T> entry) {
+    int slot = (int) (entry.dueTick & mask);
+    entry.slot = slot;
+    entry.next = slots[slot];
+    if (entry.next != null) {
+      entry.next.prev = entry;
+    }
+    slots[slot] = entry;
+  }
+
+  private void unlink(Entry<T> entry) {
+    if (entry.prev != null) {
+      entry.prev.next = entry.next;
+    } else {
+      slots[entry.slot] = entry.next;
+    }
+    if (entry.next != null) {
+      entry.next.prev = entry.prev;
+    }
+    entry.prev = null;
+    entry.next = null;
+    entry.slot = -1;
+  }
+
+  /**
+   * A value in the wheel.
+   *
+   * @param <T> type of the value
+   */
+  public static final class Entry<T> {
+
+    private final T value;
+
+    private final long dueMillis;
+
+    private final long dueTick;
+
+    /** Slot the entry is in, or -1 once it has been taken out. */
+    private int slot = -1;
+
+    private Entry<T> prev;
+
+    private Entry<T> next;
+
+    Entry(T value, long dueMillis, long dueTick) {
+      this.value = value;
+      this.dueMillis = dueMillis;
+      this.dueTick = dueTick;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    public long getDueMillis() {
+      return dueMillis;
+    }
+  }
+}
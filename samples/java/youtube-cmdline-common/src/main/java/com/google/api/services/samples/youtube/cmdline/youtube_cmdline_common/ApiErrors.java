@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+
+import java.io.IOException;
+
+/**
+ * Tells apart the errors of an API call that are worth sending the call again for from those that
+ * will not go away, such as a video that does not exist or an exhausted quota.
+ */
+public class ApiErrors {
+
+  private ApiErrors() {
+  }
+
+  /**
+   * Returns whether a call that failed with an error may succeed if sent again: I/O errors,
+   * server errors, request timeouts (408), and rate limit errors (429, or 403 with a rate limit
+   * reason). Quota exhaustion is not retried, as it lasts until the quota is reset.
+   *
+   * @param e error the call failed with
+   */
+  public static boolean isRetryable(IOException e) {
+    if (!(e instanceof HttpResponseException)) {
+      return true;
+    }
+    int statusCode = ((HttpResponseException) e).getStatusCode();
+    return statusCode >= 500 || statusCode == 408 || statusCode == 429
+        || (statusCode == 403
+            && (hasReason(e, "rateLimitExceeded") || hasReason(e, "userRateLimitExceeded")));
+  }
+
+  /**
+   * Returns whether an error is an API error with a given reason, such as
+   * "subscriptionDuplicate".
+   *
+   * @param e error a call failed with
+   * @param reason reason of one of the errors of the response
+   */
+  public static boolean hasReason(IOException e, String reason) {
+    if (e instanceof GoogleJsonResponseException) {
+      GoogleJsonError details = ((GoogleJsonResponseException) e).getDetails();
+      if (details != null && details.getErrors() != null) {
+        for (GoogleJsonError.ErrorInfo error : details.getErrors()) {
+          if (reason.equals(error.getReason())) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text file of records, one per line, that is only ever appended to, such as a journal of the work
+ * a long run has done so far. Each append is synced to disk before it returns.
+ *
+ * A crash can cut the last line short. The call that appended it did not return, so
+ * {@link #readLines} leaves such a line out and {@link #open} truncates it: a record cut short
+ * could otherwise be read back as a different, complete record once more lines follow it.
+ */
+public class AppendLog {
+
+  private final File file;
+
+  private final FileOutputStream out;
+
+  private AppendLog(File file) throws IOException {
+    this.file = file;
+    if (endsWithPartialLine(file)) {
+      truncatePartialLine(file);
+    }
+    out = new FileOutputStream(file, true);
+  }
+
+  /**
+   * Opens a log for appending, creating it if it does not exist and dropping a last line cut
+   * short.
+   *
+   * @param file log file
+   */
+  public static AppendLog open(File file) throws IOException {
+    return new AppendLog(file);
+  }
+
+  /**
+   * Returns the complete lines of a log, without a last line cut short, or none if the log does
+   * not exist.
+   *
+   * @param file log file
+   */
+  public static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    if (!file.exists()) {
+      return lines;
+    }
+    boolean partial = endsWithPartialLine(file);
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    if (partial) {
+      lines.remove(lines.size() - 1);
+    }
+    return lines;
+  }
+
+  /**
+   * Appends records, on disk before returning.
+   *
+   * @param records one or more lines, each ending with "\n"
+   */
+  public synchronized void append(String records) throws IOException {
+    out.write(records.getBytes("UTF-8"));
+    out.getFD().sync();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+  private static void truncatePartialLine(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      long end = raf.length() - 1;
+      while (end >= 0) {
+        raf.seek(end);
+        if (raf.read() == '\n') {
+          break;
+        }
+        end--;
+      }
+      raf.setLength(end + 1);
+      raf.getFD().sync();
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static boolean endsWithPartialLine(File file) throws IOException {
+    if (file.length() == 0) {
+      return false;
+    }
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      raf.seek(raf.length() - 1);
+      return raf.read() != '\n';
+    } finally {
+      raf.close();
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Reads and replaces small state files, such as checkpoints, so that a crash or power loss leaves
+ * either the old contents or the new contents, never a mix of the two.
+ *
+ * A write goes to a temporary file next to the target ("name.tmp"), which is synced to disk and
+ * then renamed over the target. The rename is atomic on POSIX file systems. Where a rename cannot
+ * replace an existing file (Windows), the target is first moved aside to "name.bak"; a crash
+ * before the new file is in place leaves that backup, which {@link #read} falls back to. A
+ * temporary file left by a crash is never read.
+ */
+public class AtomicFile {
+
+  private AtomicFile() {
+  }
+
+  /**
+   * Returns the contents of a file, or null if it does not exist.
+   *
+   * @param file file to read
+   */
+  public static byte[] read(File file) throws IOException {
+    File source = file;
+    if (!file.exists()) {
+      // A write was interrupted after the target was moved aside but before the rename.
+      source = siblingFile(file, ".bak");
+      if (!source.exists()) {
+        return null;
+      }
+    }
+    InputStream in;
+    try {
+      in = new FileInputStream(source);
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    try {
+      ByteArrayOutputStream contents = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        contents.write(buffer, 0, count);
+      }
+      return contents.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Replaces the contents of a file, creating it if needed.
+   *
+   * @param file file to write
+   * @param contents new contents
+   */
+  public static void write(File file, byte[] contents) throws IOException {
+    File temp = siblingFile(file, ".tmp");
+    FileOutputStream out = new FileOutputStream(temp);
+    try {
+      out.write(contents);
+      out.flush();
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+    if (temp.renameTo(file)) {
+      return;
+    }
+    File backup = siblingFile(file, ".bak");
+    backup.delete();
+    if (!file.renameTo(backup) || !temp.renameTo(file)) {
+      throw new IOException("Could not replace " + file + " with " + temp);
+    }
+    backup.delete();
+  }
+
+  /**
+   * Returns the properties stored in a file, or empty properties if it does not exist.
+   *
+   * @param file properties file to read
+   */
+  public static Properties readProperties(File file) throws IOException {
+    Properties properties = new Properties();
+    byte[] contents = read(file);
+    if (contents != null) {
+      properties.load(new ByteArrayInputStream(contents));
+    }
+    return properties;
+  }
+
+  /**
+   * Replaces a properties file.
+   *
+   * @param file properties file to write
+   * @param properties properties to store
+   * @param comments comment line written at the top of the file, or null for none
+   */
+  public static void writeProperties(File file, Properties properties, String comments)
+      throws IOException {
+    ByteArrayOutputStream contents = new ByteArrayOutputStream();
+    properties.store(contents, comments);
+    write(file, contents.toByteArray());
+  }
+
+  private static File siblingFile(File file, String suffix) {
+    return new File(file.getPath() + suffix);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the combined rate of several transfers, such as concurrent uploads, and counts the bytes
+ * they move.
+ *
+ * Each transfer calls {@link #acquire} for every block it is about to send, and is made to wait
+ * until the cap allows it. A call reserves the next free slot of time on a single timeline and
+ * then sleeps outside the lock until that slot starts, so transfers that ask in turn are served
+ * in turn: with blocks of the same size, each active transfer gets an equal share of the cap, and
+ * one that stops asking leaves its share to the others. Bandwidth not used while every transfer
+ * is idle is not saved up beyond one second's worth.
+ *
+ * A limiter with no cap only counts bytes.
+ */
+public class BandwidthLimiter {
+
+  /** Nanoseconds in a second. */
+  private static final long NANOS_PER_SECOND = 1000000000L;
+
+  /** Cap in bytes per second, or 0 for none. */
+  private final long bytesPerSecond;
+
+  /** Time at which the timeline is free again. Guarded by this. */
+  private long nextFreeNanos = System.nanoTime();
+
+  private final AtomicLong bytesTransferred = new AtomicLong();
+
+  /**
+   * Creates a limiter.
+   *
+   * @param bytesPerSecond cap in bytes per second, or 0 for no cap
+   */
+  public BandwidthLimiter(long bytesPerSecond) {
+    if (bytesPerSecond < 0) {
+      throw new IllegalArgumentException("bytesPerSecond must not be negative: " + bytesPerSecond);
+    }
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /** Returns a limiter that does not cap the rate, and only counts bytes. */
+  public static BandwidthLimiter unlimited() {
+    return new BandwidthLimiter(0);
+  }
+
+  /**
+   * Waits until the cap allows a block to be sent, and counts it. Blocks should be small compared
+   * with one second's worth of bytes (tens of kilobytes) for the cap to be shared smoothly.
+   *
+   * @param bytes size of the block
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public void acquire(int bytes) throws InterruptedException {
+    bytesTransferred.addAndGet(bytes);
+    if (bytesPerSecond == 0) {
+      return;
+    }
+    long startNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      // Time left unused while idle is only carried over up to one second.
+      if (nextFreeNanos < now - NANOS_PER_SECOND) {
+        nextFreeNanos = now - NANOS_PER_SECOND;
+      }
+      startNanos = nextFreeNanos;
+      nextFreeNanos += bytes * NANOS_PER_SECOND / bytesPerSecond;
+    }
+    long waitNanos = startNanos - System.nanoTime();
+    if (waitNanos > 0) {
+      Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+    }
+  }
+
+  /** Cap in bytes per second, or 0 for none. */
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /** Total number of bytes acquired so far. */
+  public long getBytesTransferred() {
+    return bytesTransferred.get();
+  }
+}
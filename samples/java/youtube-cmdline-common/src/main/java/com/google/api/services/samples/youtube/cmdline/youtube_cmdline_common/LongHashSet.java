@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+/**
+ * Set of longs, such as video ids encoded by {@link VideoIdCodec}, for remembering which items
+ * have been seen.
+ *
+ * The values are stored in a single long[] with open addressing and linear probing, so each one
+ * takes 11 to 21 bytes depending on how full the table is, where a HashSet<String> of video ids
+ * takes several times as much in entries, String objects and character arrays. Lookups do not
+ * allocate. Values cannot be removed, except all at once with {@link #clear}.
+ *
+ * The set is not thread-safe.
+ */
+public class LongHashSet {
+
+  /** Default number of values the set holds before it grows. */
+  private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+  /** Marks a free slot. The value 0 itself is tracked by {@link #containsZero}. */
+  private static final long FREE = 0;
+
+  private long[] slots;
+
+  /** Whether the set contains 0, which cannot be stored in a slot. */
+  private boolean containsZero;
+
+  private int size;
+
+  /** Number of values, excluding 0, above which the table grows. */
+  private int resizeAt;
+
+  /** Creates an empty set. */
+  public LongHashSet() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Creates an empty set that holds expectedSize values before it needs to grow.
+   *
+   * @param expectedSize number of values expected
+   */
+  public LongHashSet(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+    }
+    allocate(tableSize(expectedSize));
+  }
+
+  /**
+   * Adds a value.
+   *
+   * @param value value to add
+   * @return whether the value was added, which is false if the set already contained it
+   */
+  public boolean add(long value) {
+    if (value == FREE) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    int mask = slots.length - 1;
+    int slot = index(value, mask);
+    while (slots[slot] != FREE) {
+      if (slots[slot] == value) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = value;
+    size++;
+    if (size - (containsZero ? 1 : 0) > resizeAt) {
+      rehash(slots.length * 2);
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the set contains a value.
+   *
+   * @param value value to look for
+   */
+  public boolean contains(long value) {
+    if (value == FREE) {
+      return containsZero;
+    }
+    int mask = slots.length - 1;
+    int slot = index(value, mask);
+    while (slots[slot] != FREE) {
+      if (slots[slot] == value) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /** Number of values in the set. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Removes every value, keeping the table at its current size. */
+  public void clear() {
+    for (int i = 0; i < slots.length; i++) {
+      slots[i] = FREE;
+    }
+    containsZero = false;
+    size = 0;
+  }
+
+  private void rehash(int tableSize) {
+    long[] old = slots;
+    allocate(tableSize);
+    int mask = slots.length - 1;
+    for (long value : old) {
+      if (value != FREE) {
+        int slot = index(value, mask);
+        while (slots[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+      }
+    }
+  }
+
+  private void allocate(int tableSize) {
+    slots = new long[tableSize];
+    resizeAt = maxFill(tableSize);
+  }
+
+  /*
+   * Returns the smallest power of two table that holds expectedSize values without growing.
+   */
+  static int tableSize(int expectedSize) {
+    int tableSize = 4;
+    while (maxFill(tableSize) < expectedSize) {
+      if (tableSize == 1 << 30) {
+        throw new IllegalArgumentException("Too many values: " + expectedSize);
+      }
+      tableSize *= 2;
+    }
+    return tableSize;
+  }
+
+  /*
+   * Number of values a table holds before it grows: three quarters of its slots, which keeps the
+   * probe sequences short.
+   */
+  static int maxFill(int tableSize) {
+    return tableSize - (tableSize >>> 2);
+  }
+
+  /*
+   * Returns the first slot to probe for a value. The bits are mixed (the MurmurHash3 finalizer) so
+   * that values which differ only in their high bits, as encoded ids often do, spread over the
+   * table.
+   */
+  static int index(long value, int mask) {
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h & mask;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+/**
+ * Map from longs to ints, such as from video ids encoded by {@link VideoIdCodec} to positions or
+ * counts. Like {@link LongHashSet}, the keys and values are stored in parallel arrays with open
+ * addressing and linear probing, so entries take a few bytes each and lookups do not allocate.
+ * Keys cannot be removed, except all at once with {@link #clear}.
+ *
+ * The map is not thread-safe.
+ */
+public class LongIntHashMap {
+
+  /** Default number of entries the map holds before it grows. */
+  private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+  /** Marks a free slot. The key 0 itself is tracked by {@link #containsZero}. */
+  private static final long FREE = 0;
+
+  private long[] keys;
+
+  private int[] values;
+
+  /** Whether the map has an entry for the key 0, which cannot be stored in a slot. */
+  private boolean containsZero;
+
+  /** Value for the key 0, if {@link #containsZero}. */
+  private int zeroValue;
+
+  private int size;
+
+  /** Number of entries, excluding the key 0, above which the table grows. */
+  private int resizeAt;
+
+  /** Creates an empty map. */
+  public LongIntHashMap() {
+    this(DEFAULT_EXPECTED_SIZE);
+  }
+
+  /**
+   * Creates an empty map that holds expectedSize entries before it needs to grow.
+   *
+   * @param expectedSize number of entries expected
+   */
+  public LongIntHashMap(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+    }
+    allocate(LongHashSet.tableSize(expectedSize));
+  }
+
+  /**
+   * Sets the value for a key, replacing any value it had.
+   *
+   * @param key key
+   * @param value value
+   */
+  public void put(long key, int value) {
+    if (key == FREE) {
+      if (!containsZero) {
+        containsZero = true;
+        size++;
+      }
+      zeroValue = value;
+      return;
+    }
+    int mask = keys.length - 1;
+    int slot = LongHashSet.index(key, mask);
+    while (keys[slot] != FREE) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
+    if (size - (containsZero ? 1 : 0) > resizeAt) {
+      rehash(keys.length * 2);
+    }
+  }
+
+  /**
+   * Returns the value for a key, or defaultValue if the map has no entry for it.
+   *
+   * @param key key
+   * @param defaultValue value returned for a missing key
+   */
+  public int get(long key, int defaultValue) {
+    if (key == FREE) {
+      return containsZero ? zeroValue : defaultValue;
+    }
+    int mask = keys.length - 1;
+    int slot = LongHashSet.index(key, mask);
+    while (keys[slot] != FREE) {
+      if (keys[slot] == key) {
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return defaultValue;
+  }
+
+  /**
+   * Returns whether the map has an entry for a key.
+   *
+   * @param key key
+   */
+  public boolean containsKey(long key) {
+    if (key == FREE) {
+      return containsZero;
+    }
+    int mask = keys.length - 1;
+    int slot = LongHashSet.index(key, mask);
+    while (keys[slot] != FREE) {
+      if (keys[slot] == key) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /** Number of entries in the map. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Removes every entry, keeping the table at its current size. */
+  public void clear() {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = FREE;
+    }
+    containsZero = false;
+    size = 0;
+  }
+
+  private void rehash(int tableSize) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(tableSize);
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = LongHashSet.index(oldKeys[i], mask);
+        while (keys[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int tableSize) {
+    keys = new long[tableSize];
+    values = new int[tableSize];
+    resizeAt = LongHashSet.maxFill(tableSize);
+  }
+}
@@ -0,0 +1,1036 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Finds which of many patterns occur in a text, such as which curation rules match a video title,
+ * in a single pass over the text whatever the number of patterns. Patterns match case-sensitively,
+ * as java.util.regex does by default; each pattern can be added ignoring case instead.
+ *
+ * Literal patterns are compiled into two Aho-Corasick automata, one for those that match case and
+ * one for those that ignore it, which read the text in the same pass. Regular expressions that only
+ * use the common subset of the syntax (characters and escapes, ".", character classes, "\d", "\w"
+ * and "\s", groups, "|", "*", "+" and "?", and "^" and "$" at the ends of an expression without a
+ * top-level "|") are compiled together into one nondeterministic automaton, whose deterministic
+ * states are built the first time the text leads to them and then reused, so that after a few texts
+ * each character costs one table lookup for all of them together. Should the patterns lead to too
+ * many states, the cache is emptied and built again. Regular expressions that use anything else,
+ * such as counted repetition, possessive quantifiers, back-references or lookaround, are matched
+ * one by one with java.util.regex, after the single pass. Either way a pattern matches the texts
+ * Matcher.find() would, with Pattern.CASE_INSENSITIVE and Pattern.UNICODE_CASE for those that
+ * ignore case, except that outside ASCII the automata only compare the Character.toLowerCase() of
+ * characters of those patterns.
+ *
+ * Patterns are numbered in the order they are added. The matcher is not thread-safe, since
+ * matching fills the cache; use one per thread.
+ */
+public class MultiPatternMatcher {
+
+  /** Largest number of deterministic states kept before the cache is emptied. */
+  private static final int MAX_DFA_STATES = 10000;
+
+  /** Characters with a transition table; others use a map. */
+  private static final int TABLE_SIZE = 128;
+
+  /** Characters that have a meaning of their own in a regular expression. */
+  private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  private int size;
+
+  private final List<String> literals = new ArrayList<String>();
+
+  private final List<Integer> literalIds = new ArrayList<Integer>();
+
+  /** Literals that ignore case, in lower case. */
+  private final List<String> foldedLiterals = new ArrayList<String>();
+
+  private final List<Integer> foldedLiteralIds = new ArrayList<Integer>();
+
+  private final List<Pattern> fallbacks = new ArrayList<Pattern>();
+
+  private final List<Integer> fallbackIds = new ArrayList<Integer>();
+
+  /** States of the automaton of the regular expressions, by id. */
+  private final List<NfaState> nfaStates = new ArrayList<NfaState>();
+
+  /** Start states of the regular expressions anchored with "^". */
+  private final List<NfaState> anchoredStarts = new ArrayList<NfaState>();
+
+  /** Start states of the other regular expressions, which may match from any position. */
+  private final List<NfaState> unanchoredStarts = new ArrayList<NfaState>();
+
+  /** Aho-Corasick automaton of the literals that match case, or null until built. */
+  private LiteralAutomaton literalAutomaton;
+
+  /** Aho-Corasick automaton of the literals that ignore case, or null until built. */
+  private LiteralAutomaton foldedLiteralAutomaton;
+
+  /** Closure of the unanchored start states, added to every deterministic state but the first. */
+  private int[] restart;
+
+  private final Map<Key, DfaState> dfaStates = new HashMap<Key, DfaState>();
+
+  private DfaState dfaStart;
+
+  /** Number of times the cache of deterministic states was emptied. */
+  private int cacheResets;
+
+  /**
+   * Adds a pattern that matches wherever the literal text occurs, in the same case.
+   *
+   * @param literal text to find
+   * @return number of the pattern
+   */
+  public int addLiteral(String literal) {
+    return addLiteral(literal, false);
+  }
+
+  /**
+   * Adds a pattern that matches wherever the literal text occurs.
+   *
+   * @param literal text to find
+   * @param ignoreCase whether the text may occur in another case
+   * @return number of the pattern
+   */
+  public int addLiteral(String literal, boolean ignoreCase) {
+    if (ignoreCase) {
+      foldedLiterals.add(lowerCase(literal));
+      foldedLiteralIds.add(size);
+      foldedLiteralAutomaton = null;
+    } else {
+      literals.add(literal);
+      literalIds.add(size);
+      literalAutomaton = null;
+    }
+    return size++;
+  }
+
+  /**
+   * Adds a pattern that matches wherever the regular expression finds a match, as
+   * Matcher.find() would.
+   *
+   * @param regex regular expression in java.util.regex syntax
+   * @return number of the pattern
+   * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+   */
+  public int addRegex(String regex) {
+    return addRegex(regex, false);
+  }
+
+  /**
+   * Adds a pattern that matches wherever the regular expression finds a match, as
+   * Matcher.find() would, with Pattern.CASE_INSENSITIVE and Pattern.UNICODE_CASE if it ignores
+   * case. An expression that starts with "(?i)" ignores case either way.
+   *
+   * @param regex regular expression in java.util.regex syntax
+   * @param ignoreCase whether the expression ignores case
+   * @return number of the pattern
+   * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+   */
+  public int addRegex(String regex, boolean ignoreCase) {
+    int id = size;
+    Parser parser = new Parser(regex, ignoreCase);
+    Node node = parser.parse();
+    if (node == null) {
+      fallbacks.add(Pattern.compile(regex,
+          ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0));
+      fallbackIds.add(id);
+    } else {
+      NfaState match = newState(NfaState.MATCH);
+      match.pattern = id;
+      match.atEnd = parser.anchoredAtEnd;
+      NfaState start = compile(node, match);
+      (parser.anchoredAtStart ? anchoredStarts : unanchoredStarts).add(start);
+      dfaStates.clear();
+      dfaStart = null;
+    }
+    return size++;
+  }
+
+  /**
+   * Returns whether a regular expression has no metacharacters, so that it only matches its own
+   * text and can be added with {@link #addLiteral} instead.
+   *
+   * @param regex regular expression in java.util.regex syntax
+   */
+  public static boolean isLiteral(String regex) {
+    for (int i = 0; i < regex.length(); i++) {
+      if (METACHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Number of patterns added. */
+  public int size() {
+    return size;
+  }
+
+  /** Number of regular expressions outside the subset the automaton handles. */
+  public int getFallbackCount() {
+    return fallbacks.size();
+  }
+
+  /** Number of deterministic states built and currently cached. */
+  public int getDfaStateCount() {
+    return dfaStates.size();
+  }
+
+  /** Number of times the cache of deterministic states was emptied because it was full. */
+  public int getCacheResets() {
+    return cacheResets;
+  }
+
+  /**
+   * Finds the patterns that occur in a text.
+   *
+   * @param text text to search
+   * @param matches set to the numbers of the patterns that occur in the text, and cleared of all
+   *        others
+   */
+  public void match(CharSequence text, BitSet matches) {
+    matches.clear();
+    LiteralAutomaton literal = literals.isEmpty() ? null : literalAutomaton();
+    LiteralAutomaton folded = foldedLiterals.isEmpty() ? null : foldedLiteralAutomaton();
+    boolean regex = !anchoredStarts.isEmpty() || !unanchoredStarts.isEmpty();
+
+    // "$" also matches before a line terminator that ends the text.
+    int finalTerminator = regex ? finalLineTerminator(text) : -1;
+    int node = 0;
+    int foldedNode = 0;
+    DfaState state = regex ? dfaStart() : null;
+    if (literal != null) {
+      literal.report(node, matches);
+    }
+    if (folded != null) {
+      folded.report(foldedNode, matches);
+    }
+    if (regex) {
+      state.report(matches);
+    }
+    for (int i = 0, length = text.length(); i < length; i++) {
+      if (i == finalTerminator) {
+        state.reportAtEnd(matches);
+      }
+      char c = text.charAt(i);
+      if (literal != null) {
+        node = literal.next(node, c);
+        literal.report(node, matches);
+      }
+      if (folded != null) {
+        foldedNode = folded.next(foldedNode, lowerCase(c));
+        folded.report(foldedNode, matches);
+      }
+      if (regex) {
+        DfaState next = c < TABLE_SIZE ? state.next[c] : state.nextOther(c);
+        if (next == null) {
+          next = step(state, c);
+        }
+        state = next;
+        state.report(matches);
+      }
+    }
+    if (regex) {
+      state.reportAtEnd(matches);
+    }
+
+    for (int i = 0; i < fallbacks.size(); i++) {
+      if (fallbacks.get(i).matcher(text).find()) {
+        matches.set(fallbackIds.get(i));
+      }
+    }
+  }
+
+  /*
+   * Returns where the line terminator that ends a text starts, or -1 if it does not end with one.
+   */
+  private static int finalLineTerminator(CharSequence text) {
+    int length = text.length();
+    if (length >= 2 && text.charAt(length - 2) == '\r' && text.charAt(length - 1) == '\n') {
+      return length - 2;
+    }
+    return length >= 1 && isLineTerminator(text.charAt(length - 1)) ? length - 1 : -1;
+  }
+
+  private static char lowerCase(char c) {
+    if (c < TABLE_SIZE) {
+      return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+    return Character.toLowerCase(c);
+  }
+
+  private static String lowerCase(String text) {
+    char[] chars = text.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = lowerCase(chars[i]);
+    }
+    return new String(chars);
+  }
+
+  private LiteralAutomaton literalAutomaton() {
+    if (literalAutomaton == null) {
+      literalAutomaton = new LiteralAutomaton(literals, literalIds);
+    }
+    return literalAutomaton;
+  }
+
+  private LiteralAutomaton foldedLiteralAutomaton() {
+    if (foldedLiteralAutomaton == null) {
+      foldedLiteralAutomaton = new LiteralAutomaton(foldedLiterals, foldedLiteralIds);
+    }
+    return foldedLiteralAutomaton;
+  }
+
+  private NfaState newState(int type) {
+    NfaState state = new NfaState(type, nfaStates.size());
+    nfaStates.add(state);
+    return state;
+  }
+
+  /*
+   * Builds the states that match a node and then continue with next, and returns the first.
+   */
+  private NfaState compile(Node node, NfaState next) {
+    NfaState state;
+    switch (node.type) {
+      case Node.EMPTY:
+        return next;
+      case Node.CHAR:
+      case Node.CLASS:
+      case Node.ANY:
+        state = newState(node.type == Node.CHAR
+            ? NfaState.CHAR : node.type == Node.CLASS ? NfaState.CLASS : NfaState.ANY);
+        state.c = node.c;
+        state.charClass = node.charClass;
+        state.ignoreCase = node.ignoreCase;
+        state.out = next;
+        return state;
+      case Node.CONCAT:
+        return compile(node.left, compile(node.right, next));
+      case Node.ALTERNATION:
+        state = newState(NfaState.SPLIT);
+        state.out = compile(node.left, next);
+        state.out1 = compile(node.right, next);
+        return state;
+      case Node.STAR:
+        state = newState(NfaState.SPLIT);
+        state.out1 = next;
+        state.out = compile(node.left, state);
+        return state;
+      case Node.PLUS:
+        state = newState(NfaState.SPLIT);
+        state.out1 = next;
+        state.out = compile(node.left, state);
+        return state.out;
+      case Node.OPTIONAL:
+        state = newState(NfaState.SPLIT);
+        state.out = compile(node.left, next);
+        state.out1 = next;
+        return state;
+      default:
+        throw new IllegalStateException("Unknown node " + node.type);
+    }
+  }
+
+  private DfaState dfaStart() {
+    if (dfaStart == null) {
+      BitSet seen = new BitSet(nfaStates.size());
+      List<Integer> ids = new ArrayList<Integer>();
+      for (NfaState start : unanchoredStarts) {
+        addClosure(start, seen, ids);
+      }
+      restart = toSortedArray(ids);
+      for (NfaState start : anchoredStarts) {
+        addClosure(start, seen, ids);
+      }
+      dfaStart = intern(toSortedArray(ids));
+    }
+    return dfaStart;
+  }
+
+  /*
+   * Builds the transition of a deterministic state on a character.
+   */
+  private DfaState step(DfaState from, char c) {
+    BitSet seen = new BitSet(nfaStates.size());
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int id : from.nfaIds) {
+      NfaState state = nfaStates.get(id);
+      if (state.accepts(c)) {
+        addClosure(state.out, seen, ids);
+      }
+    }
+    for (int id : restart) {
+      if (!seen.get(id)) {
+        seen.set(id);
+        ids.add(id);
+      }
+    }
+    if (dfaStates.size() >= MAX_DFA_STATES) {
+      // The states reached so far stay valid; they are only no longer shared.
+      dfaStates.clear();
+      dfaStart = null;
+      cacheResets++;
+    }
+    DfaState to = intern(toSortedArray(ids));
+    if (c < TABLE_SIZE) {
+      from.next[c] = to;
+    } else {
+      if (from.nextOther == null) {
+        from.nextOther = new HashMap<Character, DfaState>();
+      }
+      from.nextOther.put(c, to);
+    }
+    return to;
+  }
+
+  private DfaState intern(int[] ids) {
+    Key key = new Key(ids);
+    DfaState state = dfaStates.get(key);
+    if (state == null) {
+      List<Integer> patterns = new ArrayList<Integer>();
+      List<Integer> endPatterns = new ArrayList<Integer>();
+      for (int id : ids) {
+        NfaState nfaState = nfaStates.get(id);
+        if (nfaState.type == NfaState.MATCH) {
+          (nfaState.atEnd ? endPatterns : patterns).add(nfaState.pattern);
+        }
+      }
+      state = new DfaState(ids, toSortedArray(patterns), toSortedArray(endPatterns));
+      dfaStates.put(key, state);
+    }
+    return state;
+  }
+
+  /*
+   * Adds the ids of the states reachable from a state without reading a character.
+   */
+  private static void addClosure(NfaState state, BitSet seen, List<Integer> ids) {
+    LinkedList<NfaState> stack = new LinkedList<NfaState>();
+    stack.push(state);
+    while (!stack.isEmpty()) {
+      NfaState next = stack.pop();
+      if (seen.get(next.id)) {
+        continue;
+      }
+      seen.set(next.id);
+      if (next.type == NfaState.SPLIT) {
+        stack.push(next.out1);
+        stack.push(next.out);
+      } else {
+        ids.add(next.id);
+      }
+    }
+  }
+
+  private static int[] toSortedArray(List<Integer> values) {
+    int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = values.get(i);
+    }
+    Arrays.sort(array);
+    return array;
+  }
+
+  /**
+   * Aho-Corasick automaton of the literals: a trie of the literals where each node also knows the
+   * longest suffix of its text that is a node too, so that the text is read once without ever
+   * going back. Transitions on characters with a table are all precomputed.
+   */
+  private static final class LiteralAutomaton {
+
+    /** Transitions on table characters, TABLE_SIZE per node. */
+    private final int[] table;
+
+    /** Children on other characters, per node, or null. */
+    private final List<Map<Character, Integer>> others;
+
+    /** Longest proper suffix of each node that is a node. */
+    private final int[] fail;
+
+    /** Patterns found on reaching each node, or null. */
+    private final int[][] outputs;
+
+    LiteralAutomaton(List<String> literals, List<Integer> ids) {
+      List<Map<Character, Integer>> children = new ArrayList<Map<Character, Integer>>();
+      List<List<Integer>> found = new ArrayList<List<Integer>>();
+      children.add(new HashMap<Character, Integer>());
+      found.add(new ArrayList<Integer>());
+      for (int i = 0; i < literals.size(); i++) {
+        int node = 0;
+        for (char c : literals.get(i).toCharArray()) {
+          Integer child = children.get(node).get(c);
+          if (child == null) {
+            child = children.size();
+            children.get(node).put(c, child);
+            children.add(new HashMap<Character, Integer>());
+            found.add(new ArrayList<Integer>());
+          }
+          node = child;
+        }
+        found.get(node).add(ids.get(i));
+      }
+
+      int nodes = children.size();
+      table = new int[nodes * TABLE_SIZE];
+      others = new ArrayList<Map<Character, Integer>>(nodes);
+      fail = new int[nodes];
+      outputs = new int[nodes][];
+      for (int node = 0; node < nodes; node++) {
+        Map<Character, Integer> other = null;
+        for (Map.Entry<Character, Integer> child : children.get(node).entrySet()) {
+          if (child.getKey() >= TABLE_SIZE) {
+            if (other == null) {
+              other = new HashMap<Character, Integer>();
+            }
+            other.put(child.getKey(), child.getValue());
+          }
+        }
+        others.add(other);
+      }
+
+      // Breadth first, so that the suffix of a node is done before the node.
+      LinkedList<Integer> queue = new LinkedList<Integer>();
+      queue.add(0);
+      while (!queue.isEmpty()) {
+        int node = queue.removeFirst();
+        if (node != 0) {
+          found.get(node).addAll(found.get(fail[node]));
+        }
+        outputs[node] = found.get(node).isEmpty() ? null : toSortedArray(found.get(node));
+        for (char c = 0; c < TABLE_SIZE; c++) {
+          Integer child = children.get(node).get(c);
+          if (child != null) {
+            table[node * TABLE_SIZE + c] = child;
+          } else {
+            table[node * TABLE_SIZE + c] = node == 0 ? 0 : table[fail[node] * TABLE_SIZE + c];
+          }
+        }
+        for (Map.Entry<Character, Integer> child : children.get(node).entrySet()) {
+          fail[child.getValue()] = node == 0 ? 0 : next(fail[node], child.getKey());
+          queue.add(child.getValue());
+        }
+      }
+    }
+
+    int next(int node, char c) {
+      if (c < TABLE_SIZE) {
+        return table[node * TABLE_SIZE + c];
+      }
+      while (true) {
+        Map<Character, Integer> other = others.get(node);
+        Integer child = other == null ? null : other.get(c);
+        if (child != null) {
+          return child;
+        }
+        if (node == 0) {
+          return 0;
+        }
+        node = fail[node];
+      }
+    }
+
+    void report(int node, BitSet matches) {
+      int[] output = outputs[node];
+      if (output != null) {
+        for (int pattern : output) {
+          matches.set(pattern);
+        }
+      }
+    }
+  }
+
+  /**
+   * State of the nondeterministic automaton: reads one character, splits into two states without
+   * reading any, or matches a pattern.
+   */
+  private static final class NfaState {
+
+    static final int CHAR = 0;
+
+    static final int CLASS = 1;
+
+    static final int ANY = 2;
+
+    static final int SPLIT = 3;
+
+    static final int MATCH = 4;
+
+    final int type;
+
+    final int id;
+
+    /** Character of a CHAR state, in lower case if the state ignores case. */
+    char c;
+
+    CharClass charClass;
+
+    /** Whether a CHAR or CLASS state ignores case. */
+    boolean ignoreCase;
+
+    NfaState out;
+
+    NfaState out1;
+
+    /** Pattern matched by a MATCH state. */
+    int pattern;
+
+    /** Whether a MATCH state only matches at the end of the text. */
+    boolean atEnd;
+
+    NfaState(int type, int id) {
+      this.type = type;
+      this.id = id;
+    }
+
+    /** Returns whether the state reads a character and moves on. */
+    boolean accepts(char next) {
+      switch (type) {
+        case CHAR:
+          return c == (ignoreCase ? lowerCase(next) : next);
+        case CLASS:
+          return charClass.matches(next, ignoreCase);
+        case ANY:
+          return !isLineTerminator(next);
+        default:
+          return false;
+      }
+    }
+  }
+
+  /**
+   * State of the deterministic automaton: the set of states the nondeterministic one can be in,
+   * and the transitions built from it so far.
+   */
+  private static final class DfaState {
+
+    final int[] nfaIds;
+
+    final int[] patterns;
+
+    /** Patterns matched if the text ends in this state. */
+    final int[] endPatterns;
+
+    final DfaState[] next = new DfaState[TABLE_SIZE];
+
+    Map<Character, DfaState> nextOther;
+
+    DfaState(int[] nfaIds, int[] patterns, int[] endPatterns) {
+      this.nfaIds = nfaIds;
+      this.patterns = patterns;
+      this.endPatterns = endPatterns;
+    }
+
+    DfaState nextOther(char c) {
+      return nextOther == null ? null : nextOther.get(c);
+    }
+
+    void report(BitSet matches) {
+      for (int pattern : patterns) {
+        matches.set(pattern);
+      }
+    }
+
+    void reportAtEnd(BitSet matches) {
+      for (int pattern : endPatterns) {
+        matches.set(pattern);
+      }
+    }
+  }
+
+  /**
+   * Sorted set of state ids, as a key of the cache of deterministic states.
+   */
+  private static final class Key {
+
+    private final int[] ids;
+
+    private final int hash;
+
+    Key(int[] ids) {
+      this.ids = ids;
+      this.hash = Arrays.hashCode(ids);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Key && Arrays.equals(ids, ((Key) other).ids);
+    }
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Set of characters of a character class.
+   */
+  private static final class CharClass {
+
+    boolean negated;
+
+    /** Ranges of the class, as pairs of first and last character. */
+    final StringBuilder ranges = new StringBuilder();
+
+    void add(char first, char last) {
+      ranges.append(first).append(last);
+    }
+
+    void addAll(CharClass other) {
+      ranges.append(other.ranges);
+    }
+
+    boolean matches(char c, boolean ignoreCase) {
+      boolean contains = contains(c) || ignoreCase
+          && (contains(Character.toLowerCase(c)) || contains(Character.toUpperCase(c)));
+      return contains != negated;
+    }
+
+    private boolean contains(char c) {
+      for (int i = 0; i < ranges.length(); i += 2) {
+        if (c >= ranges.charAt(i) && c <= ranges.charAt(i + 1)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Class of "\d", "\w" or "\s" (or their negation, in upper case), or null for others. */
+    static CharClass predefined(char name) {
+      CharClass charClass = new CharClass();
+      switch (Character.toLowerCase(name)) {
+        case 'd':
+          charClass.add('0', '9');
+          break;
+        case 'w':
+          charClass.add('a', 'z');
+          charClass.add('A', 'Z');
+          charClass.add('0', '9');
+          charClass.add('_', '_');
+          break;
+        case 's':
+          charClass.add(' ', ' ');
+          charClass.add('\t', '\r');
+          break;
+        default:
+          return null;
+      }
+      charClass.negated = Character.isUpperCase(name);
+      return charClass;
+    }
+  }
+
+  /**
+   * Node of the syntax tree of a regular expression.
+   */
+  private static final class Node {
+
+    static final int EMPTY = 0;
+
+    static final int CHAR = 1;
+
+    static final int CLASS = 2;
+
+    static final int ANY = 3;
+
+    static final int CONCAT = 4;
+
+    static final int ALTERNATION = 5;
+
+    static final int STAR = 6;
+
+    static final int PLUS = 7;
+
+    static final int OPTIONAL = 8;
+
+    final int type;
+
+    char c;
+
+    CharClass charClass;
+
+    boolean ignoreCase;
+
+    Node left;
+
+    Node right;
+
+    Node(int type) {
+      this.type = type;
+    }
+
+    Node(int type, Node left, Node right) {
+      this.type = type;
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+  /**
+   * Parser of the subset of the regular expression syntax the automaton handles.
+   */
+  private static final class Parser {
+
+    private final String regex;
+
+    private boolean ignoreCase;
+
+    private int position;
+
+    private int end;
+
+    boolean anchoredAtStart;
+
+    boolean anchoredAtEnd;
+
+    /** Depth of the group being parsed. */
+    private int depth;
+
+    /** Whether the expression has a "|" outside any group. */
+    private boolean topLevelAlternation;
+
+    Parser(String regex, boolean ignoreCase) {
+      this.regex = regex;
+      this.ignoreCase = ignoreCase;
+    }
+
+    /** Returns the syntax tree of the expression, or null if it is outside the subset. */
+    Node parse() {
+      end = regex.length();
+      if (regex.startsWith("(?i)")) {
+        ignoreCase = true;
+        position = 4;
+      }
+      if (position < end && regex.charAt(position) == '^') {
+        anchoredAtStart = true;
+        position++;
+      }
+      if (end > position && regex.charAt(end - 1) == '$' && !isEscaped(end - 1)) {
+        anchoredAtEnd = true;
+        end--;
+      }
+      try {
+        Node node = parseAlternation();
+        if (topLevelAlternation && (anchoredAtStart || anchoredAtEnd)) {
+          // "^a|b" is "(?:^a)|b", not "^(?:a|b)".
+          return null;
+        }
+        return position == end ? node : null;
+      } catch (UnsupportedOperationException e) {
+        return null;
+      }
+    }
+
+    private boolean isEscaped(int index) {
+      int backslashes = 0;
+      while (index - backslashes - 1 >= 0 && regex.charAt(index - backslashes - 1) == '\\') {
+        backslashes++;
+      }
+      return backslashes % 2 == 1;
+    }
+
+    private Node parseAlternation() {
+      Node node = parseConcatenation();
+      while (position < end && regex.charAt(position) == '|') {
+        topLevelAlternation |= depth == 0;
+        position++;
+        node = new Node(Node.ALTERNATION, node, parseConcatenation());
+      }
+      return node;
+    }
+
+    private Node parseConcatenation() {
+      Node node = new Node(Node.EMPTY);
+      while (position < end && regex.charAt(position) != '|' && regex.charAt(position) != ')') {
+        Node next = parseRepetition();
+        node = node.type == Node.EMPTY ? next : new Node(Node.CONCAT, node, next);
+      }
+      return node;
+    }
+
+    private Node parseRepetition() {
+      Node node = parseAtom();
+      if (position >= end) {
+        return node;
+      }
+      char c = regex.charAt(position);
+      if (c == '*') {
+        node = new Node(Node.STAR, node, null);
+      } else if (c == '+') {
+        node = new Node(Node.PLUS, node, null);
+      } else if (c == '?') {
+        node = new Node(Node.OPTIONAL, node, null);
+      } else if (c == '{') {
+        throw new UnsupportedOperationException();
+      } else {
+        return node;
+      }
+      position++;
+      if (position < end && regex.charAt(position) == '?') {
+        // A lazy quantifier, which does not change whether there is a match.
+        position++;
+      } else if (position < end && regex.charAt(position) == '+') {
+        // A possessive quantifier, which never gives back what it matched.
+        throw new UnsupportedOperationException();
+      }
+      // Another quantifier is not valid, and parseAtom() leaves it to java.util.regex to say so.
+      return node;
+    }
+
+    private Node parseAtom() {
+      char c = regex.charAt(position++);
+      switch (c) {
+        case '(':
+          if (regex.startsWith("?:", position)) {
+            position += 2;
+          } else if (position < end && regex.charAt(position) == '?') {
+            throw new UnsupportedOperationException();
+          }
+          depth++;
+          Node group = parseAlternation();
+          depth--;
+          if (position >= end || regex.charAt(position) != ')') {
+            throw new UnsupportedOperationException();
+          }
+          position++;
+          return group;
+        case '[':
+          return classNode(parseClass());
+        case '.':
+          return new Node(Node.ANY);
+        case '\\':
+          return parseEscape();
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+        case '^':
+        case '$':
+          throw new UnsupportedOperationException();
+        default:
+          return charNode(c);
+      }
+    }
+
+    private Node parseEscape() {
+      if (position >= end) {
+        throw new UnsupportedOperationException();
+      }
+      char c = regex.charAt(position++);
+      CharClass charClass = CharClass.predefined(c);
+      if (charClass != null) {
+        return classNode(charClass);
+      }
+      return charNode(escapedChar(c));
+    }
+
+    /*
+     * Returns the character an escape such as "\." or "\t" stands for.
+     */
+    private static char escapedChar(char c) {
+      if (c == 't') {
+        return '\t';
+      }
+      if (c == 'n') {
+        return '\n';
+      }
+      if (c == 'r') {
+        return '\r';
+      }
+      if (Character.isLetterOrDigit(c)) {
+        // Word boundaries, back-references, Unicode classes, quoting...
+        throw new UnsupportedOperationException();
+      }
+      return c;
+    }
+
+    private CharClass parseClass() {
+      CharClass charClass = new CharClass();
+      if (position < end && regex.charAt(position) == '^') {
+        charClass.negated = true;
+        position++;
+      }
+      boolean first = true;
+      while (true) {
+        if (position >= end) {
+          throw new UnsupportedOperationException();
+        }
+        char c = regex.charAt(position++);
+        if (c == ']' && !first) {
+          return charClass;
+        }
+        first = false;
+        if (c == '[' || (c == '&' && position < end && regex.charAt(position) == '&')) {
+          // Unions and intersections of classes.
+          throw new UnsupportedOperationException();
+        }
+        if (c == '\\') {
+          if (position >= end) {
+            throw new UnsupportedOperationException();
+          }
+          char escaped = regex.charAt(position++);
+          CharClass predefined = CharClass.predefined(escaped);
+          if (predefined != null) {
+            if (predefined.negated) {
+              throw new UnsupportedOperationException();
+            }
+            charClass.addAll(predefined);
+            continue;
+          }
+          c = escapedChar(escaped);
+        }
+        char last = c;
+        if (position + 1 < end && regex.charAt(position) == '-'
+            && regex.charAt(position + 1) != ']') {
+          last = regex.charAt(position + 1);
+          position += 2;
+          if (last == '\\' || last == '[' || last < c) {
+            throw new UnsupportedOperationException();
+          }
+        }
+        charClass.add(c, last);
+      }
+    }
+
+    private Node charNode(char c) {
+      Node node = new Node(Node.CHAR);
+      node.c = ignoreCase ? lowerCase(c) : c;
+      node.ignoreCase = ignoreCase;
+      return node;
+    }
+
+    private Node classNode(CharClass charClass) {
+      Node node = new Node(Node.CLASS);
+      node.charClass = charClass;
+      node.ignoreCase = ignoreCase;
+      return node;
+    }
+  }
+}
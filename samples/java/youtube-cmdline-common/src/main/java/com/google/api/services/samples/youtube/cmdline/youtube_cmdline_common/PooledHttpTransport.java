@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+/**
+ * Creates HTTP transports that keep a shared pool of persistent connections, for samples that
+ * send many requests at once. It can be passed anywhere a sample uses new NetHttpTransport(), for
+ * example to YouTube.Builder.
+ *
+ * NetHttpTransport relies on HttpURLConnection's keep-alive cache, which only keeps a handful of
+ * idle connections per host, so beyond a few concurrent requests most of them pay for a new
+ * TCP and TLS handshake. The pooled transport keeps up to maxConnections connections to
+ * www.googleapis.com open and hands them out to whichever thread needs one.
+ *
+ * This is an HTTP/1.1 transport: each connection carries one request at a time, so n requests in
+ * flight take n connections. It does not do HTTP/2 multiplexing, which needs an HTTP/2 client such
+ * as java.net.http.HttpClient (Java 11); the samples build for Java 1.6 against google-http-client
+ * 1.12 to 1.15, so HTTP/2 is out of scope here.
+ */
+public class PooledHttpTransport {
+
+  /** Size of the socket send and receive buffers. */
+  private static final int SOCKET_BUFFER_SIZE = 8192;
+
+  /** Connection timeout in milliseconds. */
+  private static final int CONNECT_TIMEOUT_MILLIS = 20 * 1000;
+
+  private PooledHttpTransport() {
+  }
+
+  /**
+   * Creates a transport that keeps up to maxConnections connections open. Sharing one instance
+   * between all clients in a process lets them share the pool.
+   *
+   * @param maxConnections maximum number of connections, which is also the maximum number of
+   *        requests in flight at once
+   */
+  public static HttpTransport newTransport(int maxConnections) {
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("maxConnections must be at least 1: " + maxConnections);
+    }
+    HttpParams params = new BasicHttpParams();
+    HttpConnectionParams.setSocketBufferSize(params, SOCKET_BUFFER_SIZE);
+    HttpConnectionParams.setConnectionTimeout(params, CONNECT_TIMEOUT_MILLIS);
+    // Pooled connections can be closed by the server while idle; checking before reuse avoids
+    // failing a request on a dead connection.
+    HttpConnectionParams.setStaleCheckingEnabled(params, true);
+
+    // All samples talk to a single host, so one route may use the whole pool.
+    ConnManagerParams.setMaxTotalConnections(params, maxConnections);
+    ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(maxConnections));
+
+    SchemeRegistry registry = new SchemeRegistry();
+    registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+    registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+    ClientConnectionManager connectionManager = new ThreadSafeClientConnManager(params, registry);
+
+    DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager, params);
+    // Retries are left to the client library and to the samples.
+    httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+    return new ApacheHttpTransport(httpClient);
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical requests that are in flight at the same time. The first caller executes the
+ * request; callers that arrive with an identical request before it completes wait for that call
+ * and get the same parsed response (or the same exception) instead of sending their own. Once the
+ * call completes, the next identical request is executed again; nothing is cached.
+ *
+ * Two requests are identical if they have the same HTTP method, URL (including every query
+ * parameter) and request headers. Requests with a body, such as inserts and updates, are never
+ * coalesced.
+ *
+ * A coalescer should only be shared by requests made with the same credentials, since the
+ * Authorization header is added after the request is built and is not part of the comparison.
+ * Responses are shared between callers and must not be modified.
+ */
+public class RequestCoalescer {
+
+  /** Calls in flight, by request key. */
+  private final ConcurrentMap<String, FutureTask<?>> inFlight =
+      new ConcurrentHashMap<String, FutureTask<?>>();
+
+  /** Number of requests that were sent. */
+  private final AtomicLong executions = new AtomicLong();
+
+  /** Number of requests that were answered by another caller's call. */
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * Executes the request, or waits for an identical request that is already in flight and returns
+   * its response.
+   *
+   * @param request request to execute
+   * @return parsed response, possibly shared with other callers
+   */
+  public <T> T execute(final AbstractGoogleClientRequest<T> request) throws IOException {
+    if (request.getHttpContent() != null) {
+      executions.incrementAndGet();
+      return request.execute();
+    }
+
+    String key = requestKey(request);
+    FutureTask<T> call = new FutureTask<T>(new Callable<T>() {
+      public T call() throws IOException {
+        return request.execute();
+      }
+    });
+
+    @SuppressWarnings("unchecked")
+    FutureTask<T> existing = (FutureTask<T>) inFlight.putIfAbsent(key, call);
+    if (existing != null) {
+      coalesced.incrementAndGet();
+      return await(existing);
+    }
+
+    // This caller won the race, so it runs the call on its own thread.
+    executions.incrementAndGet();
+    try {
+      call.run();
+    } finally {
+      inFlight.remove(key, call);
+    }
+    return await(call);
+  }
+
+  /** Number of requests that were sent. */
+  public long getExecutions() {
+    return executions.get();
+  }
+
+  /** Number of requests that shared another caller's call instead of being sent. */
+  public long getCoalesced() {
+    return coalesced.get();
+  }
+
+  @Override
+  public String toString() {
+    return "requests sent: " + executions.get() + ", requests coalesced: " + coalesced.get();
+  }
+
+  /**
+   * Returns the key identical requests share: method, URL and request headers.
+   *
+   * @param request request to identify
+   */
+  static String requestKey(AbstractGoogleClientRequest<?> request) {
+    return request.getRequestMethod() + " " + request.buildHttpRequestUrl().build() + " "
+        + request.getRequestHeaders();
+  }
+
+  /*
+   * Waits for a call and returns its result, rethrowing the exception it failed with.
+   */
+  private static <T> T await(FutureTask<T> call) throws IOException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return call.get();
+        } catch (InterruptedException e) {
+          // The call belongs to another caller too, so it is not cancelled; just keep waiting.
+          interrupted = true;
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+/**
+ * Converts YouTube video ids to and from longs, so that large numbers of them can be kept in
+ * {@link LongHashSet}s and {@link LongIntHashMap}s instead of collections of Strings.
+ *
+ * A video id is the URL-safe base64 encoding of 64 bits: 11 characters from [A-Za-z0-9-_], of
+ * which the first ten carry six bits each and the last carries the remaining four (so it is one
+ * of "AEIMQUYcgkosw048"). The conversion is exact in both directions. Strings that do not have
+ * this form, such as ids from a different service, are not encodable and must be handled as
+ * Strings.
+ */
+public class VideoIdCodec {
+
+  /** Number of characters in a video id. */
+  public static final int LENGTH = 11;
+
+  private static final char[] ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+  /** Value of each ASCII character in the alphabet, or -1 for characters outside it. */
+  private static final byte[] VALUES = new byte[128];
+
+  static {
+    for (int i = 0; i < VALUES.length; i++) {
+      VALUES[i] = -1;
+    }
+    for (int i = 0; i < ALPHABET.length; i++) {
+      VALUES[ALPHABET[i]] = (byte) i;
+    }
+  }
+
+  private VideoIdCodec() {
+  }
+
+  /**
+   * Returns whether a string is a video id that {@link #encode} accepts.
+   *
+   * @param videoId string to check, or null
+   */
+  public static boolean isEncodable(String videoId) {
+    if (videoId == null || videoId.length() != LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < LENGTH; i++) {
+      if (value(videoId.charAt(i)) < 0) {
+        return false;
+      }
+    }
+    // The last character only carries four bits; the two low bits must be zero.
+    return (value(videoId.charAt(LENGTH - 1)) & 3) == 0;
+  }
+
+  /**
+   * Returns the 64 bits a video id stands for.
+   *
+   * @param videoId video id, such as "dQw4w9WgXcQ"
+   * @throws IllegalArgumentException if the id is not encodable
+   */
+  public static long encode(String videoId) {
+    if (videoId == null || videoId.length() != LENGTH) {
+      throw new IllegalArgumentException("Not an encodable video id: " + videoId);
+    }
+    // Validates and encodes in one pass: an invalid character has the value -1.
+    long bits = 0;
+    int invalid = 0;
+    for (int i = 0; i < LENGTH - 1; i++) {
+      int value = value(videoId.charAt(i));
+      invalid |= value;
+      bits = (bits << 6) | (value & 0x3f);
+    }
+    int last = value(videoId.charAt(LENGTH - 1));
+    if ((invalid | last) < 0 || (last & 3) != 0) {
+      throw new IllegalArgumentException("Not an encodable video id: " + videoId);
+    }
+    return (bits << 4) | (last >> 2);
+  }
+
+  /**
+   * Returns the video id for 64 bits returned by {@link #encode}.
+   *
+   * @param bits encoded video id
+   */
+  public static String decode(long bits) {
+    char[] videoId = new char[LENGTH];
+    videoId[LENGTH - 1] = ALPHABET[(int) (bits & 0xf) << 2];
+    bits >>>= 4;
+    for (int i = LENGTH - 2; i >= 0; i--) {
+      videoId[i] = ALPHABET[(int) (bits & 0x3f)];
+      bits >>>= 6;
+    }
+    return new String(videoId);
+  }
+
+  private static int value(char c) {
+    return c < VALUES.length ? VALUES[c] : -1;
+  }
+}
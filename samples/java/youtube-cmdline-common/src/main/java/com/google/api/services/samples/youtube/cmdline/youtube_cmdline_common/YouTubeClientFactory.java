@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
+import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
+import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
+import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
+import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.Key;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds the HTTP transport and JSON factory shared by the command line samples, and authorizes
+ * them with OAuth 2.0. It replaces the HTTP_TRANSPORT, JSON_FACTORY and authorize() that every
+ * sample used to declare for itself.
+ *
+ * Most of a sample's run time is its first request: the TLS handshakes with the API and token
+ * hosts, and loading and introspecting the JSON model classes. {@link #warmUp} does that work on a
+ * background thread while the sample is still busy with something else, usually the OAuth flow
+ * (which {@link #authorize} warms up for automatically). The transport is pooled, so the warmed
+ * connections are the ones the sample's requests get.
+ *
+ * Time to first response of the warm-up requests, and how long authorization took, are logged at
+ * INFO level.
+ */
+public class YouTubeClientFactory {
+
+  private static final Logger LOGGER = Logger.getLogger(YouTubeClientFactory.class.getName());
+
+  /** Maximum number of connections kept open by the shared transport. */
+  private static final int MAX_CONNECTIONS = 64;
+
+  /** Hosts the samples talk to: the API itself and the OAuth 2.0 token endpoint. */
+  private static final String[] WARM_UP_URLS =
+      {"https://www.googleapis.com/", "https://accounts.google.com/o/oauth2/token"};
+
+  /** Port the OAuth 2.0 flow listens on for the authorization code. */
+  private static final int RECEIVER_PORT = 8080;
+
+  private static final YouTubeClientFactory INSTANCE = new YouTubeClientFactory();
+
+  private final HttpTransport transport = PooledHttpTransport.newTransport(MAX_CONNECTIONS);
+
+  private final JsonFactory jsonFactory = new JacksonFactory();
+
+  /** Whether the connections have been warmed up, or are being warmed up. */
+  private final AtomicBoolean connectionsWarmed = new AtomicBoolean();
+
+  /** Model classes already warmed up, or being warmed up. */
+  private final Set<Class<?>> warmedClasses = new HashSet<Class<?>>();
+
+  private YouTubeClientFactory() {
+  }
+
+  /** Returns the factory shared by every sample in this process. */
+  public static YouTubeClientFactory get() {
+    return INSTANCE;
+  }
+
+  /** Returns the shared, pooled HTTP transport. */
+  public HttpTransport getTransport() {
+    return transport;
+  }
+
+  /** Returns the shared JSON factory. */
+  public JsonFactory getJsonFactory() {
+    return jsonFactory;
+  }
+
+  /**
+   * Starts warming up on a daemon thread and returns at once. The first call opens a connection to
+   * each API host; every call loads and introspects the given response classes and the model
+   * classes they refer to. Failures are logged and otherwise ignored, since the sample's own
+   * requests will report them properly.
+   *
+   * @param responseClasses JSON model classes the sample is about to parse, such as
+   *        ChannelListResponse
+   */
+  public void warmUp(Class<?>... responseClasses) {
+    final boolean warmConnections = connectionsWarmed.compareAndSet(false, true);
+    final Set<Class<?>> classes = new HashSet<Class<?>>();
+    synchronized (warmedClasses) {
+      classes.add(GoogleJsonError.class);
+      for (Class<?> responseClass : responseClasses) {
+        collectModelClasses(responseClass, classes);
+      }
+      classes.removeAll(warmedClasses);
+      warmedClasses.addAll(classes);
+    }
+    if (!warmConnections && classes.isEmpty()) {
+      return;
+    }
+
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        if (warmConnections) {
+          warmUpConnections();
+        }
+        warmUpClasses(classes);
+      }
+    }, "youtube-warm-up");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Authorizes the installed application to access user's protected data, warming up the
+   * connections while the user goes through the OAuth flow.
+   *
+   * @param scopes list of scopes needed by the sample
+   * @param credentialFileName name of the file in ~/.credentials the credential is stored in, such
+   *        as "youtube-api-myuploads.json"
+   */
+  public Credential authorize(List<String> scopes, String credentialFileName)
+      throws IOException {
+    warmUp();
+    long start = System.nanoTime();
+    Credential credential =
+        InstalledAppAuthorizer.authorize(transport, jsonFactory, scopes, credentialFileName);
+    LOGGER.info("Authorized in " + millisSince(start) + " ms");
+    return credential;
+  }
+
+  /*
+   * Sends a HEAD request to each host so the pool keeps a connection to it with the TLS handshake
+   * done, and logs the time to first response.
+   */
+  private void warmUpConnections() {
+    HttpRequestFactory requestFactory = transport.createRequestFactory();
+    for (String url : WARM_UP_URLS) {
+      long start = System.nanoTime();
+      try {
+        HttpRequest request = requestFactory.buildHeadRequest(new GenericUrl(url));
+        // Any status will do; only the connection matters.
+        request.setThrowExceptionOnExecuteError(false);
+        request.setNumberOfRetries(0);
+        request.execute().ignore();
+        LOGGER.info("First response from " + url + " in " + millisSince(start) + " ms, "
+            + (System.currentTimeMillis() - jvmStartTime()) + " ms after start-up");
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "Could not warm up a connection to " + url, e);
+      }
+    }
+  }
+
+  /*
+   * Parses an empty object into each class, which loads it and caches its field information.
+   */
+  private void warmUpClasses(Set<Class<?>> classes) {
+    for (Class<?> modelClass : classes) {
+      try {
+        jsonFactory.fromString("{}", modelClass);
+      } catch (IOException e) {
+        LOGGER.log(Level.FINE, "Could not warm up " + modelClass.getName(), e);
+      } catch (RuntimeException e) {
+        LOGGER.log(Level.FINE, "Could not warm up " + modelClass.getName(), e);
+      }
+    }
+  }
+
+  /*
+   * Adds a model class and, through its @Key fields, the model classes it contains.
+   */
+  private static void collectModelClasses(Class<?> modelClass, Set<Class<?>> classes) {
+    if (!GenericJson.class.isAssignableFrom(modelClass) || !classes.add(modelClass)) {
+      return;
+    }
+    for (Field field : modelClass.getDeclaredFields()) {
+      if (field.isAnnotationPresent(Key.class)) {
+        collectModelClasses(field.getGenericType(), classes);
+      }
+    }
+  }
+
+  private static void collectModelClasses(Type type, Set<Class<?>> classes) {
+    if (type instanceof Class<?>) {
+      collectModelClasses((Class<?>) type, classes);
+    } else if (type instanceof ParameterizedType) {
+      // Lists and maps of model classes.
+      for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+        collectModelClasses(argument, classes);
+      }
+    }
+  }
+
+  private static long millisSince(long startNanos) {
+    return (System.nanoTime() - startNanos) / 1000000;
+  }
+
+  private static long jvmStartTime() {
+    return ManagementFactory.getRuntimeMXBean().getStartTime();
+  }
+
+  /**
+   * The OAuth 2.0 installed application flow. It is kept in its own class so that samples that
+   * only use a developer key, and do not have google-oauth-client-jetty on their class path, never
+   * load it.
+   */
+  private static class InstalledAppAuthorizer {
+
+    static Credential authorize(HttpTransport transport, JsonFactory jsonFactory,
+        List<String> scopes, String credentialFileName) throws IOException {
+      // Load client secrets.
+      GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
+          jsonFactory, YouTubeClientFactory.class.getResourceAsStream("/client_secrets.json"));
+
+      // Checks that the defaults have been replaced (Default = "Enter X here").
+      if (clientSecrets.getDetails().getClientId().startsWith("Enter")
+          || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
+        System.out.println(
+            "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube "
+            + "into src/main/resources/client_secrets.json");
+        System.exit(1);
+      }
+
+      // Set up file credential store.
+      FileCredentialStore credentialStore = new FileCredentialStore(
+          new File(System.getProperty("user.home"), ".credentials/" + credentialFileName),
+          jsonFactory);
+
+      // Set up authorization code flow.
+      GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
+          transport, jsonFactory, clientSecrets, scopes).setCredentialStore(credentialStore)
+          .build();
+
+      // Build the local server and bind it to port 8080
+      LocalServerReceiver localReceiver =
+          new LocalServerReceiver.Builder().setPort(RECEIVER_PORT).build();
+
+      // Authorize.
+      return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
+    }
+  }
+}
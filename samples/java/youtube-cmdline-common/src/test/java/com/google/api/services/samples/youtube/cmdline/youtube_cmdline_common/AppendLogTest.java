@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests {@link AppendLog} on logs cut short by a crash.
+ */
+public class AppendLogTest {
+
+  @Test
+  public void missingLogHasNoLines() throws IOException {
+    File file = File.createTempFile("append-log", ".txt");
+    assertTrue(file.delete());
+    assertTrue(AppendLog.readLines(file).isEmpty());
+
+    AppendLog log = AppendLog.open(file);
+    log.append("a\n");
+    log.close();
+    assertEquals(Arrays.asList("a"), AppendLog.readLines(file));
+    file.delete();
+  }
+
+  @Test
+  public void partialLastLineIsLeftOutAndDropped() throws IOException {
+    File file = File.createTempFile("append-log", ".txt");
+    write(file, "a\nb\nc");
+    assertEquals(Arrays.asList("a", "b"), AppendLog.readLines(file));
+
+    AppendLog log = AppendLog.open(file);
+    log.append("d\ne\n");
+    log.close();
+    assertEquals(Arrays.asList("a", "b", "d", "e"), AppendLog.readLines(file));
+    file.delete();
+  }
+
+  @Test
+  public void partialOnlyLineIsDropped() throws IOException {
+    File file = File.createTempFile("append-log", ".txt");
+    write(file, "P\t12");
+    assertTrue(AppendLog.readLines(file).isEmpty());
+
+    AppendLog.open(file).close();
+    assertEquals(0, file.length());
+    file.delete();
+  }
+
+  @Test
+  public void completeLogIsReadWhole() throws IOException {
+    File file = File.createTempFile("append-log", ".txt");
+    write(file, "a\n\nb\n");
+    assertEquals(Arrays.asList("a", "", "b"), AppendLog.readLines(file));
+
+    AppendLog log = AppendLog.open(file);
+    log.append("c\n");
+    log.close();
+    assertEquals(Arrays.asList("a", "", "b", "c"), AppendLog.readLines(file));
+    file.delete();
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(contents.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares a {@link MultiPatternMatcher} with matching each pattern in turn with java.util.regex,
+ * as the curation rules would be matched without it, over {@value #TITLES} random titles. Each
+ * benchmark call matches every title against every pattern and returns the number of matches.
+ *
+ * The patterns are a third literal words, a third regular expressions in the subset the automaton
+ * handles, and a third expressions that ignore case, and they are added to the matcher as
+ * CurationRules adds them, so that the literals go to the Aho-Corasick automaton.
+ *
+ * Not run by "mvn test"; run its main method from the test classpath (see the README).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MultiPatternMatcherBenchmark {
+
+  private static final int TITLES = 1000000;
+
+  /** Number of distinct words titles are made of. */
+  private static final int WORDS = 2000;
+
+  @Param({"10", "100"})
+  public int patterns;
+
+  private String[] titles;
+
+  private MultiPatternMatcher matcher;
+
+  private Pattern[] compiled;
+
+  private final BitSet matches = new BitSet();
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    String[] words = new String[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      words[i] = randomWord(random);
+    }
+
+    titles = new String[TITLES];
+    StringBuilder title = new StringBuilder();
+    for (int i = 0; i < TITLES; i++) {
+      title.setLength(0);
+      int length = 4 + random.nextInt(7);
+      for (int j = 0; j < length; j++) {
+        if (j > 0) {
+          title.append(' ');
+        }
+        int next = random.nextInt(10);
+        if (next == 0) {
+          title.append(random.nextBoolean() ? "part " : "ep").append(random.nextInt(100));
+        } else if (next == 1) {
+          String word = words[random.nextInt(WORDS)];
+          title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+        } else {
+          title.append(words[random.nextInt(WORDS)]);
+        }
+      }
+      titles[i] = title.toString();
+    }
+
+    matcher = new MultiPatternMatcher();
+    compiled = new Pattern[patterns];
+    for (int i = 0; i < patterns; i++) {
+      String word = words[random.nextInt(WORDS)];
+      String regex;
+      boolean ignoreCase = false;
+      switch (i % 3) {
+        case 0:
+          regex = word;
+          break;
+        case 1:
+          regex = word + " (part|ep) ?[0-9]+";
+          break;
+        default:
+          regex = "[a-z]+ " + word + "s?";
+          ignoreCase = true;
+          break;
+      }
+      if (MultiPatternMatcher.isLiteral(regex)) {
+        matcher.addLiteral(regex, ignoreCase);
+      } else {
+        matcher.addRegex(regex, ignoreCase);
+      }
+      compiled[i] =
+          Pattern.compile(regex, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+    }
+
+    int expected = oneByOne();
+    int found = multiPatternMatcher();
+    if (found != expected) {
+      throw new AssertionError(found + " matches instead of " + expected);
+    }
+    System.out.printf("%n%d patterns: %d matches, %d deterministic states%n", patterns, found,
+        matcher.getDfaStateCount());
+  }
+
+  @Benchmark
+  public int multiPatternMatcher() {
+    int found = 0;
+    for (String title : titles) {
+      matcher.match(title, matches);
+      found += matches.cardinality();
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int oneByOne() {
+    int found = 0;
+    for (String title : titles) {
+      for (Pattern pattern : compiled) {
+        if (pattern.matcher(title).find()) {
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  private static String randomWord(Random random) {
+    char[] word = new char[3 + random.nextInt(7)];
+    for (int i = 0; i < word.length; i++) {
+      word[i] = (char) ('a' + random.nextInt(26));
+    }
+    return new String(word);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(MultiPatternMatcherBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
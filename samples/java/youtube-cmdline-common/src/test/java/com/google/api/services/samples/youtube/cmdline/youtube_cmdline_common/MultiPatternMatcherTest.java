@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Tests for {@link MultiPatternMatcher}, whose matches must be those of java.util.regex.
+ */
+public class MultiPatternMatcherTest {
+
+  private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+  /** Characters of the random texts, with line terminators to exercise "." and "$". */
+  private static final String TEXT_CHARACTERS = "abcAB1 _\n\r";
+
+  @Test
+  public void anchorsApplyToTheirAlternativeOnly() {
+    assertSameMatches(new String[] {"^live:|stream", "foo|bar$", "(?i)^a|b$"},
+        new String[] {"my stream", "foo x", "live: now", "x bar", "b", "a", "c"});
+  }
+
+  @Test
+  public void anchorsApplyToGroupedAlternation() {
+    assertSameMatches(new String[] {"^(live|stream)$", "^(?:a|b)c"},
+        new String[] {"live", "stream", "my stream", "ac", "bc", "xbc"});
+  }
+
+  @Test
+  public void possessiveQuantifiersNeverGiveBack() {
+    assertSameMatches(new String[] {"a*+a", "a++a", "a?+a", "a*+b", "(ab)++b"},
+        new String[] {"aaa", "a", "aab", "abab", "ababb", ""});
+  }
+
+  @Test
+  public void lazyQuantifiersMatchTheSameTexts() {
+    assertSameMatches(new String[] {"a*?b", "a+?", "ab??c"},
+        new String[] {"aab", "b", "a", "ac", "abc", "x"});
+  }
+
+  @Test
+  public void dollarMatchesBeforeAFinalLineTerminator() {
+    assertSameMatches(new String[] {"end$", "^$", "d$", "\\r$", "end\\r$"},
+        new String[] {"the end", "the end\n", "the end\r\n", "the end\r", "the end\n\n",
+            "the end\u2028", "\n", "\r\n", "", "end\rx", "end\r\r"});
+  }
+
+  @Test
+  public void caseIsMatchedUnlessIgnored() {
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    matcher.addRegex("^Live:");
+    matcher.addRegex("^Live:", true);
+    matcher.addRegex("(?i)^Live:");
+    matcher.addLiteral("Unboxing");
+    matcher.addLiteral("Unboxing", true);
+    matcher.addRegex("[A-C]x");
+    matcher.addRegex("[A-C]x", true);
+    BitSet matches = new BitSet();
+
+    matcher.match("Live: Unboxing Bx", matches);
+    assertEquals("{0, 1, 2, 3, 4, 5, 6}", matches.toString());
+    matcher.match("LIVE: unboxing bX", matches);
+    assertEquals("{1, 2, 4, 6}", matches.toString());
+  }
+
+  @Test
+  public void randomLiteralsMatchLikeStringContains() {
+    Random random = new Random(3);
+    for (int round = 0; round < 200; round++) {
+      MultiPatternMatcher matcher = new MultiPatternMatcher();
+      String[] literals = new String[20];
+      for (int i = 0; i < literals.length; i++) {
+        literals[i] = randomText(random, 1 + random.nextInt(3));
+        assertEquals(i, matcher.addLiteral(literals[i], i % 2 == 1));
+      }
+      BitSet matches = new BitSet();
+      for (int i = 0; i < 50; i++) {
+        String text = randomText(random, random.nextInt(12));
+        matcher.match(text, matches);
+        for (int j = 0; j < literals.length; j++) {
+          boolean expected = j % 2 == 1
+              ? text.toLowerCase().contains(literals[j].toLowerCase()) : text.contains(literals[j]);
+          assertEquals("\"" + literals[j] + "\" in \"" + escape(text) + "\"", expected,
+              matches.get(j));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void onlyExpressionsWithoutMetacharactersAreLiterals() {
+    assertTrue(MultiPatternMatcher.isLiteral("unboxing day - part 2, #3 & more!"));
+    assertTrue(MultiPatternMatcher.isLiteral(""));
+    for (String regex : new String[] {"a.b", "^live", "end$", "a|b", "a?", "a*", "a+", "(a)",
+        "[ab]", "a{2}", "\\d", "(?i)a"}) {
+      assertFalse(regex, MultiPatternMatcher.isLiteral(regex));
+    }
+  }
+
+  @Test
+  public void invalidQuantifiersAreRejected() {
+    String[] invalid = {"a**", "a*+*", "*a", "a{2"};
+    for (String regex : invalid) {
+      try {
+        new MultiPatternMatcher().addRegex(regex);
+        throw new AssertionError("Accepted " + regex);
+      } catch (PatternSyntaxException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void randomPatternsMatchLikeJavaUtilRegex() {
+    Random random = new Random(42);
+    for (int round = 0; round < 200; round++) {
+      List<String> regexes = new ArrayList<String>();
+      while (regexes.size() < 20) {
+        String regex = randomRegex(random, 3);
+        try {
+          Pattern.compile(regex, FLAGS);
+          regexes.add(regex);
+        } catch (PatternSyntaxException e) {
+          // The generator can nest quantifiers; those are only checked by invalidQuantifiers.
+        }
+      }
+      String[] texts = new String[50];
+      for (int i = 0; i < texts.length; i++) {
+        texts[i] = randomText(random, random.nextInt(12));
+      }
+      assertSameMatches(regexes.toArray(new String[regexes.size()]), texts);
+    }
+  }
+
+  @Test
+  public void mostRandomPatternsUseTheAutomaton() {
+    Random random = new Random(7);
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    while (matcher.size() < 1000) {
+      String regex = randomRegex(random, 3);
+      try {
+        Pattern.compile(regex, FLAGS);
+      } catch (PatternSyntaxException e) {
+        continue;
+      }
+      matcher.addRegex(regex);
+    }
+    assertTrue(matcher.getFallbackCount() + " fallbacks", matcher.getFallbackCount() < 500);
+  }
+
+  /*
+   * Checks that one matcher of all the patterns, each added once matching case and once ignoring
+   * it, finds in each text the patterns Matcher.find() finds.
+   */
+  private static void assertSameMatches(String[] regexes, String[] texts) {
+    MultiPatternMatcher matcher = new MultiPatternMatcher();
+    Pattern[] patterns = new Pattern[2 * regexes.length];
+    for (int i = 0; i < regexes.length; i++) {
+      assertEquals(2 * i, matcher.addRegex(regexes[i]));
+      patterns[2 * i] = Pattern.compile(regexes[i]);
+      assertEquals(2 * i + 1, matcher.addRegex(regexes[i], true));
+      patterns[2 * i + 1] = Pattern.compile(regexes[i], FLAGS);
+    }
+    BitSet matches = new BitSet();
+    for (String text : texts) {
+      matcher.match(text, matches);
+      for (int i = 0; i < patterns.length; i++) {
+        assertEquals("/" + patterns[i] + "/" + (i % 2 == 1 ? "i" : "") + " on \""
+            + escape(text) + "\"", patterns[i].matcher(text).find(), matches.get(i));
+      }
+    }
+  }
+
+  private static String randomText(Random random, int length) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      text.append(TEXT_CHARACTERS.charAt(random.nextInt(TEXT_CHARACTERS.length())));
+    }
+    return text.toString();
+  }
+
+  private static String randomRegex(Random random, int depth) {
+    StringBuilder regex = new StringBuilder();
+    if (random.nextInt(4) == 0) {
+      regex.append('^');
+    }
+    regex.append(randomAlternation(random, depth));
+    if (random.nextInt(4) == 0) {
+      regex.append('$');
+    }
+    return regex.toString();
+  }
+
+  private static String randomAlternation(Random random, int depth) {
+    StringBuilder regex = new StringBuilder(randomConcatenation(random, depth));
+    while (random.nextInt(3) == 0) {
+      regex.append('|').append(randomConcatenation(random, depth));
+    }
+    return regex.toString();
+  }
+
+  private static String randomConcatenation(Random random, int depth) {
+    StringBuilder regex = new StringBuilder();
+    for (int length = random.nextInt(4); length > 0; length--) {
+      regex.append(randomAtom(random, depth));
+      switch (random.nextInt(12)) {
+        case 0:
+          regex.append('*');
+          break;
+        case 1:
+          regex.append('+');
+          break;
+        case 2:
+          regex.append('?');
+          break;
+        case 3:
+          regex.append(random.nextBoolean() ? "*+" : "++");
+          break;
+        case 4:
+          regex.append(random.nextBoolean() ? "*?" : "??");
+          break;
+        default:
+          break;
+      }
+    }
+    return regex.toString();
+  }
+
+  private static String randomAtom(Random random, int depth) {
+    String[] atoms = {"a", "b", "A", "1", " ", ".", "[ab]", "[^a]", "[a-c]", "\\d", "\\w", "\\s",
+        "\\n", "\\r", "\\.", "_"};
+    if (depth > 0 && random.nextInt(5) == 0) {
+      return (random.nextBoolean() ? "(" : "(?:") + randomAlternation(random, depth - 1) + ")";
+    }
+    return atoms[random.nextInt(atoms.length)];
+  }
+
+  private static String escape(String text) {
+    return text.replace("\r", "\\r").replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClient;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link RequestCoalescer}, against a transport that counts the requests it receives.
+ */
+public class RequestCoalescerTest {
+
+  private static final int CALLERS = 32;
+
+  /** Number of HTTP requests the transport received. */
+  private final AtomicInteger transportCalls = new AtomicInteger();
+
+  /** Status code the transport answers with. */
+  private volatile int statusCode = 200;
+
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+
+  /**
+   * Number of coalesced callers the transport waits for before answering, so that every caller
+   * arrives while the first request is in flight.
+   */
+  private volatile int waitForCoalesced;
+
+  private final HttpTransport transport = new MockHttpTransport() {
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          transportCalls.incrementAndGet();
+          long deadline = System.currentTimeMillis() + 10000;
+          while (coalescer.getCoalesced() < waitForCoalesced
+              && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+          }
+          return new MockLowLevelHttpResponse()
+              .setStatusCode(statusCode)
+              .setContentType("application/json; charset=UTF-8")
+              .setContent("{\"kind\":\"test#response\"}");
+        }
+      };
+    }
+  };
+
+  private final TestClient client = new TestClient(transport);
+
+  @Test
+  public void concurrentIdenticalRequestsShareOneTransportCall() throws Exception {
+    waitForCoalesced = CALLERS - 1;
+    List<GenericJson> responses = runConcurrently(new Callable<GenericJson>() {
+      public GenericJson call() throws IOException {
+        return coalescer.execute(client.get("channels?part=id&mine=true"));
+      }
+    });
+
+    assertEquals(1, transportCalls.get());
+    assertEquals(1, coalescer.getExecutions());
+    assertEquals(CALLERS - 1, coalescer.getCoalesced());
+    for (GenericJson response : responses) {
+      assertSame(responses.get(0), response);
+    }
+  }
+
+  @Test
+  public void concurrentCallersShareTheFailure() throws Exception {
+    waitForCoalesced = CALLERS - 1;
+    statusCode = 500;
+    final AtomicInteger failures = new AtomicInteger();
+    runConcurrently(new Callable<GenericJson>() {
+      public GenericJson call() throws IOException {
+        try {
+          return coalescer.execute(client.get("search?part=id&q=cats"));
+        } catch (HttpResponseException e) {
+          assertEquals(500, e.getStatusCode());
+          failures.incrementAndGet();
+          return null;
+        }
+      }
+    });
+
+    assertEquals(1, transportCalls.get());
+    assertEquals(CALLERS, failures.get());
+  }
+
+  @Test
+  public void differentRequestsAreNotCoalesced() throws IOException {
+    coalescer.execute(client.get("search?part=id&q=cats"));
+    coalescer.execute(client.get("search?part=id&q=dogs"));
+
+    assertEquals(2, transportCalls.get());
+    assertEquals(0, coalescer.getCoalesced());
+  }
+
+  @Test
+  public void completedRequestsAreSentAgain() throws IOException {
+    coalescer.execute(client.get("search?part=id&q=cats"));
+    coalescer.execute(client.get("search?part=id&q=cats"));
+
+    assertEquals(2, transportCalls.get());
+    assertEquals(2, coalescer.getExecutions());
+  }
+
+  /*
+   * Runs a call on CALLERS threads released at the same time, and returns their results.
+   */
+  private <T> List<T> runConcurrently(final Callable<T> call) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    try {
+      List<Future<T>> futures = new ArrayList<Future<T>>();
+      for (int i = 0; i < CALLERS; i++) {
+        futures.add(executor.submit(call));
+      }
+      List<T> results = new ArrayList<T>();
+      for (Future<T> future : futures) {
+        results.add(future.get(30, TimeUnit.SECONDS));
+      }
+      return results;
+    } catch (ExecutionException e) {
+      fail("A caller failed: " + e.getCause());
+      return null;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Minimal Google API client, sending GET requests to a path of a test service.
+   */
+  private static class TestClient extends AbstractGoogleClient {
+
+    TestClient(HttpTransport transport) {
+      super(transport, null, "https://www.googleapis.com/", "test/v1/",
+          new JsonObjectParser(new JacksonFactory()));
+    }
+
+    AbstractGoogleClientRequest<GenericJson> get(String path) {
+      return new AbstractGoogleClientRequest<GenericJson>(
+          this, "GET", path, null, GenericJson.class) {};
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares {@link PooledHttpTransport} with NetHttpTransport at 1, 16 and 256 concurrent requests
+ * against a local HTTP/1.1 stub that answers each GET with a small JSON body after a fixed delay,
+ * standing in for the API's latency. For each transport and concurrency it prints the requests per
+ * second and the number of connections opened while measuring, after a first round has warmed the
+ * transport up.
+ *
+ * The stub serves plain HTTP on the loopback interface, so a new connection costs a TCP handshake
+ * but no TLS handshake and no network round trip; against the API each new connection costs
+ * several round trips more. Neither transport speaks HTTP/2.
+ *
+ * Run with the test classpath, for instance from an IDE, with optional arguments: milliseconds per
+ * response (20) and requests per concurrent caller (20).
+ */
+public class TransportBenchmark {
+
+  private static final int[] CONCURRENCY = {1, 16, 256};
+
+  private static final byte[] BODY = "{\"kind\":\"youtube#videoListResponse\",\"items\":[]}"
+      .getBytes();
+
+  public static void main(String[] args) throws Exception {
+    final int delay = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int perCaller = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+    // The stub keeps every idle connection a pooled transport leaves open, and sends each response
+    // without waiting for the client to acknowledge its headers.
+    System.setProperty("sun.net.httpserver.maxIdleConnections", "1000");
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    final Set<String> connections = Collections.synchronizedSet(new HashSet<String>());
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    server.createContext("/", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress().toString());
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, BODY.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(BODY);
+        body.close();
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    GenericUrl url =
+        new GenericUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/youtube/v3/videos");
+
+    try {
+      for (int concurrency : CONCURRENCY) {
+        for (boolean pooled : new boolean[] {false, true}) {
+          HttpTransport transport = pooled
+              ? PooledHttpTransport.newTransport(concurrency) : new NetHttpTransport();
+          // One round to warm up, then the measured one.
+          connections.clear();
+          run(transport, url, concurrency, perCaller);
+          int warm = connections.size();
+          long start = System.nanoTime();
+          int requests = run(transport, url, concurrency, perCaller);
+          double seconds = (System.nanoTime() - start) / 1e9;
+          System.out.printf("%-19s %3d concurrent: %7.0f requests/s, %4d connections opened%n",
+              pooled ? "PooledHttpTransport" : "NetHttpTransport", concurrency,
+              requests / seconds, connections.size() - warm);
+          transport.shutdown();
+        }
+      }
+    } finally {
+      server.stop(0);
+      System.exit(0);
+    }
+  }
+
+  /*
+   * Sends perCaller requests from each of concurrency threads, and returns the number sent.
+   */
+  private static int run(HttpTransport transport, final GenericUrl url, int concurrency,
+      final int perCaller) throws Exception {
+    final HttpRequestFactory factory = transport.createRequestFactory();
+    final AtomicInteger sent = new AtomicInteger();
+    ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+    try {
+      Future<?>[] done = new Future<?>[concurrency];
+      for (int i = 0; i < concurrency; i++) {
+        done[i] = callers.submit(new Callable<Void>() {
+          public Void call() throws IOException {
+            for (int j = 0; j < perCaller; j++) {
+              factory.buildGetRequest(url).execute().parseAsString();
+              sent.incrementAndGet();
+            }
+            return null;
+          }
+        });
+      }
+      for (Future<?> future : done) {
+        future.get();
+      }
+    } finally {
+      callers.shutdown();
+    }
+    return sent.get();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a {@link LongHashSet} of encoded video ids with a HashSet<String> of the ids, for
+ * millions of random ids: the heap each takes, printed when the sets are built, and the time to
+ * look up {@value #LOOKUPS} ids, half of them present. {@link #longHashSet} includes encoding each
+ * id, as the samples do, and {@link #longHashSetEncoded} looks up ids encoded beforehand. The
+ * probe strings keep their cached hash codes between calls, which favors the HashSet<String>.
+ *
+ * Not run by "mvn test"; run its main method from the test classpath (see the README).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class VideoIdSetBenchmark {
+
+  /** Number of lookups per benchmark call, so that the call overhead does not dominate. */
+  private static final int LOOKUPS = 1024;
+
+  @Param({"1000000", "10000000"})
+  public int size;
+
+  private LongHashSet longSet;
+
+  private Set<String> stringSet;
+
+  /** Ids looked up: even indexes are in the sets, odd ones are not. */
+  private String[] probes;
+
+  private long[] encodedProbes;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    String[] ids = new String[size];
+    for (int i = 0; i < size; i++) {
+      ids[i] = VideoIdCodec.decode(random.nextLong());
+    }
+    probes = new String[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      probes[i] = i % 2 == 0 ? ids[random.nextInt(size)] : VideoIdCodec.decode(random.nextLong());
+    }
+
+    encodedProbes = new long[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      encodedProbes[i] = VideoIdCodec.encode(probes[i]);
+    }
+
+    long before = usedHeap();
+    longSet = new LongHashSet();
+    for (String id : ids) {
+      longSet.add(VideoIdCodec.encode(id));
+    }
+    long longSetBytes = usedHeap() - before;
+
+    // The strings are counted too, as a HashSet<String> of ids read from responses holds them.
+    before = usedHeap();
+    stringSet = new HashSet<String>();
+    for (String id : ids) {
+      stringSet.add(new String(id));
+    }
+    long stringSetBytes = usedHeap() - before;
+
+    System.out.printf("%n%d ids: LongHashSet %.1f bytes per id, HashSet<String> %.1f bytes per id%n",
+        size, (double) longSetBytes / size, (double) stringSetBytes / size);
+  }
+
+  @Benchmark
+  public int longHashSet() {
+    int found = 0;
+    for (String probe : probes) {
+      if (longSet.contains(VideoIdCodec.encode(probe))) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int longHashSetEncoded() {
+    int found = 0;
+    for (long probe : encodedProbes) {
+      if (longSet.contains(probe)) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int hashSetOfStrings() {
+    int found = 0;
+    for (String probe : probes) {
+      if (stringSet.contains(probe)) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(VideoIdSetBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
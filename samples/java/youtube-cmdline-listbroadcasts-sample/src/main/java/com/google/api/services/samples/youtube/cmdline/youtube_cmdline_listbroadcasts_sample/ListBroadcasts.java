@@ -15,22 +15,15 @@
 package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_listbroadcasts_sample;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.LiveBroadcast;
 import com.google.api.services.youtube.model.LiveBroadcastList;
 import com.google.common.collect.Lists;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -42,51 +35,14 @@ import java.util.List;
 public class ListBroadcasts {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of Youtube object to make all API requests. */
   private static YouTube youtube;
 
-  /**
-   * @param scopes list of scopes needed to run YouTube upload.
-   * @return authorized credential
-   * @throws IOException
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-        JSON_FACTORY, ListBroadcasts.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-cmdline-listbroadcasts-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
-    }
-
-    // Set up file credential store.
-    FileCredentialStore credentialStore = new FileCredentialStore(
-        new File(System.getProperty("user.home"), ".credentials/youtube-api-listbroadcasts.json"),
-        JSON_FACTORY);
-
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-        HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes).setCredentialStore(credentialStore)
-        .build();
-
-    // Build the local server and bind it to port 9000
-    LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-  }
-
   /**
    * List user's broadcasts using OAuth2 for authentication.
    *
@@ -98,8 +54,12 @@ public class ListBroadcasts {
     List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube.readonly");
 
     try {
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(LiveBroadcastList.class);
+
       // Authorization.
-      Credential credential = authorize(scopes);
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-api-listbroadcasts.json");
 
       // YouTube object used to make all API requests.
       youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName(
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.Video;
+import com.google.api.services.youtube.model.VideoStatistics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes each upload as a line of a CSV file (video id, upload date, title) as it streams past.
+ * Values are quoted as described in RFC 4180.
+ *
+ * With details, each line also has the video's view count, like count and duration, which are only
+ * known when the exporter is behind a {@link VideoEnricher}; they are left empty otherwise.
+ */
+public class CsvExporter implements PlaylistItemHandler, Closeable {
+
+  private final Writer writer;
+
+  /** Whether the view count, like count and duration columns are written. */
+  private final boolean details;
+
+  /**
+   * Creates the file, replacing any existing file.
+   *
+   * @param file CSV file to write
+   */
+  public CsvExporter(File file) throws IOException {
+    this(file, false);
+  }
+
+  /**
+   * Creates the file, replacing any existing file.
+   *
+   * @param file CSV file to write
+   * @param details whether to write the view count, like count and duration columns
+   */
+  public CsvExporter(File file, boolean details) throws IOException {
+    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    this.details = details;
+  }
+
+  public void start(Integer totalResults) throws IOException {
+    if (details) {
+      writeLine("videoId", "publishedAt", "title", "viewCount", "likeCount", "duration");
+    } else {
+      writeLine("videoId", "publishedAt", "title");
+    }
+  }
+
+  public void handle(PlaylistItem item, Video video) throws IOException {
+    DateTime publishedAt = item.getSnippet().getPublishedAt();
+    String videoId = item.getContentDetails().getVideoId();
+    String published = publishedAt == null ? null : publishedAt.toStringRfc3339();
+    String title = item.getSnippet().getTitle();
+    if (!details) {
+      writeLine(videoId, published, title);
+      return;
+    }
+    VideoStatistics statistics = video == null ? null : video.getStatistics();
+    writeLine(videoId, published, title,
+        statistics == null ? null : toString(statistics.getViewCount()),
+        statistics == null ? null : toString(statistics.getLikeCount()),
+        video == null || video.getContentDetails() == null
+            ? null : video.getContentDetails().getDuration());
+  }
+
+  public void finish(long count) throws IOException {
+    writer.flush();
+  }
+
+  /**
+   * Closes the file. Must be called whether or not the pipeline succeeded.
+   */
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  private void writeLine(String... values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      writer.write(quote(values[i]));
+    }
+    writer.write("\r\n");
+  }
+
+  private static String toString(Object value) {
+    return value == null ? null : value.toString();
+  }
+
+  private static String quote(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+        && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.Key;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AtomicFile;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.MultiPatternMatcher;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Curation configuration in the config.json format of auto-curate/autocurate.rb: the video lists
+ * to watch, and for each list the actions to take on new videos whose titles match a regular
+ * expression, which are adding the video to a playlist and posting a bulletin about it.
+ *
+ * <pre>
+ * [
+ *   {
+ *     "uploads_list_id": "UU...",
+ *     "actions": [
+ *       { "regex": "unboxing", "playlist_id": "PL..." },
+ *       { "regex": "^live:", "ignore_case": true, "bulletin": "We are live!" }
+ *     ]
+ *   }
+ * ]
+ * </pre>
+ *
+ * An action may have both a playlist id and a bulletin. The regular expressions may match anywhere
+ * in the title and, as in autocurate.rb, match case, unless the action has "ignore_case": true
+ * (which autocurate.rb does not know; a regular expression starting with "(?i)" ignores case in
+ * both). Each list also keeps "last_updated", the publishedAt in seconds of the newest video whose
+ * actions were all taken, which is written back after each run so that only newer videos are
+ * curated next time. Since several videos may be published in the same second, the list also keeps
+ * "last_updated_videos", the ids of the videos curated in that second, so that the others are still
+ * curated; a file last written by autocurate.rb has none, and then every video of that second is
+ * taken as curated, as autocurate.rb does.
+ *
+ * The expressions of a list are compiled into a single {@link MultiPatternMatcher}, so a title is
+ * read once however many actions there are. Expressions without metacharacters, such as
+ * "unboxing", are added as literals, which the matcher finds with an Aho-Corasick automaton. Keys
+ * the format does not know are kept as they are.
+ */
+public class CurationRules {
+
+  private final JsonFactory jsonFactory;
+
+  private final List<WatchedList> lists;
+
+  private CurationRules(JsonFactory jsonFactory, List<WatchedList> lists) {
+    this.jsonFactory = jsonFactory;
+    this.lists = lists;
+  }
+
+  /**
+   * Reads a configuration file.
+   *
+   * @param file configuration file
+   * @param jsonFactory JSON factory used to parse and later write the file
+   * @throws IllegalArgumentException if a list or an action is not valid
+   */
+  public static CurationRules read(File file, JsonFactory jsonFactory) throws IOException {
+    List<WatchedList> lists = new ArrayList<WatchedList>();
+    jsonFactory.createJsonParser(new ByteArrayInputStream(AtomicFile.read(file)))
+        .parseArrayAndClose(lists, WatchedList.class, null);
+    for (int i = 0; i < lists.size(); i++) {
+      try {
+        lists.get(i).compile();
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(file + ": list " + (i + 1) + ": " + e.getMessage(), e);
+      }
+    }
+    return new CurationRules(jsonFactory, lists);
+  }
+
+  /**
+   * Writes the configuration, with the lists' new last_updated, replacing the file atomically.
+   *
+   * @param file configuration file
+   */
+  public void write(File file) throws IOException {
+    AtomicFile.write(file, jsonFactory.toPrettyString(lists).getBytes("UTF-8"));
+  }
+
+  /** Lists to watch, in the order of the file. */
+  public List<WatchedList> getLists() {
+    return lists;
+  }
+
+  /**
+   * A video list to watch and the actions to take on its new videos.
+   */
+  public static class WatchedList extends GenericJson {
+
+    /** Id of the list: uploads ("UU..."), favorites ("FL..."), likes ("LL...") or a playlist. */
+    @Key("uploads_list_id")
+    private String listId;
+
+    /** publishedAt in seconds of the newest video curated, or null before the first run. */
+    @Key("last_updated")
+    private Long lastUpdated;
+
+    /** Videos curated in the second of last_updated, or null if not known. */
+    @Key("last_updated_videos")
+    private Boundary boundary;
+
+    @Key
+    private List<Action> actions;
+
+    private MultiPatternMatcher matcher;
+
+    private final BitSet matches = new BitSet();
+
+    public String getListId() {
+      return listId;
+    }
+
+    /** publishedAt in seconds of the newest video curated, or 0 before the first run. */
+    public long getLastUpdated() {
+      return lastUpdated == null ? 0 : lastUpdated;
+    }
+
+    /**
+     * Returns whether a video has already been curated: it was published before last_updated, or
+     * in the same second and is one of the videos curated in it. If those are not known, all the
+     * videos of that second are.
+     *
+     * @param publishedAt publishedAt of the video in seconds
+     * @param videoId id of the video
+     */
+    public boolean isCurated(long publishedAt, String videoId) {
+      if (lastUpdated == null) {
+        return false;
+      }
+      if (publishedAt != lastUpdated) {
+        return publishedAt < lastUpdated;
+      }
+      return !isBoundaryKnown() || boundary.videoIds.contains(videoId);
+    }
+
+    /**
+     * Records that a video has been curated, moving last_updated to it if it is newer. Videos older
+     * than last_updated are ignored.
+     *
+     * @param publishedAt publishedAt of the video in seconds
+     * @param videoId id of the video
+     */
+    public void setCurated(long publishedAt, String videoId) {
+      if (publishedAt < getLastUpdated()) {
+        return;
+      }
+      if (publishedAt > getLastUpdated() || !isBoundaryKnown()) {
+        lastUpdated = publishedAt;
+        boundary = new Boundary();
+        boundary.publishedAt = publishedAt;
+        boundary.videoIds = new ArrayList<String>();
+      }
+      if (!boundary.videoIds.contains(videoId)) {
+        boundary.videoIds.add(videoId);
+      }
+    }
+
+    /*
+     * Returns whether the videos curated in the second of last_updated are known. They are not
+     * if autocurate.rb, which keeps the key but does not update it, moved last_updated since.
+     */
+    private boolean isBoundaryKnown() {
+      return lastUpdated != null && boundary != null && boundary.publishedAt != null
+          && boundary.publishedAt.longValue() == lastUpdated && boundary.videoIds != null;
+    }
+
+    /**
+     * Returns the actions whose expressions match a title, in the order of the file. Not
+     * thread-safe.
+     *
+     * @param title title of a video
+     */
+    public List<Action> match(String title) {
+      matcher.match(title, matches);
+      List<Action> matched = new ArrayList<Action>();
+      for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+        matched.add(actions.get(id));
+      }
+      return matched;
+    }
+
+    private void compile() {
+      if (listId == null) {
+        throw new IllegalArgumentException("Missing uploads_list_id");
+      }
+      if (actions == null) {
+        actions = new ArrayList<Action>();
+      }
+      matcher = new MultiPatternMatcher();
+      for (int i = 0; i < actions.size(); i++) {
+        Action action = actions.get(i);
+        if (action.regex == null || (action.playlistId == null && action.bulletin == null)) {
+          throw new IllegalArgumentException("Action " + (i + 1)
+              + " needs a regex and a playlist_id or a bulletin: " + action);
+        }
+        try {
+          if (MultiPatternMatcher.isLiteral(action.regex)) {
+            matcher.addLiteral(action.regex, action.ignoresCase());
+          } else {
+            matcher.addRegex(action.regex, action.ignoresCase());
+          }
+        } catch (PatternSyntaxException e) {
+          throw new IllegalArgumentException(e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  /**
+   * The videos curated in the second of a list's last_updated.
+   */
+  public static class Boundary extends GenericJson {
+
+    /** The second, to tell whether last_updated has been moved without this being updated. */
+    @Key("published_at")
+    private Long publishedAt;
+
+    @Key("video_ids")
+    private List<String> videoIds;
+  }
+
+  /**
+   * What to do with a new video whose title matches a regular expression.
+   */
+  public static class Action extends GenericJson {
+
+    @Key
+    private String regex;
+
+    /** Whether the regular expression ignores case; null for false. */
+    @Key("ignore_case")
+    private Boolean ignoreCase;
+
+    /** Playlist to add the video to, or null. */
+    @Key("playlist_id")
+    private String playlistId;
+
+    /** Text of a bulletin to post about the video, or null. */
+    @Key
+    private String bulletin;
+
+    public String getRegex() {
+      return regex;
+    }
+
+    /** Whether the regular expression ignores case. */
+    public boolean ignoresCase() {
+      return ignoreCase != null && ignoreCase;
+    }
+
+    /** Playlist to add the video to, or null. */
+    public String getPlaylistId() {
+      return playlistId;
+    }
+
+    /** Text of a bulletin to post about the video, or null. */
+    public String getBulletin() {
+      return bulletin;
+    }
+  }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.client.googleapis.GoogleHeaders;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AppendLog;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.LongHashSet;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.VideoIdCodec;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.Activity;
+import com.google.api.services.youtube.model.ActivityContentDetails;
+import com.google.api.services.youtube.model.ActivityContentDetails.Bulletin;
+import com.google.api.services.youtube.model.ActivitySnippet;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import com.google.api.services.youtube.model.PlaylistItemSnippet;
+import com.google.api.services.youtube.model.ResourceId;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Takes the actions of {@link CurationRules} on the new videos of each watched list, as
+ * auto-curate/autocurate.rb does: the videos published since the list's last_updated are read,
+ * newest first until the first older one, and then curated oldest first. Videos published in the
+ * same second as last_updated are curated unless the list records them as curated already. Each
+ * title is matched against all the list's expressions in one pass.
+ *
+ * The playlistItems.insert calls of consecutive videos are sent 50 at a time as a single HTTP batch
+ * request. Bulletins are then posted one at a time, in order, for the videos whose inserts all
+ * succeeded. The list's last_updated only moves past a video once every action on it has
+ * succeeded, and curation of the list stops at the first failure, so that the video and the ones
+ * after it are curated again next run. Since a batch may partly fail, each target playlist is read
+ * once per run, and a video already in it is not added again.
+ *
+ * Bulletins cannot be listed back the same way, so each one posted is recorded in an
+ * {@link AppendLog}, one line per bulletin with the video id and the URL-encoded text separated by
+ * a tab, and a bulletin in the log is not posted again. This covers a video whose bulletins were
+ * posted but whose last_updated was not written, because a later action failed or the program
+ * stopped. A bulletin is recorded after the API call returns, so a crash between the two posts it
+ * again on the next run. With a dry run, the actions are printed instead of sent and the log is
+ * read but not written.
+ */
+public class Curator {
+
+  /** Number of calls sent in one batch request. */
+  static final int BATCH_SIZE = 50;
+
+  /** Number of items read per page. */
+  private static final long PAGE_SIZE = 50;
+
+  private final YouTube youtube;
+
+  /** Channel the bulletins are posted on. */
+  private final String channelId;
+
+  private final boolean dryRun;
+
+  private BatchRequest batch;
+
+  /** Encoded ids of the videos in each target playlist, read the first time it is needed. */
+  private final Map<String, LongHashSet> playlistContents = new HashMap<String, LongHashSet>();
+
+  /** Bulletins posted, in this run or recorded in the log, as "videoId text". */
+  private final Set<String> bulletinsPosted = new HashSet<String>();
+
+  /** Log of the bulletins posted, or null for a dry run. */
+  private final AppendLog bulletinLog;
+
+  private long titles;
+
+  private long matched;
+
+  private long alreadyInPlaylist;
+
+  private long playlistInserts;
+
+  private long bulletins;
+
+  private long batches;
+
+  private final List<String> failures = new ArrayList<String>();
+
+  /**
+   * Creates a curator, reading the bulletins already posted from a log, which is created if it does
+   * not exist unless it is a dry run.
+   *
+   * @param youtube YouTube object used to make the calls
+   * @param channelId id of the channel the bulletins are posted on
+   * @param bulletinLogFile log of the bulletins posted
+   * @param dryRun whether to print the actions instead of sending them
+   */
+  public Curator(YouTube youtube, String channelId, File bulletinLogFile, boolean dryRun)
+      throws IOException {
+    this.youtube = youtube;
+    this.channelId = channelId;
+    this.dryRun = dryRun;
+    for (String line : AppendLog.readLines(bulletinLogFile)) {
+      int tab = line.indexOf('\t');
+      if (tab > 0) {
+        bulletinsPosted.add(
+            line.substring(0, tab) + " " + URLDecoder.decode(line.substring(tab + 1), "UTF-8"));
+      }
+    }
+    bulletinLog = dryRun ? null : AppendLog.open(bulletinLogFile);
+  }
+
+  /**
+   * Curates the videos added to a list since its last_updated, and moves last_updated to the
+   * newest video whose actions all succeeded.
+   *
+   * @param list watched list
+   * @return whether every action succeeded
+   */
+  public boolean curate(CurationRules.WatchedList list) throws IOException {
+    List<Pending> queued = new ArrayList<Pending>();
+    for (PlaylistItem item : readNewVideos(list)) {
+      titles++;
+      Pending video = plan(list, item);
+      if (batch != null && batch.size() > 0
+          && batch.size() + video.playlistIds.size() > BATCH_SIZE) {
+        if (!flush(list, queued)) {
+          return false;
+        }
+      }
+      for (String playlistId : video.playlistIds) {
+        addToPlaylist(video, playlistId);
+      }
+      queued.add(video);
+    }
+    return flush(list, queued);
+  }
+
+  /** Number of playlistItems.insert calls made (or printed, for a dry run). */
+  public long getPlaylistInserts() {
+    return playlistInserts;
+  }
+
+  /** Number of activities.insert calls made (or printed, for a dry run). */
+  public long getBulletins() {
+    return bulletins;
+  }
+
+  /** Descriptions of the calls that failed. */
+  public List<String> getFailures() {
+    return failures;
+  }
+
+  /** Closes the bulletin log. */
+  public void close() throws IOException {
+    if (bulletinLog != null) {
+      bulletinLog.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return titles + " new videos: " + matched + " matched, " + playlistInserts
+        + " playlist inserts in " + batches + " batch requests, " + alreadyInPlaylist
+        + " already in the playlist, " + bulletins + " bulletins, " + failures.size() + " failed";
+  }
+
+  /*
+   * Returns the videos the list does not record as curated, oldest first.
+   */
+  private List<PlaylistItem> readNewVideos(CurationRules.WatchedList list) throws IOException {
+    YouTube.PlaylistItems.List request = youtube.playlistItems().list("snippet");
+    request.setPlaylistId(list.getListId());
+    request.setMaxResults(PAGE_SIZE);
+    request.setFields("items(snippet/title,snippet/publishedAt,snippet/resourceId/videoId),"
+        + "nextPageToken");
+    List<PlaylistItem> videos = new ArrayList<PlaylistItem>();
+    LongHashSet seen = new LongHashSet();
+    String nextToken = null;
+    read: do {
+      request.setPageToken(nextToken);
+      PlaylistItemListResponse response = request.execute();
+      if (response.getItems() != null) {
+        for (PlaylistItem item : response.getItems()) {
+          long publishedAt = publishedAt(item);
+          if (publishedAt < list.getLastUpdated()) {
+            break read;
+          }
+          // Videos of the second of last_updated may still be new.
+          String videoId = videoId(item);
+          if (list.isCurated(publishedAt, videoId)) {
+            continue;
+          }
+          // A video published while paginating pushes the others down a position.
+          if (!VideoIdCodec.isEncodable(videoId) || seen.add(VideoIdCodec.encode(videoId))) {
+            videos.add(item);
+          }
+        }
+      }
+      nextToken = response.getNextPageToken();
+    } while (nextToken != null);
+    Collections.reverse(videos);
+    return videos;
+  }
+
+  /*
+   * Returns what to do with a video, which may be nothing.
+   */
+  private Pending plan(CurationRules.WatchedList list, PlaylistItem item) throws IOException {
+    Pending video = new Pending(item);
+    List<CurationRules.Action> actions = list.match(item.getSnippet().getTitle());
+    if (!actions.isEmpty()) {
+      matched++;
+    }
+    String videoId = videoId(item);
+    for (CurationRules.Action action : actions) {
+      String playlistId = action.getPlaylistId();
+      if (playlistId != null && !video.playlistIds.contains(playlistId)) {
+        if (isInPlaylist(playlistId, videoId)) {
+          alreadyInPlaylist++;
+        } else {
+          video.playlistIds.add(playlistId);
+        }
+      }
+      if (action.getBulletin() != null
+          && !bulletinsPosted.contains(videoId + " " + action.getBulletin())) {
+        video.bulletins.add(action.getBulletin());
+      }
+    }
+    return video;
+  }
+
+  private boolean isInPlaylist(String playlistId, String videoId) throws IOException {
+    if (!VideoIdCodec.isEncodable(videoId)) {
+      return false;
+    }
+    LongHashSet contents = playlistContents.get(playlistId);
+    if (contents == null) {
+      contents = readPlaylist(playlistId);
+      playlistContents.put(playlistId, contents);
+    }
+    return contents.contains(VideoIdCodec.encode(videoId));
+  }
+
+  private LongHashSet readPlaylist(String playlistId) throws IOException {
+    YouTube.PlaylistItems.List request = youtube.playlistItems().list("contentDetails");
+    request.setPlaylistId(playlistId);
+    request.setMaxResults(PAGE_SIZE);
+    request.setFields("items/contentDetails/videoId,nextPageToken");
+    LongHashSet contents = new LongHashSet();
+    String nextToken = null;
+    do {
+      request.setPageToken(nextToken);
+      PlaylistItemListResponse response = request.execute();
+      if (response.getItems() != null) {
+        for (PlaylistItem item : response.getItems()) {
+          String videoId = item.getContentDetails().getVideoId();
+          if (VideoIdCodec.isEncodable(videoId)) {
+            contents.add(VideoIdCodec.encode(videoId));
+          }
+        }
+      }
+      nextToken = response.getNextPageToken();
+    } while (nextToken != null);
+    return contents;
+  }
+
+  private void addToPlaylist(final Pending video, final String playlistId) throws IOException {
+    playlistInserts++;
+    final String videoId = videoId(video.item);
+    if (dryRun) {
+      System.out.println(" would add " + videoId + " to playlist " + playlistId);
+      added(playlistId, videoId);
+      return;
+    }
+    ResourceId resourceId = new ResourceId();
+    resourceId.setKind("youtube#video");
+    resourceId.setVideoId(videoId);
+    PlaylistItemSnippet snippet = new PlaylistItemSnippet();
+    snippet.setPlaylistId(playlistId);
+    snippet.setPosition(0L);
+    snippet.setResourceId(resourceId);
+    PlaylistItem playlistItem = new PlaylistItem();
+    playlistItem.setSnippet(snippet);
+
+    if (batch == null) {
+      batch = youtube.batch();
+    }
+    youtube.playlistItems().insert("snippet", playlistItem).setFields("id")
+        .queue(batch, new JsonBatchCallback<PlaylistItem>() {
+          @Override
+          public void onSuccess(PlaylistItem inserted, GoogleHeaders headers) {
+            added(playlistId, videoId);
+          }
+
+          @Override
+          public void onFailure(GoogleJsonError error, GoogleHeaders headers) {
+            video.failed = true;
+            failed("adding " + videoId + " to playlist " + playlistId, error.getCode(),
+                error.getMessage());
+          }
+        });
+  }
+
+  private void added(String playlistId, String videoId) {
+    LongHashSet contents = playlistContents.get(playlistId);
+    if (contents != null && VideoIdCodec.isEncodable(videoId)) {
+      contents.add(VideoIdCodec.encode(videoId));
+    }
+  }
+
+  /*
+   * Sends the queued inserts as one batch request, then posts the bulletins of the queued videos
+   * in order, moving last_updated past each video once all its actions have succeeded. Returns
+   * false, leaving last_updated before it, at the first video with a failed action.
+   */
+  private boolean flush(CurationRules.WatchedList list, List<Pending> queued) throws IOException {
+    if (batch != null && batch.size() > 0) {
+      BatchRequest sending = batch;
+      batch = null;
+      sending.execute();
+      batches++;
+    }
+    try {
+      for (Pending video : queued) {
+        if (video.failed) {
+          return false;
+        }
+        for (String text : video.bulletins) {
+          if (!postBulletin(videoId(video.item), text)) {
+            return false;
+          }
+        }
+        list.setCurated(publishedAt(video.item), videoId(video.item));
+      }
+      return true;
+    } finally {
+      queued.clear();
+    }
+  }
+
+  private boolean postBulletin(String videoId, String text) throws IOException {
+    bulletins++;
+    bulletinsPosted.add(videoId + " " + text);
+    if (dryRun) {
+      System.out.println(" would post a bulletin about " + videoId + ": " + text);
+      return true;
+    }
+    ResourceId resourceId = new ResourceId();
+    resourceId.setKind("youtube#video");
+    resourceId.setVideoId(videoId);
+    Bulletin bulletin = new Bulletin();
+    bulletin.setResourceId(resourceId);
+    ActivityContentDetails contentDetails = new ActivityContentDetails();
+    contentDetails.setBulletin(bulletin);
+    ActivitySnippet snippet = new ActivitySnippet();
+    snippet.setChannelId(channelId);
+    snippet.setDescription(text);
+    Activity activity = new Activity();
+    activity.setSnippet(snippet);
+    activity.setContentDetails(contentDetails);
+
+    try {
+      youtube.activities().insert("contentDetails,snippet", activity).setFields("id").execute();
+      bulletinLog.append(videoId + "\t" + URLEncoder.encode(text, "UTF-8") + "\n");
+      return true;
+    } catch (GoogleJsonResponseException e) {
+      bulletinsPosted.remove(videoId + " " + text);
+      failed("posting a bulletin about " + videoId, e.getStatusCode(), e.getStatusMessage());
+      return false;
+    }
+  }
+
+  private void failed(String description, int code, String message) {
+    String failure = description + ": " + code + " " + message;
+    System.err.println("Failed " + failure);
+    failures.add(failure);
+  }
+
+  private static String videoId(PlaylistItem item) {
+    return item.getSnippet().getResourceId().getVideoId();
+  }
+
+  /*
+   * Returns when a video was added to the list, in seconds, as last_updated stores it.
+   */
+  private static long publishedAt(PlaylistItem item) {
+    return item.getSnippet().getPublishedAt().getValue() / 1000;
+  }
+
+  /**
+   * A video being curated: the playlists it is being added to and the bulletins to post about it.
+   */
+  private static class Pending {
+
+    final PlaylistItem item;
+
+    final Set<String> playlistIds = new LinkedHashSet<String>();
+
+    final Set<String> bulletins = new LinkedHashSet<String>();
+
+    /** Whether a playlist insert failed; set by the batch callbacks. */
+    boolean failed;
+
+    Pending(PlaylistItem item) {
+      this.item = item;
+    }
+  }
+}
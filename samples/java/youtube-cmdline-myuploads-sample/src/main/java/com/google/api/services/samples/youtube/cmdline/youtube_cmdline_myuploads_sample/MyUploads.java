@@ -15,26 +15,21 @@
 package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.io.IOException;
 import java.util.List;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.Channel;
 import com.google.api.services.youtube.model.ChannelListResponse;
 import com.google.api.services.youtube.model.PlaylistItem;
 import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import com.google.api.services.youtube.model.Video;
+import com.google.api.services.youtube.model.VideoListResponse;
 import com.google.common.collect.Lists;
 
 /**
@@ -49,57 +44,34 @@ import com.google.common.collect.Lists;
 public class MyUploads {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
-  /** Global instance of YouTube object to make all API requests. */
-  private static YouTube youtube;
-
-  /**
-   * Authorizes the installed application to access user's protected data.
-   *
-   * @param scopes list of scopes needed to run upload.
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-        JSON_FACTORY, MyUploads.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-cmdline-myuploads-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
-    }
+  /** Global instance of the max number of items returned per page (50 = upper limit). */
+  private static final long MAX_ITEMS_PER_PAGE = 50;
 
-    // Set up file credential store.
-    FileCredentialStore credentialStore = new FileCredentialStore(
-        new File(System.getProperty("user.home"), ".credentials/youtube-api-myuploads.json"),
-        JSON_FACTORY);
+  /** Number of fetched items that may wait to be printed before fetching pauses. */
+  private static final int QUEUE_CAPACITY = 100;
 
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-        HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes).setCredentialStore(credentialStore)
-        .build();
+  /** Maximum number of videos.list calls pending at once with "--details". */
+  private static final int ENRICH_CONCURRENCY = 4;
 
-    // Build the local server and bind it to port 9000
-    LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-  }
+  /** Global instance of YouTube object to make all API requests. */
+  private static YouTube youtube;
 
   /**
    * Authorizes user, runs Youtube.Channnels.List get the playlist id associated with uploaded
    * videos, runs YouTube.PlaylistItems.List to get information on each video, and prints out the
-   * results.
+   * results as they arrive.
    *
-   * @param args command line args (not used).
+   * @param args command line args: "--csv file" also writes the uploads to a CSV file,
+   *        "--sync file" only reads the uploads added since the checkpoint in that file, and
+   *        "--details" also looks up the view count, like count and duration of each upload,
+   *        "--curate file" instead curates the new videos of the lists in that auto-curate
+   *        config.json file (see {@link CurationRules}), and "--dry-run" prints what "--curate"
+   *        would do instead of doing it.
    */
   public static void main(String[] args) {
 
@@ -107,8 +79,13 @@ public class MyUploads {
     List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube");
 
     try {
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(
+          ChannelListResponse.class, PlaylistItemListResponse.class, VideoListResponse.class);
+
       // Authorization.
-      Credential credential = authorize(scopes);
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-api-myuploads.json");
 
       // YouTube object used to make all API requests.
       youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName(
@@ -124,7 +101,7 @@ public class MyUploads {
       /*
        * Limits the results to only the data we needo which makes things more efficient.
        */
-      channelRequest.setFields("items/contentDetails,nextPageToken,pageInfo");
+      channelRequest.setFields("items(id,contentDetails),nextPageToken,pageInfo");
       ChannelListResponse channelResult = channelRequest.execute();
 
       /*
@@ -133,43 +110,79 @@ public class MyUploads {
        */
       List<Channel> channelsList = channelResult.getItems();
 
-      if (channelsList != null) {
+      File configFile = getOption(args, "--curate");
+      if (channelsList != null && configFile != null) {
+        curate(configFile, channelsList.get(0).getId(), hasFlag(args, "--dry-run"));
+      } else if (channelsList != null) {
         // Gets user's default channel id (first channel in list).
         String uploadPlaylistId =
             channelsList.get(0).getContentDetails().getRelatedPlaylists().getUploads();
 
-        // List to store all PlaylistItem items associated with the uploadPlaylistId.
-        List<PlaylistItem> playlistItemList = new ArrayList<PlaylistItem>();
-
         /*
          * Now that we have the playlist id for your uploads, we will request the playlistItems
          * associated with that playlist id, so we can get information on each video uploaded. This
-         * is the template for the list call. We call it multiple times in the do while loop below
-         * (only changing the nextToken to get all the videos).
-         * https://developers.google.com/youtube/v3/docs/playlistitems/list
+         * is the template for the list call; the pipeline calls it once per page, only changing
+         * the page token. https://developers.google.com/youtube/v3/docs/playlistitems/list
          */
         YouTube.PlaylistItems.List playlistItemRequest =
             youtube.playlistItems().list("id,contentDetails,snippet");
         playlistItemRequest.setPlaylistId(uploadPlaylistId);
+        playlistItemRequest.setMaxResults(MAX_ITEMS_PER_PAGE);
 
         // This limits the results to only the data we need and makes things more efficient.
         playlistItemRequest.setFields(
             "items(contentDetails/videoId,snippet/title,snippet/publishedAt),nextPageToken,pageInfo");
 
-        String nextToken = "";
-
-        // Loops over all search page results returned for the uploadPlaylistId.
-        do {
-          playlistItemRequest.setPageToken(nextToken);
-          PlaylistItemListResponse playlistItemResult = playlistItemRequest.execute();
-
-          playlistItemList.addAll(playlistItemResult.getItems());
-
-          nextToken = playlistItemResult.getNextPageToken();
-        } while (nextToken != null);
-
-        // Prints results.
-        prettyPrint(playlistItemList.size(), playlistItemList.iterator());
+        /*
+         * Items are printed (and exported with "--csv file") as each page arrives, rather than
+         * after the whole playlist has been read, so memory use does not grow with the number of
+         * uploads. With "--sync file", only uploads newer than the checkpoint stored in the file
+         * are read, and the checkpoint is moved to the newest upload once they all have been.
+         * With "--details", the printer and the exporter sit behind a VideoEnricher, which looks
+         * up the videos 50 at a time with a few videos.list calls running at once.
+         */
+        UploadsPipeline pipeline = new UploadsPipeline(playlistItemRequest, QUEUE_CAPACITY);
+        File csvFile = getOption(args, "--csv");
+        File syncFile = getOption(args, "--sync");
+        boolean details = hasFlag(args, "--details");
+        VideoEnricher enricher = null;
+        if (details) {
+          enricher = new VideoEnricher(youtube, "statistics,contentDetails", ENRICH_CONCURRENCY);
+          pipeline.addHandler(enricher);
+        }
+        SyncCheckpoint checkpoint = null;
+        CsvExporter exporter = null;
+        try {
+          addHandler(pipeline, enricher, new PrettyPrinter());
+          if (csvFile != null) {
+            exporter = new CsvExporter(csvFile, details);
+            addHandler(pipeline, enricher, exporter);
+          }
+          if (syncFile != null) {
+            checkpoint = SyncCheckpoint.load(syncFile);
+            pipeline.stopAt(checkpoint);
+            // Added last, so the checkpoint only moves once every other handler has finished.
+            pipeline.addHandler(new SyncCheckpoint.Recorder(syncFile));
+          }
+
+          long count = pipeline.run();
+          if (pipeline.getDuplicatesSkipped() > 0) {
+            System.out.println(" " + pipeline.getDuplicatesSkipped()
+                + " items listed twice while paginating were skipped");
+          }
+          if (syncFile != null) {
+            System.out.println(" " + count + " new uploads since "
+                + (checkpoint == null ? "the first sync" : checkpoint) + ", "
+                + pipeline.getPagesFetched() + " pages fetched");
+          }
+        } finally {
+          if (enricher != null) {
+            enricher.close();
+          }
+          if (exporter != null) {
+            exporter.close();
+          }
+        }
       }
 
     } catch (GoogleJsonResponseException e) {
@@ -183,23 +196,94 @@ public class MyUploads {
   }
 
   /*
-   * Method that prints all the PlaylistItems in an Iterator.
-   *
-   * @param size size of list
-   *
-   * @param iterator of Playlist Items from uploaded Playlist
+   * Curates the new videos of each list in an auto-curate config.json file, and writes the lists'
+   * new last_updated back to the file even if curation fails part way, unless it is a dry run. The
+   * bulletins posted are logged next to the file, in config.json.bulletins.
+   */
+  private static void curate(File configFile, String channelId, boolean dryRun)
+      throws IOException {
+    CurationRules rules = CurationRules.read(configFile, JSON_FACTORY);
+    Curator curator =
+        new Curator(youtube, channelId, new File(configFile.getPath() + ".bulletins"), dryRun);
+    try {
+      for (CurationRules.WatchedList list : rules.getLists()) {
+        if (!curator.curate(list)) {
+          System.err.println("Stopped curating " + list.getListId()
+              + " at the first failure; it is retried next run");
+        }
+      }
+    } finally {
+      if (!dryRun) {
+        rules.write(configFile);
+      }
+      curator.close();
+      System.out.println(" " + curator);
+    }
+  }
+
+  /*
+   * Returns the file named after an option such as "--csv", or null if the option is not given.
+   */
+  private static File getOption(String[] args, String option) {
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        return new File(args[i + 1]);
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Returns whether a flag such as "--details" is given.
+   */
+  private static boolean hasFlag(String[] args, String flag) {
+    for (String arg : args) {
+      if (arg.equals(flag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Adds a handler behind the enricher if there is one, or directly to the pipeline otherwise.
+   */
+  private static void addHandler(
+      UploadsPipeline pipeline, VideoEnricher enricher, PlaylistItemHandler handler) {
+    if (enricher != null) {
+      enricher.addHandler(handler);
+    } else {
+      pipeline.addHandler(handler);
+    }
+  }
+
+  /**
+   * Prints each PlaylistItem as it streams past, with its video's details when they were looked
+   * up.
    */
-  private static void prettyPrint(int size, Iterator<PlaylistItem> playlistEntries) {
-    System.out.println("=============================================================");
-    System.out.println("\t\tTotal Videos Uploaded: " + size);
-    System.out.println("=============================================================\n");
+  private static class PrettyPrinter implements PlaylistItemHandler {
 
-    while (playlistEntries.hasNext()) {
-      PlaylistItem playlistItem = playlistEntries.next();
+    public void start(Integer totalResults) {
+      System.out.println("=============================================================");
+      System.out.println("\t\tTotal Videos Uploaded: " + totalResults);
+      System.out.println("=============================================================\n");
+    }
+
+    public void handle(PlaylistItem playlistItem, Video video) {
       System.out.println(" video name  = " + playlistItem.getSnippet().getTitle());
       System.out.println(" video id    = " + playlistItem.getContentDetails().getVideoId());
       System.out.println(" upload date = " + playlistItem.getSnippet().getPublishedAt());
+      if (video != null && video.getStatistics() != null) {
+        System.out.println(" views       = " + video.getStatistics().getViewCount());
+        System.out.println(" likes       = " + video.getStatistics().getLikeCount());
+      }
+      if (video != null && video.getContentDetails() != null) {
+        System.out.println(" duration    = " + video.getContentDetails().getDuration());
+      }
       System.out.println("\n-------------------------------------------------------------\n");
     }
+
+    public void finish(long count) {
+    }
   }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.Video;
+
+import java.io.IOException;
+
+/**
+ * Consumer stage of an {@link UploadsPipeline}, such as a printer or an exporter. Its methods are
+ * all called on the thread that runs the pipeline, in order: start() once, handle() for each item
+ * as it arrives, then finish() once if every page was fetched.
+ */
+public interface PlaylistItemHandler {
+
+  /**
+   * Called before the first item.
+   *
+   * @param totalResults number of items the playlist reports, or null if unknown
+   */
+  void start(Integer totalResults) throws IOException;
+
+  /**
+   * Called for each item, in playlist order. A handler that throws stops the pipeline.
+   *
+   * @param item playlist item; it must not be kept beyond what the handler needs
+   * @param video the item's video with the details fetched by a {@link VideoEnricher}, or null if
+   *        the handler is not behind one (or the video could not be found)
+   */
+  void handle(PlaylistItem item, Video video) throws IOException;
+
+  /**
+   * Called after the last item, only if the whole playlist was read.
+   *
+   * @param count number of items handled
+   */
+  void finish(long count) throws IOException;
+}
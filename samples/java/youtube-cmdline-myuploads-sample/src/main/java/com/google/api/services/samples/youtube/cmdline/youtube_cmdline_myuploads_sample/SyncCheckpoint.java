@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AtomicFile;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.Video;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * The newest upload seen by the last sync: its video id and publishedAt. The uploads playlist
+ * lists the newest upload first, so an incremental sync can stop paginating at the first item that
+ * is this upload or older than it.
+ *
+ * The checkpoint is stored as a small properties file, replaced atomically by {@link AtomicFile}.
+ */
+public class SyncCheckpoint {
+
+  private static final String VIDEO_ID = "videoId";
+
+  private static final String PUBLISHED_AT = "publishedAt";
+
+  private final String videoId;
+
+  private final DateTime publishedAt;
+
+  /**
+   * Creates a checkpoint.
+   *
+   * @param videoId id of the newest upload seen
+   * @param publishedAt when the newest upload seen was published, or null if unknown
+   */
+  public SyncCheckpoint(String videoId, DateTime publishedAt) {
+    this.videoId = videoId;
+    this.publishedAt = publishedAt;
+  }
+
+  /**
+   * Returns the checkpoint for a playlist item.
+   *
+   * @param item playlist item with contentDetails/videoId and snippet/publishedAt
+   */
+  public static SyncCheckpoint of(PlaylistItem item) {
+    return new SyncCheckpoint(
+        item.getContentDetails().getVideoId(), item.getSnippet().getPublishedAt());
+  }
+
+  /**
+   * Reads the checkpoint stored in a file, or returns null if there is none yet.
+   *
+   * @param file checkpoint file
+   */
+  public static SyncCheckpoint load(File file) throws IOException {
+    Properties properties = AtomicFile.readProperties(file);
+    String videoId = properties.getProperty(VIDEO_ID);
+    if (videoId == null) {
+      return null;
+    }
+    String publishedAt = properties.getProperty(PUBLISHED_AT);
+    return new SyncCheckpoint(
+        videoId, publishedAt == null ? null : DateTime.parseRfc3339(publishedAt));
+  }
+
+  /**
+   * Stores the checkpoint, replacing the file atomically.
+   *
+   * @param file checkpoint file
+   */
+  public void save(File file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(VIDEO_ID, videoId);
+    if (publishedAt != null) {
+      properties.setProperty(PUBLISHED_AT, publishedAt.toStringRfc3339());
+    }
+    AtomicFile.writeProperties(file, properties, "Newest upload seen by youtube-cmdline-myuploads");
+  }
+
+  /**
+   * Returns whether a sync reading the playlist newest first has reached this checkpoint: the
+   * item is the checkpointed upload or was published before it.
+   *
+   * @param item playlist item
+   */
+  public boolean isReachedBy(PlaylistItem item) {
+    if (videoId.equals(item.getContentDetails().getVideoId())) {
+      return true;
+    }
+    DateTime itemPublishedAt = item.getSnippet().getPublishedAt();
+    return publishedAt != null && itemPublishedAt != null
+        && itemPublishedAt.getValue() < publishedAt.getValue();
+  }
+
+  public String getVideoId() {
+    return videoId;
+  }
+
+  public DateTime getPublishedAt() {
+    return publishedAt;
+  }
+
+  @Override
+  public String toString() {
+    return videoId + (publishedAt == null ? "" : " (" + publishedAt.toStringRfc3339() + ")");
+  }
+
+  /**
+   * Records the first item of a sync, which is the newest upload, and saves it as the new
+   * checkpoint once the sync has finished. A sync that fails or finds nothing new leaves the
+   * checkpoint file as it was.
+   */
+  public static class Recorder implements PlaylistItemHandler {
+
+    private final File file;
+
+    private SyncCheckpoint newest;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param file checkpoint file to update
+     */
+    public Recorder(File file) {
+      this.file = file;
+    }
+
+    public void start(Integer totalResults) {
+    }
+
+    public void handle(PlaylistItem item, Video video) {
+      if (newest == null) {
+        newest = of(item);
+      }
+    }
+
+    public void finish(long count) throws IOException {
+      if (newest != null) {
+        newest.save(file);
+      }
+    }
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.LongHashSet;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.VideoIdCodec;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Streams the items of a playlist to a chain of {@link PlaylistItemHandler}s while the playlist is
+ * still being fetched. A background thread follows nextPageToken and puts each item into a bounded
+ * queue; the calling thread takes items off the queue and hands each one to every handler in turn.
+ *
+ * When the handlers fall behind, the queue fills up and the fetching thread blocks until there is
+ * room, so no more than the queue capacity plus one page of items is held at any time, however
+ * long the playlist is. The first item is handled as soon as the first page arrives.
+ *
+ * Uploads published while the playlist is being read push the older items down a position, so an
+ * item at the end of one page can come back at the start of the next. Each item is therefore
+ * checked against the videos of the current page and the two before it, and skipped if its video
+ * is among them. Only those pages are remembered, as longs (see {@link VideoIdCodec}), so memory
+ * does not grow with the playlist; a video would only be handled twice if more than a page of
+ * uploads were published while the pipeline read the pages in between.
+ *
+ * For an incremental sync, {@link #stopAt} makes the pipeline stop paginating at the first item
+ * that a checkpoint has already covered, so only the pages with new uploads are fetched.
+ *
+ * The pipeline owns the request it is given: the request's page token is changed as pages are
+ * fetched. It can only be run once.
+ */
+public class UploadsPipeline {
+
+  /** Marks the end of the stream in the queue; compared by identity. */
+  private static final PlaylistItem END_OF_STREAM = new PlaylistItem();
+
+  /** Request used to fetch every page; only the page token changes between pages. */
+  private final YouTube.PlaylistItems.List request;
+
+  /** Items fetched but not handled yet. */
+  private final BlockingQueue<PlaylistItem> queue;
+
+  private final List<PlaylistItemHandler> handlers = new ArrayList<PlaylistItemHandler>();
+
+  /** Total reported by the first page; written before the first item is queued. */
+  private volatile Integer totalResults;
+
+  /** Checkpoint to stop at, or null to read the whole playlist. */
+  private SyncCheckpoint checkpoint;
+
+  /** Number of pages fetched so far. */
+  private volatile int pagesFetched;
+
+  /** Number of pages, the current one included, whose videos new items are checked against. */
+  private static final int DEDUPE_PAGES = 3;
+
+  /**
+   * Encoded ids of the videos queued from each of the last pages, the current one at index
+   * pagesFetched % DEDUPE_PAGES; only used by the fetching thread.
+   */
+  private final LongHashSet[] recentPages = new LongHashSet[DEDUPE_PAGES];
+
+  /** Number of items skipped because their video had already been queued. */
+  private volatile int duplicatesSkipped;
+
+  /**
+   * Creates a pipeline.
+   *
+   * @param request playlist items request; its page token is changed as pages are fetched
+   * @param queueCapacity maximum number of items waiting to be handled
+   */
+  public UploadsPipeline(YouTube.PlaylistItems.List request, int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be at least 1: " + queueCapacity);
+    }
+    this.request = request;
+    this.queue = new ArrayBlockingQueue<PlaylistItem>(queueCapacity);
+    for (int i = 0; i < DEDUPE_PAGES; i++) {
+      recentPages[i] = new LongHashSet();
+    }
+  }
+
+  /**
+   * Adds a handler. Handlers see each item in the order they were added.
+   *
+   * @param handler handler to add
+   */
+  public UploadsPipeline addHandler(PlaylistItemHandler handler) {
+    handlers.add(handler);
+    return this;
+  }
+
+  /**
+   * Stops the pipeline at the first item the checkpoint has reached; that item and everything after
+   * it are neither fetched nor handled. The playlist must list the newest items first, as the
+   * uploads playlist does. Must be called before {@link #run}.
+   *
+   * @param checkpoint checkpoint of the last sync, or null to read the whole playlist
+   */
+  public UploadsPipeline stopAt(SyncCheckpoint checkpoint) {
+    this.checkpoint = checkpoint;
+    return this;
+  }
+
+  /** Number of pages fetched so far. */
+  public int getPagesFetched() {
+    return pagesFetched;
+  }
+
+  /** Number of items skipped so far because their video had already been handled. */
+  public int getDuplicatesSkipped() {
+    return duplicatesSkipped;
+  }
+
+  /**
+   * Fetches the whole playlist and hands every item to the handlers, returning once the last item
+   * has been handled. If fetching a page or a handler fails, the pipeline stops and the error is
+   * thrown; finish() is then not called.
+   *
+   * @return number of items handled
+   */
+  public long run() throws IOException {
+    ExecutorService executor = Executors.newSingleThreadExecutor(new FetcherThreadFactory());
+    try {
+      Future<Void> fetcher = executor.submit(new Callable<Void>() {
+        public Void call() throws IOException, InterruptedException {
+          boolean stopped = false;
+          try {
+            fetchAll();
+          } catch (InterruptedException e) {
+            // Only run() interrupts the fetcher, once it has stopped taking items.
+            stopped = true;
+          } finally {
+            // Wakes the consumer even if fetching failed; it then gets the error from the future.
+            if (!stopped) {
+              queue.put(END_OF_STREAM);
+            }
+          }
+          return null;
+        }
+      });
+
+      long count = 0;
+      PlaylistItem item = take();
+      for (PlaylistItemHandler handler : handlers) {
+        handler.start(totalResults);
+      }
+      while (item != END_OF_STREAM) {
+        for (PlaylistItemHandler handler : handlers) {
+          handler.handle(item, null);
+        }
+        count++;
+        item = take();
+      }
+
+      await(fetcher);
+      for (PlaylistItemHandler handler : handlers) {
+        handler.finish(count);
+      }
+      return count;
+    } finally {
+      // Stops the fetcher if a handler failed, including when it is blocked on a full queue.
+      executor.shutdownNow();
+    }
+  }
+
+  /*
+   * Fetches every page, or every page up to the checkpoint, and queues its items, blocking while
+   * the queue is full.
+   */
+  private void fetchAll() throws IOException, InterruptedException {
+    String nextToken = null;
+    do {
+      request.setPageToken(nextToken);
+      PlaylistItemListResponse response = request.execute();
+      pagesFetched++;
+      recentPages[pagesFetched % DEDUPE_PAGES].clear();
+      if (totalResults == null && response.getPageInfo() != null) {
+        totalResults = response.getPageInfo().getTotalResults();
+      }
+
+      List<PlaylistItem> items = response.getItems();
+      if (items != null) {
+        for (PlaylistItem item : items) {
+          if (checkpoint != null && checkpoint.isReachedBy(item)) {
+            return;
+          }
+          if (isDuplicate(item)) {
+            duplicatesSkipped++;
+            continue;
+          }
+          queue.put(item);
+        }
+      }
+      nextToken = response.getNextPageToken();
+    } while (nextToken != null);
+  }
+
+  /*
+   * Returns whether the item's video has already been queued from this page or one of the pages
+   * before it that are remembered. Items without an encodable video id are never treated as
+   * duplicates.
+   */
+  private boolean isDuplicate(PlaylistItem item) {
+    String videoId =
+        item.getContentDetails() == null ? null : item.getContentDetails().getVideoId();
+    if (!VideoIdCodec.isEncodable(videoId)) {
+      return false;
+    }
+    long encoded = VideoIdCodec.encode(videoId);
+    for (LongHashSet page : recentPages) {
+      if (page.contains(encoded)) {
+        return true;
+      }
+    }
+    recentPages[pagesFetched % DEDUPE_PAGES].add(encoded);
+    return false;
+  }
+
+  private PlaylistItem take() throws IOException {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading the playlist");
+    }
+  }
+
+  /*
+   * Waits for the fetcher to finish and rethrows the exception it failed with, if any.
+   */
+  private static void await(Future<Void> fetcher) throws IOException {
+    try {
+      fetcher.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading the playlist");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Creates the daemon thread pages are fetched on, so an abandoned pipeline does not keep the JVM
+   * alive.
+   */
+  private static class FetcherThreadFactory implements ThreadFactory {
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "playlist-fetcher");
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
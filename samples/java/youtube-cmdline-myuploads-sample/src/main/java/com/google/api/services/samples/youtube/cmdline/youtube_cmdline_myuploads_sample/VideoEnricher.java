@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.Video;
+import com.google.api.services.youtube.model.VideoListResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Pipeline stage that looks up the video behind each playlist item, with details such as
+ * statistics and contentDetails that playlistItems.list does not return, and passes the item and
+ * its video on to the handlers behind it.
+ *
+ * Video ids are grouped into one videos.list call per 50 items (the most the API accepts), and up
+ * to maxInFlight calls run at once on background threads. Items are passed on in the order they
+ * arrived. Once maxInFlight calls are pending, handle() waits for the oldest one before sending
+ * another, so the stage holds at most (maxInFlight + 1) * 50 items.
+ *
+ * Like other handlers, the stage is used from a single thread; close() must be called when the
+ * pipeline is done with it, whether or not it succeeded.
+ */
+public class VideoEnricher implements PlaylistItemHandler {
+
+  /** Maximum number of ids in a single videos.list call. */
+  private static final int MAX_IDS_PER_REQUEST = 50;
+
+  private final YouTube youtube;
+
+  /** Parts requested from videos.list, such as "statistics,contentDetails". */
+  private final String part;
+
+  /** Maximum number of videos.list calls pending at once. */
+  private final int maxInFlight;
+
+  private final ExecutorService executor;
+
+  private final List<PlaylistItemHandler> handlers = new ArrayList<PlaylistItemHandler>();
+
+  /** Items waiting for enough others to fill a call. */
+  private List<PlaylistItem> batch = new ArrayList<PlaylistItem>(MAX_IDS_PER_REQUEST);
+
+  /** Pending calls, oldest first. */
+  private final LinkedList<Future<List<Enriched>>> inFlight =
+      new LinkedList<Future<List<Enriched>>>();
+
+  /** Number of videos.list calls sent. */
+  private long requests;
+
+  /**
+   * Creates an enricher.
+   *
+   * @param youtube YouTube object used to make the videos.list calls
+   * @param part parts to request for each video, such as "statistics,contentDetails"
+   * @param maxInFlight maximum number of videos.list calls pending at once
+   */
+  public VideoEnricher(YouTube youtube, String part, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+    }
+    this.youtube = youtube;
+    this.part = part;
+    this.maxInFlight = maxInFlight;
+    this.executor = Executors.newFixedThreadPool(maxInFlight, new EnricherThreadFactory());
+  }
+
+  /**
+   * Adds a handler that receives each item with its video.
+   *
+   * @param handler handler to add
+   */
+  public VideoEnricher addHandler(PlaylistItemHandler handler) {
+    handlers.add(handler);
+    return this;
+  }
+
+  public void start(Integer totalResults) throws IOException {
+    for (PlaylistItemHandler handler : handlers) {
+      handler.start(totalResults);
+    }
+  }
+
+  public void handle(PlaylistItem item, Video video) throws IOException {
+    batch.add(item);
+    if (batch.size() == MAX_IDS_PER_REQUEST) {
+      send();
+    }
+  }
+
+  /**
+   * Sends the last, partial call, passes on every item still pending and then finishes the
+   * handlers.
+   */
+  public void finish(long count) throws IOException {
+    if (!batch.isEmpty()) {
+      send();
+    }
+    while (!inFlight.isEmpty()) {
+      forward(inFlight.removeFirst());
+    }
+    for (PlaylistItemHandler handler : handlers) {
+      handler.finish(count);
+    }
+  }
+
+  /**
+   * Cancels any calls still pending and stops the background threads.
+   */
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /** Number of videos.list calls sent so far. */
+  public long getRequests() {
+    return requests;
+  }
+
+  /*
+   * Sends a call for the items in the batch, first making room for it if maxInFlight calls are
+   * already pending.
+   */
+  private void send() throws IOException {
+    if (inFlight.size() >= maxInFlight) {
+      forward(inFlight.removeFirst());
+    }
+    final List<PlaylistItem> items = batch;
+    batch = new ArrayList<PlaylistItem>(MAX_IDS_PER_REQUEST);
+    inFlight.addLast(executor.submit(new Callable<List<Enriched>>() {
+      public List<Enriched> call() throws IOException {
+        return fetch(items);
+      }
+    }));
+    requests++;
+  }
+
+  /*
+   * Looks up the videos of up to 50 items with a single videos.list call. Runs on a background
+   * thread.
+   */
+  private List<Enriched> fetch(List<PlaylistItem> items) throws IOException {
+    StringBuilder ids = new StringBuilder();
+    for (PlaylistItem item : items) {
+      if (ids.length() > 0) {
+        ids.append(',');
+      }
+      ids.append(item.getContentDetails().getVideoId());
+    }
+    YouTube.Videos.List request = youtube.videos().list(ids.toString(), part);
+    VideoListResponse response = request.execute();
+
+    // Videos are matched by id: deleted or private videos are missing from the response.
+    Map<String, Video> videos = new HashMap<String, Video>();
+    if (response.getItems() != null) {
+      for (Video video : response.getItems()) {
+        videos.put(video.getId(), video);
+      }
+    }
+    List<Enriched> enriched = new ArrayList<Enriched>(items.size());
+    for (PlaylistItem item : items) {
+      enriched.add(new Enriched(item, videos.get(item.getContentDetails().getVideoId())));
+    }
+    return enriched;
+  }
+
+  /*
+   * Waits for a call and passes its items on to the handlers.
+   */
+  private void forward(Future<List<Enriched>> call) throws IOException {
+    List<Enriched> enriched;
+    try {
+      enriched = call.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while looking up videos");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    for (Enriched entry : enriched) {
+      for (PlaylistItemHandler handler : handlers) {
+        handler.handle(entry.item, entry.video);
+      }
+    }
+  }
+
+  /**
+   * A playlist item and its video, or null if the video was not found.
+   */
+  private static class Enriched {
+
+    final PlaylistItem item;
+
+    final Video video;
+
+    Enriched(PlaylistItem item, Video video) {
+      this.item = item;
+      this.video = video;
+    }
+  }
+
+  /**
+   * Creates the daemon threads the videos.list calls run on.
+   */
+  private static class EnricherThreadFactory implements ThreadFactory {
+
+    private int count;
+
+    public synchronized Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "video-enricher-" + ++count);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AtomicFile;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link CurationRules} on config.json files written by autocurate.rb and by the sample.
+ */
+public class CurationRulesTest {
+
+  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+
+  @Test
+  public void actionsMatchInTheOrderOfTheFile() throws IOException {
+    CurationRules.WatchedList list = read("[{\"uploads_list_id\": \"UU1\", \"actions\": ["
+        + "{\"regex\": \"Unboxing\", \"playlist_id\": \"PL1\"},"
+        + "{\"regex\": \"^live:\", \"ignore_case\": true, \"bulletin\": \"We are live!\"},"
+        + "{\"regex\": \"unboxing\", \"ignore_case\": true, \"playlist_id\": \"PL2\"}]}]");
+
+    assertEquals(playlists("PL1", "PL2"), playlists(list.match("Unboxing a phone")));
+    assertEquals(playlists("PL2"), playlists(list.match("unboxing a phone")));
+    List<CurationRules.Action> live = list.match("LIVE: unboxing");
+    assertEquals(2, live.size());
+    assertEquals("We are live!", live.get(0).getBulletin());
+    assertEquals("PL2", live.get(1).getPlaylistId());
+  }
+
+  @Test
+  public void otherVideosOfTheLastSecondAreStillNew() throws IOException {
+    File file = write("[{\"uploads_list_id\": \"UU1\", \"actions\": []}]");
+    CurationRules rules = CurationRules.read(file, JSON_FACTORY);
+    CurationRules.WatchedList list = rules.getLists().get(0);
+    assertFalse(list.isCurated(0, "a"));
+    list.setCurated(100, "a");
+    list.setCurated(100, "b");
+    rules.write(file);
+
+    list = CurationRules.read(file, JSON_FACTORY).getLists().get(0);
+    file.delete();
+    assertEquals(100, list.getLastUpdated());
+    assertTrue(list.isCurated(99, "c"));
+    assertTrue(list.isCurated(100, "a"));
+    assertTrue(list.isCurated(100, "b"));
+    assertFalse(list.isCurated(100, "c"));
+    assertFalse(list.isCurated(101, "a"));
+
+    list.setCurated(101, "c");
+    assertTrue(list.isCurated(100, "c"));
+    assertTrue(list.isCurated(101, "c"));
+    assertFalse(list.isCurated(101, "d"));
+    list.setCurated(100, "d");
+    assertEquals(101, list.getLastUpdated());
+  }
+
+  @Test
+  public void lastSecondIsTakenAsCuratedWhenItsVideosAreNotKnown() throws IOException {
+    // As written by autocurate.rb, which has no last_updated_videos.
+    CurationRules.WatchedList list =
+        read("[{\"uploads_list_id\": \"UU1\", \"actions\": [], \"last_updated\": 100}]");
+    assertTrue(list.isCurated(100, "a"));
+    assertFalse(list.isCurated(101, "a"));
+
+    // autocurate.rb moved last_updated after the sample wrote the videos of an older second.
+    list = read("[{\"uploads_list_id\": \"UU1\", \"actions\": [], \"last_updated\": 200,"
+        + " \"last_updated_videos\": {\"published_at\": 100, \"video_ids\": [\"a\"]}}]");
+    assertTrue(list.isCurated(200, "b"));
+    list.setCurated(201, "b");
+    assertTrue(list.isCurated(201, "b"));
+    assertFalse(list.isCurated(201, "c"));
+  }
+
+  private static CurationRules.WatchedList read(String json) throws IOException {
+    File file = write(json);
+    try {
+      return CurationRules.read(file, JSON_FACTORY).getLists().get(0);
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static File write(String json) throws IOException {
+    File file = File.createTempFile("config", ".json");
+    AtomicFile.write(file, json.getBytes("UTF-8"));
+    return file;
+  }
+
+  private static List<String> playlists(String... ids) {
+    List<String> playlists = new ArrayList<String>();
+    for (String id : ids) {
+      playlists.add(id);
+    }
+    return playlists;
+  }
+
+  private static List<String> playlists(List<CurationRules.Action> actions) {
+    List<String> playlists = new ArrayList<String>();
+    for (CurationRules.Action action : actions) {
+      playlists.add(action.getPlaylistId());
+    }
+    return playlists;
+  }
+}
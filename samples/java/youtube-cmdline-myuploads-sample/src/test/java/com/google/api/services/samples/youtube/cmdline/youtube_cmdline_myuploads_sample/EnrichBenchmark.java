@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.services.youtube.YouTube;
+
+/**
+ * Measures how fast uploads are enriched against a mock videos.list whose calls each take a fixed
+ * latency plus jitter: with one call per video, as MyUploads would without grouping, and with a
+ * {@link VideoEnricher} sending 50-id calls one, four and eight at a time. Each run checks that
+ * the items came out in order.
+ *
+ * Run with the test classpath, for instance from an IDE, with optional arguments: number of
+ * uploads (2000), least milliseconds per call (20) and most jitter added (20).
+ */
+public class EnrichBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int latency = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int jitter = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+    VideoListStub stub = new VideoListStub(latency, jitter, size);
+    YouTube youtube = stub.youtube();
+    long start = System.nanoTime();
+    for (int i = 0; i < size; i++) {
+      youtube.videos().list("video" + i, "contentDetails").execute();
+    }
+    print("per video", size, stub.getCalls(), System.nanoTime() - start, true);
+
+    for (int maxInFlight : new int[] {1, 4, 8}) {
+      stub = new VideoListStub(latency, jitter, size);
+      VideoEnricherTest.Collector collector = new VideoEnricherTest.Collector();
+      VideoEnricher enricher = new VideoEnricher(stub.youtube(), "contentDetails", maxInFlight);
+      enricher.addHandler(collector);
+      start = System.nanoTime();
+      try {
+        VideoEnricherTest.run(enricher, size);
+      } finally {
+        enricher.close();
+      }
+      boolean inOrder = collector.items.size() == size;
+      for (int i = 0; inOrder && i < size; i++) {
+        inOrder = collector.items.get(i).getId().equals("item" + i);
+      }
+      print("grouped, " + maxInFlight + " at once", size, stub.getCalls(),
+          System.nanoTime() - start, inOrder);
+    }
+  }
+
+  private static void print(String mode, int size, int calls, long nanos, boolean inOrder) {
+    System.out.printf("%-20s %5d calls %7.2f s %8.0f videos/sec %s%n", mode, calls, nanos / 1e9,
+        size * 1e9 / nanos, inOrder ? "" : "WRONG ORDER");
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.Video;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link VideoEnricher}, against a mock videos.list.
+ */
+public class VideoEnricherTest {
+
+  @Test
+  public void itemsArePassedOnInOrderWithTheirVideos() throws Exception {
+    VideoListStub stub = new VideoListStub(5, 20, 9);
+    Collector collector = new Collector();
+    VideoEnricher enricher = new VideoEnricher(stub.youtube(), "contentDetails", 4);
+    enricher.addHandler(collector);
+    try {
+      run(enricher, 1234);
+    } finally {
+      enricher.close();
+    }
+
+    assertEquals(25, stub.getCalls());
+    assertEquals(25, enricher.getRequests());
+    assertEquals(50, stub.getMaxIdsPerCall());
+    assertTrue(stub.getMaxInFlight() > 1);
+    assertTrue(stub.getMaxInFlight() <= 4);
+    assertEquals(Integer.valueOf(1234), collector.totalResults);
+    assertEquals(1234, collector.count);
+    assertEquals(1234, collector.items.size());
+    for (int i = 0; i < 1234; i++) {
+      assertEquals("item" + i, collector.items.get(i).getId());
+      Video video = collector.videos.get(i);
+      if (i % VideoListStub.MISSING_EVERY == 0) {
+        assertNull(video);
+      } else {
+        assertEquals("video" + i, video.getId());
+        assertEquals("PT" + i + "S", video.getContentDetails().getDuration());
+      }
+    }
+  }
+
+  @Test
+  public void lastPartialGroupIsSentOnFinish() throws Exception {
+    VideoListStub stub = new VideoListStub(0, 0, 0);
+    Collector collector = new Collector();
+    VideoEnricher enricher = new VideoEnricher(stub.youtube(), "contentDetails", 2);
+    enricher.addHandler(collector);
+    try {
+      enricher.start(7);
+      for (int i = 1; i <= 7; i++) {
+        enricher.handle(VideoListStub.item(i), null);
+      }
+      assertEquals(0, stub.getCalls());
+      enricher.finish(7);
+    } finally {
+      enricher.close();
+    }
+
+    assertEquals(1, stub.getCalls());
+    assertEquals(7, collector.items.size());
+    assertEquals("video7", collector.videos.get(6).getId());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void atLeastOneCallMustBeAllowed() {
+    new VideoEnricher(new VideoListStub(0, 0, 0).youtube(), "contentDetails", 0);
+  }
+
+  /*
+   * Passes items 0 to size - 1 through the enricher, as the pipeline would.
+   */
+  static void run(VideoEnricher enricher, int size) throws Exception {
+    enricher.start(size);
+    for (int i = 0; i < size; i++) {
+      enricher.handle(VideoListStub.item(i), null);
+    }
+    enricher.finish(size);
+  }
+
+  /**
+   * Handler that keeps what it is given.
+   */
+  static class Collector implements PlaylistItemHandler {
+
+    Integer totalResults;
+
+    final List<PlaylistItem> items = new ArrayList<PlaylistItem>();
+
+    final List<Video> videos = new ArrayList<Video>();
+
+    long count = -1;
+
+    public void start(Integer totalResults) {
+      this.totalResults = totalResults;
+    }
+
+    public void handle(PlaylistItem item, Video video) {
+      items.add(item);
+      videos.add(video);
+    }
+
+    public void finish(long count) {
+      this.count = count;
+    }
+  }
+}
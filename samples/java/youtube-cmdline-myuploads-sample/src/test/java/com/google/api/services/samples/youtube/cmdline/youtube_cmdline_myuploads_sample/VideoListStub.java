@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_myuploads_sample;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemContentDetails;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mock videos.list behind a mock transport. Videos "video0", "video1"... exist, except those whose
+ * number is a multiple of {@link #MISSING_EVERY}, which stand for deleted or private videos; the
+ * duration of video n is "PTnS", so a test can tell which video it was given. Videos are returned
+ * in the reverse of the order they were asked for, and each call takes a fixed latency plus a
+ * random jitter, so that calls sent at once finish out of order.
+ */
+class VideoListStub extends MockHttpTransport {
+
+  /** Videos whose number is a multiple of this are missing from the responses. */
+  static final int MISSING_EVERY = 17;
+
+  private final JsonFactory jsonFactory = new JacksonFactory();
+
+  private final int latencyMillis;
+
+  private final int jitterMillis;
+
+  private final Random random;
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private int maxInFlight;
+
+  private int maxIdsPerCall;
+
+  /**
+   * Creates a stub.
+   *
+   * @param latencyMillis least time each call takes
+   * @param jitterMillis most time added at random to each call
+   * @param seed seed of the jitter
+   */
+  VideoListStub(int latencyMillis, int jitterMillis, long seed) {
+    this.latencyMillis = latencyMillis;
+    this.jitterMillis = jitterMillis;
+    this.random = new Random(seed);
+  }
+
+  /** Returns a YouTube object whose calls go to this stub. */
+  YouTube youtube() {
+    return new YouTube.Builder(this, jsonFactory, null).setApplicationName("video-list-stub")
+        .build();
+  }
+
+  /** Returns playlist items "item0", "item1"... of videos "video0", "video1"... */
+  static PlaylistItem item(int n) {
+    PlaylistItem item = new PlaylistItem();
+    item.setId("item" + n);
+    item.setContentDetails(new PlaylistItemContentDetails().setVideoId("video" + n));
+    return item;
+  }
+
+  /** Number of videos.list calls received. */
+  int getCalls() {
+    return calls.get();
+  }
+
+  /** Largest number of calls that were running at once. */
+  synchronized int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /** Largest number of ids asked for in one call. */
+  synchronized int getMaxIdsPerCall() {
+    return maxIdsPerCall;
+  }
+
+  @Override
+  public LowLevelHttpRequest buildRequest(String method, final String url) {
+    return new MockLowLevelHttpRequest(url) {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        String[] ids = ((String) new GenericUrl(url).getFirst("id")).split(",");
+        calls.incrementAndGet();
+        enter(ids.length);
+        try {
+          pause();
+        } finally {
+          inFlight.decrementAndGet();
+        }
+        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+        response.setContentType("application/json");
+        response.setContent(list(ids));
+        return response;
+      }
+    };
+  }
+
+  private String list(String[] ids) {
+    StringBuilder json = new StringBuilder("{\"items\":[");
+    boolean first = true;
+    for (int i = ids.length - 1; i >= 0; i--) {
+      int n = Integer.parseInt(ids[i].substring("video".length()));
+      if (n % MISSING_EVERY == 0) {
+        continue;
+      }
+      json.append(first ? "" : ",").append("{\"id\":\"").append(ids[i])
+          .append("\",\"contentDetails\":{\"duration\":\"PT").append(n).append("S\"}}");
+      first = false;
+    }
+    return json.append("]}").toString();
+  }
+
+  private synchronized void enter(int ids) {
+    maxInFlight = Math.max(maxInFlight, inFlight.incrementAndGet());
+    maxIdsPerCall = Math.max(maxIdsPerCall, ids);
+  }
+
+  private void pause() throws IOException {
+    long millis;
+    synchronized (random) {
+      millis = latencyMillis + (jitterMillis > 0 ? random.nextInt(jitterMillis + 1) : 0);
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    }
+  }
+}
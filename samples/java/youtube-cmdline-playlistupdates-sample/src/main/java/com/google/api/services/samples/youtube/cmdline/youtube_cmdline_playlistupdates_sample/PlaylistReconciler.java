@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_playlistupdates_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.LongIntHashMap;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.VideoIdCodec;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import com.google.api.services.youtube.model.PlaylistItemSnippet;
+import com.google.api.services.youtube.model.ResourceId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Brings a playlist to a wanted list of videos with as few playlistItems calls as possible,
+ * instead of deleting every item and adding them all again.
+ *
+ * The current items are read (one playlistItems.list call per 50 items) and matched with the
+ * wanted videos: the n-th item of a video is matched with the n-th time the video is wanted.
+ * Items left unmatched are deleted, and wanted videos left unmatched are inserted. Of the matched
+ * items, the ones that already are in the wanted order relative to each other (a longest
+ * increasing subsequence of their wanted positions) stay where they are; only the others are
+ * moved. Each of these is a minimum, so the number of writes is the number of changes, not the
+ * size of the playlist.
+ *
+ * Deletes do not depend on each other, and up to maxInFlight of them are sent at once. Inserts and
+ * moves go to a position in the playlist, which depends on every write before them, so they are
+ * sent one after the other, in wanted order: each one puts its video right after the video wanted
+ * before it. If a call fails, the plan stops there; reconciling again reads the playlist as it was
+ * left and only plans what is still missing.
+ */
+public class PlaylistReconciler {
+
+  /** Maximum number of items in a single playlistItems.list call. */
+  private static final long MAX_ITEMS_PER_PAGE = 50;
+
+  private final YouTube youtube;
+
+  private final ExecutorService executor;
+
+  /** Number of playlistItems calls sent, reads and writes. */
+  private long requests;
+
+  /**
+   * Creates a reconciler.
+   *
+   * @param youtube YouTube object used to make the playlistItems calls
+   * @param maxInFlight maximum number of deletes sent at once
+   */
+  public PlaylistReconciler(YouTube youtube, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+    }
+    this.youtube = youtube;
+    this.executor = Executors.newFixedThreadPool(maxInFlight, new ReconcilerThreadFactory());
+  }
+
+  /**
+   * Reads the playlist, plans the changes that give it the wanted videos and makes them.
+   *
+   * @param playlistId id of the playlist
+   * @param videoIds ids of the videos the playlist should hold, in order
+   * @return the changes made
+   */
+  public Plan reconcile(String playlistId, List<String> videoIds) throws IOException {
+    Plan plan = plan(playlistId, readItems(playlistId), videoIds);
+    apply(plan);
+    return plan;
+  }
+
+  /**
+   * Reads every item of a playlist, in playlist order, with the id of its video.
+   *
+   * @param playlistId id of the playlist
+   */
+  public List<PlaylistItem> readItems(String playlistId) throws IOException {
+    YouTube.PlaylistItems.List request = youtube.playlistItems().list("snippet");
+    request.setPlaylistId(playlistId);
+    request.setMaxResults(MAX_ITEMS_PER_PAGE);
+    request.setFields("items(id,snippet(playlistId,position,resourceId)),nextPageToken");
+    List<PlaylistItem> items = new ArrayList<PlaylistItem>();
+    String nextToken = null;
+    do {
+      request.setPageToken(nextToken);
+      PlaylistItemListResponse response = request.execute();
+      requests++;
+      if (response.getItems() != null) {
+        items.addAll(response.getItems());
+      }
+      nextToken = response.getNextPageToken();
+    } while (nextToken != null);
+    return items;
+  }
+
+  /**
+   * Plans the changes that turn the items of a playlist into the wanted videos. Nothing is sent.
+   *
+   * @param playlistId id of the playlist
+   * @param items current items of the playlist, in playlist order
+   * @param videoIds ids of the videos the playlist should hold, in order
+   */
+  public static Plan plan(String playlistId, List<PlaylistItem> items, List<String> videoIds) {
+    WantedPositions wanted = new WantedPositions(videoIds);
+
+    // Matches items with wanted positions; the rest of the items are deleted.
+    Plan plan = new Plan();
+    PlaylistItem[] matched = new PlaylistItem[videoIds.size()];
+    List<Integer> kept = new ArrayList<Integer>();
+    for (PlaylistItem item : items) {
+      int position = wanted.take(item.getSnippet().getResourceId().getVideoId());
+      if (position < 0) {
+        plan.deletes.add(new Change(item, -1));
+      } else {
+        matched[position] = item;
+        kept.add(position);
+      }
+    }
+
+    boolean[] staying = new boolean[videoIds.size()];
+    for (int index : longestIncreasingSubsequence(kept)) {
+      staying[kept.get(index)] = true;
+    }
+
+    /*
+     * The playlist as it is once the deletes are done, as wanted positions. Each video that is not
+     * staying is put right after the video wanted before it, in wanted order. The staying items
+     * are in order already, so once every other item has followed its predecessor, the playlist
+     * is in wanted order; the model gives the position each write has to use.
+     */
+    List<Integer> model = new ArrayList<Integer>(kept);
+    for (int i = 0; i < videoIds.size(); i++) {
+      if (staying[i]) {
+        continue;
+      }
+      int from = -1;
+      if (matched[i] != null) {
+        from = model.indexOf(i);
+        model.remove(from);
+      }
+      int to = i == 0 ? 0 : model.indexOf(i - 1) + 1;
+      model.add(to, i);
+      if (matched[i] == null) {
+        plan.writes.add(new Change(newItem(playlistId, videoIds.get(i)), to));
+      } else if (from != to) {
+        plan.writes.add(new Change(matched[i], to));
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * Makes the changes of a plan: first the deletes, up to maxInFlight at once, then the inserts
+   * and moves, in order.
+   *
+   * @param plan plan made for the playlist as it is now
+   */
+  public void apply(Plan plan) throws IOException {
+    List<Future<Void>> deletes = new ArrayList<Future<Void>>(plan.deletes.size());
+    for (final Change change : plan.deletes) {
+      deletes.add(executor.submit(new Callable<Void>() {
+        public Void call() throws IOException {
+          youtube.playlistItems().delete(change.getItem().getId()).execute();
+          return null;
+        }
+      }));
+    }
+    try {
+      for (Future<Void> delete : deletes) {
+        await(delete);
+      }
+    } finally {
+      requests += deletes.size();
+      for (Future<Void> delete : deletes) {
+        delete.cancel(true);
+      }
+    }
+
+    for (Change change : plan.writes) {
+      PlaylistItem item = change.getItem();
+      item.getSnippet().setPosition((long) change.getPosition());
+      if (item.getId() == null) {
+        youtube.playlistItems().insert("snippet", item).execute();
+      } else {
+        youtube.playlistItems().update("snippet", item).execute();
+      }
+      requests++;
+    }
+  }
+
+  /**
+   * Stops the background threads.
+   */
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /** Number of playlistItems calls sent so far, reads and writes. */
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Returns the indices of a longest strictly increasing subsequence of a sequence, in increasing
+   * order. Runs in O(n log n): for each length, it keeps the index of the smallest value that ends
+   * an increasing subsequence of that length, and the predecessor of each element.
+   *
+   * @param sequence sequence of values
+   */
+  static List<Integer> longestIncreasingSubsequence(List<Integer> sequence) {
+    int n = sequence.size();
+    int[] tails = new int[n];
+    int[] previous = new int[n];
+    int length = 0;
+    for (int i = 0; i < n; i++) {
+      int value = sequence.get(i);
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (sequence.get(tails[middle]) < value) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      previous[i] = low > 0 ? tails[low - 1] : -1;
+      tails[low] = i;
+      if (low == length) {
+        length++;
+      }
+    }
+    List<Integer> indices = new ArrayList<Integer>(length);
+    for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+      indices.add(i);
+    }
+    Collections.reverse(indices);
+    return indices;
+  }
+
+  private static PlaylistItem newItem(String playlistId, String videoId) {
+    ResourceId resourceId = new ResourceId();
+    resourceId.setKind("youtube#video");
+    resourceId.setVideoId(videoId);
+    PlaylistItemSnippet snippet = new PlaylistItemSnippet();
+    snippet.setPlaylistId(playlistId);
+    snippet.setResourceId(resourceId);
+    PlaylistItem item = new PlaylistItem();
+    item.setSnippet(snippet);
+    return item;
+  }
+
+  private static void await(Future<Void> call) throws IOException {
+    try {
+      call.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while deleting playlist items");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Changes that bring a playlist to the wanted videos.
+   */
+  public static class Plan {
+
+    final List<Change> deletes = new ArrayList<Change>();
+
+    final List<Change> writes = new ArrayList<Change>();
+
+    /** Items to delete. */
+    public List<Change> getDeletes() {
+      return deletes;
+    }
+
+    /** Inserts and moves, in the order they have to be made. */
+    public List<Change> getWrites() {
+      return writes;
+    }
+
+    /** Number of items to insert. */
+    public int getInserts() {
+      int inserts = 0;
+      for (Change change : writes) {
+        if (change.getItem().getId() == null) {
+          inserts++;
+        }
+      }
+      return inserts;
+    }
+
+    /** Number of items to move. */
+    public int getMoves() {
+      return writes.size() - getInserts();
+    }
+
+    /** Number of playlistItems calls the plan takes. */
+    public int size() {
+      return deletes.size() + writes.size();
+    }
+
+    @Override
+    public String toString() {
+      return deletes.size() + " deletes, " + getInserts() + " inserts, " + getMoves() + " moves";
+    }
+  }
+
+  /**
+   * One write of a plan: an item to delete, an item to insert (which has no id yet) or an item to
+   * move, with the position it goes to.
+   */
+  public static class Change {
+
+    private final PlaylistItem item;
+
+    private final int position;
+
+    Change(PlaylistItem item, int position) {
+      this.item = item;
+      this.position = position;
+    }
+
+    public PlaylistItem getItem() {
+      return item;
+    }
+
+    /** Position the item goes to, or -1 for a delete. */
+    public int getPosition() {
+      return position;
+    }
+  }
+
+  /**
+   * Wanted positions of each video, first to last, chained through an array so that a playlist of
+   * thousands of videos takes no boxed positions. Videos are keyed by their encoded id (see
+   * {@link VideoIdCodec}); the rare id that cannot be encoded is kept as a string.
+   */
+  private static class WantedPositions {
+
+    /** First wanted position not matched yet, by encoded video id, or -1 once all are. */
+    private final LongIntHashMap first;
+
+    private final Map<String, Integer> firstOfOtherIds = new HashMap<String, Integer>();
+
+    /** Next wanted position of the same video, or -1. */
+    private final int[] next;
+
+    WantedPositions(List<String> videoIds) {
+      first = new LongIntHashMap(videoIds.size());
+      next = new int[videoIds.size()];
+      for (int i = videoIds.size() - 1; i >= 0; i--) {
+        next[i] = setFirst(videoIds.get(i), i);
+      }
+    }
+
+    /**
+     * Returns the first wanted position of a video that no item was matched with yet, and matches
+     * it; or -1 if there is none.
+     */
+    int take(String videoId) {
+      int position = getFirst(videoId);
+      if (position >= 0) {
+        setFirst(videoId, next[position]);
+      }
+      return position;
+    }
+
+    private int getFirst(String videoId) {
+      if (VideoIdCodec.isEncodable(videoId)) {
+        return first.get(VideoIdCodec.encode(videoId), -1);
+      }
+      Integer position = firstOfOtherIds.get(videoId);
+      return position == null ? -1 : position;
+    }
+
+    /*
+     * Sets the first wanted position of a video and returns the one it had, or -1.
+     */
+    private int setFirst(String videoId, int position) {
+      int previous = getFirst(videoId);
+      if (VideoIdCodec.isEncodable(videoId)) {
+        first.put(VideoIdCodec.encode(videoId), position);
+      } else {
+        firstOfOtherIds.put(videoId, position);
+      }
+      return previous;
+    }
+  }
+
+  /**
+   * Creates the daemon threads the deletes run on.
+   */
+  private static class ReconcilerThreadFactory implements ThreadFactory {
+
+    private int count;
+
+    public synchronized Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "playlist-reconciler-" + ++count);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_playlistupdates_sample;
+
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemSnippet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Puts the items of a playlist in a new order, such as a shuffle, with as few playlistItems.update
+ * calls as possible, several of them running at once where their order does not matter.
+ *
+ * The items that already are in the new order relative to each other (a longest increasing
+ * subsequence of their new positions) stay where they are, and each other item is moved once,
+ * which is the fewest moves any reorder can take. Items are moved in their new order, each one
+ * into the gap its neighbours in the new order leave for it, as close to where it is as the gap
+ * allows, which keeps each move short.
+ *
+ * Moving an item from one position to another shifts only the items between the two, so two moves
+ * whose ranges of positions do not overlap give the same playlist whichever is made first. The
+ * moves are run as a pipeline: a move is sent once every earlier move whose range overlaps its own
+ * has completed, with up to maxInFlight moves pending at once, chosen from a window of the next
+ * moves. Positions are those of the plan, so the order holds however the server interleaves the
+ * calls. If a call fails, the moves not sent yet are dropped; reordering again from the playlist
+ * as it was left finishes the job.
+ */
+public class PlaylistReorderer {
+
+  /** Number of upcoming moves, per move pending, considered for sending at once. */
+  private static final int WINDOW_PER_IN_FLIGHT = 8;
+
+  private final YouTube youtube;
+
+  private final int maxInFlight;
+
+  private final ExecutorService executor;
+
+  /** Number of playlistItems.update calls sent. */
+  private long requests;
+
+  /** Most moves pending at once. */
+  private int maxPending;
+
+  /**
+   * Creates a reorderer.
+   *
+   * @param youtube YouTube object used to make the playlistItems.update calls
+   * @param maxInFlight maximum number of moves pending at once
+   */
+  public PlaylistReorderer(YouTube youtube, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+    }
+    this.youtube = youtube;
+    this.maxInFlight = maxInFlight;
+    this.executor = Executors.newFixedThreadPool(maxInFlight, new ReordererThreadFactory());
+  }
+
+  /**
+   * Moves the items of a playlist into a new order.
+   *
+   * @param items items of the playlist, in playlist order, as read by
+   *        {@link PlaylistReconciler#readItems}
+   * @param order the same items, in the new order
+   * @return the number of items moved
+   */
+  public int reorder(List<PlaylistItem> items, List<PlaylistItem> order) throws IOException {
+    List<Move> moves = plan(items, order);
+    run(moves);
+    return moves.size();
+  }
+
+  /**
+   * Plans the moves that put the items of a playlist into a new order, in the order they are to be
+   * made. Nothing is sent.
+   *
+   * @param items items of the playlist, in playlist order
+   * @param order the same items, in the new order
+   */
+  public static List<Move> plan(List<PlaylistItem> items, List<PlaylistItem> order) {
+    int n = items.size();
+    Map<String, Integer> wanted = new HashMap<String, Integer>();
+    for (int i = 0; i < order.size(); i++) {
+      wanted.put(order.get(i).getId(), i);
+    }
+    if (order.size() != n || wanted.size() != n) {
+      throw new IllegalArgumentException("The new order must hold each item exactly once");
+    }
+
+    // The playlist as new positions, and the new positions of the items that stay.
+    List<Integer> model = new ArrayList<Integer>(n);
+    for (PlaylistItem item : items) {
+      Integer position = wanted.get(item.getId());
+      if (position == null) {
+        throw new IllegalArgumentException("Item " + item.getId() + " is not in the new order");
+      }
+      model.add(position);
+    }
+    TreeSet<Integer> placed = new TreeSet<Integer>();
+    for (int index : PlaylistReconciler.longestIncreasingSubsequence(model)) {
+      placed.add(model.get(index));
+    }
+
+    /*
+     * The placed items are in the new order relative to each other. Each other item, in new
+     * order, goes between the placed items just before and after it in the new order, and is then
+     * placed, so that once all are placed the playlist is in the new order.
+     */
+    List<Move> moves = new ArrayList<Move>(n - placed.size());
+    for (int i = 0; i < n; i++) {
+      if (placed.contains(i)) {
+        continue;
+      }
+      int from = model.indexOf(i);
+      model.remove(from);
+      Integer before = placed.lower(i);
+      Integer after = placed.higher(i);
+      int low = before == null ? 0 : model.indexOf(before) + 1;
+      int high = after == null ? model.size() : model.indexOf(after);
+      int to = Math.max(low, Math.min(from, high));
+      model.add(to, i);
+      placed.add(i);
+      if (to != from) {
+        moves.add(new Move(order.get(i), from, to));
+      }
+    }
+    return moves;
+  }
+
+  /**
+   * Makes planned moves, each once every earlier move it depends on has completed.
+   *
+   * @param moves moves, in the order they were planned
+   */
+  public void run(List<Move> moves) throws IOException {
+    CompletionService<Move> completion = new ExecutorCompletionService<Move>(executor);
+    // Moves not completed yet, in plan order, whether sent or not.
+    LinkedList<Move> pending = new LinkedList<Move>(moves);
+    int inFlight = 0;
+    int window = WINDOW_PER_IN_FLIGHT * maxInFlight;
+    try {
+      while (!pending.isEmpty()) {
+        int scanned = 0;
+        for (Iterator<Move> it = pending.iterator();
+            it.hasNext() && inFlight < maxInFlight && scanned < window; scanned++) {
+          final Move move = it.next();
+          if (!move.sent && !dependsOnEarlier(pending, move)) {
+            move.sent = true;
+            inFlight++;
+            completion.submit(new Callable<Move>() {
+              public Move call() throws IOException {
+                send(move);
+                return move;
+              }
+            });
+          }
+        }
+        maxPending = Math.max(maxPending, inFlight);
+        pending.remove(await(completion.take()));
+        inFlight--;
+        requests++;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while moving playlist items");
+    }
+  }
+
+  /**
+   * Stops the background threads.
+   */
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /** Number of playlistItems.update calls sent so far. */
+  public long getRequests() {
+    return requests;
+  }
+
+  /** Most moves that were pending at once. */
+  public int getMaxPending() {
+    return maxPending;
+  }
+
+  /*
+   * Returns whether a move overlaps any move before it that has not completed.
+   */
+  private static boolean dependsOnEarlier(List<Move> pending, Move move) {
+    for (Move earlier : pending) {
+      if (earlier == move) {
+        return false;
+      }
+      if (earlier.overlaps(move)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Sends one move. Runs on a background thread.
+   */
+  private void send(Move move) throws IOException {
+    PlaylistItemSnippet snippet = new PlaylistItemSnippet();
+    snippet.setPlaylistId(move.getItem().getSnippet().getPlaylistId());
+    snippet.setResourceId(move.getItem().getSnippet().getResourceId());
+    snippet.setPosition((long) move.getTo());
+    PlaylistItem update = new PlaylistItem();
+    update.setId(move.getItem().getId());
+    update.setSnippet(snippet);
+    youtube.playlistItems().update("snippet", update).execute();
+  }
+
+  private static Move await(Future<Move> call) throws IOException {
+    try {
+      return call.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while moving playlist items");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Move of an item from one position to another, as planned: each position counts the moves
+   * planned before it as made.
+   */
+  public static class Move {
+
+    private final PlaylistItem item;
+
+    private final int from;
+
+    private final int to;
+
+    /** Whether the move was sent. Only used by the thread running the moves. */
+    boolean sent;
+
+    Move(PlaylistItem item, int from, int to) {
+      this.item = item;
+      this.from = from;
+      this.to = to;
+    }
+
+    public PlaylistItem getItem() {
+      return item;
+    }
+
+    public int getFrom() {
+      return from;
+    }
+
+    public int getTo() {
+      return to;
+    }
+
+    /** Returns whether the positions this move shifts overlap those another one shifts. */
+    boolean overlaps(Move other) {
+      return Math.min(from, to) <= Math.max(other.from, other.to)
+          && Math.min(other.from, other.to) <= Math.max(from, to);
+    }
+
+    @Override
+    public String toString() {
+      return item.getId() + ": " + from + " -> " + to;
+    }
+  }
+
+  /**
+   * Creates the daemon threads the moves run on.
+   */
+  private static class ReordererThreadFactory implements ThreadFactory {
+
+    private int count;
+
+    public synchronized Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "playlist-reorderer-" + ++count);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -14,22 +14,21 @@
 
 package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_playlistupdates_sample;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.Playlist;
 import com.google.api.services.youtube.model.PlaylistItem;
@@ -48,10 +47,10 @@ import com.google.common.collect.Lists;
 public class PlaylistUpdates {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of YouTube object to make all API requests. */
   private static YouTube youtube;
@@ -61,54 +60,21 @@ public class PlaylistUpdates {
    */
   private static String VIDEO_ID = "SZj6rAYkYOg";
 
-  /**
-   * Authorizes the installed application to access user's protected data.
-   *
-   * @param scopes list of scopes needed to run upload.
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets =
-        GoogleClientSecrets.load(
-            JSON_FACTORY,
-            PlaylistUpdates.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-cmdline-playlistupdates-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
-    }
-
-    // Set up file credential store.
-    FileCredentialStore credentialStore =
-        new FileCredentialStore(
-            new File(System.getProperty("user.home"),
-                     ".credentials/youtube-api-playlistupdates.json"),
-                     JSON_FACTORY);
-
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = 
-        new GoogleAuthorizationCodeFlow.Builder(HTTP_TRANSPORT, 
-                                                JSON_FACTORY,
-                                                clientSecrets,
-                                                scopes)
-      .setCredentialStore(credentialStore).build();
-
-    // Build the local server and bind it to port 9000
-    LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-  }
+  /** Default number of deletes sent at once when syncing a playlist. */
+  private static final int DEFAULT_PARALLEL_DELETES = 4;
 
   /**
    * Authorizes user, creates a playlist, adds a playlistitem with a video to that new playlist.
    *
-   * @param args command line args (not used).
+   * With "--videos file", syncs a playlist with the videos whose ids are listed in the file
+   * instead (one per line, in order; blank lines and lines starting with "#" are ignored): the
+   * playlist given with "--playlist id", or a new one. Only the items that differ are deleted,
+   * inserted or moved, with "--parallel n" deletes sent at once (4 by default).
+   *
+   * With "--playlist id --shuffle", shuffles the items of the playlist instead, moving as few of
+   * them as possible, with up to "--parallel n" moves sent at once.
+   *
+   * @param args command line args.
    */
   public static void main( String[] args ) {
 
@@ -116,14 +82,37 @@ public class PlaylistUpdates {
     List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube");
 
     try {
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(Playlist.class, PlaylistItem.class);
+
       // Authorization.
-      Credential credential = authorize(scopes);
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-api-playlistupdates.json");
 
       // YouTube object used to make all API requests.
       youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
         .setApplicationName("youtube-cmdline-playlistupdates-sample")
         .build();
 
+      if (hasFlag(args, "--shuffle")) {
+        String parallel = getOption(args, "--parallel");
+        shufflePlaylist(getOption(args, "--playlist"),
+            parallel == null ? DEFAULT_PARALLEL_DELETES : Integer.parseInt(parallel));
+        return;
+      }
+
+      String videosFile = getOption(args, "--videos");
+      if (videosFile != null) {
+        String playlistId = getOption(args, "--playlist");
+        if (playlistId == null) {
+          playlistId = insertPlaylist();
+        }
+        String parallel = getOption(args, "--parallel");
+        syncPlaylist(playlistId, readIds(new File(videosFile)),
+            parallel == null ? DEFAULT_PARALLEL_DELETES : Integer.parseInt(parallel));
+        return;
+      }
+
       // Creates a new playlist in the authorized user's channel.
       String playlistId = insertPlaylist();
 
@@ -142,6 +131,99 @@ public class PlaylistUpdates {
     }
   }
 
+  /**
+   * Makes the items of a playlist the given videos, in order, changing only the items that differ.
+   *
+   * @param playlistId id of the playlist
+   * @param videoIds ids of the videos the playlist should hold, in order
+   * @param parallelDeletes number of deletes sent at once
+   */
+  private static void syncPlaylist(String playlistId, List<String> videoIds, int parallelDeletes)
+      throws IOException {
+    PlaylistReconciler reconciler = new PlaylistReconciler(youtube, parallelDeletes);
+    try {
+      long start = System.currentTimeMillis();
+      PlaylistReconciler.Plan plan = reconciler.reconcile(playlistId, videoIds);
+      System.out.println("Synced playlist " + playlistId + " with " + videoIds.size()
+          + " videos: " + plan + ", " + reconciler.getRequests() + " calls in "
+          + (System.currentTimeMillis() - start) + " ms");
+    } finally {
+      reconciler.close();
+    }
+  }
+
+  /**
+   * Puts the items of a playlist in a random order, moving as few of them as possible.
+   *
+   * @param playlistId id of the playlist
+   * @param parallelMoves maximum number of moves sent at once
+   */
+  private static void shufflePlaylist(String playlistId, int parallelMoves) throws IOException {
+    if (playlistId == null) {
+      throw new IllegalArgumentException("--shuffle needs --playlist id");
+    }
+    PlaylistReconciler reader = new PlaylistReconciler(youtube, 1);
+    PlaylistReorderer reorderer = new PlaylistReorderer(youtube, parallelMoves);
+    try {
+      List<PlaylistItem> items = reader.readItems(playlistId);
+      List<PlaylistItem> order = new ArrayList<PlaylistItem>(items);
+      Collections.shuffle(order);
+      long start = System.currentTimeMillis();
+      int moves = reorderer.reorder(items, order);
+      System.out.println("Shuffled " + items.size() + " items of playlist " + playlistId + ": "
+          + moves + " moves in " + (System.currentTimeMillis() - start) + " ms, up to "
+          + reorderer.getMaxPending() + " at once");
+    } finally {
+      reader.close();
+      reorderer.close();
+    }
+  }
+
+  /*
+   * Reads the ids listed in a file, one per line, skipping blank lines and comments.
+   */
+  private static List<String> readIds(File file) throws IOException {
+    List<String> videoIds = new ArrayList<String>();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0 && !line.startsWith("#")) {
+          videoIds.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return videoIds;
+  }
+
+  /*
+   * Returns the value given after an option such as "--videos", or null if it is not given.
+   */
+  private static String getOption(String[] args, String option) {
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        return args[i + 1];
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Returns whether a flag such as "--shuffle" is given.
+   */
+  private static boolean hasFlag(String[] args, String flag) {
+    for (String arg : args) {
+      if (arg.equals(flag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Creates YouTube Playlist and adds it to the authorized account.
    */
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_playlistupdates_sample;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.VideoIdCodec;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemSnippet;
+import com.google.api.services.youtube.model.ResourceId;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link PlaylistReconciler#plan}, applied to a list standing in for the playlist.
+ */
+public class PlaylistReconcilerTest {
+
+  @Test
+  public void repeatedVideosAreMatchedInOrder() {
+    List<PlaylistItem> items = items("a", "b", "a", "c", "a");
+    List<String> wanted = Arrays.asList("a", "a", "d", "b");
+    PlaylistReconciler.Plan plan = PlaylistReconciler.plan("PL", items, wanted);
+
+    assertEquals(wanted, apply(items, plan));
+    // The third "a" and "c" go; "d" is inserted.
+    assertEquals(2, plan.getDeletes().size());
+    assertEquals(1, plan.getInserts());
+  }
+
+  @Test
+  public void randomPlaylistsReachTheWantedVideos() {
+    Random random = new Random(10);
+    // Real video ids, which are keyed as longs, and a few that cannot be encoded.
+    String[] videos = new String[12];
+    for (int i = 0; i < videos.length; i++) {
+      videos[i] = i < 9 ? VideoIdCodec.decode(random.nextLong()) : "video" + i;
+    }
+    for (int round = 0; round < 200; round++) {
+      List<PlaylistItem> items = items(randomVideos(random, videos));
+      List<String> wanted = Arrays.asList(randomVideos(random, videos));
+      PlaylistReconciler.Plan plan = PlaylistReconciler.plan("PL", items, wanted);
+
+      assertEquals(wanted, apply(items, plan));
+      assertEquals(items.size() - plan.getDeletes().size(),
+          wanted.size() - plan.getInserts());
+      assertEquals(items.size() + wanted.size() - 2 * common(items, wanted),
+          plan.getDeletes().size() + plan.getInserts());
+    }
+  }
+
+  private static String[] randomVideos(Random random, String[] videos) {
+    String[] picked = new String[random.nextInt(30)];
+    for (int i = 0; i < picked.length; i++) {
+      picked[i] = videos[random.nextInt(videos.length)];
+    }
+    return picked;
+  }
+
+  /*
+   * Returns the number of items that can be kept: for each video, the times it is both in the
+   * playlist and wanted.
+   */
+  private static int common(List<PlaylistItem> items, List<String> wanted) {
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (String videoId : wanted) {
+      Integer count = counts.get(videoId);
+      counts.put(videoId, count == null ? 1 : count + 1);
+    }
+    int common = 0;
+    for (PlaylistItem item : items) {
+      Integer count = counts.get(videoId(item));
+      if (count != null && count > 0) {
+        counts.put(videoId(item), count - 1);
+        common++;
+      }
+    }
+    return common;
+  }
+
+  /*
+   * Makes the changes of a plan to a copy of the items, and returns the videos it ends up with.
+   */
+  private static List<String> apply(List<PlaylistItem> items, PlaylistReconciler.Plan plan) {
+    List<PlaylistItem> playlist = new ArrayList<PlaylistItem>(items);
+    for (PlaylistReconciler.Change change : plan.getDeletes()) {
+      removeSame(playlist, change.getItem());
+    }
+    for (PlaylistReconciler.Change change : plan.getWrites()) {
+      removeSame(playlist, change.getItem());
+      playlist.add(change.getPosition(), change.getItem());
+    }
+    List<String> videoIds = new ArrayList<String>();
+    for (PlaylistItem item : playlist) {
+      videoIds.add(videoId(item));
+    }
+    return videoIds;
+  }
+
+  /*
+   * Removes an item by identity: items are maps, and two inserts of a video are equal.
+   */
+  private static void removeSame(List<PlaylistItem> playlist, PlaylistItem item) {
+    for (int i = 0; i < playlist.size(); i++) {
+      if (playlist.get(i) == item) {
+        playlist.remove(i);
+        return;
+      }
+    }
+  }
+
+  private static List<PlaylistItem> items(String... videoIds) {
+    List<PlaylistItem> items = new ArrayList<PlaylistItem>();
+    for (String videoId : videoIds) {
+      ResourceId resourceId = new ResourceId();
+      resourceId.setVideoId(videoId);
+      PlaylistItemSnippet snippet = new PlaylistItemSnippet();
+      snippet.setResourceId(resourceId);
+      PlaylistItem item = new PlaylistItem();
+      item.setId("item" + items.size());
+      item.setSnippet(snippet);
+      items.add(item);
+    }
+    return items;
+  }
+
+  private static String videoId(PlaylistItem item) {
+    return item.getSnippet().getResourceId().getVideoId();
+  }
+}
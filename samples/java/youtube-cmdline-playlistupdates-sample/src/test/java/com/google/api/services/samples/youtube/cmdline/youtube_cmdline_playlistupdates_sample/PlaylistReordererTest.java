@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_playlistupdates_sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link PlaylistReorderer}, against an in-memory playlist.
+ */
+public class PlaylistReordererTest {
+
+  @Test
+  public void randomOrdersTakeTheFewestMoves() throws Exception {
+    Random random = new Random(21);
+    for (int round = 0; round < 24; round++) {
+      int size = 1 + random.nextInt(80);
+      List<Integer> permutation = new ArrayList<Integer>();
+      for (int i = 0; i < size; i++) {
+        permutation.add(i);
+      }
+      Collections.shuffle(permutation, random);
+      reorderAndCheck(size, permutation, 1 + random.nextInt(8));
+    }
+  }
+
+  @Test
+  public void reversalMovesAllButOneItem() throws Exception {
+    List<Integer> permutation = new ArrayList<Integer>();
+    for (int i = 49; i >= 0; i--) {
+      permutation.add(i);
+    }
+    assertEquals(49, reorderAndCheck(50, permutation, 4));
+  }
+
+  @Test
+  public void partialReorderOnlyMovesTheItemsThatChangePlace() throws Exception {
+    Random random = new Random(5);
+    List<Integer> permutation = new ArrayList<Integer>();
+    for (int i = 0; i < 200; i++) {
+      permutation.add(i);
+    }
+    for (int i = 0; i < 10; i++) {
+      permutation.add(random.nextInt(200), permutation.remove(random.nextInt(200)));
+    }
+    assertTrue(reorderAndCheck(200, permutation, 4) <= 10);
+  }
+
+  @Test
+  public void sameOrderSendsNothing() throws Exception {
+    List<Integer> permutation = new ArrayList<Integer>();
+    for (int i = 0; i < 30; i++) {
+      permutation.add(i);
+    }
+    assertEquals(0, reorderAndCheck(30, permutation, 4));
+  }
+
+  /*
+   * Reorders a playlist of a size so that its item permutation.get(i) ends at position i, checks
+   * the result and the number of moves, and returns the number of moves.
+   */
+  private static int reorderAndCheck(int size, List<Integer> permutation, int maxInFlight)
+      throws Exception {
+    PlaylistStub stub = new PlaylistStub(size, 0);
+    YouTube youtube = stub.youtube();
+    PlaylistReconciler reader = new PlaylistReconciler(youtube, 1);
+    List<PlaylistItem> items;
+    try {
+      items = reader.readItems(PlaylistStub.PLAYLIST_ID);
+    } finally {
+      reader.close();
+    }
+    List<PlaylistItem> order = new ArrayList<PlaylistItem>();
+    List<String> expected = new ArrayList<String>();
+    for (int index : permutation) {
+      order.add(items.get(index));
+      expected.add(items.get(index).getId());
+    }
+
+    PlaylistReorderer reorderer = new PlaylistReorderer(youtube, maxInFlight);
+    int moves;
+    try {
+      moves = reorderer.reorder(items, order);
+    } finally {
+      reorderer.close();
+    }
+    assertEquals(expected, stub.getItemIds());
+    assertEquals(size - longestIncreasingSubsequence(permutation), moves);
+    assertEquals(moves, stub.getUpdates());
+    return moves;
+  }
+
+  /*
+   * Length of a longest increasing subsequence, by the quadratic method, to check the planner's.
+   */
+  private static int longestIncreasingSubsequence(List<Integer> values) {
+    int[] lengths = new int[values.size()];
+    int longest = 0;
+    for (int i = 0; i < values.size(); i++) {
+      lengths[i] = 1;
+      for (int j = 0; j < i; j++) {
+        if (values.get(j) < values.get(i)) {
+          lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+        }
+      }
+      longest = Math.max(longest, lengths[i]);
+    }
+    return longest;
+  }
+}
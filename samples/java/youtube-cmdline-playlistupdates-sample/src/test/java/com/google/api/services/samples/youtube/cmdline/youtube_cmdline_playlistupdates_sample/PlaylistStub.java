@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_playlistupdates_sample;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A playlist held in memory behind a mock transport: playlistItems.list pages through it and
+ * playlistItems.update moves an item to the position it is given, like the real service. Each
+ * update waits a fixed latency first, outside the lock, so that updates sent at once overlap.
+ */
+class PlaylistStub extends MockHttpTransport {
+
+  /** Id of the stubbed playlist. */
+  static final String PLAYLIST_ID = "PLstub";
+
+  private final JsonFactory jsonFactory = new JacksonFactory();
+
+  /** Ids of the items, in playlist order. */
+  private final List<String> itemIds = new ArrayList<String>();
+
+  private final int writeLatencyMillis;
+
+  private final AtomicInteger lists = new AtomicInteger();
+
+  private final AtomicInteger updates = new AtomicInteger();
+
+  /**
+   * Creates a playlist of items "item0", "item1"... of videos "video0", "video1"...
+   *
+   * @param size number of items
+   * @param writeLatencyMillis time each update takes
+   */
+  PlaylistStub(int size, int writeLatencyMillis) {
+    for (int i = 0; i < size; i++) {
+      itemIds.add("item" + i);
+    }
+    this.writeLatencyMillis = writeLatencyMillis;
+  }
+
+  /** Returns a YouTube object whose calls go to this playlist. */
+  YouTube youtube() {
+    return new YouTube.Builder(this, jsonFactory, null).setApplicationName("playlist-stub").build();
+  }
+
+  /** Ids of the items, in playlist order. */
+  synchronized List<String> getItemIds() {
+    return new ArrayList<String>(itemIds);
+  }
+
+  /** Number of playlistItems.list calls received. */
+  int getLists() {
+    return lists.get();
+  }
+
+  /** Number of playlistItems.update calls received. */
+  int getUpdates() {
+    return updates.get();
+  }
+
+  @Override
+  public LowLevelHttpRequest buildRequest(final String method, final String url) {
+    return new MockLowLevelHttpRequest(url) {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+        response.setContentType("application/json");
+        if (method.equals("GET")) {
+          response.setContent(list(new GenericUrl(url)));
+        } else {
+          update(jsonFactory.fromString(getContentAsString(), PlaylistItem.class));
+          response.setContent("{}");
+        }
+        return response;
+      }
+    };
+  }
+
+  private synchronized String list(GenericUrl url) {
+    lists.incrementAndGet();
+    String pageToken = (String) url.getFirst("pageToken");
+    int start = pageToken == null ? 0 : Integer.parseInt(pageToken);
+    int end = Math.min(itemIds.size(), start + Integer.parseInt((String) url.getFirst("maxResults")));
+    StringBuilder json = new StringBuilder("{\"items\":[");
+    for (int i = start; i < end; i++) {
+      String itemId = itemIds.get(i);
+      json.append(i > start ? "," : "").append("{\"id\":\"").append(itemId)
+          .append("\",\"snippet\":{\"playlistId\":\"").append(PLAYLIST_ID)
+          .append("\",\"position\":").append(i)
+          .append(",\"resourceId\":{\"kind\":\"youtube#video\",\"videoId\":\"")
+          .append(itemId.replace("item", "video")).append("\"}}}");
+    }
+    json.append("]");
+    if (end < itemIds.size()) {
+      json.append(",\"nextPageToken\":\"").append(end).append("\"");
+    }
+    return json.append("}").toString();
+  }
+
+  private void update(PlaylistItem item) throws IOException {
+    try {
+      Thread.sleep(writeLatencyMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    }
+    synchronized (this) {
+      updates.incrementAndGet();
+      if (!itemIds.remove(item.getId())) {
+        throw new IOException("No item " + item.getId());
+      }
+      itemIds.add(item.getSnippet().getPosition().intValue(), item.getId());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_playlistupdates_sample;
+
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.PlaylistItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the playlistItems calls and the time a reorder takes on an in-memory playlist whose
+ * updates each take a fixed latency: a full shuffle, a few items moved, and a reversal, each done
+ * the naive way (one update per position), with the planned moves one at a time, and pipelined.
+ *
+ * Run with the test classpath, for instance from an IDE, with optional arguments: playlist size
+ * (5000), milliseconds per update (10) and moves pending at once (8).
+ */
+public class ReorderBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int latency = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int parallel = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    for (String scenario : new String[] {"shuffle", "move50", "reverse"}) {
+      run(size, latency, scenario, 0);
+      run(size, latency, scenario, 1);
+      run(size, latency, scenario, parallel);
+    }
+  }
+
+  /*
+   * Reorders a new stub playlist and prints the calls and time taken; maxInFlight 0 stands for
+   * the naive way.
+   */
+  private static void run(int size, int latency, String scenario, int maxInFlight)
+      throws Exception {
+    PlaylistStub stub = new PlaylistStub(size, latency);
+    YouTube youtube = stub.youtube();
+    PlaylistReconciler reader = new PlaylistReconciler(youtube, 1);
+    List<PlaylistItem> items = reader.readItems(PlaylistStub.PLAYLIST_ID);
+    reader.close();
+
+    List<PlaylistItem> order = new ArrayList<PlaylistItem>(items);
+    Random random = new Random(size);
+    if (scenario.equals("shuffle")) {
+      Collections.shuffle(order, random);
+    } else if (scenario.equals("reverse")) {
+      Collections.reverse(order);
+    } else {
+      for (int i = 0; i < 50; i++) {
+        order.add(random.nextInt(size), order.remove(random.nextInt(size)));
+      }
+    }
+
+    long start = System.nanoTime();
+    if (maxInFlight == 0) {
+      for (int i = 0; i < size; i++) {
+        PlaylistItem item = order.get(i);
+        item.getSnippet().setPosition((long) i);
+        PlaylistItem update = new PlaylistItem();
+        update.setId(item.getId());
+        update.setSnippet(item.getSnippet());
+        youtube.playlistItems().update("snippet", update).execute();
+      }
+    } else {
+      PlaylistReorderer reorderer = new PlaylistReorderer(youtube, maxInFlight);
+      try {
+        reorderer.reorder(items, order);
+      } finally {
+        reorderer.close();
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    List<String> expected = new ArrayList<String>();
+    for (PlaylistItem item : order) {
+      expected.add(item.getId());
+    }
+    System.out.printf("%-8s %-10s %5d updates %4d lists %6.1f s %s%n", scenario,
+        maxInFlight == 0 ? "naive" : maxInFlight == 1 ? "serial" : "parallel=" + maxInFlight,
+        stub.getUpdates(), stub.getLists(), seconds,
+        expected.equals(stub.getItemIds()) ? "" : "WRONG ORDER");
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_search_sample;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.RequestCoalescer;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.SearchListResponse;
+import com.google.api.services.youtube.model.SearchResult;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many search queries concurrently on a bounded pool of worker threads. All queries share the
+ * same YouTube object (and therefore the same HTTP transport), and results are returned in the
+ * order the queries were given, along with the latency of each query. Duplicate queries that are
+ * in flight at the same time share one request.
+ */
+public class BatchSearch {
+
+  /** YouTube object shared by every worker thread. */
+  private final YouTube youtube;
+
+  /** Developer key set on every search request. */
+  private final String apiKey;
+
+  /** Maximum number of queries in flight at once. */
+  private final int concurrency;
+
+  /** Cache searches are answered from when possible, or null to always execute them. */
+  private final SearchCache cache;
+
+  /** Shares one call between identical queries that are in flight at the same time. */
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+
+  /**
+   * @param youtube YouTube object used to make all API requests
+   * @param apiKey developer key used for non-authenticated requests
+   * @param concurrency maximum number of queries in flight at once
+   */
+  public BatchSearch(YouTube youtube, String apiKey, int concurrency) {
+    this(youtube, apiKey, concurrency, null);
+  }
+
+  /**
+   * @param youtube YouTube object used to make all API requests
+   * @param apiKey developer key used for non-authenticated requests
+   * @param concurrency maximum number of queries in flight at once
+   * @param cache cache searches are answered from when possible, or null for none
+   */
+  public BatchSearch(YouTube youtube, String apiKey, int concurrency, SearchCache cache) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be at least 1: " + concurrency);
+    }
+    this.youtube = youtube;
+    this.apiKey = apiKey;
+    this.concurrency = concurrency;
+    this.cache = cache;
+  }
+
+  /**
+   * Runs every query and waits for all of them to finish. A failed query does not stop the batch;
+   * its error is recorded in its {@link QueryResult}.
+   *
+   * @param queries search terms, in the order results should be returned
+   * @return one result per query, in input order
+   */
+  public BatchResult run(List<String> queries) throws InterruptedException {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(concurrency, Math.max(1, queries.size())),
+            new WorkerThreadFactory());
+    try {
+      long start = System.nanoTime();
+
+      // Futures are kept in input order, so collecting them in order keeps the results in order.
+      List<Future<QueryResult>> futures = new ArrayList<Future<QueryResult>>(queries.size());
+      for (final String query : queries) {
+        futures.add(executor.submit(new Callable<QueryResult>() {
+          public QueryResult call() {
+            return search(query);
+          }
+        }));
+      }
+
+      List<QueryResult> results = new ArrayList<QueryResult>(futures.size());
+      for (Future<QueryResult> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          // search() catches its own exceptions, so this only happens on an Error.
+          throw new RuntimeException(e.getCause());
+        }
+      }
+      return new BatchResult(results, System.nanoTime() - start);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /*
+   * Runs a single query on the calling thread and times it.
+   */
+  private QueryResult search(String query) {
+    long start = System.nanoTime();
+    try {
+      YouTube.Search.List request = Search.newSearchRequest(youtube, apiKey, query);
+      SearchListResponse response =
+          cache == null ? coalescer.execute(request) : cache.execute(request);
+      List<SearchResult> items = response.getItems();
+      if (items == null) {
+        items = Collections.emptyList();
+      }
+      return new QueryResult(query, items, null, System.nanoTime() - start);
+    } catch (IOException e) {
+      return new QueryResult(query, null, e, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Reads one query per line, skipping blank lines.
+   *
+   * @param fileName file to read, or null to read standard input
+   */
+  public static List<String> readQueries(String fileName) throws IOException {
+    InputStream in = fileName == null ? System.in : new FileInputStream(fileName);
+    BufferedReader bReader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    try {
+      List<String> queries = new ArrayList<String>();
+      String line;
+      while ((line = bReader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0) {
+          queries.add(line);
+        }
+      }
+      return queries;
+    } finally {
+      if (fileName != null) {
+        bReader.close();
+      }
+    }
+  }
+
+  /**
+   * Prints one line per query (in input order) followed by latency and throughput totals.
+   *
+   * @param batchResult results returned by {@link #run}
+   */
+  public static void prettyPrint(BatchResult batchResult) {
+    System.out.println("\n=============================================================");
+    System.out.println("   Batch search of " + batchResult.getResults().size() + " queries.");
+    System.out.println("=============================================================\n");
+
+    for (QueryResult result : batchResult.getResults()) {
+      if (result.getError() == null) {
+        System.out.println(" " + formatMillis(result.getLatencyNanos()) + " ms  "
+            + result.getItems().size() + " results  \"" + result.getQuery() + "\"");
+      } else {
+        System.out.println(" " + formatMillis(result.getLatencyNanos()) + " ms  FAILED  \""
+            + result.getQuery() + "\" : " + describe(result.getError()));
+      }
+    }
+
+    long[] latencies = batchResult.getSortedLatencies();
+    System.out.println("\n-------------------------------------------------------------\n");
+    System.out.println(" Queries:     " + batchResult.getResults().size() + " ("
+        + batchResult.getFailureCount() + " failed)");
+    System.out.println(" Wall time:   " + formatMillis(batchResult.getElapsedNanos()) + " ms");
+    System.out.println(" Throughput:  "
+        + String.format("%.1f", batchResult.getQueriesPerSecond()) + " queries/sec");
+    if (latencies.length > 0) {
+      System.out.println(" Latency p50: " + formatMillis(percentile(latencies, 50)) + " ms");
+      System.out.println(" Latency p99: " + formatMillis(percentile(latencies, 99)) + " ms");
+      System.out.println(" Latency max: " + formatMillis(latencies[latencies.length - 1]) + " ms");
+    }
+  }
+
+  private static String describe(IOException e) {
+    if (e instanceof GoogleJsonResponseException
+        && ((GoogleJsonResponseException) e).getDetails() != null) {
+      GoogleJsonResponseException serviceError = (GoogleJsonResponseException) e;
+      return serviceError.getDetails().getCode() + " : " + serviceError.getDetails().getMessage();
+    }
+    return e.getMessage();
+  }
+
+  private static long percentile(long[] sorted, int percent) {
+    int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+
+  private static String formatMillis(long nanos) {
+    return String.format("%7.1f", nanos / 1e6);
+  }
+
+  /**
+   * Names worker threads and marks them as daemons so an interrupted batch cannot keep the JVM
+   * alive.
+   */
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "batch-search-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  /**
+   * Outcome of a single query: either its search results or the error it failed with.
+   */
+  public static class QueryResult {
+
+    private final String query;
+    private final List<SearchResult> items;
+    private final IOException error;
+    private final long latencyNanos;
+
+    QueryResult(String query, List<SearchResult> items, IOException error, long latencyNanos) {
+      this.query = query;
+      this.items = items;
+      this.error = error;
+      this.latencyNanos = latencyNanos;
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    /** Search results, or null if the query failed. */
+    public List<SearchResult> getItems() {
+      return items;
+    }
+
+    /** Error the query failed with, or null if it succeeded. */
+    public IOException getError() {
+      return error;
+    }
+
+    /** Time from sending the request to having the parsed response. */
+    public long getLatencyNanos() {
+      return latencyNanos;
+    }
+  }
+
+  /**
+   * Results of a whole batch, in input order, plus the wall-clock time the batch took.
+   */
+  public static class BatchResult {
+
+    private final List<QueryResult> results;
+    private final long elapsedNanos;
+
+    BatchResult(List<QueryResult> results, long elapsedNanos) {
+      this.results = Collections.unmodifiableList(results);
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<QueryResult> getResults() {
+      return results;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    public int getFailureCount() {
+      int failures = 0;
+      for (QueryResult result : results) {
+        if (result.getError() != null) {
+          failures++;
+        }
+      }
+      return failures;
+    }
+
+    public double getQueriesPerSecond() {
+      return elapsedNanos == 0 ? 0 : results.size() / (elapsedNanos / 1e9);
+    }
+
+    /** Per-query latencies in ascending order. */
+    public long[] getSortedLatencies() {
+      long[] latencies = new long[results.size()];
+      for (int i = 0; i < latencies.length; i++) {
+        latencies[i] = results.get(i).getLatencyNanos();
+      }
+      Arrays.sort(latencies);
+      return latencies;
+    }
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_search_sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-size, memory-mapped file of string key/value records, each with its own expiry time. It
+ * is the on-disk tier of {@link SearchCache} and survives restarts: reopening the file rebuilds
+ * the in-memory index from the records already in it.
+ *
+ * Records are appended after the last one. When the file is full, it is compacted: expired and
+ * overwritten records are dropped and, if that is not enough, the oldest records are evicted.
+ * The header holds the end of the last complete record and is only moved after a record has been
+ * written, so a crash mid-write leaves the file readable.
+ *
+ * The mapping is held until the JVM exits; the file is meant to be opened once per process.
+ *
+ * File layout: a header (magic, end offset) followed by records of (magic, expiry time, key
+ * length, value length, key bytes, value bytes), all big-endian with UTF-8 strings.
+ *
+ * This class is not thread-safe; {@link SearchCache} serializes access to it.
+ */
+class MappedCacheFile {
+
+  private static final int FILE_MAGIC = 0x59544331;
+
+  private static final int RECORD_MAGIC = 0x52454331;
+
+  /** File magic plus offset of the end of the last record. */
+  private static final int HEADER_SIZE = 8;
+
+  /** Record magic, expiry time, key length and value length. */
+  private static final int RECORD_HEADER_SIZE = 20;
+
+  private final RandomAccessFile file;
+
+  private final MappedByteBuffer buffer;
+
+  /** Offset of each live key's record, oldest record first. */
+  private final LinkedHashMap<String, Integer> index = new LinkedHashMap<String, Integer>();
+
+  /** Offset just after the last record. */
+  private int end;
+
+  /** Number of live records evicted to make room. */
+  private long evictions;
+
+  /**
+   * Opens the cache file, creating it if needed, and indexes the records already in it.
+   *
+   * @param path cache file
+   * @param capacity size of the file in bytes
+   */
+  MappedCacheFile(File path, int capacity) throws IOException {
+    if (capacity <= HEADER_SIZE + RECORD_HEADER_SIZE) {
+      throw new IllegalArgumentException("Cache file capacity too small: " + capacity);
+    }
+    file = new RandomAccessFile(path, "rw");
+    buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+    if (buffer.getInt(0) == FILE_MAGIC && buffer.getInt(4) >= HEADER_SIZE
+        && buffer.getInt(4) <= capacity) {
+      end = buffer.getInt(4);
+      rebuildIndex();
+    } else {
+      // New or unrecognized file: starts empty.
+      buffer.putInt(0, FILE_MAGIC);
+      setEnd(HEADER_SIZE);
+    }
+  }
+
+  /**
+   * Returns the value stored for a key, or null if there is none or it has expired.
+   *
+   * @param key cache key
+   * @param now current time in milliseconds
+   */
+  String get(String key, long now) {
+    Integer offset = index.get(key);
+    if (offset == null) {
+      return null;
+    }
+    if (buffer.getLong(offset + 4) <= now) {
+      index.remove(key);
+      return null;
+    }
+    int keyLength = buffer.getInt(offset + 12);
+    int valueLength = buffer.getInt(offset + 16);
+    return readString(offset + RECORD_HEADER_SIZE + keyLength, valueLength);
+  }
+
+  /**
+   * Returns the expiry time of a key's record, or 0 if there is none.
+   *
+   * @param key cache key
+   */
+  long getExpiresAt(String key) {
+    Integer offset = index.get(key);
+    return offset == null ? 0 : buffer.getLong(offset + 4);
+  }
+
+  /**
+   * Stores a value, replacing any earlier value for the key. A value too large for the file is
+   * not stored.
+   *
+   * @param key cache key
+   * @param value value to store
+   * @param expiresAt time in milliseconds after which the value is no longer returned
+   * @param now current time in milliseconds, used to drop expired records when compacting
+   */
+  void put(String key, String value, long expiresAt, long now) {
+    byte[] keyBytes = toBytes(key);
+    byte[] valueBytes = toBytes(value);
+    int recordSize = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+    if (recordSize > buffer.capacity() - HEADER_SIZE) {
+      return;
+    }
+    if (end + recordSize > buffer.capacity()) {
+      index.remove(key);
+      compact(recordSize, now);
+    }
+    writeRecord(end, keyBytes, valueBytes, expiresAt);
+    index.remove(key);
+    index.put(key, end);
+    setEnd(end + recordSize);
+  }
+
+  /** Number of keys in the file, including any that have expired but not been dropped yet. */
+  int size() {
+    return index.size();
+  }
+
+  /** Number of live records evicted to make room since the file was opened. */
+  long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Flushes the mapped pages to disk and closes the file.
+   */
+  void close() throws IOException {
+    buffer.force();
+    file.close();
+  }
+
+  /*
+   * Rewrites the live, unexpired records at the start of the file, evicting the oldest ones until
+   * there is room for a record of the given size.
+   */
+  private void compact(int neededSize, long now) {
+    List<byte[][]> records = new ArrayList<byte[][]>();
+    List<Long> expiries = new ArrayList<Long>();
+    int liveSize = 0;
+    for (Map.Entry<String, Integer> entry : index.entrySet()) {
+      int offset = entry.getValue();
+      long expiresAt = buffer.getLong(offset + 4);
+      if (expiresAt <= now) {
+        continue;
+      }
+      int keyLength = buffer.getInt(offset + 12);
+      int valueLength = buffer.getInt(offset + 16);
+      byte[] keyBytes = new byte[keyLength];
+      byte[] valueBytes = new byte[valueLength];
+      readBytes(offset + RECORD_HEADER_SIZE, keyBytes);
+      readBytes(offset + RECORD_HEADER_SIZE + keyLength, valueBytes);
+      records.add(new byte[][] {keyBytes, valueBytes});
+      expiries.add(expiresAt);
+      liveSize += RECORD_HEADER_SIZE + keyLength + valueLength;
+    }
+
+    // Evicts oldest first until the survivors and the new record fit.
+    int first = 0;
+    while (HEADER_SIZE + liveSize + neededSize > buffer.capacity()) {
+      byte[][] record = records.get(first++);
+      liveSize -= RECORD_HEADER_SIZE + record[0].length + record[1].length;
+      evictions++;
+    }
+
+    // Marks the file empty while records are moved, so a crash here loses the cache instead of
+    // leaving half-moved records behind.
+    index.clear();
+    setEnd(HEADER_SIZE);
+    int offset = HEADER_SIZE;
+    for (int i = first; i < records.size(); i++) {
+      byte[][] record = records.get(i);
+      writeRecord(offset, record[0], record[1], expiries.get(i));
+      index.put(fromBytes(record[0]), offset);
+      offset += RECORD_HEADER_SIZE + record[0].length + record[1].length;
+    }
+    setEnd(offset);
+  }
+
+  /*
+   * Indexes the records between the header and the end offset. A later record for a key replaces
+   * an earlier one.
+   */
+  private void rebuildIndex() {
+    int offset = HEADER_SIZE;
+    while (offset + RECORD_HEADER_SIZE <= end && buffer.getInt(offset) == RECORD_MAGIC) {
+      int keyLength = buffer.getInt(offset + 12);
+      int valueLength = buffer.getInt(offset + 16);
+      int recordEnd = offset + RECORD_HEADER_SIZE + keyLength + valueLength;
+      if (keyLength < 0 || valueLength < 0 || recordEnd > end) {
+        break;
+      }
+      String key = readString(offset + RECORD_HEADER_SIZE, keyLength);
+      index.remove(key);
+      index.put(key, offset);
+      offset = recordEnd;
+    }
+    // Anything after the last readable record is discarded.
+    setEnd(offset);
+
+    long now = System.currentTimeMillis();
+    for (Iterator<Integer> offsets = index.values().iterator(); offsets.hasNext();) {
+      if (buffer.getLong(offsets.next() + 4) <= now) {
+        offsets.remove();
+      }
+    }
+  }
+
+  private void writeRecord(int offset, byte[] keyBytes, byte[] valueBytes, long expiresAt) {
+    buffer.putInt(offset, RECORD_MAGIC);
+    buffer.putLong(offset + 4, expiresAt);
+    buffer.putInt(offset + 12, keyBytes.length);
+    buffer.putInt(offset + 16, valueBytes.length);
+    buffer.position(offset + RECORD_HEADER_SIZE);
+    buffer.put(keyBytes);
+    buffer.put(valueBytes);
+  }
+
+  private void setEnd(int end) {
+    this.end = end;
+    buffer.putInt(4, end);
+  }
+
+  private void readBytes(int offset, byte[] destination) {
+    buffer.position(offset);
+    buffer.get(destination);
+  }
+
+  private String readString(int offset, int length) {
+    byte[] bytes = new byte[length];
+    readBytes(offset, bytes);
+    return fromBytes(bytes);
+  }
+
+  private static byte[] toBytes(String value) {
+    try {
+      return value.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static String fromBytes(byte[] bytes) {
+    try {
+      return new String(bytes, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
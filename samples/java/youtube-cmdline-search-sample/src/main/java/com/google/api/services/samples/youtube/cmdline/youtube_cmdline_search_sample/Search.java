@@ -18,9 +18,8 @@ import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.ResourceId;
 import com.google.api.services.youtube.model.SearchListResponse;
@@ -28,6 +27,7 @@ import com.google.api.services.youtube.model.SearchResult;
 import com.google.api.services.youtube.model.Thumbnail;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -45,26 +45,53 @@ public class Search {
   /** Global instance properties filename. */
   private static String PROPERTIES_FILENAME = "youtube.properties";
 
-  /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  /**
+   * Global instance of the HTTP transport. It keeps a pool of open connections so concurrent batch
+   * queries do not each set up their own.
+   */
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of the max number of videos we want returned (50 = upper limit per page). */
   private static final long NUMBER_OF_VIDEOS_RETURNED = 25;
 
+  /** Upper limit of videos returned in a single page. */
+  private static final long MAX_VIDEOS_PER_PAGE = 50;
+
+  /** Default number of queries run at once in batch mode (youtube.batch.concurrency). */
+  private static final int BATCH_CONCURRENCY = 16;
+
+  /** Default time-to-live of cached searches (youtube.cache.ttl.seconds). */
+  private static final long CACHE_TTL_SECONDS = 3600;
+
+  /** Default number of searches cached in memory (youtube.cache.entries). */
+  private static final int CACHE_ENTRIES = 1000;
+
+  /** Default size of the cache file (youtube.cache.file.mb). */
+  private static final int CACHE_FILE_MB = 64;
+
   /** Global instance of Youtube object to make all API requests. */
   private static YouTube youtube;
 
+  /** Global instance of the search cache, or null if caching is turned off. */
+  private static SearchCache cache;
+
 
   /**
    * Initializes YouTube object to search for videos on YouTube (Youtube.Search.List). The program
    * then prints the names and thumbnails of each of the videos (only first 50 videos).
    *
+   * In batch mode ("--batch [file]") the queries are read one per line from the file, or from
+   * standard input if no file is given, and run concurrently by {@link BatchSearch}.
+   *
    * @param args command line args.
    */
   public static void main(String[] args) {
+    // Opens the connection and loads the response classes while the user types a query.
+    YouTubeClientFactory.get().warmUp(SearchListResponse.class);
+
     // Read the developer key from youtube.properties
     Properties properties = new Properties();
     try {
@@ -87,36 +114,53 @@ public class Search {
         public void initialize(HttpRequest request) throws IOException {}
       }).setApplicationName("youtube-cmdline-search-sample").build();
 
-      // Get query term from user.
-      String queryTerm = getInputQuery();
+      String apiKey = properties.getProperty("youtube.apikey");
 
-      YouTube.Search.List search = youtube.search().list("id,snippet");
+      // Searches are answered from a local cache when youtube.cache.file is set.
+      cache = newSearchCache(properties);
+
+      // With "--batch [file]", runs every query from the file (or stdin) concurrently instead.
+      if (args.length > 0 && args[0].equals("--batch")) {
+        int concurrency = Integer.parseInt(
+            properties.getProperty("youtube.batch.concurrency", "" + BATCH_CONCURRENCY));
+        List<String> queries = BatchSearch.readQueries(args.length > 1 ? args[1] : null);
+        BatchSearch batchSearch = new BatchSearch(youtube, apiKey, concurrency, cache);
+        BatchSearch.prettyPrint(batchSearch.run(queries));
+        return;
+      }
 
       /*
-       * It is important to set your developer key from the Google Developer Console for
-       * non-authenticated requests (found under the API Access tab at this link:
-       * code.google.com/apis/). This is good practice and increased your quota.
-       */
-      String apiKey = properties.getProperty("youtube.apikey");
-      search.setKey(apiKey);
-      search.setQ(queryTerm);
-      /*
-       * We are only searching for videos (not playlists or channels). If we were searching for
-       * more, we would add them as a string like this: "video,playlist,channel".
-       */
-      search.setType("video");
-      /*
-       * This method reduces the info returned to only the fields we need and makes calls more
-       * efficient.
+       * More than one page of results can be asked for with youtube.search.maxresults. The
+       * iterator follows nextPageToken and fetches each page while the previous one is printed.
        */
-      search.setFields("items(id/kind,id/videoId,snippet/title,snippet/thumbnails/default/url)");
-      search.setMaxResults(NUMBER_OF_VIDEOS_RETURNED);
-      SearchListResponse searchResponse = search.execute();
+      long maxResults = getMaxResults(properties);
+      if (maxResults < 1) {
+        System.err.println("youtube.search.maxresults in " + PROPERTIES_FILENAME
+            + " must be a number of at least 1: "
+            + properties.getProperty("youtube.search.maxresults"));
+        return;
+      }
+
+      // Get query term from user.
+      String queryTerm = getInputQuery();
+
+      long pageSize = Math.min(maxResults, MAX_VIDEOS_PER_PAGE);
+      int maxPages = (int) ((maxResults + pageSize - 1) / pageSize);
 
-      List<SearchResult> searchResultList = searchResponse.getItems();
+      YouTube.Search.List search = newSearchRequest(youtube, apiKey, queryTerm);
+      search.setMaxResults(pageSize);
+      search.setFields(
+          "items(id/kind,id/videoId,snippet/title,snippet/thumbnails/default/url),nextPageToken");
 
-      if (searchResultList != null) {
-        prettyPrint(searchResultList.iterator(), queryTerm);
+      SearchResultIterator searchResults =
+          new SearchResultIterator(search, maxPages, maxResults, cache, null);
+      try {
+        prettyPrint(searchResults, queryTerm, maxResults);
+      } catch (SearchResultIterator.PageFetchException e) {
+        // Unwraps the error so it is reported like any other request failure.
+        throw e.getCause();
+      } finally {
+        searchResults.close();
       }
     } catch (GoogleJsonResponseException e) {
       System.err.println("There was a service error: " + e.getDetails().getCode() + " : "
@@ -125,9 +169,90 @@ public class Search {
       System.err.println("There was an IO error: " + e.getCause() + " : " + e.getMessage());
     } catch (Throwable t) {
       t.printStackTrace();
+    } finally {
+      closeSearchCache();
     }
   }
 
+  /*
+   * Returns youtube.search.maxresults, the default if it is not set, or 0 if it is not a number.
+   */
+  private static long getMaxResults(Properties properties) {
+    try {
+      return Long.parseLong(properties.getProperty(
+          "youtube.search.maxresults", "" + NUMBER_OF_VIDEOS_RETURNED).trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /*
+   * Creates the search cache configured in youtube.properties, or returns null if
+   * youtube.cache.file is not set.
+   */
+  private static SearchCache newSearchCache(Properties properties) throws IOException {
+    String fileName = properties.getProperty("youtube.cache.file");
+    if (fileName == null || fileName.length() < 1) {
+      return null;
+    }
+    long ttlSeconds = Long.parseLong(
+        properties.getProperty("youtube.cache.ttl.seconds", "" + CACHE_TTL_SECONDS));
+    int entries =
+        Integer.parseInt(properties.getProperty("youtube.cache.entries", "" + CACHE_ENTRIES));
+    int fileMegabytes =
+        Integer.parseInt(properties.getProperty("youtube.cache.file.mb", "" + CACHE_FILE_MB));
+    return new SearchCache(JSON_FACTORY, entries, ttlSeconds * 1000, new File(fileName),
+        fileMegabytes * 1024 * 1024);
+  }
+
+  /*
+   * Prints the cache counters and flushes the cache file, if caching is turned on.
+   */
+  private static void closeSearchCache() {
+    if (cache != null) {
+      System.out.println("\nSearch cache: " + cache);
+      try {
+        cache.close();
+      } catch (IOException e) {
+        System.err.println("There was an error closing the search cache: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Builds a YouTube.Search.List request for a query term. The request is not executed, so callers
+   * can run it directly or hand it to another thread; requests built from the same YouTube object
+   * share its HTTP transport.
+   *
+   * @param youtube YouTube object used to make the request
+   * @param apiKey developer key used for non-authenticated requests
+   * @param queryTerm search term
+   */
+  static YouTube.Search.List newSearchRequest(YouTube youtube, String apiKey, String queryTerm)
+      throws IOException {
+    YouTube.Search.List search = youtube.search().list("id,snippet");
+
+    /*
+     * It is important to set your developer key from the Google Developer Console for
+     * non-authenticated requests (found under the API Access tab at this link:
+     * code.google.com/apis/). This is good practice and increased your quota.
+     */
+    search.setKey(apiKey);
+    search.setQ(queryTerm);
+    /*
+     * We are only searching for videos (not playlists or channels). If we were searching for
+     * more, we would add them as a string like this: "video,playlist,channel".
+     */
+    search.setType("video");
+    /*
+     * This method reduces the info returned to only the fields we need and makes calls more
+     * efficient.
+     */
+    search.setFields("items(id/kind,id/videoId,snippet/title,snippet/thumbnails/default/url)");
+    search.setMaxResults(NUMBER_OF_VIDEOS_RETURNED);
+    return search;
+  }
+
   /*
    * Returns a query term (String) from user via the terminal.
    */
@@ -153,12 +278,14 @@ public class Search {
    * @param iteratorSearchResults Iterator of SearchResults to print
    *
    * @param query Search query (String)
+   *
+   * @param maxResults Number of results asked for
    */
-  private static void prettyPrint(Iterator<SearchResult> iteratorSearchResults, String query) {
+  private static void prettyPrint(
+      Iterator<SearchResult> iteratorSearchResults, String query, long maxResults) {
 
     System.out.println("\n=============================================================");
-    System.out.println(
-        "   First " + NUMBER_OF_VIDEOS_RETURNED + " videos for search on \"" + query + "\".");
+    System.out.println("   First " + maxResults + " videos for search on \"" + query + "\".");
     System.out.println("=============================================================\n");
 
     if (!iteratorSearchResults.hasNext()) {
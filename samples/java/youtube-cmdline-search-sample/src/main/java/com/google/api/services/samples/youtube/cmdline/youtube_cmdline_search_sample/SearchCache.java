@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_search_sample;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.RequestCoalescer;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.SearchListResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cache of YouTube.Search.List responses. Every search costs 100 quota units, so repeating the
+ * same search (same query, type, fields, page size and page) within the time-to-live is answered
+ * from the cache instead, with no network I/O.
+ *
+ * There are two tiers: an in-memory LRU map of parsed responses and, optionally, a memory-mapped
+ * file of JSON responses that survives restarts. Each entry has its own expiry time. Hits, misses
+ * and evictions are counted for both tiers.
+ *
+ * The cache is thread-safe. Responses returned from the memory tier are shared between callers
+ * and must not be modified.
+ */
+public class SearchCache {
+
+  /** JSON factory used to write responses to, and read them from, the cache file, if any. */
+  private final JsonFactory jsonFactory;
+
+  /** Time-to-live used by {@link #execute(YouTube.Search.List)}. */
+  private final long defaultTtlMillis;
+
+  /** Shares one call between threads that miss on the same request at the same time. */
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+
+  /** In-memory tier, least recently used first. */
+  private final LinkedHashMap<String, CachedResponse> memory;
+
+  /** On-disk tier, or null if the cache is memory-only. */
+  private final MappedCacheFile file;
+
+  private long memoryHits;
+
+  private long fileHits;
+
+  private long misses;
+
+  private long memoryEvictions;
+
+  /**
+   * Creates a memory-only cache.
+   *
+   * @param maxEntries maximum number of responses kept in memory
+   * @param defaultTtlMillis time-to-live of entries added by {@link #execute(YouTube.Search.List)}
+   */
+  public SearchCache(int maxEntries, long defaultTtlMillis) {
+    this(null, maxEntries, defaultTtlMillis, null);
+  }
+
+  /**
+   * Creates a cache backed by a file, which is created if needed and otherwise reused with the
+   * entries already in it.
+   *
+   * @param jsonFactory JSON factory used to write and read the cache file
+   * @param maxEntries maximum number of responses kept in memory
+   * @param defaultTtlMillis time-to-live of entries added by {@link #execute(YouTube.Search.List)}
+   * @param cacheFile cache file
+   * @param cacheFileCapacity size of the cache file in bytes
+   */
+  public SearchCache(JsonFactory jsonFactory, int maxEntries, long defaultTtlMillis,
+      File cacheFile, int cacheFileCapacity) throws IOException {
+    this(jsonFactory, maxEntries, defaultTtlMillis,
+        new MappedCacheFile(cacheFile, cacheFileCapacity));
+  }
+
+  private SearchCache(JsonFactory jsonFactory, final int maxEntries, long defaultTtlMillis,
+      MappedCacheFile file) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be at least 1: " + maxEntries);
+    }
+    this.jsonFactory = jsonFactory;
+    this.defaultTtlMillis = defaultTtlMillis;
+    this.file = file;
+    this.memory = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+        if (size() > maxEntries) {
+          memoryEvictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached response for the request or, on a miss, executes the request and caches
+   * the response with the default time-to-live.
+   *
+   * @param request search request
+   */
+  public SearchListResponse execute(YouTube.Search.List request) throws IOException {
+    return execute(request, defaultTtlMillis);
+  }
+
+  /**
+   * Returns the cached response for the request or, on a miss, executes the request and caches
+   * the response for the given time.
+   *
+   * The lock is not held while the request runs. Threads that miss on the same key at the same
+   * time share a single call.
+   *
+   * @param request search request
+   * @param ttlMillis time-to-live of the new entry
+   */
+  public SearchListResponse execute(YouTube.Search.List request, long ttlMillis)
+      throws IOException {
+    String key = cacheKey(request);
+    SearchListResponse response = get(key);
+    if (response == null) {
+      response = coalescer.execute(request);
+      put(key, response, ttlMillis);
+    }
+    return response;
+  }
+
+  /**
+   * Returns the cached response for a key, or null if there is none or it has expired. A response
+   * found only in the cache file is promoted to memory.
+   *
+   * @param key key returned by {@link #cacheKey}
+   */
+  public synchronized SearchListResponse get(String key) throws IOException {
+    long now = System.currentTimeMillis();
+    CachedResponse entry = memory.get(key);
+    if (entry != null) {
+      if (entry.expiresAt > now) {
+        memoryHits++;
+        return entry.response;
+      }
+      memory.remove(key);
+    }
+    if (file != null) {
+      String json = file.get(key, now);
+      if (json != null) {
+        fileHits++;
+        SearchListResponse response = jsonFactory.fromString(json, SearchListResponse.class);
+        memory.put(key, new CachedResponse(response, file.getExpiresAt(key)));
+        return response;
+      }
+    }
+    misses++;
+    return null;
+  }
+
+  /**
+   * Adds a response to both tiers.
+   *
+   * @param key key returned by {@link #cacheKey}
+   * @param response response to cache
+   * @param ttlMillis time-to-live of the entry
+   */
+  public synchronized void put(String key, SearchListResponse response, long ttlMillis)
+      throws IOException {
+    long now = System.currentTimeMillis();
+    long expiresAt = now + ttlMillis;
+    memory.put(key, new CachedResponse(response, expiresAt));
+    if (file != null) {
+      file.put(key, jsonFactory.toString(response), expiresAt, now);
+    }
+  }
+
+  /**
+   * Flushes and closes the cache file, if any.
+   */
+  public synchronized void close() throws IOException {
+    if (file != null) {
+      file.close();
+    }
+  }
+
+  public synchronized long getMemoryHits() {
+    return memoryHits;
+  }
+
+  public synchronized long getFileHits() {
+    return fileHits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /** Entries dropped from either tier to make room (expired entries are not counted). */
+  public synchronized long getEvictions() {
+    return memoryEvictions + (file == null ? 0 : file.getEvictions());
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "memory hits: " + memoryHits + ", file hits: " + fileHits + ", misses: " + misses
+        + ", evictions: " + getEvictions() + ", entries in memory: " + memory.size()
+        + (file == null ? "" : ", entries in file: " + file.size());
+  }
+
+  /**
+   * Returns the cache key of a request: its parameters in name order, with the developer key left
+   * out (it does not change the response), the query trimmed, lower-cased and with runs of
+   * whitespace collapsed, and comma-separated lists such as part and type sorted.
+   *
+   * @param request search request
+   */
+  public static String cacheKey(YouTube.Search.List request) {
+    Map<String, Object> parameters = new TreeMap<String, Object>(request);
+    parameters.remove("key");
+
+    StringBuilder key = new StringBuilder("search.list");
+    char separator = '?';
+    for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+      if (parameter.getValue() == null) {
+        continue;
+      }
+      String name = parameter.getKey();
+      String value = parameter.getValue().toString();
+      if (name.equals("q")) {
+        value = value.trim().replaceAll("\\s+", " ").toLowerCase();
+      } else if (name.equals("part") || name.equals("type")) {
+        String[] values = value.replace(" ", "").split(",");
+        Arrays.sort(values);
+        value = join(values);
+      }
+      key.append(separator).append(name).append('=').append(value);
+      separator = '&';
+    }
+    return key.toString();
+  }
+
+  private static String join(String[] values) {
+    StringBuilder joined = new StringBuilder();
+    for (String value : values) {
+      if (joined.length() > 0) {
+        joined.append(',');
+      }
+      joined.append(value);
+    }
+    return joined.toString();
+  }
+
+  /**
+   * A parsed response and the time it expires.
+   */
+  private static class CachedResponse {
+
+    final SearchListResponse response;
+
+    final long expiresAt;
+
+    CachedResponse(SearchListResponse response, long expiresAt) {
+      this.response = response;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_search_sample;
+
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.SearchListResponse;
+import com.google.api.services.youtube.model.SearchResult;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Iterates over the results of a YouTube.Search.List request across pages, following
+ * nextPageToken. While the caller works through page N, page N+1 is fetched on a background
+ * thread, so a deep result set costs roughly one round trip in total instead of one per page.
+ *
+ * At most two pages are held at any time: the page being read and the page being fetched. The
+ * iterator stops after a maximum number of pages or results, whichever comes first. Call
+ * {@link #close()} when abandoning the iterator early so the background fetch is cancelled.
+ *
+ * The iterator is not thread-safe and owns the request it is given: the request's page token is
+ * changed as pages are fetched.
+ */
+public class SearchResultIterator implements Iterator<SearchResult> {
+
+  /** Request used to fetch every page; only the page token changes between pages. */
+  private final YouTube.Search.List request;
+
+  /** Maximum number of pages to fetch. */
+  private final int maxPages;
+
+  /** Maximum number of results to return. */
+  private final long maxResults;
+
+  /** Cache pages are read from and added to, or null to always execute the request. */
+  private final SearchCache cache;
+
+  /** Runs the page fetches; shut down in close() if this iterator created it. */
+  private final ExecutorService executor;
+
+  /** Whether the executor was created by (and must be shut down by) this iterator. */
+  private final boolean ownsExecutor;
+
+  /** Results of the page being read. */
+  private Iterator<SearchResult> currentPage = Collections.<SearchResult>emptyList().iterator();
+
+  /** Page being fetched in the background, or null if there are no more pages to fetch. */
+  private Future<SearchListResponse> nextPage;
+
+  /** Number of pages requested so far, including the one in flight. */
+  private int pagesRequested;
+
+  /** Number of results returned by next() so far. */
+  private long resultsReturned;
+
+  /** Number of results in the pages received so far. */
+  private long resultsReceived;
+
+  /**
+   * Creates an iterator that fetches pages on its own background thread.
+   *
+   * @param request search request; its page token is changed as pages are fetched
+   * @param maxPages maximum number of pages to fetch
+   * @param maxResults maximum number of results to return
+   */
+  public SearchResultIterator(YouTube.Search.List request, int maxPages, long maxResults) {
+    this(request, maxPages, maxResults, null, null);
+  }
+
+  /**
+   * Creates an iterator that reads pages through a cache and, optionally, fetches them on a shared
+   * executor, for example when many queries are iterated at once. A shared executor is not shut
+   * down by {@link #close()}.
+   *
+   * @param request search request; its page token is changed as pages are fetched
+   * @param maxPages maximum number of pages to fetch
+   * @param maxResults maximum number of results to return
+   * @param cache cache pages are read from and added to, or null for none
+   * @param executor executor the page fetches run on, or null to use a thread of its own
+   */
+  public SearchResultIterator(YouTube.Search.List request, int maxPages, long maxResults,
+      SearchCache cache, ExecutorService executor) {
+    if (maxPages < 1 || maxResults < 1) {
+      throw new IllegalArgumentException(
+          "maxPages and maxResults must be at least 1: " + maxPages + ", " + maxResults);
+    }
+    this.request = request;
+    this.maxPages = maxPages;
+    this.maxResults = maxResults;
+    this.cache = cache;
+    this.ownsExecutor = executor == null;
+    this.executor = ownsExecutor
+        ? Executors.newSingleThreadExecutor(new FetcherThreadFactory()) : executor;
+
+    // The first page is requested right away so it is on its way before the first hasNext().
+    fetch(null);
+  }
+
+  /**
+   * @throws PageFetchException if fetching the next page failed
+   */
+  public boolean hasNext() {
+    if (resultsReturned >= maxResults) {
+      close();
+      return false;
+    }
+    while (!currentPage.hasNext()) {
+      if (nextPage == null) {
+        close();
+        return false;
+      }
+      advance();
+    }
+    return true;
+  }
+
+  /**
+   * @throws PageFetchException if fetching the next page failed
+   */
+  public SearchResult next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    resultsReturned++;
+    return currentPage.next();
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Cancels any page fetch still in flight. Further calls to hasNext() return false once the
+   * current page is used up.
+   */
+  public void close() {
+    if (nextPage != null) {
+      nextPage.cancel(true);
+      nextPage = null;
+    }
+    if (ownsExecutor) {
+      executor.shutdownNow();
+    }
+  }
+
+  /*
+   * Waits for the page in flight, makes it the current page and, if more pages are wanted, starts
+   * fetching the one after it.
+   */
+  private void advance() {
+    SearchListResponse response;
+    try {
+      response = nextPage.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new PageFetchException(new IOException("Interrupted while fetching search results"));
+    } catch (ExecutionException e) {
+      close();
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw new PageFetchException((IOException) cause);
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    nextPage = null;
+
+    List<SearchResult> items = response.getItems();
+    if (items == null) {
+      items = Collections.emptyList();
+    }
+    currentPage = items.iterator();
+    resultsReceived += items.size();
+
+    // Only fetch ahead if the results we already hold do not cover the result limit.
+    String nextPageToken = response.getNextPageToken();
+    if (nextPageToken != null && pagesRequested < maxPages && resultsReceived < maxResults) {
+      fetch(nextPageToken);
+    }
+  }
+
+  /*
+   * Starts fetching the page with the given token in the background.
+   */
+  private void fetch(final String pageToken) {
+    pagesRequested++;
+    nextPage = executor.submit(new Callable<SearchListResponse>() {
+      public SearchListResponse call() throws IOException {
+        request.setPageToken(pageToken);
+        return cache == null ? request.execute() : cache.execute(request);
+      }
+    });
+  }
+
+  /**
+   * Thrown by hasNext() and next() when a page could not be fetched.
+   */
+  public static class PageFetchException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    PageFetchException(IOException cause) {
+      super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public IOException getCause() {
+      return (IOException) super.getCause();
+    }
+  }
+
+  /**
+   * Creates daemon threads so an abandoned iterator cannot keep the JVM alive.
+   */
+  private static class FetcherThreadFactory implements ThreadFactory {
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "search-page-fetcher");
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
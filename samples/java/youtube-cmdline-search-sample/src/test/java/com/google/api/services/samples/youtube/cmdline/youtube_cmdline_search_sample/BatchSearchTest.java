@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_search_sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.youtube.YouTube;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link BatchSearch}, against a transport that answers search.list with one video named
+ * after the query.
+ */
+public class BatchSearchTest {
+
+  private static final int QUERIES = 40;
+
+  /** Number of search requests being answered at the moment. */
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  /** Largest number of search requests answered at the same time. */
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  private final MockHttpTransport transport = new MockHttpTransport() {
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, final String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          int running = inFlight.incrementAndGet();
+          try {
+            while (true) {
+              int max = maxInFlight.get();
+              if (running <= max || maxInFlight.compareAndSet(max, running)) {
+                break;
+              }
+            }
+            return answer((String) new GenericUrl(url).getFirst("q"));
+          } finally {
+            inFlight.decrementAndGet();
+          }
+        }
+      };
+    }
+  };
+
+  private final YouTube youtube = new YouTube.Builder(transport, new JacksonFactory(), null)
+      .setApplicationName("batch-search-test").build();
+
+  @Test
+  public void resultsComeBackInInputOrder() throws Exception {
+    BatchSearch.BatchResult batch = new BatchSearch(youtube, "key", 8).run(queries(QUERIES));
+
+    assertEquals(QUERIES, batch.getResults().size());
+    assertEquals(0, batch.getFailureCount());
+    for (int i = 0; i < QUERIES; i++) {
+      BatchSearch.QueryResult result = batch.getResults().get(i);
+      assertEquals("query" + i, result.getQuery());
+      assertNull(result.getError());
+      assertEquals(1, result.getItems().size());
+      assertEquals("video-query" + i, result.getItems().get(0).getId().getVideoId());
+    }
+  }
+
+  @Test
+  public void failedQueryOnlyFailsItself() throws Exception {
+    List<String> queries = queries(QUERIES);
+    queries.set(7, "fail");
+    BatchSearch.BatchResult batch = new BatchSearch(youtube, "key", 8).run(queries);
+
+    assertEquals(1, batch.getFailureCount());
+    for (int i = 0; i < QUERIES; i++) {
+      BatchSearch.QueryResult result = batch.getResults().get(i);
+      if (i == 7) {
+        assertEquals("fail", result.getQuery());
+        assertNull(result.getItems());
+        assertTrue(result.getError() instanceof GoogleJsonResponseException);
+        assertEquals(400, ((GoogleJsonResponseException) result.getError()).getStatusCode());
+      } else {
+        assertNull(result.getError());
+        assertEquals("video-query" + i, result.getItems().get(0).getId().getVideoId());
+      }
+    }
+  }
+
+  @Test
+  public void queriesInFlightNeverExceedTheConcurrency() throws Exception {
+    BatchSearch.BatchResult batch = new BatchSearch(youtube, "key", 4).run(queries(QUERIES));
+
+    assertEquals(QUERIES, batch.getResults().size());
+    assertEquals(0, batch.getFailureCount());
+    assertTrue(maxInFlight.get() > 1);
+    assertTrue(maxInFlight.get() <= 4);
+  }
+
+  /*
+   * Answers a search, later queries sooner, so that queries finish out of input order. The query
+   * "fail" is answered with a 400 error.
+   */
+  private static LowLevelHttpResponse answer(String query) throws IOException {
+    if (query.equals("fail")) {
+      return new MockLowLevelHttpResponse()
+          .setStatusCode(400)
+          .setContentType("application/json; charset=UTF-8")
+          .setContent("{\"error\":{\"code\":400,\"message\":\"Bad query\","
+              + "\"errors\":[{\"reason\":\"badRequest\",\"message\":\"Bad query\"}]}}");
+    }
+    int index = Integer.parseInt(query.substring("query".length()));
+    try {
+      Thread.sleep(QUERIES - index);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    }
+    return new MockLowLevelHttpResponse()
+        .setContentType("application/json; charset=UTF-8")
+        .setContent("{\"items\":[{\"id\":{\"kind\":\"youtube#video\",\"videoId\":\"video-"
+            + query + "\"},\"snippet\":{\"title\":\"" + query + "\"}}]}");
+  }
+
+  private static List<String> queries(int count) {
+    List<String> queries = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      queries.add("query" + i);
+    }
+    return queries;
+  }
+}
@@ -18,9 +18,8 @@ import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.ResourceId;
 import com.google.api.services.youtube.model.SearchListResponse;
@@ -64,10 +63,10 @@ public class Topics {
   private static String PROPERTIES_FILENAME = "youtube.properties";
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of the max number of videos we want returned. */
   private static final long NUMBER_OF_VIDEOS_RETURNED = 5;
@@ -88,6 +87,9 @@ public class Topics {
    * @param args command line args not used.
   */
   public static void main( String[] args ) {
+    // Opens the connection and loads the response classes while the user types the search.
+    YouTubeClientFactory.get().warmUp(SearchListResponse.class);
+
     // Read the developer key from youtube.properties
     Properties properties = new Properties();
     try {
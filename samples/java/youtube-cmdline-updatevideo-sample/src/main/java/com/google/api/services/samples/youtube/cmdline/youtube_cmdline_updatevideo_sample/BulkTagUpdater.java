@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_updatevideo_sample;
+
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.ApiErrors;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.Video;
+import com.google.api.services.youtube.model.VideoListResponse;
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.Striped;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Applies a {@link TagEdit} to many videos.
+ *
+ * The snippets are read on the calling thread, {@link #MAX_IDS_PER_LIST} videos per videos.list
+ * call. Each video whose tags change is handed to a fixed pool of writer threads, which send the
+ * videos.update calls while the next batch is read. At most twice as many updates as there are
+ * writers are queued or running at once, so reading stops when the writers fall behind and memory
+ * use does not depend on the number of videos. Videos that already have the edit are not updated.
+ *
+ * Updates are conditional: each one carries the ETag the video was read with as If-Match, so an
+ * update made to the video since it was read (by another writer, here or elsewhere) is not
+ * overwritten. The server answers such an update with 412 (Precondition Failed); the video is
+ * then read again and the edit applied to what it holds now, up to {@link #MAX_CONFLICTS} times.
+ * Within this process, writes to the same video are serialized by a lock, so that a video listed
+ * twice does not conflict with itself. The locks are striped by video id over
+ * {@link #LOCK_STRIPES} lazily created locks, so writers to unrelated videos only share a lock
+ * when their ids hash to the same stripe, which with far more stripes than writers is rare.
+ *
+ * A call that fails with a server error, a rate limit error or an I/O error is retried up to
+ * {@link #MAX_ATTEMPTS} times, with an exponential back-off with random jitter so that the
+ * writers do not retry in lockstep. Other errors, and calls that still fail after the last
+ * attempt, fail their videos, whose ids are kept (see {@link #getFailedIds}) so they can be tried
+ * again.
+ *
+ * Quota units are counted for every request sent, retries included, from the costs given by the
+ * API's quota calculator.
+ */
+public class BulkTagUpdater {
+
+  /** Largest number of ids videos.list accepts in one call. */
+  public static final int MAX_IDS_PER_LIST = 50;
+
+  /** Quota cost of a videos.list call. */
+  static final int LIST_QUOTA_COST = 1;
+
+  /** Quota cost of a videos.update call. */
+  static final int UPDATE_QUOTA_COST = 50;
+
+  /** Number of times a call is sent before it is given up on. */
+  static final int MAX_ATTEMPTS = 5;
+
+  /** Back-off before the second attempt; doubled for each later one, plus up to as much jitter. */
+  static final long INITIAL_BACKOFF_MILLIS = 1000;
+
+  /** Number of times a video is read again after a conflicting update before it fails. */
+  static final int MAX_CONFLICTS = 5;
+
+  /** Number of stripes of the per-video locks. */
+  static final int LOCK_STRIPES = 4096;
+
+  /** HTTP status of an update whose If-Match ETag is no longer the video's. */
+  static final int PRECONDITION_FAILED = 412;
+
+  /** Number of videos.list batches between two progress lines. */
+  private static final int PROGRESS_INTERVAL = 20;
+
+  private final YouTube youtube;
+
+  private final TagEdit edit;
+
+  private final int writers;
+
+  private final Random random = new Random();
+
+  private final Striped<Lock> videoLocks = Striped.lazyWeakLock(LOCK_STRIPES);
+
+  private final AtomicLong videosRead = new AtomicLong();
+
+  private final AtomicLong videosNotFound = new AtomicLong();
+
+  private final AtomicLong videosUnchanged = new AtomicLong();
+
+  private final AtomicLong videosUpdated = new AtomicLong();
+
+  private final AtomicLong retries = new AtomicLong();
+
+  private final AtomicLong conflicts = new AtomicLong();
+
+  private final AtomicLong quotaUnits = new AtomicLong();
+
+  private final List<String> failedIds = Collections.synchronizedList(new ArrayList<String>());
+
+  private long startedAt;
+
+  private long elapsedNanos;
+
+  /**
+   * Creates an updater.
+   *
+   * @param youtube YouTube client, shared by the writers
+   * @param edit edit to apply to every video
+   * @param writers number of updates to send at once
+   */
+  public BulkTagUpdater(YouTube youtube, TagEdit edit, int writers) {
+    this.youtube = youtube;
+    this.edit = edit;
+    this.writers = writers;
+  }
+
+  /**
+   * Applies the edit to every video and waits for the last update to complete.
+   *
+   * @param videoIds ids of the videos to edit
+   */
+  public void run(Iterator<String> videoIds) throws InterruptedException {
+    final AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(writers, new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "tag-writer-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    Semaphore pendingWrites = new Semaphore(2 * writers);
+    startedAt = System.nanoTime();
+    try {
+      List<String> batch = new ArrayList<String>(MAX_IDS_PER_LIST);
+      int batches = 0;
+      while (videoIds.hasNext()) {
+        batch.add(videoIds.next());
+        if (batch.size() == MAX_IDS_PER_LIST || !videoIds.hasNext()) {
+          readBatch(batch, executor, pendingWrites);
+          batch.clear();
+          if (++batches % PROGRESS_INTERVAL == 0) {
+            System.out.println(" " + this);
+          }
+        }
+      }
+      executor.shutdown();
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        // Keep waiting for the last updates.
+      }
+    } finally {
+      executor.shutdownNow();
+      elapsedNanos = System.nanoTime() - startedAt;
+    }
+  }
+
+  /** Number of videos read. */
+  public long getVideosRead() {
+    return videosRead.get();
+  }
+
+  /** Number of ids for which videos.list returned no video. */
+  public long getVideosNotFound() {
+    return videosNotFound.get();
+  }
+
+  /** Number of videos that already had the edit, and so were not updated. */
+  public long getVideosUnchanged() {
+    return videosUnchanged.get();
+  }
+
+  /** Number of videos updated. */
+  public long getVideosUpdated() {
+    return videosUpdated.get();
+  }
+
+  /**
+   * Applies the edit to one video, and returns the video as updated, or as it is if it already has
+   * the edit, or null if there is no such video.
+   *
+   * @param videoId id of the video
+   */
+  public Video update(String videoId) throws IOException, InterruptedException {
+    Lock lock = videoLocks.get(videoId);
+    lock.lock();
+    try {
+      Video video = read(videoId);
+      if (video == null) {
+        videosNotFound.incrementAndGet();
+        return null;
+      }
+      videosRead.incrementAndGet();
+      if (!edit.applyTo(video.getSnippet())) {
+        videosUnchanged.incrementAndGet();
+        return video;
+      }
+      return writeLocked(video);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Number of calls sent again after an error. */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /** Number of updates rejected because the video had changed since it was read. */
+  public long getConflicts() {
+    return conflicts.get();
+  }
+
+  /** Quota units used by every request sent. */
+  public long getQuotaUnits() {
+    return quotaUnits.get();
+  }
+
+  /** Ids of the videos that could not be read or updated. */
+  public List<String> getFailedIds() {
+    synchronized (failedIds) {
+      return new ArrayList<String>(failedIds);
+    }
+  }
+
+  /** Updates per second, from the start of the run to its end (or to now while it runs). */
+  public double getUpdatesPerSecond() {
+    long nanos = elapsedNanos > 0 ? elapsedNanos : System.nanoTime() - startedAt;
+    return nanos <= 0 ? 0 : videosUpdated.get() * 1e9 / nanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d videos read, %d not found, %d unchanged, %d updated, %d failed, %d retries, "
+            + "%d conflicts, %.1f updates/sec, %d quota units",
+        getVideosRead(), getVideosNotFound(), getVideosUnchanged(), getVideosUpdated(),
+        failedIds.size(), getRetries(), getConflicts(), getUpdatesPerSecond(), getQuotaUnits());
+  }
+
+  /*
+   * Reads the snippets of a batch of videos and queues an update for each one the edit changes.
+   */
+  private void readBatch(List<String> batch, ExecutorService executor,
+      final Semaphore pendingWrites) throws InterruptedException {
+    VideoListResponse response;
+    try {
+      YouTube.Videos.List request = youtube.videos().list(Joiner.on(',').join(batch), "snippet");
+      request.setFields("items(id,etag,snippet)");
+      response = execute(request, LIST_QUOTA_COST);
+    } catch (IOException e) {
+      System.err.println("Could not read " + batch.size() + " videos: " + e.getMessage());
+      failedIds.addAll(batch);
+      return;
+    }
+    List<Video> videos = response.getItems();
+    int found = videos == null ? 0 : videos.size();
+    videosNotFound.addAndGet(batch.size() - found);
+    if (videos == null) {
+      return;
+    }
+    for (final Video video : videos) {
+      videosRead.incrementAndGet();
+      if (!edit.applyTo(video.getSnippet())) {
+        videosUnchanged.incrementAndGet();
+        continue;
+      }
+      pendingWrites.acquire();
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            write(video);
+          } finally {
+            pendingWrites.release();
+          }
+        }
+      });
+    }
+  }
+
+  /*
+   * Sends the edited snippet of a video, under the video's lock.
+   */
+  private void write(Video video) {
+    Lock lock = videoLocks.get(video.getId());
+    try {
+      lock.lock();
+      try {
+        writeLocked(video);
+      } finally {
+        lock.unlock();
+      }
+    } catch (IOException e) {
+      System.err.println("Could not update " + video.getId() + ": " + e.getMessage());
+      failedIds.add(video.getId());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failedIds.add(video.getId());
+    }
+  }
+
+  /*
+   * Sends the edited snippet of a video if the video has not changed since it was read, and
+   * otherwise reads it again and applies the edit to what it holds now. The caller holds the
+   * video's lock. Returns the updated video, or the video as read if it already has the edit.
+   */
+  private Video writeLocked(Video video) throws IOException, InterruptedException {
+    for (int conflict = 0;; conflict++) {
+      Video update = new Video();
+      update.setId(video.getId());
+      update.setSnippet(video.getSnippet());
+      YouTube.Videos.Update request = youtube.videos().update("snippet", update);
+      request.getRequestHeaders().setIfMatch(video.getEtag());
+      try {
+        Video updated = execute(request, UPDATE_QUOTA_COST);
+        videosUpdated.incrementAndGet();
+        return updated;
+      } catch (HttpResponseException e) {
+        if (e.getStatusCode() != PRECONDITION_FAILED || conflict == MAX_CONFLICTS) {
+          throw e;
+        }
+      }
+      conflicts.incrementAndGet();
+      Video current = read(video.getId());
+      if (current == null) {
+        throw new IOException("Video " + video.getId() + " was deleted while being updated");
+      }
+      if (!edit.applyTo(current.getSnippet())) {
+        // Whoever changed the video made the edit already.
+        videosUnchanged.incrementAndGet();
+        return current;
+      }
+      video = current;
+    }
+  }
+
+  /*
+   * Reads the snippet and ETag of one video, or returns null if there is no such video.
+   */
+  private Video read(String videoId) throws IOException, InterruptedException {
+    YouTube.Videos.List request = youtube.videos().list(videoId, "snippet");
+    request.setFields("items(id,etag,snippet)");
+    List<Video> videos = execute(request, LIST_QUOTA_COST).getItems();
+    return videos == null || videos.isEmpty() ? null : videos.get(0);
+  }
+
+  /*
+   * Executes a request, retrying it with back-off while it fails with a retryable error.
+   */
+  private <T> T execute(AbstractGoogleClientRequest<T> request, int quotaCost)
+      throws IOException, InterruptedException {
+    for (int attempt = 1;; attempt++) {
+      quotaUnits.addAndGet(quotaCost);
+      try {
+        return request.execute();
+      } catch (IOException e) {
+        if (attempt == MAX_ATTEMPTS || !ApiErrors.isRetryable(e)) {
+          throw e;
+        }
+        retries.incrementAndGet();
+        long backoff = INITIAL_BACKOFF_MILLIS << (attempt - 1);
+        Thread.sleep(backoff + (long) (random.nextDouble() * backoff));
+      }
+    }
+  }
+}
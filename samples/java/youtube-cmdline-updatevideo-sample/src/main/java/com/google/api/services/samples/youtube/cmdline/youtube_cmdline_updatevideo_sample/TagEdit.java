@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_updatevideo_sample;
+
+import com.google.api.services.youtube.model.VideoSnippet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tags to add to and remove from a video. Tags are compared ignoring case, as YouTube does, so a
+ * tag is not added twice in different cases.
+ */
+public class TagEdit {
+
+  private final List<String> tagsToAdd;
+
+  private final List<String> tagsToRemove;
+
+  /**
+   * Creates an edit.
+   *
+   * @param tagsToAdd tags to add, unless the video already has them
+   * @param tagsToRemove tags to remove, if the video has them
+   */
+  public TagEdit(List<String> tagsToAdd, List<String> tagsToRemove) {
+    this.tagsToAdd = tagsToAdd;
+    this.tagsToRemove = tagsToRemove;
+  }
+
+  /**
+   * Applies the edit to the tags of a snippet, and returns whether they changed. A video whose
+   * tags would not change does not need to be updated.
+   *
+   * @param snippet snippet of the video, as read with videos.list
+   */
+  public boolean applyTo(VideoSnippet snippet) {
+    List<String> tags = snippet.getTags();
+    // getTags() returns null if the video doesn't have any tags.
+    if (tags == null) {
+      tags = new ArrayList<String>();
+    }
+    boolean changed = false;
+    for (Iterator<String> i = tags.iterator(); i.hasNext();) {
+      if (contains(tagsToRemove, i.next())) {
+        i.remove();
+        changed = true;
+      }
+    }
+    for (String tag : tagsToAdd) {
+      if (!contains(tags, tag)) {
+        tags.add(tag);
+        changed = true;
+      }
+    }
+    if (changed) {
+      snippet.setTags(tags);
+    }
+    return changed;
+  }
+
+  @Override
+  public String toString() {
+    return "add " + tagsToAdd + ", remove " + tagsToRemove;
+  }
+
+  private static boolean contains(List<String> tags, String tag) {
+    for (String candidate : tags) {
+      if (candidate.equalsIgnoreCase(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -15,27 +15,25 @@
 package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_updatevideo_sample;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.Video;
 import com.google.api.services.youtube.model.VideoListResponse;
-import com.google.api.services.youtube.model.VideoSnippet;
 import com.google.common.collect.Lists;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -47,56 +45,27 @@ import java.util.List;
 public class UpdateVideo {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /** Global instance of YouTube object to make all API requests. */
   private static YouTube youtube;
 
-  /**
-   * Authorizes the installed application to access user's protected data.
-   *
-   * @param scopes list of scopes needed to run YouTube upload.
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-        JSON_FACTORY, UpdateVideo.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-cmdline-updatevideo-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
-    }
-
-    // Set up file credential store.
-    FileCredentialStore credentialStore = new FileCredentialStore(
-        new File(System.getProperty("user.home"), ".credentials/youtube-api-updatevideo.json"),
-        JSON_FACTORY);
-
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-        HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes).setCredentialStore(credentialStore)
-        .build();
-
-    // Build the local server and bind it to port 9000
-    LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-  }
+  /* Number of videos.update calls the bulk mode sends at once unless "--parallel" is given. */
+  private static final int DEFAULT_PARALLEL_UPDATES = 4;
 
   /**
-   * Uploads user selected video in the project folder to the user's YouTube account using OAuth2
-   * for authentication.
+   * Adds a tag to a video whose id is entered by the user, using OAuth2 for authentication.
+   *
+   * With "--ids file", edits the tags of every video whose id is listed in the file instead (one
+   * per line; blank lines and lines starting with "#" are ignored): each "--add tag" is added and
+   * each "--remove tag" removed, with "--parallel n" updates sent at once (4 by default). The ids
+   * of the videos that could not be updated are written to the file's name followed by
+   * ".failed", so that the edit can be run again on them alone.
    *
-   * @param args command line args (not used).
+   * @param args command line args.
    */
   public static void main(String[] args) {
 
@@ -104,13 +73,26 @@ public class UpdateVideo {
     List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube");
 
     try {
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(VideoListResponse.class, Video.class);
+
       // Authorization.
-      Credential credential = authorize(scopes);
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-api-updatevideo.json");
 
       // YouTube object used to make all API requests.
       youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName(
           "youtube-cmdline-updatevideo-sample").build();
 
+      String idsFile = getOption(args, "--ids");
+      if (idsFile != null) {
+        String parallel = getOption(args, "--parallel");
+        updateTags(new File(idsFile), new TagEdit(getOptions(args, "--add"),
+            getOptions(args, "--remove")),
+            parallel == null ? DEFAULT_PARALLEL_UPDATES : Integer.parseInt(parallel));
+        return;
+      }
+
       // Get the user selected video Id.
       String videoId = getVideoIdFromUser();
       System.out.println("You chose " + videoId + " to update.");
@@ -119,38 +101,19 @@ public class UpdateVideo {
       String tag = getTagFromUser();
       System.out.println("You chose " + tag + " as a tag.");
 
-      // Create the video list request
-      YouTube.Videos.List listVideosRequest = youtube.videos().list(videoId, "snippet");
-
-      // Request is executed and video list response is returned
-      VideoListResponse listResponse = listVideosRequest.execute();
-
-      List<Video> videoList = listResponse.getItems();
-      if (videoList.isEmpty()) {
+      /*
+       * The video is read, the tag added to its snippet and the snippet sent back with the ETag
+       * the video was read with, so that a change someone else made in between is not lost: the
+       * update is then rejected, and the video read again and the tag added to its new snippet.
+       */
+      BulkTagUpdater updater = new BulkTagUpdater(youtube,
+          new TagEdit(Collections.singletonList(tag), Collections.<String>emptyList()), 1);
+      Video videoResponse = updater.update(videoId);
+      if (videoResponse == null) {
         System.out.println("Can't find a video with video id: " + videoId);
         return;
       }
 
-      // Since a unique video id is given, it will only return 1 video.
-      Video video = videoList.get(0);
-      VideoSnippet snippet = video.getSnippet();
-
-      List<String> tags = snippet.getTags();
-
-      // getTags() returns null if the video didn't have any tags, so we will check for this and
-      // create a new list if needed
-      if (tags == null) {
-        tags = new ArrayList<String>(1);
-        snippet.setTags(tags);
-      }
-      tags.add(tag);
-
-      // Create the video update request
-      YouTube.Videos.Update updateVideosRequest = youtube.videos().update("snippet", video);
-
-      // Request is executed and updated video is returned
-      Video videoResponse = updateVideosRequest.execute();
-
       // Print out returned results.
       System.out.println("\n================== Returned Video ==================\n");
       System.out.println("  - Title: " + videoResponse.getSnippet().getTitle());
@@ -169,6 +132,81 @@ public class UpdateVideo {
     }
   }
 
+  /*
+   * Applies a tag edit to the videos listed in a file and prints a summary.
+   */
+  private static void updateTags(File idsFile, TagEdit edit, int parallelUpdates)
+      throws IOException, InterruptedException {
+    List<String> videoIds = readIds(idsFile);
+    System.out.println("Editing the tags of " + videoIds.size() + " videos: " + edit);
+
+    BulkTagUpdater updater = new BulkTagUpdater(youtube, edit, parallelUpdates);
+    updater.run(videoIds.iterator());
+    System.out.println("\n" + updater);
+
+    List<String> failedIds = updater.getFailedIds();
+    if (!failedIds.isEmpty()) {
+      File failedFile = new File(idsFile.getPath() + ".failed");
+      PrintWriter writer =
+          new PrintWriter(new OutputStreamWriter(new FileOutputStream(failedFile), "UTF-8"));
+      try {
+        for (String videoId : failedIds) {
+          writer.println(videoId);
+        }
+      } finally {
+        writer.close();
+      }
+      System.out.println("The ids of the " + failedIds.size() + " videos not updated are in "
+          + failedFile);
+    }
+  }
+
+  /*
+   * Reads video ids, one per line, skipping blank lines and comments.
+   */
+  private static List<String> readIds(File file) throws IOException {
+    List<String> videoIds = new ArrayList<String>();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0 && !line.startsWith("#")) {
+          videoIds.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return videoIds;
+  }
+
+  /*
+   * Returns the value given after an option such as "--ids", or null if it is not given.
+   */
+  private static String getOption(String[] args, String option) {
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        return args[i + 1];
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Returns the values given after each occurrence of an option such as "--add".
+   */
+  private static List<String> getOptions(String[] args, String option) {
+    List<String> values = new ArrayList<String>();
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        values.add(args[i + 1]);
+      }
+    }
+    return values;
+  }
+
   /*
    * Prompts for a tag from standard input and returns it.
    */
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_updatevideo_sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.youtube.model.Video;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests for {@link BulkTagUpdater}, against videos held in memory.
+ */
+public class BulkTagUpdaterTest {
+
+  private static final TagEdit EDIT =
+      new TagEdit(Arrays.asList("summer"), Arrays.asList("old"));
+
+  @Test
+  public void editsMadeElsewhereWhileUpdatingAreNotLost() throws Exception {
+    final int size = 500;
+    final VideoStub stub = new VideoStub(size, 2, 0.2, 1);
+    BulkTagUpdater updater = new BulkTagUpdater(stub.youtube(), EDIT, 8);
+
+    // Another writer adds tags to random videos for as long as the run lasts.
+    final Map<String, List<String>> addedElsewhere = new HashMap<String, List<String>>();
+    final AtomicBoolean done = new AtomicBoolean();
+    Thread editor = new Thread() {
+      @Override
+      public void run() {
+        Random random = new Random(2);
+        for (int i = 0; !done.get(); i++) {
+          String videoId = "video" + random.nextInt(size);
+          String tag = "outside" + i;
+          stub.editElsewhere(videoId, tag);
+          if (!addedElsewhere.containsKey(videoId)) {
+            addedElsewhere.put(videoId, new ArrayList<String>());
+          }
+          addedElsewhere.get(videoId).add(tag);
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    };
+    editor.start();
+    try {
+      updater.run(ids(size).iterator());
+    } finally {
+      done.set(true);
+      editor.join();
+    }
+
+    assertEquals(Collections.<String>emptyList(), updater.getFailedIds());
+    assertTrue(updater.getConflicts() > 0);
+    assertEquals(stub.getRejectedUpdates(), updater.getConflicts());
+    for (int i = 0; i < size; i++) {
+      String videoId = "video" + i;
+      List<String> tags = stub.getTags(videoId);
+      assertTrue(videoId + " " + tags, tags.contains("summer"));
+      assertFalse(videoId + " " + tags, tags.contains("old"));
+      if (addedElsewhere.containsKey(videoId)) {
+        assertTrue(videoId + " " + tags, tags.containsAll(addedElsewhere.get(videoId)));
+      }
+    }
+  }
+
+  @Test
+  public void videosAreReadFiftyAtATimeAndOnlyChangedOnesUpdated() throws Exception {
+    VideoStub stub = new VideoStub(120, 0, 0, 0);
+    for (int i = 0; i < 20; i++) {
+      stub.editElsewhere("video" + i, "summer");
+    }
+    List<String> ids = ids(120);
+    ids.add("missing");
+    BulkTagUpdater updater = new BulkTagUpdater(
+        stub.youtube(), new TagEdit(Arrays.asList("summer"), Collections.<String>emptyList()), 4);
+    updater.run(ids.iterator());
+
+    assertEquals(3, stub.getLists());
+    assertEquals(100, stub.getUpdates());
+    assertEquals(120, updater.getVideosRead());
+    assertEquals(1, updater.getVideosNotFound());
+    assertEquals(20, updater.getVideosUnchanged());
+    assertEquals(100, updater.getVideosUpdated());
+    assertEquals(3 * BulkTagUpdater.LIST_QUOTA_COST + 100 * BulkTagUpdater.UPDATE_QUOTA_COST,
+        updater.getQuotaUnits());
+    assertTrue(updater.getUpdatesPerSecond() > 0);
+  }
+
+  @Test
+  public void conflictingUpdateIsAppliedToTheVideoAsItIsNow() throws Exception {
+    VideoStub stub = new VideoStub(1, 0, 1, 0);
+    BulkTagUpdater updater = new BulkTagUpdater(stub.youtube(), EDIT, 1);
+    Video video = updater.update("video0");
+
+    assertEquals(Arrays.asList("elsewhere-video0", "summer"), video.getSnippet().getTags());
+    assertEquals(Arrays.asList("elsewhere-video0", "summer"), stub.getTags("video0"));
+    assertEquals(1, updater.getConflicts());
+    assertEquals(2 * BulkTagUpdater.LIST_QUOTA_COST + 2 * BulkTagUpdater.UPDATE_QUOTA_COST,
+        updater.getQuotaUnits());
+  }
+
+  private static List<String> ids(int size) {
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < size; i++) {
+      ids.add("video" + i);
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_updatevideo_sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the updates per second and quota units of a bulk tag edit on videos held in memory,
+ * whose calls each take a fixed latency, with one writer and with several. A share of the videos
+ * is edited elsewhere just before its update, so that some updates conflict and are sent again;
+ * every video is checked afterwards for the edit and for the tag added elsewhere.
+ *
+ * Run with the test classpath, for instance from an IDE, with optional arguments: number of
+ * videos (2000), milliseconds per call (20) and share of videos edited elsewhere (0.05).
+ */
+public class TagUpdateBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int latency = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    double conflictRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+    for (int writers : new int[] {1, 4, 16, 64}) {
+      run(size, latency, conflictRate, writers);
+    }
+  }
+
+  private static void run(int size, int latency, double conflictRate, int writers)
+      throws Exception {
+    VideoStub stub = new VideoStub(size, latency, conflictRate, size);
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < size; i++) {
+      ids.add("video" + i);
+    }
+    BulkTagUpdater updater = new BulkTagUpdater(
+        stub.youtube(), new TagEdit(Arrays.asList("summer"), Arrays.asList("old")), writers);
+    updater.run(ids.iterator());
+
+    int lost = 0;
+    for (String videoId : ids) {
+      List<String> tags = stub.getTags(videoId);
+      if (!tags.contains("summer") || tags.contains("old")) {
+        lost++;
+      }
+    }
+    if (stub.getEditsElsewhere() != countTagged(stub, ids, "elsewhere-")) {
+      lost++;
+    }
+    System.out.printf(
+        "%2d writers %7.1f updates/sec %7d quota units %4d lists %5d updates %3d conflicts "
+            + "%d failed %d lost%n",
+        writers, updater.getUpdatesPerSecond(), updater.getQuotaUnits(), stub.getLists(),
+        stub.getUpdates(), updater.getConflicts(), updater.getFailedIds().size(), lost);
+  }
+
+  private static int countTagged(VideoStub stub, List<String> ids, String prefix) {
+    int count = 0;
+    for (String videoId : ids) {
+      for (String tag : stub.getTags(videoId)) {
+        if (tag.startsWith(prefix)) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_updatevideo_sample;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.Video;
+import com.google.api.services.youtube.model.VideoListResponse;
+import com.google.api.services.youtube.model.VideoSnippet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Videos held in memory behind a mock transport: videos.list returns the snippets and ETags of the
+ * ids it is given, and videos.update replaces a video's tags if its If-Match ETag is still the
+ * video's, and otherwise answers 412 (Precondition Failed), like the real service. Each call waits
+ * a fixed latency first, outside the lock, so that calls sent at once overlap.
+ *
+ * To stand for edits made elsewhere at the same time, {@link #editElsewhere} adds a tag to a
+ * video and changes its ETag, and the stub can be told to make such an edit to a share of the
+ * videos just before their first update arrives, so that the update conflicts.
+ */
+class VideoStub extends MockHttpTransport {
+
+  private final JsonFactory jsonFactory = new JacksonFactory();
+
+  /** Tags of each video, by id. */
+  private final Map<String, List<String>> tags = new HashMap<String, List<String>>();
+
+  /** Version of each video, by id, which its ETag is made from. */
+  private final Map<String, Integer> versions = new HashMap<String, Integer>();
+
+  /** Ids of the videos whose first update has arrived. */
+  private final Set<String> updatedOnce = new HashSet<String>();
+
+  private final int latencyMillis;
+
+  private final double conflictRate;
+
+  private final Random random;
+
+  private final AtomicInteger lists = new AtomicInteger();
+
+  private final AtomicInteger updates = new AtomicInteger();
+
+  private final AtomicInteger rejectedUpdates = new AtomicInteger();
+
+  private int editsElsewhere;
+
+  /**
+   * Creates videos "video0", "video1"... each tagged "old".
+   *
+   * @param size number of videos
+   * @param latencyMillis time each call takes
+   * @param conflictRate share of the videos edited elsewhere just before their first update
+   * @param seed seed of the choice of those videos
+   */
+  VideoStub(int size, int latencyMillis, double conflictRate, long seed) {
+    for (int i = 0; i < size; i++) {
+      List<String> videoTags = new ArrayList<String>();
+      videoTags.add("old");
+      tags.put("video" + i, videoTags);
+      versions.put("video" + i, 0);
+    }
+    this.latencyMillis = latencyMillis;
+    this.conflictRate = conflictRate;
+    this.random = new Random(seed);
+  }
+
+  /** Returns a YouTube object whose calls go to these videos. */
+  YouTube youtube() {
+    return new YouTube.Builder(this, jsonFactory, null).setApplicationName("video-stub").build();
+  }
+
+  /** Returns the tags a video has now. */
+  synchronized List<String> getTags(String videoId) {
+    return new ArrayList<String>(tags.get(videoId));
+  }
+
+  /**
+   * Adds a tag to a video and changes its ETag, as an edit made elsewhere would.
+   *
+   * @param videoId id of the video
+   * @param tag tag to add
+   */
+  synchronized void editElsewhere(String videoId, String tag) {
+    tags.get(videoId).add(tag);
+    versions.put(videoId, versions.get(videoId) + 1);
+    editsElsewhere++;
+  }
+
+  /** Number of edits made with {@link #editElsewhere}, directly or before a first update. */
+  synchronized int getEditsElsewhere() {
+    return editsElsewhere;
+  }
+
+  /** Number of videos.list calls received. */
+  int getLists() {
+    return lists.get();
+  }
+
+  /** Number of videos.update calls received, rejected ones included. */
+  int getUpdates() {
+    return updates.get();
+  }
+
+  /** Number of videos.update calls rejected with 412. */
+  int getRejectedUpdates() {
+    return rejectedUpdates.get();
+  }
+
+  @Override
+  public LowLevelHttpRequest buildRequest(final String method, final String url) {
+    return new MockLowLevelHttpRequest(url) {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        pause();
+        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+        response.setContentType("application/json");
+        if (method.equals("GET")) {
+          lists.incrementAndGet();
+          response.setContent(list(((String) new GenericUrl(url).getFirst("id")).split(",")));
+        } else {
+          updates.incrementAndGet();
+          Video video = jsonFactory.fromString(getContentAsString(), Video.class);
+          String content = update(video, getFirstHeaderValue("If-Match"));
+          if (content == null) {
+            rejectedUpdates.incrementAndGet();
+            response.setStatusCode(BulkTagUpdater.PRECONDITION_FAILED);
+            response.setContent("{\"error\":{\"code\":412,\"message\":\"Precondition Failed\"}}");
+          } else {
+            response.setContent(content);
+          }
+        }
+        return response;
+      }
+    };
+  }
+
+  private synchronized String list(String[] videoIds) throws IOException {
+    List<Video> items = new ArrayList<Video>();
+    for (String videoId : videoIds) {
+      if (tags.containsKey(videoId)) {
+        items.add(video(videoId));
+      }
+    }
+    return jsonFactory.toString(new VideoListResponse().setItems(items));
+  }
+
+  /*
+   * Replaces the tags of a video if its ETag matches, and returns the video as updated, or null
+   * if it does not match.
+   */
+  private synchronized String update(Video update, String ifMatch) throws IOException {
+    String videoId = update.getId();
+    if (!tags.containsKey(videoId)) {
+      throw new IOException("No video " + videoId);
+    }
+    if (updatedOnce.add(videoId) && random.nextDouble() < conflictRate) {
+      editElsewhere(videoId, "elsewhere-" + videoId);
+    }
+    if (ifMatch != null && !ifMatch.equals(etag(videoId))) {
+      return null;
+    }
+    List<String> newTags = update.getSnippet().getTags();
+    tags.put(videoId, newTags == null ? new ArrayList<String>() : new ArrayList<String>(newTags));
+    versions.put(videoId, versions.get(videoId) + 1);
+    return jsonFactory.toString(video(videoId));
+  }
+
+  private Video video(String videoId) {
+    Video video = new Video();
+    video.setId(videoId);
+    video.setEtag(etag(videoId));
+    VideoSnippet snippet = new VideoSnippet();
+    snippet.setTitle("Video " + videoId);
+    snippet.setTags(new ArrayList<String>(tags.get(videoId)));
+    video.setSnippet(snippet);
+    return video;
+  }
+
+  private String etag(String videoId) {
+    return "\"" + videoId + "/" + versions.get(videoId) + "\"";
+  }
+
+  private void pause() throws IOException {
+    try {
+      Thread.sleep(latencyMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    }
+  }
+}
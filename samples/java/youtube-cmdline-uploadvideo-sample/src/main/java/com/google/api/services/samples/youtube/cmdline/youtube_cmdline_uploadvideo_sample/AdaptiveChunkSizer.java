@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+
+import java.io.IOException;
+
+/**
+ * Progress listener that adjusts the chunk size of a resumable upload to the link, so that each
+ * chunk takes about the same time to send.
+ *
+ * Every chunk costs a round trip on top of the time to send its bytes. With a fixed chunk size, a
+ * fast link spends much of its time waiting on those round trips, and a slow or flaky one loses a
+ * whole large chunk each time a request fails. The sizer times the initiation request, which
+ * carries no media, as an estimate of the round trip, and times each chunk as the uploader
+ * reports it. From those it estimates the link's bandwidth and sets the next chunk to what the
+ * link sends in the target duration, but at least enough to make the round trip a small part of
+ * it. A chunk that took long because it had to be retried lowers the estimate, so chunks shrink
+ * on a link that keeps failing.
+ *
+ * Each step at most doubles or halves the chunk size, which always stays a multiple of
+ * MediaHttpUploader.MINIMUM_CHUNK_SIZE (256 KiB), as the protocol requires. Progress is passed on
+ * to another listener.
+ *
+ * An upload not sent by a MediaHttpUploader, such as one finished by {@link UploadResumer}, is
+ * sized by calling {@link #start} and then {@link #chunkSent} for each chunk instead.
+ */
+public class AdaptiveChunkSizer implements MediaHttpUploaderProgressListener {
+
+  /** Default time each chunk should take to send. */
+  public static final long DEFAULT_TARGET_MILLIS = 2000;
+
+  /** Default largest chunk size. */
+  public static final int DEFAULT_MAX_CHUNK_SIZE = 128 * 1024 * 1024;
+
+  /** Minimum ratio of a chunk's duration to the round trip time. */
+  private static final int MIN_ROUND_TRIPS_PER_CHUNK = 8;
+
+  /** Weight of the newest chunk in the bandwidth estimate. */
+  private static final double SMOOTHING = 0.5;
+
+  private final MediaHttpUploaderProgressListener delegate;
+
+  private final long targetNanos;
+
+  private final int maxChunkSize;
+
+  /** Round trip time measured on the initiation request, or 0 until it completes. */
+  private long roundTripNanos;
+
+  /** Estimated bandwidth in bytes per nanosecond, or 0 until the first chunk completes. */
+  private double bandwidth;
+
+  /** Time the current request started. */
+  private long requestStartedAt;
+
+  /** Bytes the server had confirmed when the current chunk started. */
+  private long bytesAtChunkStart;
+
+  private int chunkSize;
+
+  /**
+   * Creates a sizer with the default target duration and largest chunk size.
+   *
+   * @param delegate listener to pass progress on to, or null for none
+   */
+  public AdaptiveChunkSizer(MediaHttpUploaderProgressListener delegate) {
+    this(delegate, DEFAULT_TARGET_MILLIS, DEFAULT_MAX_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a sizer.
+   *
+   * @param delegate listener to pass progress on to, or null for none
+   * @param targetMillis time each chunk should take to send
+   * @param maxChunkSize largest chunk size, rounded down to a multiple of 256 KiB
+   */
+  public AdaptiveChunkSizer(
+      MediaHttpUploaderProgressListener delegate, long targetMillis, int maxChunkSize) {
+    if (maxChunkSize < MediaHttpUploader.MINIMUM_CHUNK_SIZE) {
+      throw new IllegalArgumentException("maxChunkSize must be at least 256 KiB: " + maxChunkSize);
+    }
+    this.delegate = delegate;
+    this.targetNanos = targetMillis * 1000000L;
+    this.maxChunkSize = roundDown(maxChunkSize);
+  }
+
+  public void progressChanged(MediaHttpUploader uploader) throws IOException {
+    long now = System.nanoTime();
+    switch (uploader.getUploadState()) {
+      case INITIATION_STARTED:
+        requestStartedAt = now;
+        chunkSize = Math.min(uploader.getChunkSize(), maxChunkSize);
+        break;
+      case INITIATION_COMPLETE:
+        roundTripNanos = now - requestStartedAt;
+        requestStartedAt = now;
+        uploader.setChunkSize(chunkSize);
+        break;
+      case MEDIA_IN_PROGRESS:
+        long bytesConfirmed = uploader.getNumBytesUploaded();
+        chunkSent(bytesConfirmed - bytesAtChunkStart, now - requestStartedAt);
+        bytesAtChunkStart = bytesConfirmed;
+        requestStartedAt = now;
+        uploader.setChunkSize(chunkSize);
+        break;
+      default:
+        break;
+    }
+    if (delegate != null) {
+      delegate.progressChanged(uploader);
+    }
+  }
+
+  /**
+   * Starts sizing an upload whose sender reports its chunks itself.
+   *
+   * @param initialChunkSize size of the first chunk
+   * @param roundTripNanos time a request without media took
+   */
+  public void start(int initialChunkSize, long roundTripNanos) {
+    chunkSize = Math.min(initialChunkSize, maxChunkSize);
+    this.roundTripNanos = roundTripNanos;
+    bandwidth = 0;
+  }
+
+  /**
+   * Updates the bandwidth estimate with a chunk the server confirmed, and picks the size of the
+   * next chunk from it.
+   *
+   * @param bytes number of bytes the chunk confirmed
+   * @param nanos time from sending the chunk to its confirmation, retries included
+   */
+  public void chunkSent(long bytes, long nanos) {
+    if (bytes <= 0 || nanos <= 0) {
+      return;
+    }
+    // The round trip is part of every chunk, but says nothing about the bandwidth.
+    long sendingNanos = Math.max(nanos - roundTripNanos, nanos / 2);
+    double sample = (double) bytes / sendingNanos;
+    bandwidth = bandwidth == 0 ? sample : SMOOTHING * sample + (1 - SMOOTHING) * bandwidth;
+
+    long chunkNanos = Math.max(targetNanos, MIN_ROUND_TRIPS_PER_CHUNK * roundTripNanos);
+    long wanted = (long) (bandwidth * chunkNanos);
+    long next = Math.max(chunkSize / 2, Math.min(wanted, 2L * chunkSize));
+    chunkSize =
+        Math.max(MediaHttpUploader.MINIMUM_CHUNK_SIZE, Math.min(roundDown(next), maxChunkSize));
+  }
+
+  /** Chunk size the next chunk will be sent with. */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /** Estimated bandwidth in bytes per second, or 0 until the first chunk has been sent. */
+  public long getBytesPerSecond() {
+    return (long) (bandwidth * 1e9);
+  }
+
+  private static int roundDown(long size) {
+    long granularity = MediaHttpUploader.MINIMUM_CHUNK_SIZE;
+    return (int) Math.min(Integer.MAX_VALUE / granularity * granularity,
+        size / granularity * granularity);
+  }
+}
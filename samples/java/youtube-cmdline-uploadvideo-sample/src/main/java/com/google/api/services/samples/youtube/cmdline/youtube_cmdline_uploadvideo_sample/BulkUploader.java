@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.ApiErrors;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.BandwidthLimiter;
+import com.google.api.services.youtube.model.Video;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Uploads the entries of an {@link UploadManifest} a few at a time, with the metadata each entry
+ * gives, and records the outcome of each one in {@link UploadResults} as soon as it finishes.
+ *
+ * An entry whose upload fails is tried again up to {@link #MAX_ATTEMPTS} times, waiting longer
+ * after each failure; since every attempt goes through {@link UploadVideo#upload}, a later
+ * attempt resumes the upload session where the failed one stopped. Errors the server will give
+ * again, such as invalid metadata (4xx other than 408 and 429), are not retried. Entries the
+ * results already list as uploaded, by an earlier run, are skipped.
+ */
+public class BulkUploader {
+
+  /** Number of times an entry is tried before it is recorded as failed. */
+  static final int MAX_ATTEMPTS = 3;
+
+  /** Wait before the second attempt; it doubles for each later one. */
+  static final long RETRY_DELAY_MILLIS = 10000;
+
+  private final HttpRequestInitializer initializer;
+
+  private final BandwidthLimiter limiter;
+
+  private final UploadIndex index;
+
+  private final UploadMetrics metrics;
+
+  private final int parallelUploads;
+
+  private final AtomicInteger uploaded = new AtomicInteger();
+
+  private final AtomicInteger failed = new AtomicInteger();
+
+  /**
+   * Creates a bulk uploader.
+   *
+   * @param initializer initializer that authorizes requests, such as the credential
+   * @param parallelUploads number of uploads to run at once
+   * @param limiter limiter shared by the uploads
+   * @param index index the hash of each uploaded file is added to
+   * @param metrics metrics the uploads are recorded in
+   */
+  public BulkUploader(HttpRequestInitializer initializer, int parallelUploads,
+      BandwidthLimiter limiter, UploadIndex index, UploadMetrics metrics) {
+    this.initializer = initializer;
+    this.parallelUploads = parallelUploads;
+    this.limiter = limiter;
+    this.index = index;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Uploads the entries that are not uploaded yet and waits for them all to finish.
+   *
+   * @param entries entries of the manifest
+   * @param results results of this and earlier runs over the manifest
+   * @return number of entries skipped because an earlier run uploaded them
+   */
+  public int run(List<UploadManifest.Entry> entries, final UploadResults results)
+      throws InterruptedException {
+    final AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(parallelUploads, new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "bulk-upload-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    int skipped = 0;
+    try {
+      for (final UploadManifest.Entry entry : entries) {
+        if (results.isUploaded(entry.getFile())) {
+          skipped++;
+          continue;
+        }
+        executor.execute(new Runnable() {
+          public void run() {
+            uploadEntry(entry, results);
+          }
+        });
+      }
+      executor.shutdown();
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        // Keep waiting; large files take a long time.
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return skipped;
+  }
+
+  /** Number of entries uploaded by this run. */
+  public int getUploaded() {
+    return uploaded.get();
+  }
+
+  /** Number of entries whose upload failed in this run. */
+  public int getFailed() {
+    return failed.get();
+  }
+
+  private void uploadEntry(UploadManifest.Entry entry, UploadResults results) {
+    File file = entry.getFile();
+    long start = System.nanoTime();
+    try {
+      for (int attempt = 1;; attempt++) {
+        try {
+          System.out.println("Uploading " + entry + (attempt > 1 ? ", attempt " + attempt : ""));
+          Video video = UploadVideo.upload(metrics.countRetries(initializer), file, entry.toVideo(),
+              limiter, index, metrics.newListener(null));
+          long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          results.uploaded(file, video.getId(), millis, file.length() * 1000 / Math.max(1, millis));
+          uploaded.incrementAndGet();
+          System.out.println("Uploaded " + file + " as video " + video.getId());
+          return;
+        } catch (IOException e) {
+          if (attempt == MAX_ATTEMPTS || !ApiErrors.isRetryable(e)) {
+            throw e;
+          }
+          System.out.println("Upload of " + file + " failed (" + e.getMessage() + "); retrying");
+          Thread.sleep(RETRY_DELAY_MILLIS << (attempt - 1));
+        }
+      }
+    } catch (InterruptedException e) {
+      // The run is being stopped; the entry is left for the next one.
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      failed.incrementAndGet();
+      System.err.println("Upload of " + file + " failed: " + e.getMessage());
+      try {
+        results.failed(
+            file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), String.valueOf(e));
+      } catch (IOException writeError) {
+        System.err.println("Could not record the failure: " + writeError.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the SHA-256 of a file from the blocks an upload reads, so the file does not have to be
+ * read a second time just to hash it.
+ *
+ * {@link FileChannelContent} passes each block it reads to {@link #update} with its position in
+ * the file. Blocks are hashed in file order: a block read again (a retried chunk) is ignored, and
+ * if a block starts past the bytes hashed so far (an upload resumed from its journal, which does
+ * not send what the server already has), the bytes in between are read from the file first.
+ * {@link #finish} hashes whatever the upload did not read and returns the hash.
+ *
+ * {@link #hashAll} hashes many files at once on a fork/join pool, for checking candidate files
+ * against the {@link UploadIndex} before uploading them.
+ */
+public class ContentHasher {
+
+  /** Size of the buffer used to read the parts of the file the upload did not read. */
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final File file;
+
+  private final MessageDigest digest;
+
+  /** Number of bytes from the start of the file hashed so far. */
+  private long hashedUpTo;
+
+  /**
+   * Creates a hasher for a file.
+   *
+   * @param file file being read
+   */
+  public ContentHasher(File file) {
+    this.file = file;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the SHA-256 of a file, as 64 lowercase hexadecimal digits.
+   *
+   * @param file file to hash
+   */
+  public static String hash(File file) throws IOException {
+    if (!file.isFile()) {
+      throw new FileNotFoundException(file.getPath());
+    }
+    return new ContentHasher(file).finish();
+  }
+
+  /**
+   * Hashes files in parallel, one fork/join task per file, and returns their hashes in the same
+   * order. The hash of a file that cannot be read is null.
+   *
+   * @param files files to hash
+   */
+  public static String[] hashAll(File[] files) {
+    String[] hashes = new String[files.length];
+    if (files.length > 0) {
+      ForkJoinPool pool = new ForkJoinPool();
+      try {
+        pool.invoke(new HashTask(files, hashes, 0, files.length));
+      } finally {
+        pool.shutdown();
+      }
+    }
+    return hashes;
+  }
+
+  /**
+   * Hashes a block read from the file. Only the part of the block past the bytes hashed so far is
+   * used.
+   *
+   * @param position position in the file of the first byte of the block
+   * @param block bytes read, from its position to its limit; its position is moved
+   */
+  synchronized void update(long position, ByteBuffer block) throws IOException {
+    if (position > hashedUpTo) {
+      hashFile(position);
+    }
+    long end = position + block.remaining();
+    if (end > hashedUpTo) {
+      block.position(block.position() + (int) (hashedUpTo - position));
+      digest.update(block);
+      hashedUpTo = end;
+    }
+  }
+
+  /**
+   * Hashes the rest of the file and returns the hash, as 64 lowercase hexadecimal digits. Only
+   * call it once.
+   */
+  public synchronized String finish() throws IOException {
+    hashFile(file.length());
+    byte[] hash = digest.digest();
+    char[] hex = new char[hash.length * 2];
+    for (int i = 0; i < hash.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  /*
+   * Reads and hashes the file from the bytes hashed so far up to the given position.
+   */
+  private void hashFile(long upTo) throws IOException {
+    if (hashedUpTo >= upTo) {
+      return;
+    }
+    FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, upTo - hashedUpTo));
+      while (hashedUpTo < upTo) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), upTo - hashedUpTo));
+        int count = channel.read(buffer, hashedUpTo);
+        if (count <= 0) {
+          throw new IOException(file + " is shorter than " + upTo + " bytes");
+        }
+        buffer.flip();
+        digest.update(buffer);
+        hashedUpTo += count;
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Hashes a range of files, splitting it in two until each task has one file.
+   */
+  private static class HashTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final File[] files;
+
+    private final String[] hashes;
+
+    private final int from;
+
+    private final int to;
+
+    HashTask(File[] files, String[] hashes, int from, int to) {
+      this.files = files;
+      this.hashes = hashes;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        try {
+          hashes[from] = hash(files[from]);
+        } catch (IOException e) {
+          hashes[from] = null;
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new HashTask(files, hashes, from, middle), new HashTask(files, hashes, middle, to));
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.BandwidthLimiter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Media content read from a file through a FileChannel, for uploading large videos.
+ *
+ * For a resumable upload, MediaHttpUploader marks the stream at the start of each chunk and resets
+ * it to retry the chunk. An InputStreamContent over a FileInputStream is wrapped in a
+ * BufferedInputStream for this, whose buffer grows to the chunk size and through which every byte
+ * is copied. The stream returned here supports mark and reset itself: it only keeps a file
+ * position, and a reset or skip just moves it, so a retried chunk is read again from the file.
+ * Reads go through one small direct buffer per stream, so no chunk-sized buffer is allocated, on
+ * the heap or off it, however large the file is.
+ *
+ * A direct (non-resumable) upload is written straight from the file with
+ * {@link FileChannel#transferTo}, unless the content has a {@link BandwidthLimiter} or a
+ * {@link ContentHasher}, which every block read from the file then goes through.
+ */
+public class FileChannelContent extends AbstractInputStreamContent {
+
+  /** Size of the direct buffer each stream reads through. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+
+  /** Limiter the reads go through, or null for none. */
+  private BandwidthLimiter limiter;
+
+  /** Hasher the blocks read are passed to, or null for none. */
+  private ContentHasher hasher;
+
+  /**
+   * Creates content for a file. The file is opened each time the content is read.
+   *
+   * @param type MIME type of the content, such as "video/*"
+   * @param file file to read
+   */
+  public FileChannelContent(String type, File file) {
+    super(type);
+    this.file = file;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Sets a limiter that caps the rate at which the file is read, and so sent, or null for none.
+   * Several contents can share one limiter.
+   */
+  public FileChannelContent setBandwidthLimiter(BandwidthLimiter limiter) {
+    this.limiter = limiter;
+    return this;
+  }
+
+  /**
+   * Sets a hasher that each block read from the file is passed to, or null for none, so that the
+   * file is hashed in the same pass that uploads it.
+   */
+  public FileChannelContent setHasher(ContentHasher hasher) {
+    this.hasher = hasher;
+    return this;
+  }
+
+  public long getLength() {
+    return file.length();
+  }
+
+  public boolean retrySupported() {
+    return true;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return getInputStream(0, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns a stream over part of the file, for sending one chunk of a resumable upload.
+   *
+   * @param position position in the file of the first byte to read
+   * @param length maximum number of bytes to read
+   */
+  public InputStream getInputStream(long position, long length) throws IOException {
+    FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+    long end = length > Long.MAX_VALUE - position ? Long.MAX_VALUE : position + length;
+    return new ChannelInputStream(
+        channel, position, Math.min(end, channel.size()), limiter, hasher);
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    if (limiter != null || hasher != null) {
+      super.writeTo(out);
+      return;
+    }
+    FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+    try {
+      WritableByteChannel target = Channels.newChannel(out);
+      long size = channel.size();
+      long position = 0;
+      while (position < size) {
+        position += channel.transferTo(position, size - position, target);
+      }
+    } finally {
+      channel.close();
+    }
+    out.flush();
+  }
+
+  /**
+   * Stream over a file channel that reads at its own position, so it supports mark and reset
+   * without buffering what was read since the mark.
+   */
+  private static class ChannelInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    private final BandwidthLimiter limiter;
+
+    private final ContentHasher hasher;
+
+    /** Position in the file just past the last byte to read. */
+    private final long end;
+
+    /** Direct buffer the file is read through; allocated on first read. */
+    private ByteBuffer buffer;
+
+    /** Position in the file of the next byte to read. */
+    private long position;
+
+    /** Position saved by mark(). */
+    private long mark;
+
+    ChannelInputStream(FileChannel channel, long position, long end, BandwidthLimiter limiter,
+        ContentHasher hasher) {
+      this.channel = channel;
+      this.limiter = limiter;
+      this.hasher = hasher;
+      this.position = position;
+      this.mark = position;
+      this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= end) {
+        return -1;
+      }
+      if (buffer == null) {
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      }
+      buffer.clear();
+      buffer.limit((int) Math.min(Math.min(len, BUFFER_SIZE), end - position));
+      int count = channel.read(buffer, position);
+      if (count <= 0) {
+        return -1;
+      }
+      if (limiter != null) {
+        try {
+          limiter.acquire(count);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+        }
+      }
+      buffer.flip();
+      if (hasher != null) {
+        hasher.update(position, buffer.duplicate());
+      }
+      buffer.get(b, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = Math.max(0, Math.min(n, end - position));
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - position));
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+      mark = position;
+    }
+
+    @Override
+    public void reset() {
+      position = mark;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AtomicFile;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.BandwidthLimiter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Watches directories and uploads each video file that appears in them, once it has stopped
+ * changing.
+ *
+ * A {@link WatchService} reports files as they are created and written to. A file is only
+ * uploaded after its length and modification time have stayed the same for
+ * {@link #STABLE_MILLIS}, so that a file still being copied into the directory is not sent half
+ * written. Stable files are queued for a fixed number of worker threads, which upload them through
+ * {@link UploadVideo#upload}, so an interrupted upload is resumed from its journal the next time
+ * the file is picked up. All uploads read the file through the same {@link BandwidthLimiter},
+ * which shares its cap evenly among the uploads running.
+ *
+ * Once a file is uploaded, a marker file next to it (for example movie.mp4.uploaded) records the
+ * video id and the file's length and modification time, and the file is not uploaded again unless
+ * it changes. Its hash goes into the {@link UploadIndex}; with pre-flight checks on, each file is
+ * hashed before it is uploaded and skipped (with a marker) if the index already has it, whatever
+ * its name. A file whose upload failed is tried again when it next changes, or when the daemon
+ * is restarted.
+ *
+ * Queue depth, active uploads and throughput are exposed through {@link UploadDaemonMXBean} and
+ * logged every {@link #STATUS_INTERVAL_MILLIS} while there is work. Chunk latency, retries and the
+ * time spent in each step of the uploads are collected by an {@link UploadMetrics}, exposed and
+ * logged in the same way.
+ */
+public class UploadDaemon implements UploadDaemonMXBean {
+
+  /** Name the daemon's metrics are registered under with the platform MBean server. */
+  public static final String OBJECT_NAME =
+      "com.google.api.services.samples.youtube:type=UploadDaemon";
+
+  /** Time a file must stay unchanged before it is uploaded. */
+  static final long STABLE_MILLIS = 10000;
+
+  /** Time between two status lines in the log. */
+  static final long STATUS_INTERVAL_MILLIS = 30000;
+
+  /** Time between two checks of the files that are settling. */
+  private static final long POLL_MILLIS = 1000;
+
+  private static final String VIDEO_ID = "videoId";
+
+  private static final String LENGTH = "length";
+
+  private static final String LAST_MODIFIED = "lastModified";
+
+  private static final Logger LOGGER = Logger.getLogger(UploadDaemon.class.getName());
+
+  private final Credential credential;
+
+  private final List<File> directories;
+
+  private final BandwidthLimiter limiter;
+
+  private final UploadIndex index;
+
+  private final boolean preflight;
+
+  private final ThreadPoolExecutor executor;
+
+  private final UploadMetrics metrics = new UploadMetrics();
+
+  /** Directory each watch key was registered for. */
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+
+  /** Files not yet stable, by the state they were last seen in. Used by the watch thread only. */
+  private final Map<File, Observation> settling = new HashMap<File, Observation>();
+
+  /** Files queued or being uploaded, so that they are not queued twice. */
+  private final Set<File> queued =
+      Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+  private final AtomicInteger activeUploads = new AtomicInteger();
+
+  private final AtomicLong filesUploaded = new AtomicLong();
+
+  private final AtomicLong filesFailed = new AtomicLong();
+
+  private final AtomicLong filesSkipped = new AtomicLong();
+
+  private volatile long bytesPerSecond;
+
+  private volatile int filesSettling;
+
+  /**
+   * Creates a daemon.
+   *
+   * @param credential authorized credential, shared by the uploads
+   * @param directories directories to watch
+   * @param parallelUploads number of uploads to run at once
+   * @param limiter limiter shared by the uploads
+   * @param index index of the files already uploaded
+   * @param preflight whether to hash each file first, and skip it if it is in the index
+   */
+  public UploadDaemon(Credential credential, List<File> directories, int parallelUploads,
+      BandwidthLimiter limiter, UploadIndex index, boolean preflight) {
+    this.credential = credential;
+    this.directories = directories;
+    this.limiter = limiter;
+    this.index = index;
+    this.preflight = preflight;
+    final AtomicInteger threadCount = new AtomicInteger();
+    executor = new ThreadPoolExecutor(parallelUploads, parallelUploads, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  /**
+   * Watches the directories until the thread is interrupted. Files already in them when the daemon
+   * starts are uploaded too, unless they have been uploaded before.
+   */
+  public void run() throws IOException, InterruptedException {
+    WatchService watcher = FileSystems.getDefault().newWatchService();
+    try {
+      registerMBean();
+      metrics.registerMBean();
+      metrics.startLogging(UploadVideo.METRICS_LOG_INTERVAL_MILLIS);
+      for (File directory : directories) {
+        Path path = directory.toPath();
+        WatchKey key = path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, path);
+        // Registered before the scan, so that no file can slip in between.
+        scan(directory);
+        System.out.println("Watching " + directory.getAbsolutePath() + " for videos to upload.");
+      }
+
+      long lastBytes = limiter.getBytesTransferred();
+      long lastSample = System.nanoTime();
+      long lastStatus = lastSample;
+      while (true) {
+        WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        while (key != null) {
+          handleEvents(key);
+          key = watcher.poll();
+        }
+        checkSettling();
+
+        long now = System.nanoTime();
+        long bytes = limiter.getBytesTransferred();
+        if (now - lastSample >= TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS)) {
+          bytesPerSecond = (bytes - lastBytes) * 1000000000L / (now - lastSample);
+          lastBytes = bytes;
+          lastSample = now;
+        }
+        if (now - lastStatus >= TimeUnit.MILLISECONDS.toNanos(STATUS_INTERVAL_MILLIS)
+            && (getActiveUploads() > 0 || getQueueDepth() > 0 || filesSettling > 0)) {
+          LOGGER.info("Queued: " + getQueueDepth() + ", uploading: " + getActiveUploads()
+              + ", settling: " + filesSettling + ", " + bytesPerSecond / 1024 + " KiB/s");
+          lastStatus = now;
+        }
+      }
+    } finally {
+      metrics.stopLogging();
+      executor.shutdownNow();
+      watcher.close();
+    }
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveUploads() {
+    return activeUploads.get();
+  }
+
+  public int getFilesSettling() {
+    return filesSettling;
+  }
+
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  public long getBytesSent() {
+    return limiter.getBytesTransferred();
+  }
+
+  public long getFilesUploaded() {
+    return filesUploaded.get();
+  }
+
+  public long getFilesFailed() {
+    return filesFailed.get();
+  }
+
+  public long getFilesSkipped() {
+    return filesSkipped.get();
+  }
+
+  /**
+   * Returns the marker file written once a video has been uploaded: the video's path followed by
+   * ".uploaded".
+   *
+   * @param videoFile uploaded file
+   */
+  public static File markerFileFor(File videoFile) {
+    return new File(videoFile.getPath() + ".uploaded");
+  }
+
+  private void handleEvents(WatchKey key) {
+    Path directory = watchedDirectories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        // Events were lost, so look at every file again.
+        scan(directory.toFile());
+      } else {
+        File file = directory.resolve((Path) event.context()).toFile();
+        if (UploadVideo.VIDEO_FILTER.accept(file.getParentFile(), file.getName())) {
+          observe(file);
+        }
+      }
+    }
+    if (!key.reset()) {
+      LOGGER.warning("No longer watching " + directory + ", which is not accessible any more");
+      watchedDirectories.remove(key);
+    }
+  }
+
+  private void scan(File directory) {
+    File[] files = directory.listFiles(UploadVideo.VIDEO_FILTER);
+    if (files != null) {
+      for (File file : files) {
+        observe(file);
+      }
+    }
+  }
+
+  /*
+   * Starts (or restarts) the wait for a file to be stable, unless it is already queued or has
+   * been uploaded as it is.
+   */
+  private void observe(File file) {
+    if (!queued.contains(file) && !isUploaded(file)) {
+      settling.put(file, new Observation(file));
+    }
+    filesSettling = settling.size();
+  }
+
+  /*
+   * Queues the files that have not changed for long enough.
+   */
+  private void checkSettling() {
+    long now = System.nanoTime();
+    for (Iterator<Map.Entry<File, Observation>> i = settling.entrySet().iterator(); i.hasNext();) {
+      Map.Entry<File, Observation> entry = i.next();
+      File file = entry.getKey();
+      Observation current = new Observation(file);
+      if (!file.isFile()) {
+        i.remove();
+      } else if (!current.isSameAs(entry.getValue())) {
+        entry.setValue(current);
+      } else if (now - entry.getValue().seenAt >= TimeUnit.MILLISECONDS.toNanos(STABLE_MILLIS)
+          && current.length > 0 && queued.add(file)) {
+        i.remove();
+        executor.execute(new UploadTask(file));
+      }
+    }
+    filesSettling = settling.size();
+  }
+
+  private boolean isUploaded(File file) {
+    try {
+      Properties marker = AtomicFile.readProperties(markerFileFor(file));
+      return Long.toString(file.length()).equals(marker.getProperty(LENGTH))
+          && Long.toString(file.lastModified()).equals(marker.getProperty(LAST_MODIFIED));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(this, name);
+      }
+    } catch (JMException e) {
+      LOGGER.log(Level.WARNING, "Could not register the upload metrics with JMX", e);
+    }
+  }
+
+  /**
+   * Length and modification time of a file, and when they were first seen.
+   */
+  private static class Observation {
+
+    final long length;
+
+    final long lastModified;
+
+    final long seenAt = System.nanoTime();
+
+    Observation(File file) {
+      length = file.length();
+      lastModified = file.lastModified();
+    }
+
+    boolean isSameAs(Observation other) {
+      return length == other.length && lastModified == other.lastModified;
+    }
+  }
+
+  /**
+   * Uploads one file, unless pre-flight checks find it in the index, and writes its marker.
+   */
+  private class UploadTask implements Runnable {
+
+    private final File file;
+
+    UploadTask(File file) {
+      this.file = file;
+    }
+
+    public void run() {
+      activeUploads.incrementAndGet();
+      try {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String videoId = preflight ? index.getVideoId(ContentHasher.hash(file)) : null;
+        if (videoId != null) {
+          filesSkipped.incrementAndGet();
+          System.out.println("Skipping " + file + ": already uploaded as video " + videoId);
+        } else {
+          System.out.println("Uploading " + file + " (" + length + " bytes)");
+          videoId = UploadVideo.upload(metrics.countRetries(credential), file,
+              UploadVideo.defaultMetadata(), limiter, index, metrics.newListener(null)).getId();
+          filesUploaded.incrementAndGet();
+          System.out.println("Uploaded " + file + " as video " + videoId);
+        }
+        Properties marker = new Properties();
+        marker.setProperty(VIDEO_ID, videoId);
+        marker.setProperty(LENGTH, Long.toString(length));
+        marker.setProperty(LAST_MODIFIED, Long.toString(lastModified));
+        AtomicFile.writeProperties(markerFileFor(file), marker, "Uploaded to YouTube");
+      } catch (Exception e) {
+        filesFailed.incrementAndGet();
+        LOGGER.log(Level.WARNING, "Upload of " + file + " failed; it will be tried again when it "
+            + "changes or the daemon restarts", e);
+      } finally {
+        queued.remove(file);
+        activeUploads.decrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+/**
+ * Metrics of an {@link UploadDaemon}, exposed over JMX (for example in jconsole) under the name
+ * {@link UploadDaemon#OBJECT_NAME}.
+ */
+public interface UploadDaemonMXBean {
+
+  /** Number of stable files waiting for a free worker. */
+  int getQueueDepth();
+
+  /** Number of uploads running. */
+  int getActiveUploads();
+
+  /** Number of files that are changing, or have not yet been unchanged long enough to upload. */
+  int getFilesSettling();
+
+  /** Bytes per second sent by all uploads together, over the last second or so. */
+  long getBytesPerSecond();
+
+  /** Total number of bytes sent, including chunks sent again after an error. */
+  long getBytesSent();
+
+  /** Number of files uploaded since the daemon started. */
+  long getFilesUploaded();
+
+  /** Number of uploads that failed since the daemon started. */
+  long getFilesFailed();
+
+  /** Number of files skipped because the upload index already had them. */
+  long getFilesSkipped();
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AtomicFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Local index of the files uploaded so far, mapping the SHA-256 of each file (see
+ * {@link ContentHasher}) to the id of the video it was uploaded as. It lets a file that was
+ * already uploaded, under any name, be recognized before hours are spent sending it again.
+ *
+ * The index is a properties file, replaced atomically by {@link AtomicFile} each time an upload is
+ * added. It can be shared by concurrent uploads in the same process.
+ */
+public class UploadIndex {
+
+  /** Name of the index file used unless another is given. */
+  public static final String DEFAULT_FILE_NAME = "upload-index.properties";
+
+  private final File indexFile;
+
+  private final Properties entries;
+
+  private UploadIndex(File indexFile, Properties entries) {
+    this.indexFile = indexFile;
+    this.entries = entries;
+  }
+
+  /**
+   * Reads an index, or returns an empty one if the file does not exist yet.
+   *
+   * @param indexFile index file
+   */
+  public static UploadIndex load(File indexFile) throws IOException {
+    return new UploadIndex(indexFile, AtomicFile.readProperties(indexFile));
+  }
+
+  /**
+   * Returns the id of the video a file with this hash was uploaded as, or null if there is none.
+   *
+   * @param hash SHA-256 of the file, as returned by {@link ContentHasher}
+   */
+  public synchronized String getVideoId(String hash) {
+    return hash == null ? null : entries.getProperty(hash);
+  }
+
+  /**
+   * Records an upload and saves the index.
+   *
+   * @param hash SHA-256 of the uploaded file
+   * @param videoId id of the video it was uploaded as
+   */
+  public synchronized void put(String hash, String videoId) throws IOException {
+    entries.setProperty(hash, videoId);
+    AtomicFile.writeProperties(indexFile, entries, "SHA-256 of uploaded files and their video ids");
+  }
+
+  /** Number of uploads in the index. */
+  public synchronized int size() {
+    return entries.size();
+  }
+}
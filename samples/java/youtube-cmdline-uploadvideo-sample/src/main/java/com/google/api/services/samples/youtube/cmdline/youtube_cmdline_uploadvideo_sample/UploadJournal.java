@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.AtomicFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Local record of a resumable upload in progress: the session URI the server returned when the
+ * upload started, a fingerprint of the file being uploaded and the number of bytes the server has
+ * confirmed. If the program dies mid-upload, a later run can use it to ask the server where the
+ * upload stopped and send only the rest (see {@link UploadResumer}).
+ *
+ * The journal is a small properties file next to the video, replaced atomically by
+ * {@link AtomicFile} each time it changes. The fingerprint is the file's length and modification
+ * time, which is enough to notice that the file was replaced or edited without reading it.
+ */
+public class UploadJournal {
+
+  private static final String SESSION_URI = "sessionUri";
+
+  private static final String LENGTH = "length";
+
+  private static final String LAST_MODIFIED = "lastModified";
+
+  private static final String BYTES_CONFIRMED = "bytesConfirmed";
+
+  /** HTTP status the server answers each chunk of a resumable upload but the last with. */
+  static final int RESUME_INCOMPLETE = 308;
+
+  private final File journalFile;
+
+  private final String sessionUri;
+
+  private final long length;
+
+  private final long lastModified;
+
+  private long bytesConfirmed;
+
+  private UploadJournal(
+      File journalFile, String sessionUri, long length, long lastModified, long bytesConfirmed) {
+    this.journalFile = journalFile;
+    this.sessionUri = sessionUri;
+    this.length = length;
+    this.lastModified = lastModified;
+    this.bytesConfirmed = bytesConfirmed;
+  }
+
+  /**
+   * Returns the journal file used for a video: the video's path followed by ".upload".
+   *
+   * @param videoFile file being uploaded
+   */
+  public static File journalFileFor(File videoFile) {
+    return new File(videoFile.getPath() + ".upload");
+  }
+
+  /**
+   * Starts a journal for a new upload session, replacing any journal the video had.
+   *
+   * @param journalFile journal file
+   * @param sessionUri session URI returned by the server
+   * @param videoFile file being uploaded
+   */
+  public static UploadJournal start(File journalFile, String sessionUri, File videoFile)
+      throws IOException {
+    UploadJournal journal =
+        new UploadJournal(journalFile, sessionUri, videoFile.length(), videoFile.lastModified(), 0);
+    journal.save();
+    return journal;
+  }
+
+  /**
+   * Reads a journal, or returns null if there is none.
+   *
+   * @param journalFile journal file
+   */
+  public static UploadJournal load(File journalFile) throws IOException {
+    Properties properties = AtomicFile.readProperties(journalFile);
+    String sessionUri = properties.getProperty(SESSION_URI);
+    if (sessionUri == null) {
+      return null;
+    }
+    try {
+      return new UploadJournal(journalFile, sessionUri,
+          Long.parseLong(properties.getProperty(LENGTH)),
+          Long.parseLong(properties.getProperty(LAST_MODIFIED)),
+          Long.parseLong(properties.getProperty(BYTES_CONFIRMED)));
+    } catch (NumberFormatException e) {
+      // A journal from an unknown version; it is safer to start the upload again.
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the journal was written for this file, unchanged since.
+   *
+   * @param videoFile file about to be uploaded
+   */
+  public boolean isFor(File videoFile) {
+    return videoFile.length() == length && videoFile.lastModified() == lastModified;
+  }
+
+  /**
+   * Records the number of bytes the server has confirmed.
+   *
+   * @param bytesConfirmed bytes confirmed, from the start of the file
+   */
+  public void confirm(long bytesConfirmed) throws IOException {
+    if (bytesConfirmed != this.bytesConfirmed) {
+      this.bytesConfirmed = bytesConfirmed;
+      save();
+    }
+  }
+
+  /** Deletes the journal, once the upload has completed or can no longer be resumed. */
+  public void delete() {
+    journalFile.delete();
+  }
+
+  public String getSessionUri() {
+    return sessionUri;
+  }
+
+  public long getBytesConfirmed() {
+    return bytesConfirmed;
+  }
+
+  private void save() throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(SESSION_URI, sessionUri);
+    properties.setProperty(LENGTH, Long.toString(length));
+    properties.setProperty(LAST_MODIFIED, Long.toString(lastModified));
+    properties.setProperty(BYTES_CONFIRMED, Long.toString(bytesConfirmed));
+    AtomicFile.writeProperties(journalFile, properties, "Resumable upload in progress");
+  }
+
+  /**
+   * Returns the first byte the server has not received, from the Range header of a 308 (Resume
+   * Incomplete) response, such as "bytes=0-1048575". No Range header means no bytes yet.
+   *
+   * @param range value of the Range header, or null
+   */
+  static long nextByteFromRange(String range) {
+    if (range == null) {
+      return 0;
+    }
+    return Long.parseLong(range.substring(range.indexOf('-') + 1)) + 1;
+  }
+
+  /**
+   * Request initializer that keeps the journal up to date while MediaHttpUploader runs a new
+   * upload: it starts the journal when the session URI comes back and records each chunk the
+   * server confirms. All other requests pass through untouched apart from the wrapped
+   * initializer, such as the credential.
+   */
+  public static class Recorder implements HttpRequestInitializer {
+
+    private final HttpRequestInitializer delegate;
+
+    private final File videoFile;
+
+    private final File journalFile;
+
+    private UploadJournal journal;
+
+    /** Session URI of the journal, as built by GenericUrl, to compare with request URLs. */
+    private String sessionUrl;
+
+    /**
+     * Creates a recorder.
+     *
+     * @param delegate initializer to run first, such as the credential, or null for none
+     * @param videoFile file being uploaded
+     */
+    public Recorder(HttpRequestInitializer delegate, File videoFile) {
+      this.delegate = delegate;
+      this.videoFile = videoFile;
+      this.journalFile = journalFileFor(videoFile);
+    }
+
+    public void initialize(final HttpRequest request) throws IOException {
+      if (delegate != null) {
+        delegate.initialize(request);
+      }
+      final HttpResponseInterceptor next = request.getResponseInterceptor();
+      request.setResponseInterceptor(new HttpResponseInterceptor() {
+        public void interceptResponse(HttpResponse response) throws IOException {
+          record(request, response);
+          if (next != null) {
+            next.interceptResponse(response);
+          }
+        }
+      });
+    }
+
+    /** Journal of the upload started through this recorder, or null if none has started. */
+    public UploadJournal getJournal() {
+      return journal;
+    }
+
+    private synchronized void record(HttpRequest request, HttpResponse response)
+        throws IOException {
+      String url = request.getUrl().build();
+      String location = response.getHeaders().getLocation();
+      if (url.contains("uploadType=resumable") && response.isSuccessStatusCode()
+          && location != null) {
+        journal = start(journalFile, location, videoFile);
+        sessionUrl = new GenericUrl(location).build();
+      } else if (journal != null && url.equals(sessionUrl)
+          && response.getStatusCode() == RESUME_INCOMPLETE) {
+        journal.confirm(nextByteFromRange(response.getHeaders().getRange()));
+      }
+    }
+  }
+}
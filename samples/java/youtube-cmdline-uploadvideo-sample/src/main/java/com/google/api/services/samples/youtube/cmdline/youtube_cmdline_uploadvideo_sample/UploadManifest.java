@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.util.Key;
+import com.google.api.services.youtube.model.Video;
+import com.google.api.services.youtube.model.VideoSnippet;
+import com.google.api.services.youtube.model.VideoStatus;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Manifest of the videos a bulk upload sends: for each file, the title, description, tags and
+ * privacy status to upload it with.
+ *
+ * A manifest is either a JSON array of objects, for example
+ *
+ * <pre>
+ * [{"file": "intro.mp4", "title": "Intro", "description": "...", "tags": ["a", "b"],
+ *   "privacy": "unlisted"}]
+ * </pre>
+ *
+ * or, if its name does not end in ".json", a CSV file (RFC 4180) whose first line names the
+ * columns: file, title, description, tags (separated by semicolons) and privacy. Only the file is
+ * required; the privacy status defaults to public. Relative file names are relative to the
+ * directory of the manifest.
+ */
+public class UploadManifest {
+
+  /** Separator of the tags in a CSV manifest. */
+  static final char TAG_SEPARATOR = ';';
+
+  private UploadManifest() {
+  }
+
+  /**
+   * Reads the entries of a manifest.
+   *
+   * @param manifestFile CSV or JSON manifest
+   * @param jsonFactory JSON factory used to parse a JSON manifest
+   */
+  public static List<Entry> read(File manifestFile, JsonFactory jsonFactory) throws IOException {
+    List<Entry> entries = new ArrayList<Entry>();
+    if (manifestFile.getName().toLowerCase(Locale.US).endsWith(".json")) {
+      jsonFactory.createJsonParser(new FileInputStream(manifestFile))
+          .parseArrayAndClose(entries, Entry.class, null);
+    } else {
+      readCsv(manifestFile, entries);
+    }
+    File baseDirectory = manifestFile.getAbsoluteFile().getParentFile();
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      if (entry.file == null || entry.file.length() == 0) {
+        throw new IOException(manifestFile + ": entry " + (i + 1) + " has no file");
+      }
+      File file = new File(entry.file);
+      entry.resolvedFile = file.isAbsolute() ? file : new File(baseDirectory, entry.file);
+    }
+    return entries;
+  }
+
+  private static void readCsv(File manifestFile, List<Entry> entries) throws IOException {
+    Reader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), "UTF-8"));
+    try {
+      List<String> header = readCsvLine(reader);
+      if (header == null) {
+        return;
+      }
+      int fileColumn = header.indexOf("file");
+      if (fileColumn < 0) {
+        throw new IOException(manifestFile + " has no \"file\" column");
+      }
+      int titleColumn = header.indexOf("title");
+      int descriptionColumn = header.indexOf("description");
+      int tagsColumn = header.indexOf("tags");
+      int privacyColumn = header.indexOf("privacy");
+      List<String> values;
+      while ((values = readCsvLine(reader)) != null) {
+        if (values.size() == 1 && values.get(0).length() == 0) {
+          // A blank line.
+          continue;
+        }
+        Entry entry = new Entry();
+        entry.file = column(values, fileColumn);
+        entry.title = column(values, titleColumn);
+        entry.description = column(values, descriptionColumn);
+        String tags = column(values, tagsColumn);
+        if (tags != null) {
+          entry.tags = new ArrayList<String>();
+          for (String tag : tags.split(String.valueOf(TAG_SEPARATOR))) {
+            if (tag.trim().length() > 0) {
+              entry.tags.add(tag.trim());
+            }
+          }
+        }
+        entry.privacy = column(values, privacyColumn);
+        entries.add(entry);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static String column(List<String> values, int column) {
+    if (column < 0 || column >= values.size() || values.get(column).length() == 0) {
+      return null;
+    }
+    return values.get(column);
+  }
+
+  /**
+   * Reads one line of RFC 4180 CSV, which may span several lines of text if a quoted value holds
+   * line breaks, or returns null at the end of the input.
+   */
+  static List<String> readCsvLine(Reader reader) throws IOException {
+    List<String> values = new ArrayList<String>();
+    StringBuilder value = new StringBuilder();
+    boolean quoted = false;
+    int c = reader.read();
+    if (c == -1) {
+      return null;
+    }
+    while (true) {
+      if (quoted) {
+        if (c == -1) {
+          throw new IOException("Unterminated quoted value: " + value);
+        } else if (c == '"') {
+          reader.mark(1);
+          if (reader.read() == '"') {
+            value.append('"');
+          } else {
+            reader.reset();
+            quoted = false;
+          }
+        } else {
+          value.append((char) c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        values.add(value.toString());
+        value.setLength(0);
+      } else if (c == '\r' || c == '\n' || c == -1) {
+        if (c == '\r') {
+          reader.mark(1);
+          if (reader.read() != '\n') {
+            reader.reset();
+          }
+        }
+        values.add(value.toString());
+        return values;
+      } else {
+        value.append((char) c);
+      }
+      c = reader.read();
+    }
+  }
+
+  /**
+   * One file to upload and its metadata.
+   */
+  public static class Entry {
+
+    @Key
+    private String file;
+
+    @Key
+    private String title;
+
+    @Key
+    private String description;
+
+    @Key
+    private List<String> tags;
+
+    @Key
+    private String privacy;
+
+    /** File, resolved against the directory of the manifest. */
+    private File resolvedFile;
+
+    /** File to upload. */
+    public File getFile() {
+      return resolvedFile;
+    }
+
+    /**
+     * Returns the metadata to upload the file with. Without a title, the file name is used.
+     */
+    public Video toVideo() {
+      VideoSnippet snippet = new VideoSnippet();
+      snippet.setTitle(title == null ? resolvedFile.getName() : title);
+      snippet.setDescription(description);
+      snippet.setTags(tags);
+      VideoStatus status = new VideoStatus();
+      status.setPrivacyStatus(privacy == null ? "public" : privacy);
+      Video video = new Video();
+      video.setSnippet(snippet);
+      video.setStatus(status);
+      return video;
+    }
+
+    @Override
+    public String toString() {
+      return resolvedFile + (title == null ? "" : " (" + title + ")")
+          + (tags == null ? "" : " " + tags);
+    }
+  }
+}
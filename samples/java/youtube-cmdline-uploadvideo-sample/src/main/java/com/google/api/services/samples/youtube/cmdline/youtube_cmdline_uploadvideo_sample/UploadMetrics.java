@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects throughput and latency metrics from any number of uploads, for capacity planning.
+ *
+ * Each upload gets its own progress listener from {@link #newListener}, which times the
+ * initiation request, each chunk and the whole media transfer, and its requests go through an
+ * initializer from {@link #countRetries}, which counts the requests sent more than once. The
+ * totals are exposed over JMX as an {@link UploadMetricsMXBean} and, once {@link #startLogging}
+ * has been called, logged at a fixed interval as one line of space-separated key=value pairs:
+ *
+ * <pre>
+ * upload-metrics uploadsStarted=2 uploadsCompleted=1 chunks=37 bytes=388431872 retries=1
+ *   initiationMillis=412 mediaMillis=71533 bytesPerSecond=5452595 avgBytesPerSecond=5301862
+ *   chunkP50Millis=2048 chunkP90Millis=4096 chunkP99Millis=8192
+ * </pre>
+ *
+ * (on a single line). Chunks sent by {@link UploadResumer} are not timed, but its retries are
+ * counted.
+ */
+public class UploadMetrics implements UploadMetricsMXBean {
+
+  /** Name the metrics are registered under with the platform MBean server. */
+  public static final String OBJECT_NAME =
+      "com.google.api.services.samples.youtube:type=UploadMetrics";
+
+  /** Number of buckets of the chunk latency histogram; the last one holds chunks over 35 min. */
+  static final int LATENCY_BUCKETS = 22;
+
+  /** Time over which the moving average of the throughput is taken. */
+  private static final double AVERAGE_WINDOW_MILLIS = 60000;
+
+  private static final Logger LOGGER = Logger.getLogger(UploadMetrics.class.getName());
+
+  private final AtomicLong uploadsStarted = new AtomicLong();
+
+  private final AtomicLong uploadsCompleted = new AtomicLong();
+
+  private final AtomicLong chunksSent = new AtomicLong();
+
+  private final AtomicLong bytesSent = new AtomicLong();
+
+  private final AtomicLong retries = new AtomicLong();
+
+  private final AtomicLong initiationNanos = new AtomicLong();
+
+  private final AtomicLong mediaNanos = new AtomicLong();
+
+  private final AtomicLongArray chunkLatencies = new AtomicLongArray(LATENCY_BUCKETS);
+
+  private volatile long lastChunkBytesPerSecond;
+
+  /** Throughput over the last interval and its moving average; written by the logging thread. */
+  private volatile long bytesPerSecond;
+
+  private volatile double averageBytesPerSecond;
+
+  private ScheduledExecutorService logTimer;
+
+  /**
+   * Returns a progress listener that records the metrics of one upload. Use a new listener for
+   * each upload.
+   *
+   * @param delegate listener to pass progress on to, or null for none
+   */
+  public MediaHttpUploaderProgressListener newListener(MediaHttpUploaderProgressListener delegate) {
+    return new Listener(delegate);
+  }
+
+  /**
+   * Returns a request initializer that counts the requests sent again after an error, by
+   * counting each execution of a request after its first.
+   *
+   * @param delegate initializer to run first, such as the credential, or null for none
+   */
+  public HttpRequestInitializer countRetries(final HttpRequestInitializer delegate) {
+    return new HttpRequestInitializer() {
+      public void initialize(HttpRequest request) throws IOException {
+        if (delegate != null) {
+          delegate.initialize(request);
+        }
+        final HttpExecuteInterceptor next = request.getInterceptor();
+        request.setInterceptor(new HttpExecuteInterceptor() {
+          private boolean executed;
+
+          public void intercept(HttpRequest request) throws IOException {
+            if (executed) {
+              retries.incrementAndGet();
+            }
+            executed = true;
+            if (next != null) {
+              next.intercept(request);
+            }
+          }
+        });
+      }
+    };
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server, unless metrics are already registered.
+   */
+  public void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(this, name);
+      }
+    } catch (JMException e) {
+      LOGGER.log(Level.WARNING, "Could not register the upload metrics with JMX", e);
+    }
+  }
+
+  /**
+   * Starts logging the metrics line, and sampling the throughput, at a fixed interval.
+   *
+   * @param intervalMillis time between two lines
+   */
+  public synchronized void startLogging(final long intervalMillis) {
+    if (logTimer != null) {
+      return;
+    }
+    logTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "upload-metrics");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    logTimer.scheduleAtFixedRate(new Runnable() {
+      private long lastBytes = bytesSent.get();
+
+      private long lastSample = System.nanoTime();
+
+      public void run() {
+        long now = System.nanoTime();
+        long bytes = bytesSent.get();
+        sample(bytes - lastBytes, now - lastSample);
+        lastBytes = bytes;
+        lastSample = now;
+        LOGGER.info(UploadMetrics.this.toString());
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops logging, and logs the metrics line one last time.
+   */
+  public synchronized void stopLogging() {
+    if (logTimer != null) {
+      logTimer.shutdownNow();
+      logTimer = null;
+      LOGGER.info(toString());
+    }
+  }
+
+  public long getUploadsStarted() {
+    return uploadsStarted.get();
+  }
+
+  public long getUploadsCompleted() {
+    return uploadsCompleted.get();
+  }
+
+  public long getChunksSent() {
+    return chunksSent.get();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+
+  public long getInitiationMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(initiationNanos.get());
+  }
+
+  public long getMediaMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(mediaNanos.get());
+  }
+
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  public long getAverageBytesPerSecond() {
+    return (long) averageBytesPerSecond;
+  }
+
+  public long getLastChunkBytesPerSecond() {
+    return lastChunkBytesPerSecond;
+  }
+
+  public long[] getChunkLatencyHistogram() {
+    long[] histogram = new long[LATENCY_BUCKETS];
+    for (int i = 0; i < LATENCY_BUCKETS; i++) {
+      histogram[i] = chunkLatencies.get(i);
+    }
+    return histogram;
+  }
+
+  public long getChunkLatencyP50Millis() {
+    return chunkLatencyPercentile(0.5);
+  }
+
+  public long getChunkLatencyP90Millis() {
+    return chunkLatencyPercentile(0.9);
+  }
+
+  public long getChunkLatencyP99Millis() {
+    return chunkLatencyPercentile(0.99);
+  }
+
+  /**
+   * Returns the metrics as one machine-readable line of key=value pairs.
+   */
+  @Override
+  public String toString() {
+    return "upload-metrics uploadsStarted=" + getUploadsStarted() + " uploadsCompleted="
+        + getUploadsCompleted() + " chunks=" + getChunksSent() + " bytes=" + getBytesSent()
+        + " retries=" + getRetries() + " initiationMillis=" + getInitiationMillis()
+        + " mediaMillis=" + getMediaMillis() + " bytesPerSecond=" + getBytesPerSecond()
+        + " avgBytesPerSecond=" + getAverageBytesPerSecond() + " chunkP50Millis="
+        + getChunkLatencyP50Millis() + " chunkP90Millis=" + getChunkLatencyP90Millis()
+        + " chunkP99Millis=" + getChunkLatencyP99Millis();
+  }
+
+  /**
+   * Returns the histogram bucket of a chunk latency.
+   */
+  static int latencyBucket(long millis) {
+    return Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+  }
+
+  /*
+   * Updates the throughput with the bytes confirmed over an interval.
+   */
+  private void sample(long bytes, long nanos) {
+    if (nanos <= 0) {
+      return;
+    }
+    long rate = bytes * 1000000000L / nanos;
+    double weight = 1 - Math.exp(-TimeUnit.NANOSECONDS.toMillis(nanos) / AVERAGE_WINDOW_MILLIS);
+    averageBytesPerSecond += weight * (rate - averageBytesPerSecond);
+    bytesPerSecond = rate;
+  }
+
+  /*
+   * Returns the upper bound of the histogram bucket holding the given fraction of the chunks, or
+   * 0 if no chunk has been sent.
+   */
+  private long chunkLatencyPercentile(double fraction) {
+    long[] histogram = getChunkLatencyHistogram();
+    long total = 0;
+    for (long count : histogram) {
+      total += count;
+    }
+    long rank = (long) Math.ceil(total * fraction);
+    long seen = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      seen += histogram[i];
+      if (total > 0 && seen >= rank) {
+        return 1L << i;
+      }
+    }
+    return 0;
+  }
+
+  private void chunkSent(long bytes, long nanos) {
+    chunksSent.incrementAndGet();
+    bytesSent.addAndGet(bytes);
+    chunkLatencies.incrementAndGet(latencyBucket(TimeUnit.NANOSECONDS.toMillis(nanos)));
+    if (nanos > 0) {
+      lastChunkBytesPerSecond = bytes * 1000000000L / nanos;
+    }
+  }
+
+  /**
+   * Times the steps of one upload.
+   */
+  private class Listener implements MediaHttpUploaderProgressListener {
+
+    private final MediaHttpUploaderProgressListener delegate;
+
+    private long initiationStartedAt;
+
+    private long mediaStartedAt;
+
+    private long chunkStartedAt;
+
+    private long bytesAtChunkStart;
+
+    Listener(MediaHttpUploaderProgressListener delegate) {
+      this.delegate = delegate;
+    }
+
+    public void progressChanged(MediaHttpUploader uploader) throws IOException {
+      long now = System.nanoTime();
+      switch (uploader.getUploadState()) {
+        case INITIATION_STARTED:
+          uploadsStarted.incrementAndGet();
+          initiationStartedAt = now;
+          break;
+        case INITIATION_COMPLETE:
+          initiationNanos.addAndGet(now - initiationStartedAt);
+          mediaStartedAt = now;
+          chunkStartedAt = now;
+          break;
+        case MEDIA_IN_PROGRESS:
+        case MEDIA_COMPLETE:
+          long bytesConfirmed = uploader.getNumBytesUploaded();
+          chunkSent(Math.max(0, bytesConfirmed - bytesAtChunkStart), now - chunkStartedAt);
+          bytesAtChunkStart = bytesConfirmed;
+          chunkStartedAt = now;
+          if (uploader.getUploadState() == MediaHttpUploader.UploadState.MEDIA_COMPLETE) {
+            mediaNanos.addAndGet(now - mediaStartedAt);
+            uploadsCompleted.incrementAndGet();
+          }
+          break;
+        default:
+          break;
+      }
+      if (delegate != null) {
+        delegate.progressChanged(uploader);
+      }
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+/**
+ * Upload metrics collected by {@link UploadMetrics}, exposed over JMX under the name
+ * {@link UploadMetrics#OBJECT_NAME}. Times and counts are totals over every upload since the
+ * process started.
+ */
+public interface UploadMetricsMXBean {
+
+  /** Number of uploads started. */
+  long getUploadsStarted();
+
+  /** Number of uploads completed. */
+  long getUploadsCompleted();
+
+  /** Number of chunks the server has confirmed. */
+  long getChunksSent();
+
+  /** Number of bytes the server has confirmed. */
+  long getBytesSent();
+
+  /** Number of requests sent again after an error response or an I/O error. */
+  long getRetries();
+
+  /** Time spent starting upload sessions, before any media is sent. */
+  long getInitiationMillis();
+
+  /** Time spent sending media, from the end of the initiation to the last chunk. */
+  long getMediaMillis();
+
+  /** Bytes per second confirmed by the server over the last logging interval. */
+  long getBytesPerSecond();
+
+  /** Moving average of the bytes per second, over about a minute. */
+  long getAverageBytesPerSecond();
+
+  /** Bytes per second of the last chunk sent, by any upload. */
+  long getLastChunkBytesPerSecond();
+
+  /**
+   * Number of chunks by latency. Element i counts the chunks that took less than 2^i milliseconds
+   * (and, for i > 0, at least 2^(i-1)); the last element also counts all slower chunks.
+   */
+  long[] getChunkLatencyHistogram();
+
+  /** Median chunk latency, rounded up to a power of two of milliseconds. */
+  long getChunkLatencyP50Millis();
+
+  /** 90th percentile of chunk latency, rounded up to a power of two of milliseconds. */
+  long getChunkLatencyP90Millis();
+
+  /** 99th percentile of chunk latency, rounded up to a power of two of milliseconds. */
+  long getChunkLatencyP99Millis();
+}
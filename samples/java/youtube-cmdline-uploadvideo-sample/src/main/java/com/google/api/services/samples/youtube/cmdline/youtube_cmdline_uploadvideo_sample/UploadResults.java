@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Output manifest of a bulk upload: a CSV file with one line per finished entry (file, status,
+ * video id, duration in milliseconds, bytes per second and error), appended and synced to disk as
+ * each entry finishes, so that it survives a crash of the run.
+ *
+ * A new run over the same manifest reads it first and skips the files already uploaded, so only
+ * the entries that failed or never finished are sent again. A line cut short by a crash is
+ * ignored.
+ */
+public class UploadResults {
+
+  /** Status of an entry that was uploaded. */
+  public static final String UPLOADED = "uploaded";
+
+  /** Status of an entry whose upload failed. */
+  public static final String FAILED = "failed";
+
+  private static final String[] HEADER =
+      {"file", "status", "videoId", "durationMillis", "bytesPerSecond", "error"};
+
+  private final FileOutputStream out;
+
+  private final Set<String> uploaded;
+
+  /**
+   * Opens the results file, creating it if needed, and reads the files it lists as uploaded.
+   *
+   * @param resultsFile CSV file to append to
+   */
+  public UploadResults(File resultsFile) throws IOException {
+    uploaded = readUploaded(resultsFile);
+    boolean isNew = !resultsFile.exists() || resultsFile.length() == 0;
+    boolean cutShort = !isNew && !endsWithNewline(resultsFile);
+    out = new FileOutputStream(resultsFile, true);
+    if (isNew) {
+      writeLine(HEADER);
+    } else if (cutShort) {
+      // Ends the line a crash cut short, so that the next one is not appended to it.
+      out.write("\r\n".getBytes("UTF-8"));
+    }
+  }
+
+  /**
+   * Returns whether an earlier run uploaded a file.
+   *
+   * @param file file of a manifest entry
+   */
+  public boolean isUploaded(File file) {
+    return uploaded.contains(file.getPath());
+  }
+
+  /**
+   * Records a file that was uploaded.
+   *
+   * @param file uploaded file
+   * @param videoId id of the video it was uploaded as
+   * @param durationMillis time from the first attempt to the end of the upload
+   * @param bytesPerSecond size of the file divided by the duration
+   */
+  public void uploaded(File file, String videoId, long durationMillis, long bytesPerSecond)
+      throws IOException {
+    writeLine(file.getPath(), UPLOADED, videoId, Long.toString(durationMillis),
+        Long.toString(bytesPerSecond), null);
+  }
+
+  /**
+   * Records a file whose upload failed, after its last attempt.
+   *
+   * @param file file that was not uploaded
+   * @param durationMillis time from the first attempt to the failure of the last one
+   * @param error description of the error
+   */
+  public void failed(File file, long durationMillis, String error) throws IOException {
+    writeLine(file.getPath(), FAILED, null, Long.toString(durationMillis), null, error);
+  }
+
+  /**
+   * Closes the file.
+   */
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+  private synchronized void writeLine(String... values) throws IOException {
+    StringBuilder line = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        line.append(',');
+      }
+      line.append(quote(values[i]));
+    }
+    line.append("\r\n");
+    out.write(line.toString().getBytes("UTF-8"));
+    out.getFD().sync();
+  }
+
+  private static Set<String> readUploaded(File resultsFile) throws IOException {
+    Set<String> uploaded = new HashSet<String>();
+    if (!resultsFile.exists()) {
+      return uploaded;
+    }
+    Reader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(resultsFile), "UTF-8"));
+    try {
+      List<String> values;
+      while (true) {
+        try {
+          values = UploadManifest.readCsvLine(reader);
+        } catch (IOException e) {
+          // The last line was cut short.
+          break;
+        }
+        if (values == null) {
+          break;
+        }
+        if (values.size() == HEADER.length && UPLOADED.equals(values.get(1))) {
+          uploaded.add(values.get(0));
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    return uploaded;
+  }
+
+  private static boolean endsWithNewline(File file) throws IOException {
+    RandomAccessFile in = new RandomAccessFile(file, "r");
+    try {
+      in.seek(file.length() - 1);
+      return in.read() == '\n';
+    } finally {
+      in.close();
+    }
+  }
+
+  private static String quote(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+        && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.InputStreamContent;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.services.youtube.model.Video;
+
+import java.io.IOException;
+
+/**
+ * Finishes a resumable upload that an earlier run started, from the session URI in its
+ * {@link UploadJournal}.
+ *
+ * MediaHttpUploader always starts a new session, so it cannot pick up an old one. This class
+ * speaks the same protocol for the rest of the upload: it asks the server how many bytes of the
+ * session it has (an empty PUT whose Content-Range only gives the total length), then sends the
+ * remaining bytes in chunks, each one read straight from the file at its offset. Every chunk the
+ * server confirms is recorded in the journal, so the upload can be resumed again if this run dies
+ * too. With an {@link AdaptiveChunkSizer}, the query is timed as the round trip and each chunk as
+ * it is confirmed, and the chunks are sized as for a new upload.
+ */
+public class UploadResumer {
+
+  private final HttpRequestFactory requestFactory;
+
+  private final JsonFactory jsonFactory;
+
+  private final int chunkSize;
+
+  /** Sizer that picks the size of each chunk, or null to send them all with chunkSize. */
+  private AdaptiveChunkSizer chunkSizer;
+
+  /**
+   * Creates a resumer.
+   *
+   * @param transport HTTP transport
+   * @param initializer initializer that authorizes requests, such as the credential
+   * @param jsonFactory JSON factory used to parse the uploaded video
+   * @param chunkSize number of bytes sent per request, or in the first request with a sizer
+   */
+  public UploadResumer(HttpTransport transport, HttpRequestInitializer initializer,
+      JsonFactory jsonFactory, int chunkSize) {
+    this.requestFactory = transport.createRequestFactory(initializer);
+    this.jsonFactory = jsonFactory;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Sets a sizer that adapts the size of each chunk to the link, starting from the chunk size given
+   * to the constructor, or null to keep that size.
+   */
+  public UploadResumer setChunkSizer(AdaptiveChunkSizer chunkSizer) {
+    this.chunkSizer = chunkSizer;
+    return this;
+  }
+
+  /**
+   * Sends the part of the file the server does not have yet and returns the uploaded video. If the
+   * server no longer knows the session (it has expired or was cancelled), the journal is deleted
+   * and null is returned, so that the caller can start a new upload.
+   *
+   * @param journal journal of the upload, written for this file
+   * @param content the file being uploaded
+   */
+  public Video resume(UploadJournal journal, FileChannelContent content) throws IOException {
+    long length = content.getLength();
+    long requestStartedAt = System.nanoTime();
+    HttpResponse response = put(journal, new EmptyContent(), "bytes */" + length);
+    if (chunkSizer != null) {
+      chunkSizer.start(chunkSize, System.nanoTime() - requestStartedAt);
+    }
+    // First byte of the chunk in flight, or -1 while none is.
+    long chunkStart = -1;
+    while (true) {
+      int statusCode = response.getStatusCode();
+      if (response.isSuccessStatusCode()) {
+        // The last chunk was received, possibly before the earlier run died.
+        return response.parseAs(Video.class);
+      }
+      if (statusCode == 404 || statusCode == 410) {
+        response.ignore();
+        journal.delete();
+        return null;
+      }
+      if (statusCode != UploadJournal.RESUME_INCOMPLETE) {
+        throw new HttpResponseException(response);
+      }
+      long next = UploadJournal.nextByteFromRange(response.getHeaders().getRange());
+      response.ignore();
+      journal.confirm(next);
+      if (chunkSizer != null && chunkStart >= 0) {
+        chunkSizer.chunkSent(next - chunkStart, System.nanoTime() - requestStartedAt);
+      }
+
+      long size =
+          Math.min(chunkSizer == null ? chunkSize : chunkSizer.getChunkSize(), length - next);
+      if (size <= 0) {
+        throw new IOException(
+            "The server has all " + length + " bytes but did not finish the upload");
+      }
+      InputStreamContent chunk =
+          new InputStreamContent(content.getType(), content.getInputStream(next, size));
+      chunk.setLength(size);
+      chunkStart = next;
+      requestStartedAt = System.nanoTime();
+      response = put(journal, chunk, "bytes " + next + "-" + (next + size - 1) + "/" + length);
+    }
+  }
+
+  private HttpResponse put(UploadJournal journal, HttpContent content, String contentRange)
+      throws IOException {
+    HttpRequest request =
+        requestFactory.buildPutRequest(new GenericUrl(journal.getSessionUri()), content);
+    request.getHeaders().setContentRange(contentRange);
+    request.setParser(new JsonObjectParser(jsonFactory));
+    request.setThrowExceptionOnExecuteError(false);
+    return request.execute();
+  }
+}
@@ -14,10 +14,8 @@
 
 package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -28,19 +26,14 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
-import com.google.api.client.extensions.java6.auth.oauth2.FileCredentialStore;
-import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
-import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
-import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.client.googleapis.media.MediaHttpUploader;
 import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.InputStreamContent;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
-import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.BandwidthLimiter;
+import com.google.api.services.samples.youtube.cmdline.youtube_cmdline_common.YouTubeClientFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.Video;
 import com.google.api.services.youtube.model.VideoSnippet;
@@ -59,59 +52,56 @@ import com.google.common.collect.Lists;
 public class UploadVideo {
 
   /** Global instance of the HTTP transport. */
-  private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+  private static final HttpTransport HTTP_TRANSPORT = YouTubeClientFactory.get().getTransport();
 
   /** Global instance of the JSON factory. */
-  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
-
-  /** Global instance of Youtube object to make all API requests. */
-  private static YouTube youtube;
+  private static final JsonFactory JSON_FACTORY = YouTubeClientFactory.get().getJsonFactory();
 
   /* Global instance of the format used for the video being uploaded (MIME type). */
   private static String VIDEO_FILE_FORMAT = "video/*";
 
-  /**
-   * Authorizes the installed application to access user's protected data.
-   *
-   * @param scopes list of scopes needed to run youtube upload.
-   */
-  private static Credential authorize(List<String> scopes) throws Exception {
-
-    // Load client secrets.
-    GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(
-        JSON_FACTORY, UploadVideo.class.getResourceAsStream("/client_secrets.json"));
-
-    // Checks that the defaults have been replaced (Default = "Enter X here").
-    if (clientSecrets.getDetails().getClientId().startsWith("Enter")
-        || clientSecrets.getDetails().getClientSecret().startsWith("Enter ")) {
-      System.out.println(
-          "Enter Client ID and Secret from https://code.google.com/apis/console/?api=youtube"
-          + "into youtube-cmdline-uploadvideo-sample/src/main/resources/client_secrets.json");
-      System.exit(1);
+  /* Time between two lines of upload metrics in the log. */
+  static final long METRICS_LOG_INTERVAL_MILLIS = 30000;
+
+  /* Number of uploads the watch-folder daemon runs at once unless "--parallel" is given. */
+  private static final int DEFAULT_PARALLEL_UPLOADS = 2;
+
+  /* Filters out video files. This list of video extensions is not comprehensive. */
+  static final FilenameFilter VIDEO_FILTER = new FilenameFilter() {
+    public boolean accept(File dir, String name) {
+      String lowercaseName = name.toLowerCase();
+      if (lowercaseName.endsWith(".webm") || lowercaseName.endsWith(".flv")
+          || lowercaseName.endsWith(".f4v") || lowercaseName.endsWith(".mov")
+          || lowercaseName.endsWith(".mp4")) {
+        return true;
+      } else {
+        return false;
+      }
     }
-
-    // Set up file credential store.
-    FileCredentialStore credentialStore = new FileCredentialStore(
-        new File(System.getProperty("user.home"), ".credentials/youtube-api-uploadvideo.json"),
-        JSON_FACTORY);
-
-    // Set up authorization code flow.
-    GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(
-        HTTP_TRANSPORT, JSON_FACTORY, clientSecrets, scopes).setCredentialStore(credentialStore)
-        .build();
-
-    // Build the local server and bind it to port 9000
-    LocalServerReceiver localReceiver = new LocalServerReceiver.Builder().setPort(8080).build();
-
-    // Authorize.
-    return new AuthorizationCodeInstalledApp(flow, localReceiver).authorize("user");
-  }
+  };
 
   /**
    * Uploads user selected video in the project folder to the user's YouTube account using OAuth2
    * for authentication.
    *
-   * @param args command line args (not used).
+   * With "--watch dir" (which may be repeated), runs as a daemon instead: every video file that
+   * appears in the directories is uploaded once it has stopped changing, with "--parallel n"
+   * uploads at a time (2 by default) sharing a cap of "--max-rate rate" bytes per second (a "k"
+   * or "m" suffix multiplies by 1024 or 1024 * 1024; no cap by default).
+   *
+   * The SHA-256 of each uploaded file is recorded in an {@link UploadIndex} ("--index file", by
+   * default upload-index.properties). With "--preflight", files whose hash is already in it are
+   * skipped instead of being uploaded again.
+   *
+   * With "--manifest file", uploads every file a CSV or JSON manifest lists, with the metadata
+   * it gives (see {@link UploadManifest}), "--parallel n" at a time, and appends the outcome of
+   * each to "--results file" (by default the manifest's name followed by ".results.csv"). Running
+   * it again only uploads the entries that have not been uploaded yet.
+   *
+   * Throughput, chunk latency and retry metrics are exposed over JMX and logged every 30 seconds
+   * (see {@link UploadMetrics}).
+   *
+   * @param args command line args.
    */
   public static void main(String[] args) {
 
@@ -119,101 +109,58 @@ public class UploadVideo {
     List<String> scopes = Lists.newArrayList("https://www.googleapis.com/auth/youtube.upload");
 
     try {
+      // Loads the response classes in the background while the user authorizes.
+      YouTubeClientFactory.get().warmUp(Video.class);
+
       // Authorization.
-      Credential credential = authorize(scopes);
+      Credential credential =
+          YouTubeClientFactory.get().authorize(scopes, "youtube-api-uploadvideo.json");
+
+      String indexFile = getOption(args, "--index");
+      UploadIndex index = UploadIndex.load(
+          new File(indexFile == null ? UploadIndex.DEFAULT_FILE_NAME : indexFile));
+      boolean preflight = hasFlag(args, "--preflight");
+      String parallel = getOption(args, "--parallel");
+      int parallelUploads =
+          parallel == null ? DEFAULT_PARALLEL_UPLOADS : Integer.parseInt(parallel);
+      String maxRate = getOption(args, "--max-rate");
+      BandwidthLimiter limiter = new BandwidthLimiter(maxRate == null ? 0 : parseRate(maxRate));
+
+      List<File> watchDirectories = getOptions(args, "--watch");
+      if (!watchDirectories.isEmpty()) {
+        UploadDaemon daemon = new UploadDaemon(
+            credential, watchDirectories, parallelUploads, limiter, index, preflight);
+        daemon.run();
+        return;
+      }
 
-      // YouTube object used to make all API requests.
-      youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).setApplicationName(
-          "youtube-cmdline-uploadvideo-sample").build();
+      String manifest = getOption(args, "--manifest");
+      if (manifest != null) {
+        String results = getOption(args, "--results");
+        uploadManifest(credential, new File(manifest),
+            new File(results == null ? manifest + ".results.csv" : results), parallelUploads,
+            limiter, index);
+        return;
+      }
 
       // We get the user selected local video file to upload.
-      File videoFile = getVideoFromUser();
+      File[] videoFiles = getLocalVideoFiles();
+      if (preflight) {
+        videoFiles = skipUploaded(videoFiles, index);
+      }
+      File videoFile = getUserChoice(videoFiles);
       System.out.println("You chose " + videoFile + " to upload.");
 
-      // Add extra information to the video before uploading.
-      Video videoObjectDefiningMetadata = new Video();
-
-      /*
-       * Set the video to public, so it is available to everyone (what most people want). This is
-       * actually the default, but I wanted you to see what it looked like in case you need to set
-       * it to "unlisted" or "private" via API.
-       */
-      VideoStatus status = new VideoStatus();
-      status.setPrivacyStatus("public");
-      videoObjectDefiningMetadata.setStatus(status);
-
-      // We set a majority of the metadata with the VideoSnippet object.
-      VideoSnippet snippet = new VideoSnippet();
-
-      /*
-       * The Calendar instance is used to create a unique name and description for test purposes, so
-       * you can see multiple files being uploaded. You will want to remove this from your project
-       * and use your own standard names.
-       */
-      Calendar cal = Calendar.getInstance();
-      snippet.setTitle("Test Upload via Java on " + cal.getTime());
-      snippet.setDescription(
-          "Video uploaded via YouTube Data API V3 using the Java library " + "on " + cal.getTime());
-
-      // Set your keywords.
-      List<String> tags = new ArrayList<String>();
-      tags.add("test");
-      tags.add("example");
-      tags.add("java");
-      tags.add("YouTube Data API V3");
-      tags.add("erase me");
-      snippet.setTags(tags);
-
-      // Set completed snippet to the video object.
-      videoObjectDefiningMetadata.setSnippet(snippet);
-
-      InputStreamContent mediaContent = new InputStreamContent(
-          VIDEO_FILE_FORMAT, new BufferedInputStream(new FileInputStream(videoFile)));
-      mediaContent.setLength(videoFile.length());
-
-      /*
-       * The upload command includes: 1. Information we want returned after file is successfully
-       * uploaded. 2. Metadata we want associated with the uploaded video. 3. Video file itself.
-       */
-      YouTube.Videos.Insert videoInsert = youtube.videos()
-          .insert("snippet,statistics,status", videoObjectDefiningMetadata, mediaContent);
-
-      // Set the upload type and add event listener.
-      MediaHttpUploader uploader = videoInsert.getMediaHttpUploader();
-
-      /*
-       * Sets whether direct media upload is enabled or disabled. True = whole media content is
-       * uploaded in a single request. False (default) = resumable media upload protocol to upload
-       * in data chunks.
-       */
-      uploader.setDirectUploadEnabled(false);
-
-      MediaHttpUploaderProgressListener progressListener = new MediaHttpUploaderProgressListener() {
-        public void progressChanged(MediaHttpUploader uploader) throws IOException {
-          switch (uploader.getUploadState()) {
-            case INITIATION_STARTED:
-              System.out.println("Initiation Started");
-              break;
-            case INITIATION_COMPLETE:
-              System.out.println("Initiation Completed");
-              break;
-            case MEDIA_IN_PROGRESS:
-              System.out.println("Upload in progress");
-              System.out.println("Upload percentage: " + uploader.getProgress());
-              break;
-            case MEDIA_COMPLETE:
-              System.out.println("Upload Completed!");
-              break;
-            case NOT_STARTED:
-              System.out.println("Upload Not Started!");
-              break;
-          }
-        }
-      };
-      uploader.setProgressListener(progressListener);
-
-      // Execute upload.
-      Video returnedVideo = videoInsert.execute();
+      UploadMetrics metrics = new UploadMetrics();
+      metrics.registerMBean();
+      metrics.startLogging(METRICS_LOG_INTERVAL_MILLIS);
+      Video returnedVideo;
+      try {
+        returnedVideo = upload(metrics.countRetries(credential), videoFile, defaultMetadata(),
+            null, index, metrics.newListener(new ProgressPrinter()));
+      } finally {
+        metrics.stopLogging();
+      }
 
       // Print out returned results.
       System.out.println("\n================== Returned Video ==================\n");
@@ -237,11 +184,285 @@ public class UploadVideo {
   }
 
   /**
-   * Gets the user selected local video file to upload.
+   * Uploads a video, resuming the upload an earlier run started if the video's journal is still
+   * valid. Safe to call from several threads at once.
+   *
+   * @param initializer initializer that authorizes requests, such as the credential
+   * @param videoFile file to upload
+   * @param metadata metadata of the video: snippet and status
+   * @param limiter limiter shared by concurrent uploads, or null for none
+   * @param index index the file's hash is added to once it is uploaded
+   * @param progressListener listener told of the upload's progress, or null for none
+   */
+  static Video upload(HttpRequestInitializer initializer, File videoFile, Video metadata,
+      BandwidthLimiter limiter, UploadIndex index,
+      MediaHttpUploaderProgressListener progressListener) throws IOException {
+
+    /*
+     * The file is read through a FileChannel, so each chunk of the resumable upload is read
+     * straight from the file (and read again if it has to be retried) instead of being copied
+     * into a chunk-sized buffer on the heap.
+     */
+    FileChannelContent mediaContent = new FileChannelContent(VIDEO_FILE_FORMAT, videoFile);
+    mediaContent.setBandwidthLimiter(limiter);
+
+    // The file is hashed from the blocks the upload reads, rather than in a pass of its own.
+    ContentHasher hasher = new ContentHasher(videoFile);
+    mediaContent.setHasher(hasher);
+
+    /*
+     * If an earlier run died while uploading this file, its journal holds the upload session,
+     * and only the bytes the server does not have yet are sent. Otherwise a new upload starts.
+     */
+    Video returnedVideo = null;
+    UploadJournal journal = UploadJournal.load(UploadJournal.journalFileFor(videoFile));
+    if (journal != null && journal.isFor(videoFile)) {
+      System.out.println("Resuming the upload of " + videoFile + " at byte "
+          + journal.getBytesConfirmed() + " of " + videoFile.length());
+      returnedVideo = new UploadResumer(
+          HTTP_TRANSPORT, initializer, JSON_FACTORY, MediaHttpUploader.DEFAULT_CHUNK_SIZE)
+          .setChunkSizer(new AdaptiveChunkSizer(null)).resume(journal, mediaContent);
+      if (returnedVideo == null) {
+        System.out.println("The upload session of " + videoFile
+            + " has expired; starting a new upload.");
+      } else {
+        System.out.println("Upload of " + videoFile + " Completed!");
+      }
+    }
+    if (returnedVideo == null) {
+      returnedVideo =
+          uploadNewVideo(initializer, videoFile, metadata, mediaContent, progressListener);
+    }
+    UploadJournal.journalFileFor(videoFile).delete();
+    index.put(hasher.finish(), returnedVideo.getId());
+    return returnedVideo;
+  }
+
+  /**
+   * Uploads a video with a new resumable upload session. The session URI and each chunk the server
+   * confirms are recorded in the video's {@link UploadJournal}, so that the upload can be resumed
+   * if this run dies.
+   *
+   * @param initializer initializer that authorizes requests, such as the credential
+   * @param videoFile file to upload
+   * @param metadata metadata of the video: snippet and status
+   * @param mediaContent content of the file
+   * @param progressListener listener told of the upload's progress, or null for none
    */
-  private static File getVideoFromUser() throws IOException {
-    File[] listOfVideoFiles = getLocalVideoFiles();
-    return getUserChoice(listOfVideoFiles);
+  private static Video uploadNewVideo(HttpRequestInitializer initializer, File videoFile,
+      Video metadata, FileChannelContent mediaContent,
+      MediaHttpUploaderProgressListener progressListener) throws IOException {
+
+    // YouTube object used to make all API requests, which also keeps the upload journal.
+    YouTube youtube = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY,
+        new UploadJournal.Recorder(initializer, videoFile)).setApplicationName(
+        "youtube-cmdline-uploadvideo-sample").build();
+
+    /*
+     * The upload command includes: 1. Information we want returned after file is successfully
+     * uploaded. 2. Metadata we want associated with the uploaded video. 3. Video file itself.
+     */
+    YouTube.Videos.Insert videoInsert =
+        youtube.videos().insert("snippet,statistics,status", metadata, mediaContent);
+
+    // Set the upload type and add event listener.
+    MediaHttpUploader uploader = videoInsert.getMediaHttpUploader();
+
+    /*
+     * Sets whether direct media upload is enabled or disabled. True = whole media content is
+     * uploaded in a single request. False (default) = resumable media upload protocol to upload
+     * in data chunks.
+     */
+    uploader.setDirectUploadEnabled(false);
+
+    /*
+     * The chunk size starts at the uploader's default and is then adjusted after each chunk, so
+     * that chunks take about two seconds each: larger chunks on fast links, smaller ones on slow
+     * or unreliable links where a failed chunk has to be sent again.
+     */
+    uploader.setProgressListener(new AdaptiveChunkSizer(progressListener));
+
+    // Execute upload.
+    return videoInsert.execute();
+  }
+
+  /**
+   * Uploads the entries of a manifest and prints a summary.
+   *
+   * @param credential authorized credential
+   * @param manifestFile CSV or JSON manifest
+   * @param resultsFile CSV file the outcome of each entry is appended to
+   * @param parallelUploads number of uploads to run at once
+   * @param limiter limiter shared by the uploads
+   * @param index index of the files uploaded
+   */
+  private static void uploadManifest(Credential credential, File manifestFile, File resultsFile,
+      int parallelUploads, BandwidthLimiter limiter, UploadIndex index)
+      throws IOException, InterruptedException {
+    List<UploadManifest.Entry> entries = UploadManifest.read(manifestFile, JSON_FACTORY);
+    UploadMetrics metrics = new UploadMetrics();
+    metrics.registerMBean();
+    metrics.startLogging(METRICS_LOG_INTERVAL_MILLIS);
+    UploadResults results = new UploadResults(resultsFile);
+    try {
+      BulkUploader uploader =
+          new BulkUploader(credential, parallelUploads, limiter, index, metrics);
+      int skipped = uploader.run(entries, results);
+      System.out.println("\n" + entries.size() + " entries: " + uploader.getUploaded()
+          + " uploaded, " + uploader.getFailed() + " failed, " + skipped
+          + " already uploaded by an earlier run. Results are in " + resultsFile + ".");
+    } finally {
+      results.close();
+      metrics.stopLogging();
+    }
+  }
+
+  /**
+   * Returns the metadata used for videos uploaded interactively or by the watch-folder daemon: a
+   * title and description with the current time, and a few tags.
+   */
+  static Video defaultMetadata() {
+
+    // Add extra information to the video before uploading.
+    Video videoObjectDefiningMetadata = new Video();
+
+    /*
+     * Set the video to public, so it is available to everyone (what most people want). This is
+     * actually the default, but I wanted you to see what it looked like in case you need to set
+     * it to "unlisted" or "private" via API.
+     */
+    VideoStatus status = new VideoStatus();
+    status.setPrivacyStatus("public");
+    videoObjectDefiningMetadata.setStatus(status);
+
+    // We set a majority of the metadata with the VideoSnippet object.
+    VideoSnippet snippet = new VideoSnippet();
+
+    /*
+     * The Calendar instance is used to create a unique name and description for test purposes, so
+     * you can see multiple files being uploaded. You will want to remove this from your project
+     * and use your own standard names.
+     */
+    Calendar cal = Calendar.getInstance();
+    snippet.setTitle("Test Upload via Java on " + cal.getTime());
+    snippet.setDescription(
+        "Video uploaded via YouTube Data API V3 using the Java library " + "on " + cal.getTime());
+
+    // Set your keywords.
+    List<String> tags = new ArrayList<String>();
+    tags.add("test");
+    tags.add("example");
+    tags.add("java");
+    tags.add("YouTube Data API V3");
+    tags.add("erase me");
+    snippet.setTags(tags);
+
+    // Set completed snippet to the video object.
+    videoObjectDefiningMetadata.setSnippet(snippet);
+    return videoObjectDefiningMetadata;
+  }
+
+  /**
+   * Prints the progress of an interactive upload.
+   */
+  private static class ProgressPrinter implements MediaHttpUploaderProgressListener {
+    public void progressChanged(MediaHttpUploader uploader) throws IOException {
+      switch (uploader.getUploadState()) {
+        case INITIATION_STARTED:
+          System.out.println("Initiation Started");
+          break;
+        case INITIATION_COMPLETE:
+          System.out.println("Initiation Completed");
+          break;
+        case MEDIA_IN_PROGRESS:
+          System.out.println("Upload in progress");
+          System.out.println("Upload percentage: " + uploader.getProgress());
+          break;
+        case MEDIA_COMPLETE:
+          System.out.println("Upload Completed!");
+          break;
+        case NOT_STARTED:
+          System.out.println("Upload Not Started!");
+          break;
+      }
+    }
+  }
+
+  /*
+   * Returns the value given after an option such as "--parallel", or null if it is not given.
+   */
+  private static String getOption(String[] args, String option) {
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        return args[i + 1];
+      }
+    }
+    return null;
+  }
+
+  /*
+   * Returns whether a flag such as "--preflight" is given.
+   */
+  private static boolean hasFlag(String[] args, String flag) {
+    for (String arg : args) {
+      if (arg.equals(flag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Returns the directories named after each occurrence of an option such as "--watch".
+   */
+  private static List<File> getOptions(String[] args, String option) {
+    List<File> files = new ArrayList<File>();
+    for (int i = 0; i + 1 < args.length; i++) {
+      if (args[i].equals(option)) {
+        files.add(new File(args[i + 1]));
+      }
+    }
+    return files;
+  }
+
+  /*
+   * Parses a rate in bytes per second such as "500k" or "2m".
+   */
+  private static long parseRate(String rate) {
+    String lowercaseRate = rate.toLowerCase();
+    long multiplier = 1;
+    if (lowercaseRate.endsWith("k")) {
+      multiplier = 1024;
+    } else if (lowercaseRate.endsWith("m")) {
+      multiplier = 1024 * 1024;
+    }
+    if (multiplier != 1) {
+      lowercaseRate = lowercaseRate.substring(0, lowercaseRate.length() - 1);
+    }
+    return Long.parseLong(lowercaseRate) * multiplier;
+  }
+
+  /**
+   * Hashes video files in parallel and returns those that are not in the index yet.
+   *
+   * @param videoFiles candidate files
+   * @param index index of the files already uploaded
+   */
+  private static File[] skipUploaded(File[] videoFiles, UploadIndex index) {
+    System.out.println("Checking " + videoFiles.length + " files against " + index.size()
+        + " uploads...");
+    String[] hashes = ContentHasher.hashAll(videoFiles);
+    List<File> remaining = new ArrayList<File>();
+    for (int i = 0; i < videoFiles.length; i++) {
+      String videoId = index.getVideoId(hashes[i]);
+      if (videoId == null) {
+        remaining.add(videoFiles[i]);
+      } else {
+        System.out.println(
+            "Skipping " + videoFiles[i].getName() + ": already uploaded as video " + videoId);
+      }
+    }
+    return remaining.toArray(new File[remaining.size()]);
   }
 
   /**
@@ -251,21 +472,7 @@ public class UploadVideo {
 
     File currentDirectory = new File(".");
     System.out.println("Video files from " + currentDirectory.getAbsolutePath() + ":");
-
-    // Filters out video files. This list of video extensions is not comprehensive.
-    FilenameFilter videoFilter = new FilenameFilter() {
-      public boolean accept(File dir, String name) {
-        String lowercaseName = name.toLowerCase();
-        if (lowercaseName.endsWith(".webm") || lowercaseName.endsWith(".flv")
-            || lowercaseName.endsWith(".f4v") || lowercaseName.endsWith(".mov")
-            || lowercaseName.endsWith(".mp4")) {
-          return true;
-        } else {
-          return false;
-        }
-      }
-    };
-    return currentDirectory.listFiles(videoFilter);
+    return currentDirectory.listFiles(VIDEO_FILTER);
   }
 
   /**
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/**
+ * Tests for {@link AdaptiveChunkSizer}, uploading through a {@link ThrottledUploadStub}.
+ */
+public class AdaptiveChunkSizerTest {
+
+  private static final int MIB = 1024 * 1024;
+
+  /*
+   * Loads and compiles the upload code first: the sizer takes the initiation request's time as the
+   * round trip, and a cold first request would make it seem several times longer.
+   */
+  @BeforeClass
+  public static void warmUp() throws Exception {
+    new ThrottledUploadStub(100 * 1000 * 1000, 0, 0, 0).upload(4 * MIB, MIB, null);
+  }
+
+  @Test
+  public void chunksGrowOnFastLink() throws Exception {
+    ThrottledUploadStub stub = new ThrottledUploadStub(50 * 1000 * 1000, 5, 0, 0);
+    stub.upload(24 * MIB, MIB, new AdaptiveChunkSizer(null, 200, 64 * MIB));
+
+    List<Integer> sizes = stub.getChunkSizes();
+    assertMultiplesOfMinimum(sizes);
+    // Doubling from 1 MiB toward the 10 MB sent in 200 ms: 1, 2, 4, 8 MiB and the rest, where
+    // a fixed 1 MiB chunk would take 24 requests.
+    assertTrue(sizes.toString(), sizes.size() <= 6);
+    assertEquals(8 * MIB, (int) sizes.get(3));
+  }
+
+  @Test
+  public void chunksShrinkOnSlowLink() throws Exception {
+    ThrottledUploadStub stub = new ThrottledUploadStub(5 * 1000 * 1000, 5, 0, 0);
+    AdaptiveChunkSizer sizer = new AdaptiveChunkSizer(null, 100, 64 * MIB);
+    stub.upload(6 * MIB, 2 * MIB, sizer);
+
+    List<Integer> sizes = stub.getChunkSizes();
+    assertMultiplesOfMinimum(sizes);
+    assertEquals(2 * MIB, (int) sizes.get(0));
+    // 5 MB/s for 100 ms is half a megabyte, rounded to a multiple of 256 KiB.
+    assertTrue(sizer.getChunkSize() <= 2 * MediaHttpUploader.MINIMUM_CHUNK_SIZE);
+    assertTrue(Math.abs(sizer.getBytesPerSecond() - 5 * 1000 * 1000) < 1000 * 1000);
+  }
+
+  @Test
+  public void retriedChunksShrinkTheNextOnes() throws Exception {
+    ThrottledUploadStub stub = new ThrottledUploadStub(20 * 1000 * 1000, 5, 4 * MIB, 3);
+    stub.upload(16 * MIB, 2 * MIB, new AdaptiveChunkSizer(null, 100, 64 * MIB));
+
+    List<Integer> sizes = stub.getChunkSizes();
+    List<Integer> failed = stub.getFailedChunks();
+    assertMultiplesOfMinimum(sizes);
+    assertTrue(failed.size() > 0);
+    // A failed chunk is sent again after a back-off of a quarter second or more, so the chunk it
+    // took looks slow, and the chunk after it is smaller.
+    int checked = 0;
+    for (int failure : failed) {
+      int retry = failure + 1;
+      while (failed.contains(retry)) {
+        retry++;
+      }
+      if (retry + 1 < sizes.size() - 1) {
+        assertTrue(sizes.toString(), sizes.get(retry + 1) < sizes.get(retry));
+        checked++;
+      }
+    }
+    assertTrue(checked > 0);
+  }
+
+  @Test
+  public void resumedUploadIsSizedToo() throws Exception {
+    File file = File.createTempFile("upload", ".bin");
+    RandomAccessFile out = new RandomAccessFile(file, "rw");
+    out.setLength(24 * MIB);
+    out.close();
+    try {
+      ThrottledUploadStub stub = new ThrottledUploadStub(50 * 1000 * 1000, 5, 0, 0);
+      stub.resume(file, MIB, new AdaptiveChunkSizer(null, 200, 64 * MIB));
+
+      List<Integer> sizes = stub.getChunkSizes();
+      assertMultiplesOfMinimum(sizes);
+      assertTrue(sizes.toString(), sizes.size() <= 6);
+      assertEquals(8 * MIB, (int) sizes.get(3));
+    } finally {
+      file.delete();
+    }
+  }
+
+  /*
+   * Checks that every chunk but the last is a multiple of 256 KiB.
+   */
+  private static void assertMultiplesOfMinimum(List<Integer> sizes) {
+    for (int i = 0; i < sizes.size() - 1; i++) {
+      assertEquals(sizes.toString(), 0, sizes.get(i) % MediaHttpUploader.MINIMUM_CHUNK_SIZE);
+    }
+  }
+}
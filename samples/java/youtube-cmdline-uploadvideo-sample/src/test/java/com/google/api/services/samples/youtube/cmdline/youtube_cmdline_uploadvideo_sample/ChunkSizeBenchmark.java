@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+
+/**
+ * Compares uploads with the default fixed chunk size (10 MiB) and with an
+ * {@link AdaptiveChunkSizer}, through a {@link ThrottledUploadStub}:
+ *
+ * <ul>
+ * <li>a fast link (100 MB/s, 50 ms round trip), where larger chunks spend less time on round
+ * trips;</li>
+ * <li>a flaky link, where a chunk fails every 20 MB on average and smaller chunks lose less when
+ * one fails. It stands for a 1 MB/s mobile link with a 300 ms round trip and the default 2 s
+ * target, sped up ten times: 10 MB/s, 30 ms and a 200 ms target.</li>
+ * </ul>
+ *
+ * Each upload is run with several seeds, and the totals are printed. Run with the test classpath,
+ * for instance from an IDE, with an optional number of seeds (5).
+ */
+public class ChunkSizeBenchmark {
+
+  private static final int MB = 1000 * 1000;
+
+  public static void main(String[] args) throws Exception {
+    int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    run("fast", 100 * MB, 50, 0, 128 << 20, AdaptiveChunkSizer.DEFAULT_TARGET_MILLIS, seeds);
+    run("flaky", 10 * MB, 30, 20 * MB, 40 << 20, 200, seeds);
+  }
+
+  private static void run(String link, long bytesPerSecond, long roundTripMillis,
+      long meanBytesBetweenFailures, int size, long targetMillis, int seeds) throws Exception {
+    for (boolean adaptive : new boolean[] {false, true}) {
+      long millis = 0;
+      long bytesSent = 0;
+      int requests = 0;
+      int failures = 0;
+      for (int seed = 0; seed < seeds; seed++) {
+        ThrottledUploadStub stub = new ThrottledUploadStub(
+            bytesPerSecond, roundTripMillis, meanBytesBetweenFailures, seed);
+        millis += stub.upload(size, MediaHttpUploader.DEFAULT_CHUNK_SIZE, adaptive
+            ? new AdaptiveChunkSizer(null, targetMillis, AdaptiveChunkSizer.DEFAULT_MAX_CHUNK_SIZE)
+            : null);
+        bytesSent += stub.getBytesSent();
+        requests += stub.getRequests();
+        failures += stub.getFailures();
+      }
+      System.out.printf("%-5s %-8s %6.1f MB/s, %4d requests, %3d failed chunks, %6.1f MB resent%n",
+          link, adaptive ? "adaptive" : "fixed", (double) size * seeds / MB / (millis / 1000.0),
+          requests, failures, (double) (bytesSent - (long) size * seeds) / MB);
+    }
+  }
+}
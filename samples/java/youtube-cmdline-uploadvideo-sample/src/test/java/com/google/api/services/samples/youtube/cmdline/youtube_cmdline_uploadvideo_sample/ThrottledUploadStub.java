@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory resumable upload endpoint behind a throttled link: every request takes a round trip,
+ * and every chunk takes its size divided by the bandwidth to send. On a flaky link a chunk can fail
+ * part way through, after a random number of bytes (exponentially distributed with a given mean);
+ * the stub then answers 503 and keeps none of the chunk, so the uploader has to send it again.
+ *
+ * It speaks the parts of the protocol MediaHttpUploader uses: the initiation request, chunks with
+ * "Content-Range: bytes first-last/total" answered with 308 and the Range received so far, and the
+ * "bytes *&#47;total" query sent after a server error.
+ */
+class ThrottledUploadStub extends MockHttpTransport {
+
+  private static final String SESSION_URL = "http://upload.stub/session";
+
+  private static final Pattern CHUNK_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+  private final double bytesPerMilli;
+
+  private final long roundTripMillis;
+
+  private final double meanBytesBetweenFailures;
+
+  private final Random random;
+
+  private long received;
+
+  private int requests;
+
+  private int failures;
+
+  private long bytesSent;
+
+  private final List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+  private final List<Integer> failedChunks = Collections.synchronizedList(new ArrayList<Integer>());
+
+  /**
+   * Creates a stub.
+   *
+   * @param bytesPerSecond bandwidth of the link
+   * @param roundTripMillis round trip time of each request
+   * @param meanBytesBetweenFailures mean number of bytes sent between two failed chunks, or 0 for a
+   *        link that never fails
+   * @param seed seed of the failures
+   */
+  ThrottledUploadStub(
+      long bytesPerSecond, long roundTripMillis, long meanBytesBetweenFailures, long seed) {
+    this.bytesPerMilli = bytesPerSecond / 1000.0;
+    this.roundTripMillis = roundTripMillis;
+    this.meanBytesBetweenFailures = meanBytesBetweenFailures;
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Uploads a file of the given size through this stub, with a progress listener.
+   *
+   * @param size size of the file in bytes
+   * @param chunkSize chunk size the uploader starts with
+   * @param listener listener, such as an {@link AdaptiveChunkSizer}, or null
+   * @return the time the upload took in milliseconds
+   */
+  long upload(int size, int chunkSize, MediaHttpUploaderProgressListener listener)
+      throws IOException {
+    return upload(new ByteArrayContent("video/*", new byte[size]), chunkSize, listener);
+  }
+
+  /**
+   * Uploads content through this stub, with a progress listener.
+   *
+   * @param content content to upload
+   * @param chunkSize chunk size the uploader starts with
+   * @param listener listener, such as an {@link AdaptiveChunkSizer}, or null
+   * @return the time the upload took in milliseconds
+   */
+  long upload(AbstractInputStreamContent content, int chunkSize,
+      MediaHttpUploaderProgressListener listener) throws IOException {
+    MediaHttpUploader uploader = new MediaHttpUploader(content, this, null);
+    uploader.setChunkSize(chunkSize);
+    uploader.setProgressListener(listener);
+    long start = System.nanoTime();
+    uploader.upload(new GenericUrl("http://upload.stub/upload/youtube/v3/videos"));
+    return (System.nanoTime() - start) / 1000000;
+  }
+
+  /**
+   * Finishes the upload of a file through this stub with an {@link UploadResumer}, as if an earlier
+   * run had started the session and died before sending any media.
+   *
+   * @param file file to upload
+   * @param chunkSize chunk size the resumer starts with
+   * @param sizer sizer of the chunks, or null to send them all with chunkSize
+   * @return the time the upload took in milliseconds
+   */
+  long resume(File file, int chunkSize, AdaptiveChunkSizer sizer) throws IOException {
+    File journalFile = File.createTempFile("upload-journal", ".properties");
+    try {
+      UploadJournal journal = UploadJournal.start(journalFile, SESSION_URL, file);
+      long start = System.nanoTime();
+      new UploadResumer(this, null, new JacksonFactory(), chunkSize).setChunkSizer(sizer)
+          .resume(journal, new FileChannelContent("video/*", file));
+      return (System.nanoTime() - start) / 1000000;
+    } finally {
+      journalFile.delete();
+    }
+  }
+
+  @Override
+  public LowLevelHttpRequest buildRequest(String method, final String url) {
+    return new MockLowLevelHttpRequest(url) {
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        return respond(this);
+      }
+    };
+  }
+
+  /** Number of requests received, including initiation and queries. */
+  synchronized int getRequests() {
+    return requests;
+  }
+
+  /** Number of chunks that failed part way through. */
+  synchronized int getFailures() {
+    return failures;
+  }
+
+  /** Media bytes that went over the link, including those of failed chunks. */
+  synchronized long getBytesSent() {
+    return bytesSent;
+  }
+
+  /** Size of every chunk received, in order, whether it failed or not. */
+  List<Integer> getChunkSizes() {
+    return chunkSizes;
+  }
+
+  /** Indexes in {@link #getChunkSizes} of the chunks that failed. */
+  List<Integer> getFailedChunks() {
+    return failedChunks;
+  }
+
+  private synchronized LowLevelHttpResponse respond(MockLowLevelHttpRequest request)
+      throws IOException {
+    requests++;
+    sleep(roundTripMillis);
+    MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+    if (!request.getUrl().startsWith(SESSION_URL)) {
+      response.addHeader("Location", SESSION_URL);
+      return response;
+    }
+
+    String contentRange = request.getFirstHeaderValue("Content-Range");
+    Matcher range = contentRange == null ? null : CHUNK_RANGE.matcher(contentRange);
+    if (range == null || !range.matches()) {
+      // "bytes */total": the uploader asks how much was received after an error.
+      return incomplete(response);
+    }
+    long first = Long.parseLong(range.group(1));
+    long last = Long.parseLong(range.group(2));
+    long total = Long.parseLong(range.group(3));
+    long length = contentLength(request);
+    if (first != received || last - first + 1 != length) {
+      throw new IOException("Unexpected chunk " + contentRange + " of " + length + " bytes");
+    }
+    chunkSizes.add((int) length);
+
+    long failAfter = meanBytesBetweenFailures == 0 ? Long.MAX_VALUE
+        : (long) (-Math.log(1 - random.nextDouble()) * meanBytesBetweenFailures);
+    if (failAfter < length) {
+      failures++;
+      failedChunks.add(chunkSizes.size() - 1);
+      bytesSent += failAfter;
+      sleep((long) (failAfter / bytesPerMilli));
+      return response.setStatusCode(503);
+    }
+    bytesSent += length;
+    sleep((long) (length / bytesPerMilli));
+    received = last + 1;
+    if (received == total) {
+      return response.setContentType("application/json").setContent("{\"id\":\"uploaded\"}");
+    }
+    return incomplete(response);
+  }
+
+  private LowLevelHttpResponse incomplete(MockLowLevelHttpResponse response) {
+    if (received > 0) {
+      response.addHeader("Range", "bytes=0-" + (received - 1));
+    }
+    return response.setStatusCode(308);
+  }
+
+  private static long contentLength(MockLowLevelHttpRequest request) throws IOException {
+    if (request.getContent() == null) {
+      return 0;
+    }
+    final long[] count = new long[1];
+    request.getContent().writeTo(new OutputStream() {
+      @Override
+      public void write(int b) {
+        count[0]++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        count[0] += len;
+      }
+    });
+    return count[0];
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    }
+  }
+}
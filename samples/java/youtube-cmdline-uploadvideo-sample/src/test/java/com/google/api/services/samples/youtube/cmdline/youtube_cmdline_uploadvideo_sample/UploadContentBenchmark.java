@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2013 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.api.services.samples.youtube.cmdline.youtube_cmdline_uploadvideo_sample;
+
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.client.http.InputStreamContent;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Compares uploading a file from a {@link FileChannelContent} and from an InputStreamContent over a
+ * BufferedInputStream, as the sample did before, through a {@link ThrottledUploadStub} with no
+ * bandwidth limit or round trip, so that reading the file and copying it to the request are all
+ * that is measured. A link that fails every 64 MB on average makes the uploader reset the stream
+ * to resend chunks.
+ *
+ * For each content and chunk size, the throughput and the bytes allocated on the heap by the
+ * upload are printed. The allocation is that of the uploading thread, as HotSpot counts it, and
+ * includes the uploader's and the stub's own. Run with the test classpath, for instance from an
+ * IDE, with an optional file size in MiB (256) and number of runs (5).
+ */
+public class UploadContentBenchmark {
+
+  private static final int MIB = 1 << 20;
+
+  public static void main(String[] args) throws Exception {
+    int size = (args.length > 0 ? Integer.parseInt(args[0]) : 256) * MIB;
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    File file = File.createTempFile("upload-content", ".bin");
+    try {
+      write(file, size);
+      for (int chunkSize : new int[] {10 * MIB, 64 * MIB}) {
+        for (long meanBytesBetweenFailures : new long[] {0, 64L * 1000 * 1000}) {
+          for (boolean channel : new boolean[] {false, true}) {
+            run(file, chunkSize, meanBytesBetweenFailures, channel, runs);
+          }
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static void run(File file, int chunkSize, long meanBytesBetweenFailures,
+      boolean channel, int runs) throws Exception {
+    // The first run warms up the JIT and the page cache, and is left out.
+    long millis = 0;
+    long allocated = 0;
+    long bytesSent = 0;
+    for (int i = 0; i <= runs; i++) {
+      ThrottledUploadStub stub =
+          new ThrottledUploadStub(Long.MAX_VALUE / 1000, 0, meanBytesBetweenFailures, i);
+      long allocatedBefore = allocatedBytes();
+      long uploadMillis = stub.upload(content(file, channel), chunkSize, null);
+      if (i > 0) {
+        millis += uploadMillis;
+        allocated += allocatedBytes() - allocatedBefore;
+        bytesSent += stub.getBytesSent();
+      }
+    }
+    System.out.printf("%2d MiB chunks, %-6s %-18s %7.1f MB/s sent, %7.1f MiB allocated%n",
+        chunkSize / MIB, meanBytesBetweenFailures == 0 ? "steady" : "flaky",
+        channel ? "FileChannelContent" : "InputStreamContent",
+        bytesSent / 1e6 / (millis / 1000.0), (double) allocated / runs / MIB);
+  }
+
+  private static AbstractInputStreamContent content(File file, boolean channel) throws Exception {
+    if (channel) {
+      return new FileChannelContent("video/*", file);
+    }
+    return new InputStreamContent("video/*", new BufferedInputStream(new FileInputStream(file)))
+        .setLength(file.length());
+  }
+
+  private static void write(File file, int size) throws Exception {
+    byte[] block = new byte[MIB];
+    new Random(42).nextBytes(block);
+    RandomAccessFile out = new RandomAccessFile(file, "rw");
+    try {
+      for (int written = 0; written < size; written += block.length) {
+        out.write(block, 0, Math.min(block.length, size - written));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}